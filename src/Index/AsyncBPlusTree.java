@@ -0,0 +1,174 @@
+package Index;
+
+import KVTable.Table;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 基于{@link BPlusTree}的异步索引.
+ * <p>
+ * 读操作沿索引快照找到目标表的文件后，通过{@link AsynchronousFileChannel}读取文件，调用线程不会被阻塞，
+ * 同一个线程可以同时发起多个独立键的读取. 读取期间持有索引快照，因此读到的旧版本文件不会被回收.
+ * <p>
+ * 写操作需要修改B+树的结构，仍以同步IO执行，但被放到唯一的写线程上按提交的顺序依次进行，
+ * 调用线程同样不会被阻塞.
+ * @param <K> K-V表中所存结点的键的类型.
+ * @param <V> K-V表中所存结点的值的类型.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class AsyncBPlusTree<K, V> implements AsyncIndex<K, V>, AutoCloseable {
+
+    /** 被包装的B+树. */
+    private final BPlusTree<K, V> _tree;
+
+    /** 处理异步读取完成事件的线程池，为null时使用默认的线程池. */
+    private final ExecutorService _ioPool;
+
+    /** 执行写操作的线程. */
+    private final ExecutorService _writer;
+
+    /**
+     * 异步索引的构造函数，异步读取的完成事件由默认的线程池处理.
+     * @param tree 被包装的B+树
+     */
+    public AsyncBPlusTree(BPlusTree<K, V> tree) { this(tree, null); }
+
+    /**
+     * 异步索引的构造函数.
+     * @param tree 被包装的B+树
+     * @param ioPool 处理异步读取完成事件的线程池，反序列化也在其中进行；为null时使用默认的线程池
+     */
+    public AsyncBPlusTree(BPlusTree<K, V> tree, ExecutorService ioPool) {
+        _tree = tree;
+        _ioPool = ioPool;
+        _writer = Executors.newSingleThreadExecutor(task -> {
+            Thread writer = new Thread(task, "async-index-writer");
+            writer.setDaemon(true);
+            return writer;
+        });
+    }
+
+    @Override
+    public CompletableFuture<V> get(K key) {
+        IndexSnapshot<K> snapshot = _tree.acquireSnapshot();
+        String path = snapshot.find(key);
+        if (path == null) {
+            _tree.releaseSnapshot(snapshot);
+            return CompletableFuture.completedFuture(null);
+        }
+        return load(path)
+                .thenApply(table -> table.get(key))
+                .whenComplete((value, e) -> _tree.releaseSnapshot(snapshot));
+    }
+
+    @Override
+    public CompletableFuture<Void> insert(K key, V value) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                _tree.insert(key, value);
+            } catch (IOException | ClassNotFoundException e) {
+                throw new CompletionException(e);
+            }
+        }, _writer);
+    }
+
+    @Override
+    public CompletableFuture<V> delete(K key) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return _tree.delete(key);
+            } catch (IOException | ClassNotFoundException e) {
+                throw new CompletionException(e);
+            }
+        }, _writer);
+    }
+
+    /** 同时发起所有相交的表的读取，全部读取完毕后按键的顺序拼接结果. */
+    @Override
+    public CompletableFuture<List<Map.Entry<K, V>>> scan(K low, K high) {
+        IndexSnapshot<K> snapshot = _tree.acquireSnapshot();
+        List<String> paths = snapshot.tables(low, high);
+        List<CompletableFuture<List<Map.Entry<K, V>>>> parts = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            parts.add(load(path).thenApply(table -> table.entries(low, high)));
+        }
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    List<Map.Entry<K, V>> records = new ArrayList<>();
+                    for (CompletableFuture<List<Map.Entry<K, V>>> part : parts) { records.addAll(part.join()); }
+                    return records;
+                })
+                .whenComplete((records, e) -> _tree.releaseSnapshot(snapshot));
+    }
+
+    /** 停止写线程. 已经提交的写操作会执行完毕. */
+    @Override
+    public void close() { _writer.shutdown(); }
+
+    /**
+     * 以异步IO读取一张表的文件并反序列化.
+     * @param path 表文件的路径
+     * @return 读取得到的表；读取失败时以{@link IOException}异常完成
+     */
+    private CompletableFuture<Table<K, V>> load(String path) {
+        CompletableFuture<Table<K, V>> result = new CompletableFuture<>();
+        AsynchronousFileChannel channel;
+        ByteBuffer buffer;
+        try {
+            channel = AsynchronousFileChannel.open(Paths.get(path), Set.of(StandardOpenOption.READ), _ioPool);
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                channel.close();
+                throw new IOException(String.format("表文件过大: %s", path));
+            }
+            buffer = ByteBuffer.allocate((int) size);
+        } catch (IOException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        channel.read(buffer, 0, null, new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(Integer n, Void attachment) {
+                // 一次读取可能只读到部分内容，从读到的位置继续读
+                if (n >= 0 && buffer.hasRemaining()) {
+                    channel.read(buffer, buffer.position(), null, this);
+                    return;
+                }
+                close(channel);
+                try {
+                    result.complete(Table.load(path, buffer.array()));
+                } catch (IOException | ClassNotFoundException e) {
+                    result.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                close(channel);
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    private static void close(AsynchronousFileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // 只读的通道关闭失败不影响读取结果
+        }
+    }
+}
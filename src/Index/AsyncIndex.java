@@ -0,0 +1,28 @@
+package Index;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * K-V表索引{@link Index}的异步版本. 所有操作立即返回，结果通过{@link CompletableFuture}给出，
+ * 执行过程中发生的{@link java.io.IOException}与{@link ClassNotFoundException}会使结果异常完成.
+ * @param <K> K-V表中所存结点的键的类型.
+ * @param <V> K-V表中所存结点的值的类型.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public interface AsyncIndex<K, V> {
+
+    /** 返回 key 对应的值，记录不存在时结果为null. */
+    CompletableFuture<V> get(K key);
+
+    /** 将给定的 K-V 对插入到对应的表中. */
+    CompletableFuture<Void> insert(K key, V value);
+
+    /** 删除给定键对应的记录，结果为被删除的值. */
+    CompletableFuture<V> delete(K key);
+
+    /** 返回键在闭区间[low, high]内的所有记录，记录按键升序排列. */
+    CompletableFuture<List<Map.Entry<K, V>>> scan(K low, K high);
+}
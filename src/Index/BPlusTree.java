@@ -2,13 +2,36 @@ package Index;
 
 import static Utils.Utils.*;
 import KVTable.Table;
+import Index.TableSpliterator.TableSource;
+import Metrics.EngineEvents.PageMerge;
+import Metrics.EngineEvents.PageSplit;
+import Metrics.EngineEvents.TableSplit;
+import Metrics.Operation;
+import Metrics.OperationStats;
+import Metrics.OperationTrace;
+import Metrics.OperationTrace.Phase;
 import static View.BPTView.*;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 用于为磁盘上的K-V表提供多级索引结构的B+树.
  * <p>
+ * 写操作之间通过写锁互斥，每次写操作结束时都会复制出一份不可变的索引快照{@link IndexSnapshot}
+ * 并原子地发布. 读操作{@link #get}只沿当前快照下降，无需加锁，也不会被分裂与合并阻塞.
+ * 表的每次写回都会生成新版本的文件，被替换掉的旧版本要等到持有旧快照的读者全部离开后才会删除.
+ * <p>
  * @param <K> 对应外部结点所存放的，K-V表中的键的类型.
  * @param <V> 对应外部结点所存放的，K-V表中的值的类型.
  * @author Episode-Zhang
@@ -31,8 +54,56 @@ public class BPlusTree<K, V> implements Index<K, V> {
     /** B+树中每张表允许的最大容量(定义为记录条数). */
     private final int CAPACITY;
 
+    /** 表的容量上限因子的默认值. */
+    public static final double DEFAULT_UPPERTHRESHOLD = 0.8;
+
     /** B+树中每张表的容量上限因子, 当某张大表达到上限时会将自己分成两张小表. */
-    private final double UPPERTHRESHOLD = 0.8;
+    private final double UPPERTHRESHOLD;
+
+    /** 写操作之间的互斥锁. 读操作不需要持有它. */
+    private final ReentrantLock _writeLock;
+
+    /** 供读者使用的、最近一次发布的索引快照. */
+    private final AtomicReference<IndexSnapshot<K>> _snapshot;
+
+    /** 当前写操作中被替换或删除的表的旧版本文件，在下一次发布快照时一并退役. */
+    private final List<String> _obsoleteFiles;
+
+    /** 当前写操作中从索引中删除的表的最后一个版本的文件，回收时一并移除这些表的IO统计. */
+    private final List<String> _droppedTables;
+
+    /** 已经退役但可能仍被旧快照的读者持有的表文件，按退役的先后排列. */
+    private final ConcurrentLinkedQueue<Retired<K>> _retired;
+
+    /** 回收退役文件时使用的锁，读者只会尝试获取它而不会等待. */
+    private final ReentrantLock _reclaimLock;
+
+    /** 表内分裂等操作的耗时统计. */
+    private final OperationStats _stats;
+
+    /** 后台维护的调度器. 为null时表的分裂与页的重平衡都在写操作中直接进行. */
+    private MaintenanceScheduler _maintenance;
+
+    /** 达到容量上限、等待后台分裂的表. 由写锁保护. */
+    private final LinkedHashSet<Table<K, V>> _oversized;
+
+    /** 表的个数少于M/2、等待后台重平衡的页. 由写锁保护. */
+    private final LinkedHashSet<Page<K, V>> _underflowing;
+
+    /** 等待后台维护的对象个数，供监控读取. */
+    private volatile int _pendingMaintenance;
+
+    /** 正在后台进行在线分裂的表，为null时没有. 由写锁保护. */
+    private Table<K, V> _splitting;
+
+    /** 在线分裂期间对{@link #_splitting}的写操作，按发生的先后排列，交换时重放到分裂出的两张表中. 由写锁保护. */
+    private final List<Logged<K, V>> _splitLog;
+
+    /** 累计重放到分裂出的表中的写操作条数. 只在持有写锁时修改. */
+    private volatile long _splitLogReplayed;
+
+    /** 在线分裂是否因表被删除或在写操作中直接分裂而作废. 由写锁保护. */
+    private boolean _splitAborted;
 
     /**
      * B+树的构造函数，需要在初始化时指定B+树的阶以及每张表的容量. 规定B+树的阶至少为4.
@@ -43,6 +114,29 @@ public class BPlusTree<K, V> implements Index<K, V> {
      * @throws IllegalArgumentException 如果当前B+树的阶小于4时.
      */
     public BPlusTree(int order, int capacity) {
+        this(order, capacity, new OperationStats());
+    }
+
+    /**
+     * B+树的构造函数，表内分裂的耗时记入给定的统计中.
+     * @param order B+树的阶.
+     * @param capacity 每张表的最大容量，超过这个值的80%时会发生表内分裂.
+     * @param stats 耗时统计，通常与上层的执行器共享.
+     * @throws IllegalArgumentException 如果当前B+树的阶小于4时.
+     */
+    public BPlusTree(int order, int capacity, OperationStats stats) {
+        this(order, capacity, DEFAULT_UPPERTHRESHOLD, stats);
+    }
+
+    /**
+     * B+树的构造函数，可以指定表的容量上限因子.
+     * @param order B+树的阶.
+     * @param capacity 每张表的最大容量.
+     * @param upperThreshold 容量上限因子，表的记录条数达到{@code upperThreshold * capacity}时发生表内分裂.
+     * @param stats 耗时统计，通常与上层的执行器共享.
+     * @throws IllegalArgumentException 如果当前B+树的阶小于4时，或容量上限因子不在(0, 1]内.
+     */
+    public BPlusTree(int order, int capacity, double upperThreshold, OperationStats stats) {
         if (order < 4) {
             String errorMsg = String.format("""
                     Order of B+ tree should at least be 4. Got
@@ -50,20 +144,101 @@ public class BPlusTree<K, V> implements Index<K, V> {
                     """, order);
             throw new IllegalArgumentException(errorMsg);
         }
+        if (!(upperThreshold > 0 && upperThreshold <= 1)) {
+            String errorMsg = String.format("""
+                    Upper threshold of a table should be in (0, 1]. Got
+                    upper threshold: %s
+                    """, upperThreshold);
+            throw new IllegalArgumentException(errorMsg);
+        }
         this.M = order;
         this.CAPACITY = capacity;
+        this.UPPERTHRESHOLD = upperThreshold;
         _pages = new ArrayList<>();
         _size = 0;
+        _writeLock = new ReentrantLock();
+        _obsoleteFiles = new ArrayList<>();
+        _droppedTables = new ArrayList<>();
+        _retired = new ConcurrentLinkedQueue<>();
+        _reclaimLock = new ReentrantLock();
+        _stats = stats;
+        _oversized = new LinkedHashSet<>();
+        _underflowing = new LinkedHashSet<>();
+        _splitLog = new ArrayList<>();
         init();
+        _snapshot = new AtomicReference<>(new IndexSnapshot<>(_root, _size));
+    }
+
+    /** 返回B+树的耗时统计. */
+    public OperationStats stats() { return _stats; }
+
+    /**
+     * 启动后台维护. 此后写操作只登记达到容量上限的表与表数少于M/2的页，由后台线程以不超过给定速率的
+     * 频率完成分裂与重平衡，从而把这部分开销从写请求的延迟中移走. 表的分裂在线进行，
+     * 见{@link #splitOnline(String, IndexSnapshot)}. 为保证表不会无限增长，
+     * 表的记录条数达到容量时仍在写操作中直接分裂；页中的表被删空时仍直接重平衡.
+     * @param opsPerSecond 每秒最多进行的维护项数.
+     * @throws IllegalArgumentException 若速率不为正数.
+     * @throws IllegalStateException 若后台维护已经启动.
+     */
+    public void startMaintenance(double opsPerSecond) throws IllegalArgumentException, IllegalStateException {
+        _writeLock.lock();
+        try {
+            if (_maintenance != null) { throw new IllegalStateException("Maintenance has already been started."); }
+            _maintenance = new MaintenanceScheduler("bpt-maintenance", opsPerSecond, this::maintainOnce);
+        } finally {
+            _writeLock.unlock();
+        }
     }
 
+    /**
+     * 停止后台维护，并在当前线程中完成所有尚未进行的维护. 此后恢复为在写操作中直接分裂与重平衡.
+     * 后台维护未启动时什么也不做.
+     */
+    public void stopMaintenance() throws IOException, ClassNotFoundException {
+        MaintenanceScheduler maintenance;
+        _writeLock.lock();
+        try {
+            maintenance = _maintenance;
+            _maintenance = null;
+        } finally {
+            _writeLock.unlock();
+        }
+        if (maintenance == null) { return; }
+        // 关闭时后台线程可能正在等待写锁，因此不能持锁关闭
+        maintenance.close();
+        while (maintainOnce()) { }
+    }
+
+    /** 返回等待后台维护的表与页的个数. */
+    public int pendingMaintenance() { return _pendingMaintenance; }
+
+    /** 返回后台已经完成的维护项数. 后台维护未启动时返回0. */
+    public long maintenancePerformed() {
+        MaintenanceScheduler maintenance = _maintenance;
+        return maintenance == null ? 0 : maintenance.performed();
+    }
+
+    /** 返回后台因异常而放弃的维护项数. 后台维护未启动时返回0. */
+    public long maintenanceFailed() {
+        MaintenanceScheduler maintenance = _maintenance;
+        return maintenance == null ? 0 : maintenance.failed();
+    }
+
+    /** 返回在线分裂期间记入日志、并在交换时重放到分裂出的表中的写操作的累计条数. */
+    public long splitLogReplayed() { return _splitLogReplayed; }
+
     /** 返回B+树中表的张数. */
     @Override
-    public int size() { return _size; }
+    public int size() { return _snapshot.get().size(); }
+
+    /** 返回B+树索引区的层数. */
+    @Override
+    public int height() { return _snapshot.get().height(); }
 
     /** 返回当前B+树的顶级索引范围. */
     @Override
-    public Range<K> indexRange() { return _root.blockRange(); }
+    public Range<K> indexRange() { return _snapshot.get().range(); }
 
     /**
      * 将缓冲区中达到阈值的表写入索引区(内存-磁盘).
@@ -71,11 +246,19 @@ public class BPlusTree<K, V> implements Index<K, V> {
      */
     @Override
     public void write(Table<K, V> fullTable) throws IOException {
-        // 新表总是在末尾追加.
-        Page<K, V> tailPage = _pages.get(_pages.size() - 1);
-        insertTable(tailPage, tailPage.length(), fullTable);
-        // 关闭已经写入的表
-        fullTable.close();
+        _writeLock.lock();
+        try {
+            // 新表总是在末尾追加.
+            Page<K, V> tailPage = _pages.get(_pages.size() - 1);
+            insertTable(tailPage, tailPage.length(), fullTable);
+            OperationTrace.mark(Phase.FIND);
+            // 关闭已经写入的表
+            commit(fullTable);
+            OperationTrace.mark(Phase.CLOSE);
+        } finally {
+            publish();
+            _writeLock.unlock();
+        }
     }
 
     /**
@@ -86,39 +269,61 @@ public class BPlusTree<K, V> implements Index<K, V> {
      */
     @Override
     public void insert(K key, V value) throws IOException, ClassNotFoundException {
-        if (greaterThan(key, _root.blockRange()._right)) {
-            String errorMsg = String.format("""
-                    The key is at the right side of the index range, and should be inserted into buffer.
-                    key: %s
-                    Index Range of B+Tree: %s
-                    """, key, _root.blockRange());
-            throw new IllegalArgumentException(errorMsg);
+        _writeLock.lock();
+        try {
+            if (greaterThan(key, _root.maxKey())) {
+                String errorMsg = String.format("""
+                        The key is at the right side of the index range, and should be inserted into buffer.
+                        key: %s
+                        Index Range of B+Tree: %s
+                        """, key, _root.blockRange());
+                throw new IllegalArgumentException(errorMsg);
+            }
+            Page<K, V> targetPage = findInsert(_root, key);
+            OperationTrace.mark(Phase.FIND);
+            insertRecord(targetPage, key, value);
+            updateIndex(targetPage);
+        } finally {
+            publish();
+            _writeLock.unlock();
         }
-        Page<K, V> targetPage = findInsert(_root, key);
-        insertRecord(targetPage, key, value);
-        updateIndex(targetPage);
     }
 
-    /** 根据键在数据库中查找对应值，若无相关记录则返回null. */
+    /**
+     * 根据键在数据库中查找对应值，若无相关记录则返回null.
+     * <p>
+     * 读操作不加锁：沿当前发布的快照下降，然后读取快照中记录的表版本的一份独立副本.
+     */
     @Override
     public V get(K key) throws IOException, ClassNotFoundException {
-        if (_size == 0 || !_root.blockRange().contains(key)) { return null; }
-        V value = null;
-        Page<K, V> page = find(_root, key);
-        if (page != null && page.length() > 0) {
-            Range<K>[] range = page.subRanges();
-            for (int i = 0; i < page.length(); i++) {
-                if (range[i].contains(key)) {
-                    Table<K, V> targetTable = (Table<K, V>) page.get(i);
-                    // 打开数据表
-                    targetTable.open();
-                    value = targetTable.get(key);
-                    // 关闭数据表
-                    targetTable.close();
-                }
-            }
+        IndexSnapshot<K> snapshot = acquireSnapshot();
+        try {
+            String path = snapshot.find(key);
+            OperationTrace.mark(Phase.FIND);
+            if (path == null) { return null; }
+            Table<K, V> targetTable = Table.load(path);
+            OperationTrace.mark(Phase.OPEN);
+            V value = targetTable.get(key);
+            OperationTrace.mark(Phase.LOOKUP);
+            return value;
+        } finally {
+            releaseSnapshot(snapshot);
+        }
+    }
+
+    /**
+     * 给定键，沿当前发布的快照下降，返回可能包含该键的表文件的路径，不读取任何表.
+     * 下降过程不构造任何对象，可以用来单独观察索引查找的开销.
+     * @param key 待查找的键.
+     * @return 可能包含该键的表在当前快照中的文件路径，若键不在任何表的范围内则返回null.
+     */
+    public String locate(K key) {
+        IndexSnapshot<K> snapshot = acquireSnapshot();
+        try {
+            return snapshot.find(key);
+        } finally {
+            releaseSnapshot(snapshot);
         }
-        return value;
     }
 
     /**
@@ -128,17 +333,92 @@ public class BPlusTree<K, V> implements Index<K, V> {
      */
     @Override
     public V delete(K key) throws IOException, ClassNotFoundException {
-        if (_size == 0 || !_root.blockRange().contains(key)) { return null; }
-        Page<K, V> page = find(_root, key);
-        if (page != null && page.length() > 0) {
-            return removeKey(page, key);
+        _writeLock.lock();
+        V removed = null;
+        try {
+            if (_size == 0 || !inIndexRange(key)) { return null; }
+            Page<K, V> page = find(_root, key);
+            OperationTrace.mark(Phase.FIND);
+            if (page != null && page.length() > 0) {
+                removed = removeKey(page, key);
+            }
+            return removed;
+        } finally {
+            // 删除不存在的键不会修改任何表，沿用当前的快照
+            if (removed != null || !_obsoleteFiles.isEmpty()) { publish(); }
+            _writeLock.unlock();
+        }
+    }
+
+    /**
+     * 返回键在闭区间[low, high]内的记录组成的可分割迭代器.
+     * <p>
+     * 迭代器基于调用时的快照，在遍历完毕或被关闭之前会一直持有该快照，因此其间被替换的表版本
+     * 不会被回收. 未遍历完的迭代器需要调用{@link TableSpliterator#close()}.
+     */
+    @Override
+    public TableSpliterator<K, V> scan(K low, K high) {
+        IndexSnapshot<K> snapshot = acquireSnapshot();
+        return new TableSpliterator<>(sources(snapshot, low, high), low, high, CAPACITY,
+                () -> releaseSnapshot(snapshot));
+    }
+
+    /**
+     * 以{@link java.util.concurrent.Flow.Publisher}的形式发布区间[low, high]内的记录.
+     * 每个订阅者开始时获取当前的索引快照，查询结束或订阅被取消后释放.
+     * @param executor 读取表与发送信号的执行器
+     * @param prefetch 最多提前打开的表的张数
+     */
+    @Override
+    public ScanPublisher<K, V> publisher(K low, K high, Executor executor, int prefetch) {
+        return new ScanPublisher<>(() -> {
+            IndexSnapshot<K> snapshot = acquireSnapshot();
+            return new ScanPublisher.Source<>(sources(snapshot, low, high), () -> releaseSnapshot(snapshot));
+        }, low, high, executor, prefetch);
+    }
+
+    /**
+     * 以fork/join的方式并行地读取区间[low, high]内的所有表，返回按键有序的记录.
+     * @param low 查询区间的左端点.
+     * @param high 查询区间的右端点.
+     * @param pool 执行子任务的线程池.
+     * @return 区间内按键有序的记录.
+     */
+    public List<Map.Entry<K, V>> parallelScan(K low, K high, ForkJoinPool pool) {
+        IndexSnapshot<K> snapshot = acquireSnapshot();
+        try {
+            return ParallelScan.collect(sources(snapshot, low, high), low, high, pool);
+        } finally {
+            releaseSnapshot(snapshot);
+        }
+    }
+
+    /**
+     * 以fork/join的方式并行地聚合区间[low, high]内的所有记录.
+     * @param low 查询区间的左端点.
+     * @param high 查询区间的右端点.
+     * @param pool 执行子任务的线程池.
+     * @return 区间内记录的条数，以及数值类型的值的最小值、最大值与和.
+     */
+    public RangeAggregate aggregate(K low, K high, ForkJoinPool pool) {
+        IndexSnapshot<K> snapshot = acquireSnapshot();
+        try {
+            return ParallelScan.aggregate(sources(snapshot, low, high), low, high, pool);
+        } finally {
+            releaseSnapshot(snapshot);
         }
-        return null;
     }
 
     /** 返回索引层级结构. */
     @Override
-    public String indexView() { return this.toString(); }
+    public String indexView() {
+        _writeLock.lock();
+        try {
+            return this.toString();
+        } finally {
+            _writeLock.unlock();
+        }
+    }
 
     /**
      * 返回给定页id中指定位置的数据表的视图
@@ -176,17 +456,26 @@ public class BPlusTree<K, V> implements Index<K, V> {
      */
     @Override
     public String tableView(String tableName) throws IOException, ClassNotFoundException {
-        // TODO 赶工求快两次For循环，其实add table的时候维护一张TableName与对应(pageid, pos)的哈希表就行了，这样可以去掉外层复杂度
-        for (Page<K, V> page : _pages) {
-            for (Table<K, V> table : page.tables()) {
-                if (table.name().equals(tableName)) {
-                    table.open();
-                    return table.toString();
-                }
-            }
+        _writeLock.lock();
+        try {
+            Table<K, V> table = tableNamed(tableName);
+            // 未命中
+            if (table == null) { return "该表不存在，请检查表名！"; }
+            return Table.load(table.path()).toString();
+        } finally {
+            _writeLock.unlock();
+        }
+    }
+
+    /** 返回索引中是否存在给定表名的数据表. */
+    @Override
+    public boolean hasTable(String tableName) {
+        _writeLock.lock();
+        try {
+            return tableNamed(tableName) != null;
+        } finally {
+            _writeLock.unlock();
         }
-        // 未命中
-        return "该表不存在，请检查表名！";
     }
 
     @Override
@@ -195,6 +484,116 @@ public class BPlusTree<K, V> implements Index<K, V> {
         return viewInString(_root, _pages);
     }
 
+    /** 按表名查找索引中的表，不存在时返回null. 需要在持有写锁时调用. */
+    private Table<K, V> tableNamed(String tableName) {
+        // TODO 赶工求快两次For循环，其实add table的时候维护一张TableName与对应(pageid, pos)的哈希表就行了，这样可以去掉外层复杂度
+        for (Page<K, V> page : _pages) {
+            for (int i = 0; i < page.length(); i++) {
+                Table<K, V> table = page.tables()[i];
+                if (table.name().equals(tableName)) { return table; }
+            }
+        }
+        return null;
+    }
+
+    /** 获取当前发布的快照并登记为其读者. 只有在登记后快照仍是最新的才算获取成功. */
+    IndexSnapshot<K> acquireSnapshot() {
+        while (true) {
+            IndexSnapshot<K> snapshot = _snapshot.get();
+            snapshot.retain();
+            if (snapshot == _snapshot.get()) { return snapshot; }
+            snapshot.release();
+        }
+    }
+
+    /** 注销快照的读者，并顺带尝试回收已经无人持有的旧版本文件. */
+    void releaseSnapshot(IndexSnapshot<K> snapshot) {
+        snapshot.release();
+        if (!_retired.isEmpty()) { reclaim(); }
+    }
+
+    /** 将快照中与区间[low, high]相交的表转换为按需读取的表的来源. */
+    private List<TableSource<K, V>> sources(IndexSnapshot<K> snapshot, K low, K high) {
+        List<TableSource<K, V>> sources = new ArrayList<>();
+        for (String path : snapshot.tables(low, high)) {
+            sources.add(() -> Table.load(path));
+        }
+        return sources;
+    }
+
+    /** 写回一张已打开的表，其被替换掉的旧版本文件会在本次写操作结束时退役. */
+    private void commit(Table<K, V> table) throws IOException {
+        String previous = table.commit();
+        if (previous != null) { _obsoleteFiles.add(previous); }
+    }
+
+    /** 退役一张从索引中删除的表的文件. 该表不会再有新的版本，其文件回收时一并移除它的IO统计. */
+    private void drop(String path) {
+        _obsoleteFiles.add(path);
+        _droppedTables.add(path);
+    }
+
+    /**
+     * 在写操作结束时调用，复制并发布新的索引快照. 本次写操作中产生的旧版本文件随旧快照一起退役.
+     * 需要在持有写锁时调用.
+     */
+    private void publish() {
+        IndexSnapshot<K> previous = _snapshot.getAndSet(new IndexSnapshot<>(_root, _size));
+        // 即便本次没有文件退役，旧快照也要入队：更早退役的文件可能仍被它的读者持有
+        _retired.add(new Retired<>(previous, new ArrayList<>(_obsoleteFiles), new ArrayList<>(_droppedTables)));
+        _obsoleteFiles.clear();
+        _droppedTables.clear();
+        reclaim();
+    }
+
+    /**
+     * 按退役的先后顺序删除已经无人持有的旧版本文件. 一个文件只可能被退役时及更早的快照引用，
+     * 而每个被替换下的快照都会按顺序入队且不会再获得新的读者. 因此一批文件在其快照空闲时，
+     * 只需避开更早的、仍有读者的快照所引用的文件，其余的都可以删除；
+     * 个别长期未释放的快照只会留下它自己引用的文件，而不会阻塞其后所有文件的回收.
+     */
+    private void reclaim() {
+        if (!_reclaimLock.tryLock()) { return; }
+        try {
+            List<IndexSnapshot<K>> pinned = new ArrayList<>();
+            for (Iterator<Retired<K>> retired = _retired.iterator(); retired.hasNext(); ) {
+                Retired<K> entry = retired.next();
+                if (entry._snapshot.inUse()) {
+                    pinned.add(entry._snapshot);
+                    continue;
+                }
+                for (Iterator<String> files = entry._files.iterator(); files.hasNext(); ) {
+                    String path = files.next();
+                    if (referenced(pinned, path)) { continue; }
+                    try {
+                        Files.deleteIfExists(Paths.get(path));
+                    } catch (IOException e) {
+                        // 删除失败的文件只会残留在磁盘上，不影响正确性
+                    }
+                    if (entry._dropped.remove(path)) { Table.forgetStats(path); }
+                    files.remove();
+                }
+                if (entry._files.isEmpty()) { retired.remove(); }
+            }
+        } finally {
+            _reclaimLock.unlock();
+        }
+    }
+
+    /** 判断表文件是否仍被某个有读者的快照引用. */
+    private static <K> boolean referenced(List<IndexSnapshot<K>> pinned, String path) {
+        for (IndexSnapshot<K> snapshot : pinned) {
+            if (snapshot.references(path)) { return true; }
+        }
+        return false;
+    }
+
+    /** 判断键是否落在索引区的范围内. 与{@code _root.blockRange().contains(key)}等价，但不构造区间对象. */
+    private boolean inIndexRange(K key) {
+        K min = _root.minKey(), max = _root.maxKey();
+        return min != null && !lessThan(key, min) && !greaterThan(key, max);
+    }
+
     /** 给定键，查找其所在页，可以假定键总是能命中的. */
     private Page<K, V> find(IndexBlock<K> startLevel, K key) {
         Block<K> searchBlock = startLevel;
@@ -261,34 +660,230 @@ public class BPlusTree<K, V> implements Index<K, V> {
                 // 打开表，插入记录
                 Table<K, V> target = (Table<K, V>) page.get(i);
                 target.open();
+                OperationTrace.mark(Phase.OPEN);
                 target.put(key,value);
-                // 检查表是否需要分裂
+                if (target == _splitting) { _splitLog.add(new Logged<>(key, value, false)); }
+                OperationTrace.mark(Phase.LOOKUP);
+                // 检查表是否需要分裂. 后台维护时只有达到容量的表才直接分裂，其余的登记后交给后台
                 if (target.size() >= UPPERTHRESHOLD * CAPACITY) {
-                    Table<K, V> split = target.split();
-                    insertTable(page, i + 1, split);
-                    // 关闭分裂后加入的表
-                    split.close();
+                    if (_maintenance == null || target.size() >= CAPACITY) {
+                        splitTable(page, i, target);
+                    } else if (target != _splitting && _oversized.add(target)) {
+                        scheduleMaintenance();
+                    }
                 }
                 // 写回数据后关闭表
-                target.close();
-                // 更新表索引
-                ranges[i] = new Range<>(target.minKey(), target.maxKey());
+                commit(target);
+                OperationTrace.mark(Phase.CLOSE);
+                // 更新表索引. 页若因加入分裂出的表而分裂，目标表可能已被移到新页中，新页在加入它时已经计算了区间
+                if (ranges[i] != null) {
+                    ranges[i]._left = target.minKey();
+                    ranges[i]._right = target.maxKey();
+                }
                 break;
             }
         }
     }
 
+    /** 将页中位于{@code pos}处的已打开的表分裂，分裂出的表插入其后并写回. */
+    private void splitTable(Page<K, V> page, int pos, Table<K, V> target) throws IOException {
+        // 正在后台分裂的表在写操作中达到了容量，后台的结果随之作废
+        if (target == _splitting) { _splitAborted = true; }
+        TableSplit event = new TableSplit();
+        event.begin();
+        long start = System.nanoTime();
+        int recordsBefore = target.size();
+        Table<K, V> split = target.split();
+        int leftRecords = target.size(), rightRecords = split.size();
+        insertTable(page, pos + 1, split);
+        // 关闭分裂后加入的表
+        commit(split);
+        _stats.record(Operation.SPLIT, System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.table = target.name();
+            event.newTable = split.name();
+            event.recordsBefore = recordsBefore;
+            event.leftRecords = leftRecords;
+            event.rightRecords = rightRecords;
+            event.commit();
+        }
+        OperationTrace.mark(Phase.SPLIT);
+    }
+
+    /** 通知后台有新的待维护对象. 需要在持有写锁时调用. */
+    private void scheduleMaintenance() {
+        _pendingMaintenance = _oversized.size() + _underflowing.size();
+        _maintenance.signal();
+    }
+
+    /**
+     * 完成一项待进行的维护：优先分裂登记的表，其次重平衡登记的页. 登记之后已被删除、分裂或合并的对象
+     * 不再需要维护，直接跳过.
+     * @return 若确实进行了一项维护则返回true，没有待维护的对象时返回false.
+     */
+    private boolean maintainOnce() throws IOException, ClassNotFoundException {
+        String path = null;
+        IndexSnapshot<K> pinned = null;
+        _writeLock.lock();
+        try {
+            while (path == null) {
+                if (!_oversized.isEmpty()) {
+                    Table<K, V> table = poll(_oversized);
+                    if (table.size() >= UPPERTHRESHOLD * CAPACITY && locate(table) != null) {
+                        // 此后对该表的写操作在照常写回的同时记入日志
+                        _splitting = table;
+                        _splitAborted = false;
+                        path = table.path();
+                    }
+                } else if (!_underflowing.isEmpty()) {
+                    Page<K, V> page = poll(_underflowing);
+                    if (_pages.contains(page) && page.length() > 0 && page.length() < this.M / 2) {
+                        rebalance(page);
+                        return true;
+                    }
+                } else {
+                    return false;
+                }
+            }
+        } finally {
+            _pendingMaintenance = _oversized.size() + _underflowing.size();
+            publish();
+            // 登记为最新快照的读者，解锁后原表的这一版本的文件即便被新版本替换，也不会在读取之前被回收
+            if (path != null) { pinned = acquireSnapshot(); }
+            _writeLock.unlock();
+        }
+        splitOnline(path, pinned);
+        return true;
+    }
+
+    /** 取出并返回集合中最早登记的对象. */
+    private static <T> T poll(LinkedHashSet<T> set) {
+        Iterator<T> iterator = set.iterator();
+        T first = iterator.next();
+        iterator.remove();
+        return first;
+    }
+
+    /** 返回B+树中存放给定表的页，若表已不在B+树中则返回null. */
+    private Page<K, V> locate(Table<K, V> table) {
+        if (table.minKey() == null || !inIndexRange(table.minKey())) { return null; }
+        Page<K, V> page = find(_root, table.minKey());
+        return page == null || position(page, table) < 0 ? null : page;
+    }
+
+    /** 返回表在页中的位置，不在页中时返回-1. */
+    private int position(Page<K, V> page, Table<K, V> table) {
+        for (int i = 0; i < page.length(); i++) {
+            if (page.get(i) == table) { return i; }
+        }
+        return -1;
+    }
+
+    /**
+     * 在线分裂{@link #_splitting}. 分裂出的两张表在不持有写锁的情况下由给定版本的副本构造并写入磁盘，
+     * 其间读者照常读取原表，写操作照常写入原表并记入{@link #_splitLog}. 最后在写锁下将日志重放到两张新表中，
+     * 再在页中用它们替换原表并发布快照，写操作只在这一步被阻塞.
+     * <p>
+     * 原表在此期间被删除、在写操作中直接分裂，或重放后某一半为空时，放弃分裂出的表，原表保持不变.
+     * @param path 开始分裂时原表的文件路径.
+     * @param pinned 开始分裂时获取的、引用该文件的快照，读入文件后释放.
+     */
+    private void splitOnline(String path, IndexSnapshot<K> pinned) throws IOException, ClassNotFoundException {
+        TableSplit event = new TableSplit();
+        event.begin();
+        long start = System.nanoTime();
+        Table<K, V> left, right;
+        try {
+            try {
+                left = Table.<K, V>load(path).detach();
+            } finally {
+                releaseSnapshot(pinned);
+            }
+            right = left.split();
+            left.commit();
+            right.commit();
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            abandonSplit();
+            throw e;
+        }
+        int recordsBefore = left.size() + right.size();
+        K boundary = right.minKey();
+        _writeLock.lock();
+        try {
+            Table<K, V> table = _splitting;
+            Page<K, V> page = _splitAborted ? null : locate(table);
+            if (page != null && !_splitLog.isEmpty()) {
+                left.open();
+                right.open();
+                for (Logged<K, V> logged : _splitLog) {
+                    Table<K, V> half = lessThan(logged.key(), boundary) ? left : right;
+                    if (logged.deleted()) { half.delete(logged.key()); }
+                    else { half.put(logged.key(), logged.value()); }
+                }
+                _splitLogReplayed += _splitLog.size();
+                if (left.empty() || right.empty()) { page = null; }
+                commit(left);
+                commit(right);
+            }
+            if (page == null) {
+                drop(left.path());
+                drop(right.path());
+                return;
+            }
+            int pos = position(page, table);
+            drop(page.replaceAt(pos, left).path());
+            insertTable(page, pos + 1, right);
+            _stats.record(Operation.SPLIT, System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.table = table.name();
+                event.newTable = right.name();
+                event.recordsBefore = recordsBefore;
+                event.leftRecords = left.size();
+                event.rightRecords = right.size();
+                event.commit();
+            }
+        } finally {
+            _splitting = null;
+            _splitLog.clear();
+            publish();
+            _writeLock.unlock();
+        }
+    }
+
+    /** 在线分裂失败时停止记录日志，原表保持不变. */
+    private void abandonSplit() {
+        _writeLock.lock();
+        try {
+            _splitting = null;
+            _splitLog.clear();
+        } finally {
+            _writeLock.unlock();
+        }
+    }
+
     /** 在底层对应页的对应位置中加入新的表. */
     private void insertTable(Page<K, V> page, int pos, Table<K, V> table) throws IOException {
         page.addAt(table, pos);
         _size += 1;
         // 页内分裂，将分裂出来的页加入链表，在父节点添加新的索引.
         if (page.length() == this.M) {
+            PageSplit event = new PageSplit();
+            event.begin();
             Page<K, V> splitPage = (Page<K, V>) splitBlock(page);
             _pages.add( _pages.indexOf(page) + 1, splitPage);
             insertSplit(splitPage.parent(), splitPage);
             // 更新分裂结点的祖先索引
             updateIndex(splitPage);
+            event.end();
+            if (event.shouldCommit()) {
+                event.tablesBefore = this.M;
+                event.leftTables = page.length();
+                event.rightTables = splitPage.length();
+                event.pages = _pages.size();
+                event.commit();
+            }
         }
         // 更新原有页的祖先的索引.
         updateIndex(page);
@@ -354,7 +949,14 @@ public class BPlusTree<K, V> implements Index<K, V> {
         Block<K> node = start, ancestor = node.parent();
         // 当前块为非根结点
         while (ancestor != null) {
-            ancestor.setRange(node.loc(), node.blockRange());
+            // 区间对象只属于祖先自己，原地修改端点即可，不必每次插入都构造新的区间
+            Range<K> range = ancestor.subRanges()[node.loc()];
+            if (range == null) {
+                ancestor.setRange(node.loc(), node.blockRange());
+            } else {
+                range._left = node.minKey();
+                range._right = node.maxKey();
+            }
             node = ancestor;
             ancestor = node.parent();
         }
@@ -371,11 +973,19 @@ public class BPlusTree<K, V> implements Index<K, V> {
                 Table<K, V> targetTable = (Table<K, V>) page.get(i);
                 // 打开表
                 targetTable.open();
+                OperationTrace.mark(Phase.OPEN);
                 tablePos = i;
                 V value = targetTable.delete(key);
+                OperationTrace.mark(Phase.LOOKUP);
+                if (value == null) { // 对应表中不存在该记录，表未被修改，无需写出新版本
+                    targetTable.discard();
+                    OperationTrace.mark(Phase.CLOSE);
+                    return null;
+                }
+                if (targetTable == _splitting) { _splitLog.add(new Logged<>(key, null, true)); }
                 // 关闭表
-                targetTable.close();
-                if (value == null) { break; } // 对应表中不存在该记录，直接返回空
+                commit(targetTable);
+                OperationTrace.mark(Phase.CLOSE);
                 // 删除键后若当前表空且表的个数大于1，则删除表.
                 if (targetTable.empty()) {
                     removeTable(page, tablePos);
@@ -397,13 +1007,26 @@ public class BPlusTree<K, V> implements Index<K, V> {
 
     /** 将一张表从给定的页的指定位置中删除. */
     private void removeTable(Page<K, V> page, int pos) {
-        page.removeAt(pos); // 删除表
+        Table<K, V> removed = (Table<K, V>) page.removeAt(pos); // 删除表
+        if (removed == _splitting) { _splitAborted = true; }
+        drop(removed.path()); // 表的文件随之退役
         _size -= 1;
         // 页中表的个数大于等于 M/2，更新上级索引，直接返回
         if (page.length() >= this.M / 2) {
             updateIndex(page);
             return;
         }
+        // 后台维护时，仍有表的页只登记，由后台重平衡
+        if (_maintenance != null && page.length() > 0) {
+            updateIndex(page);
+            if (_underflowing.add(page)) { scheduleMaintenance(); }
+            return;
+        }
+        rebalance(page);
+    }
+
+    /** 页中表的个数少于 M/2 时，向兄弟请求表或与兄弟合并. */
+    private void rebalance(Page<K, V> page) {
         // 小于 M/2，根据是否在根处，直接删除or请求前驱/后继或合并
         IndexBlock<K> parent = page.parent();
         // 无兄弟可以请求数据项，直接返回
@@ -419,9 +1042,13 @@ public class BPlusTree<K, V> implements Index<K, V> {
                 moveSuccessor(page, sibling);
                 updateIndex(sibling); // 更新兄弟的上级索引
             } else { // 将兄弟向当前页合并
+                PageMerge event = new PageMerge();
+                event.begin();
+                int leftTables = page.length(), rightTables = sibling.length();
                 mergeBlock(page, sibling);
                 _pages.remove(sibling); // 在链表中删除记录
                 removeBlock(sibling); // 递归删除空页
+                commitMerge(event, leftTables, rightTables);
             }
             updateIndex(page);
         } else {
@@ -431,14 +1058,29 @@ public class BPlusTree<K, V> implements Index<K, V> {
                 movePredecessor(page, sibling);
                 updateIndex(page);
             } else { // 将当前页向兄弟合并
+                PageMerge event = new PageMerge();
+                event.begin();
+                int leftTables = sibling.length(), rightTables = page.length();
                 mergeBlock(sibling, page);
                 _pages.remove(page);
                 removeBlock(page);
+                commitMerge(event, leftTables, rightTables);
             }
             updateIndex(sibling); // 统一更新兄弟的索引
         }
     }
 
+    /** 结束并按需提交页合并事件. */
+    private void commitMerge(PageMerge event, int leftTables, int rightTables) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.leftTables = leftTables;
+            event.rightTables = rightTables;
+            event.pages = _pages.size();
+            event.commit();
+        }
+    }
+
     /** 当sibling为page右侧的兄弟且满足其内部表的数量大于M/2时，将sibling的第一张表移入
      * page的尾部. */
     private void moveSuccessor(Page<K, V> page, Page<K, V> sibling) {
@@ -519,4 +1161,34 @@ public class BPlusTree<K, V> implements Index<K, V> {
             updateIndex(sibling); // 统一更新兄弟的索引
         }
     }
+
+    /**
+     * 在线分裂期间对原表的一次写操作.
+     * @param key 写入的键.
+     * @param value 写入的值，删除时为null.
+     * @param deleted 是否为删除.
+     */
+    private record Logged<K, V>(K key, V value, boolean deleted) { }
+
+    /**
+     * 一批随某个旧快照一起退役的表文件.
+     * @param <K> 索引中键的类型.
+     */
+    private static final class Retired<K> {
+
+        /** 退役前最后一个可能引用这些文件的快照. */
+        private final IndexSnapshot<K> _snapshot;
+
+        /** 尚未删除的退役文件路径. */
+        private final List<String> _files;
+
+        /** 其中属于已删除的表、尚未移除IO统计的文件路径. */
+        private final List<String> _dropped;
+
+        private Retired(IndexSnapshot<K> snapshot, List<String> files, List<String> dropped) {
+            _snapshot = snapshot;
+            _files = files;
+            _dropped = dropped;
+        }
+    }
 }
@@ -12,9 +12,15 @@ public interface Block<K> {
     /** 获取当前结点中所存数据的长度. */
     int length();
 
-    /** 获取当前结点对应整体的索引区域. eg, {[-3, 0], [1, 3], [4, 7]} -> [-3, 7]. */
+    /** 获取当前结点对应整体的索引区域. eg, {[-3, 0], [1, 3], [4, 7]} -> [-3, 7]. 每次调用都会构造新的区间. */
     Range<K> blockRange();
 
+    /** 获取当前结点索引区域的左端点，结点为空时返回null. 不构造任何对象. */
+    K minKey();
+
+    /** 获取当前结点索引区域的右端点，结点为空时返回null. 不构造任何对象. */
+    K maxKey();
+
     /** 当前结点索引到的子区间. */
     Range<K>[] subRanges();
 
@@ -0,0 +1,86 @@
+package Index;
+
+import KVTable.Table;
+
+import java.io.IOException;
+
+import static Utils.Utils.greaterThan;
+
+/**
+ * 为{@link Index}加上一张待写入的表，使其可以按任意顺序写入记录. <p>
+ * 索引只允许插入不超过其右端点的键，更大的键先写入待写入的表，表中的记录达到表容量的一半时
+ * 作为一张新表按顺序写入索引，与执行器的缓冲区相同. 查询与删除会同时查找待写入的表与索引. <p>
+ * 本类不是线程安全的，需要并发访问时由调用者加锁.
+ * @param <K> 索引中键的类型.
+ * @param <V> 索引中值的类型.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public final class BufferedIndex<K, V> {
+
+    /** 被写入的索引. */
+    private final Index<K, V> _index;
+
+    /** 写入索引前积攒记录的表的大小. */
+    private final int _tableSize;
+
+    /** 待写入的表的文件所在的目录. */
+    private final String _directory;
+
+    /** 键超过索引右端点的记录. */
+    private Table<K, V> _pending;
+
+    /**
+     * 表文件存放在默认目录下的构造函数.
+     * @param index 被写入的索引
+     * @param capacity 索引中表的容量
+     */
+    public BufferedIndex(Index<K, V> index, int capacity) {
+        this(index, capacity, "./data");
+    }
+
+    /**
+     * 构造函数.
+     * @param index 被写入的索引
+     * @param capacity 索引中表的容量
+     * @param directory 待写入的表的文件所在的目录
+     */
+    public BufferedIndex(Index<K, V> index, int capacity, String directory) {
+        _index = index;
+        _tableSize = Math.max(1, capacity / 2);
+        _directory = directory;
+        _pending = new Table<>(directory);
+    }
+
+    /** 返回被写入的索引. 待写入的表中的记录只有在{@link #flush()}之后才会出现在其中. */
+    public Index<K, V> index() { return _index; }
+
+    /** 写入一条记录. 插入与更新都通过它进行. */
+    public void put(K key, V value) throws IOException, ClassNotFoundException {
+        if (_index.empty() || greaterThan(key, _index.indexRange()._right)) {
+            _pending.put(key, value);
+            if (_pending.size() >= _tableSize) { flush(); }
+        } else {
+            _index.insert(key, value);
+        }
+    }
+
+    /** 返回键对应的值，不存在时返回null. */
+    public V get(K key) throws IOException, ClassNotFoundException {
+        V value = _pending.get(key);
+        return value != null ? value : _index.get(key);
+    }
+
+    /** 删除键对应的记录，返回被删除的值，不存在时返回null. */
+    public V delete(K key) throws IOException, ClassNotFoundException {
+        V deleted = _pending.delete(key);
+        return deleted != null ? deleted : _index.delete(key);
+    }
+
+    /** 将待写入的表写入索引. */
+    public void flush() throws IOException {
+        if (_pending.empty()) { return; }
+        _index.write(_pending);
+        _pending = new Table<>(_directory);
+    }
+}
@@ -5,6 +5,8 @@ import KVTable.Table;
 import static View.BPTView.*;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * 用于为内存上的K-V表提供多级索引结构的B+树.
@@ -32,7 +34,7 @@ public class InMemBPlusTree<K, V> implements Index<K, V> {
     private final int CAPACITY;
 
     /** B+树中每张表的容量上限因子, 当某张大表达到上限时会将自己分成两张小表. */
-    private final double UPPERTHRESHOLD = 0.8;
+    private final double UPPERTHRESHOLD;
 
     /**
      * B+树的构造函数，需要在初始化时指定B+树的阶以及每张表的容量. 规定B+树的阶至少为4.
@@ -43,6 +45,17 @@ public class InMemBPlusTree<K, V> implements Index<K, V> {
      * @throws IllegalArgumentException 如果当前B+树的阶小于4时.
      */
     public InMemBPlusTree(int order, int capacity) {
+        this(order, capacity, BPlusTree.DEFAULT_UPPERTHRESHOLD);
+    }
+
+    /**
+     * B+树的构造函数，可以指定表的容量上限因子.
+     * @param order B+树的阶.
+     * @param capacity 每张表的最大容量.
+     * @param upperThreshold 容量上限因子，表的记录条数达到{@code upperThreshold * capacity}时发生表内分裂.
+     * @throws IllegalArgumentException 如果当前B+树的阶小于4时，或容量上限因子不在(0, 1]内.
+     */
+    public InMemBPlusTree(int order, int capacity, double upperThreshold) {
         if (order < 4) {
             String errorMsg = String.format("""
                     Order of B+ tree should at least be 4. Got
@@ -50,8 +63,16 @@ public class InMemBPlusTree<K, V> implements Index<K, V> {
                     """, order);
             throw new IllegalArgumentException(errorMsg);
         }
+        if (!(upperThreshold > 0 && upperThreshold <= 1)) {
+            String errorMsg = String.format("""
+                    Upper threshold of a table should be in (0, 1]. Got
+                    upper threshold: %s
+                    """, upperThreshold);
+            throw new IllegalArgumentException(errorMsg);
+        }
         this.M = order;
         this.CAPACITY = capacity;
+        this.UPPERTHRESHOLD = upperThreshold;
         _pages = new ArrayList<>();
         _size = 0;
         init();
@@ -61,6 +82,15 @@ public class InMemBPlusTree<K, V> implements Index<K, V> {
     @Override
     public int size() { return _size; }
 
+    /** 返回B+树索引区的层数. */
+    @Override
+    public int height() {
+        if (_size == 0) { return 0; }
+        int height = 1;
+        for (Block<K> block = _root; block instanceof IndexBlock<K> index; block = index.block(0)) { height++; }
+        return height;
+    }
+
     /** 返回当前B+树的顶级索引范围. */
     @Override
     public Range<K> indexRange() { return _root.blockRange(); }
@@ -84,7 +114,7 @@ public class InMemBPlusTree<K, V> implements Index<K, V> {
      */
     @Override
     public void insert(K key, V value) {
-        if (greaterThan(key, _root.blockRange()._right)) {
+        if (greaterThan(key, _root.maxKey())) {
             String errorMsg = String.format("""
                     The key is at the right side of the index range, and should be inserted into buffer.
                     key: %s
@@ -100,7 +130,7 @@ public class InMemBPlusTree<K, V> implements Index<K, V> {
     /** 根据键在数据库中查找对应值，若无相关记录则返回null. */
     @Override
     public V get(K key) {
-        if (_size == 0 || !_root.blockRange().contains(key)) { return null; }
+        if (_size == 0 || !inIndexRange(key)) { return null; }
         V value = null;
         Page<K, V> page = find(_root, key);
         if (page != null && page.length() > 0) {
@@ -122,7 +152,7 @@ public class InMemBPlusTree<K, V> implements Index<K, V> {
      */
     @Override
     public V delete(K key) {
-        if (_size == 0 || !_root.blockRange().contains(key)) { return null; }
+        if (_size == 0 || !inIndexRange(key)) { return null; }
         Page<K, V> page = find(_root, key);
         if (page != null && page.length() > 0) {
             return removeKey(page, key);
@@ -130,6 +160,33 @@ public class InMemBPlusTree<K, V> implements Index<K, V> {
         return null;
     }
 
+    /** 返回键在闭区间[low, high]内的记录组成的可分割迭代器. 表都在内存中，遍历期间不能修改B+树. */
+    @Override
+    public TableSpliterator<K, V> scan(K low, K high) {
+        return new TableSpliterator<>(sources(low, high), low, high, CAPACITY, null);
+    }
+
+    /** 以{@link java.util.concurrent.Flow.Publisher}的形式发布区间[low, high]内的记录. 发布期间不能修改B+树. */
+    @Override
+    public ScanPublisher<K, V> publisher(K low, K high, Executor executor, int prefetch) {
+        return new ScanPublisher<>(() -> new ScanPublisher.Source<>(sources(low, high), null),
+                low, high, executor, prefetch);
+    }
+
+    /** 按顺序列出与区间[low, high]相交的表. */
+    private List<TableSpliterator.TableSource<K, V>> sources(K low, K high) {
+        List<TableSpliterator.TableSource<K, V>> sources = new ArrayList<>();
+        for (Page<K, V> page : _pages) {
+            Range<K>[] ranges = page.subRanges();
+            for (int i = 0; i < page.length(); i++) {
+                if (lessThan(ranges[i]._right, low) || greaterThan(ranges[i]._left, high)) { continue; }
+                Table<K, V> table = page.tables()[i];
+                sources.add(() -> table);
+            }
+        }
+        return sources;
+    }
+
     /** 返回索引层级结构. */
     @Override
     public String indexView() { return this.toString(); }
@@ -182,12 +239,29 @@ public class InMemBPlusTree<K, V> implements Index<K, V> {
         return "该表不存在，请检查表名！";
     }
 
+    /** 返回索引中是否存在给定表名的数据表. */
+    @Override
+    public boolean hasTable(String tableName) {
+        for (Page<K, V> page : _pages) {
+            for (int i = 0; i < page.length(); i++) {
+                if (page.tables()[i].name().equals(tableName)) { return true; }
+            }
+        }
+        return false;
+    }
+
     @Override
     public String toString() {
         if (_size == 0) { return "(empty)"; }
         return viewInString(_root, _pages);
     }
 
+    /** 判断键是否落在索引区的范围内. 与{@code _root.blockRange().contains(key)}等价，但不构造区间对象. */
+    private boolean inIndexRange(K key) {
+        K min = _root.minKey(), max = _root.maxKey();
+        return min != null && !lessThan(key, min) && !greaterThan(key, max);
+    }
+
     /** 给定键，查找其所在页，可以假定键总是能命中的. */
     private Page<K, V> find(IndexBlock<K> startLevel, K key) {
         Block<K> searchBlock = startLevel;
@@ -252,8 +326,11 @@ public class InMemBPlusTree<K, V> implements Index<K, V> {
                     Table<K, V> split = target.split();
                     insertTable(page, i + 1, split);
                 }
-                // 更新表索引
-                ranges[i] = new Range<>(target.minKey(), target.maxKey());
+                // 更新表索引. 页若因加入分裂出的表而分裂，目标表可能已被移到新页中，新页在加入它时已经计算了区间
+                if (ranges[i] != null) {
+                    ranges[i]._left = target.minKey();
+                    ranges[i]._right = target.maxKey();
+                }
                 break;
             }
         }
@@ -335,7 +412,14 @@ public class InMemBPlusTree<K, V> implements Index<K, V> {
         Block<K> node = start, ancestor = node.parent();
         // 当前块为非根结点
         while (ancestor != null) {
-            ancestor.setRange(node.loc(), node.blockRange());
+            // 区间对象只属于祖先自己，原地修改端点即可，不必每次插入都构造新的区间
+            Range<K> range = ancestor.subRanges()[node.loc()];
+            if (range == null) {
+                ancestor.setRange(node.loc(), node.blockRange());
+            } else {
+                range._left = node.minKey();
+                range._right = node.maxKey();
+            }
             node = ancestor;
             ancestor = node.parent();
         }
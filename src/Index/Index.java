@@ -3,6 +3,11 @@ package Index;
 import KVTable.Table;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * K-V表的索引，采用B+树实现.
@@ -31,6 +36,31 @@ public interface Index<K, V>  {
     /** 删除给定键对应的记录. */
     V delete(K key) throws IOException, ClassNotFoundException;
 
+    /**
+     * 返回键在闭区间[low, high]内的记录组成的可分割迭代器，记录按键升序排列.
+     * 迭代器在遍历期间可能持有索引的资源，调用方必须在使用完毕后关闭它，提前结束遍历时也是如此.
+     */
+    TableSpliterator<K, V> scan(K low, K high);
+
+    /**
+     * 返回键在闭区间[low, high]内的记录组成的流. 流被关闭时会释放遍历所需的资源，
+     * 因此调用方必须关闭返回的流，例如通过try-with-resources；{@code findFirst()}、{@code limit()}
+     * 等提前结束的遍历不会自动释放.
+     */
+    default Stream<Map.Entry<K, V>> stream(K low, K high, boolean parallel) {
+        TableSpliterator<K, V> spliterator = scan(low, high);
+        return StreamSupport.stream(spliterator, parallel).onClose(spliterator::close);
+    }
+
+    /**
+     * 以{@link Flow.Publisher}的形式发布键在闭区间[low, high]内的记录，记录按键升序排列.
+     * 表按订阅者的需求打开，最多提前打开prefetch张.
+     */
+    Flow.Publisher<Map.Entry<K, V>> publisher(K low, K high, Executor executor, int prefetch);
+
+    /** 返回索引区的层数(包括页所在的一层)，索引区为空时返回0. */
+    int height();
+
     /** 返回整个索引区的范围 */
     Range<K> indexRange();
 
@@ -40,5 +70,8 @@ public interface Index<K, V>  {
     /** 返回某张数据表的视图. */
     String tableView(int pageId, int tableId);
 
+    /** 返回索引中是否存在给定表名的数据表. */
+    boolean hasTable(String tableName);
+
     String tableView(String tableName) throws IOException, ClassNotFoundException;
 }
@@ -71,6 +71,9 @@ public class IndexBlock<K> implements Block<K> {
         return _blocks[index];
     }
 
+    /** 以块的类型获取{@code index}对应位置的下一级块，与{@link #get(int)}相同. */
+    public Block<K> block(int index) { return _blocks[index]; }
+
     /** 弹出{@code index}对应位置的块. *不移动*其它块. */
     @Override
     public Object pop(int index) {
@@ -98,11 +101,17 @@ public class IndexBlock<K> implements Block<K> {
     @Override
     public Range<K> blockRange() {
         if (_length == 0) { return null; }
-        Block<K> minNode = _blocks[0], maxNode = _blocks[_length - 1];
-        K minKey = minNode.blockRange()._left, maxKey = maxNode.blockRange()._right;
-        return new Range<>(minKey, maxKey);
+        return new Range<>(minKey(), maxKey());
     }
 
+    /** 沿最左侧的子块下降得到左端点. */
+    @Override
+    public K minKey() { return _length == 0 ? null : _blocks[0].minKey(); }
+
+    /** 沿最右侧的子块下降得到右端点. */
+    @Override
+    public K maxKey() { return _length == 0 ? null : _blocks[_length - 1].maxKey(); }
+
     /** 获取当前块中每个子块对应的索引区域. */
     @Override
     public Range<K>[] subRanges() { return _indexes; }
@@ -0,0 +1,192 @@
+package Index;
+
+import static Utils.Utils.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * B+树{@link BPlusTree}索引区的一份不可变快照.
+ * <p>
+ * 快照在每次写操作结束时由写者整体复制出来，并通过原子引用发布. 快照中的结点与区间都是
+ * 写者不会再修改的副本，外部结点中存放的是每张表在发布时刻对应的版本文件路径
+ * ({@link KVTable.Table#path()})，因此读者可以在不加锁的情况下沿快照下降并读取表.
+ * <p>
+ * 快照记录了当前持有它的读者个数，旧版本的表文件只有在所有持有旧快照的读者都离开后才会被回收.
+ * @param <K> 索引中键的类型.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public final class IndexSnapshot<K> {
+
+    /** 快照的根结点，索引区为空时为null. */
+    private final Node<K> _root;
+
+    /** 快照中表的张数. */
+    private final int _size;
+
+    /** 快照的层数(包括页所在的一层)，索引区为空时为0. */
+    private final int _height;
+
+    /** 快照的顶级索引范围，索引区为空时为null. */
+    private final Range<K> _range;
+
+    /** 当前正在读取该快照的读者个数. */
+    private final AtomicInteger _readers;
+
+    /** 快照中所有表的文件路径，首次判断引用时才收集. 只在回收退役文件时使用，由回收锁保护. */
+    private Set<String> _paths;
+
+    /**
+     * 由B+树当前的根结点复制出一份快照.
+     * @param root B+树的根结点.
+     * @param size B+树中表的张数.
+     */
+    IndexSnapshot(IndexBlock<K> root, int size) {
+        _size = size;
+        _root = size == 0 ? null : copy(root);
+        _range = size == 0 ? null : copy(root.blockRange());
+        _height = height(_root);
+        _readers = new AtomicInteger(0);
+    }
+
+    /** 返回快照中表的张数. */
+    public int size() { return _size; }
+
+    /** 返回快照的层数. */
+    public int height() { return _height; }
+
+    /** 返回快照的顶级索引范围. */
+    public Range<K> range() { return _range; }
+
+    /**
+     * 给定键，沿快照下降找到可能包含该键的表.
+     * @param key 待查找的键.
+     * @return 可能包含该键的表在快照发布时刻的文件路径，若键不在任何表的范围内则返回null.
+     */
+    public String find(K key) {
+        if (_size == 0 || !_range.contains(key)) { return null; }
+        Node<K> node = _root;
+        while (true) {
+            int i = node.locate(key);
+            if (i < 0) { return null; }
+            if (node.leaf()) { return node._tables[i]; }
+            node = node._children.get(i);
+        }
+    }
+
+    /**
+     * 按键的顺序列出索引范围与闭区间[low, high]相交的所有表.
+     * @param low 区间的左端点.
+     * @param high 区间的右端点.
+     * @return 相交的表在快照发布时刻的文件路径.
+     */
+    public List<String> tables(K low, K high) {
+        List<String> paths = new ArrayList<>();
+        if (_size > 0) { collect(_root, low, high, paths); }
+        return paths;
+    }
+
+    /** 登记一名读者. */
+    void retain() { _readers.incrementAndGet(); }
+
+    /** 注销一名读者. */
+    void release() { _readers.decrementAndGet(); }
+
+    /** 返回当前是否仍有读者持有该快照. */
+    boolean inUse() { return _readers.get() > 0; }
+
+    /** 返回快照是否引用了给定的表文件. 只应在持有B+树的回收锁时调用. */
+    boolean references(String path) {
+        if (_paths == null) {
+            _paths = new HashSet<>();
+            if (_size > 0) { collect(_root, _paths); }
+        }
+        return _paths.contains(path);
+    }
+
+    /** 按顺序收集结点下与区间[low, high]相交的表. */
+    private void collect(Node<K> node, K low, K high, List<String> paths) {
+        for (int i = 0; i < node._ranges.length; i++) {
+            Range<K> range = node._ranges[i];
+            if (range == null || lessThan(range._right, low) || greaterThan(range._left, high)) { continue; }
+            if (node.leaf()) { paths.add(node._tables[i]); }
+            else { collect(node._children.get(i), low, high, paths); }
+        }
+    }
+
+    /** 收集结点下所有表的文件路径. */
+    private void collect(Node<K> node, Set<String> paths) {
+        if (node.leaf()) {
+            paths.addAll(Arrays.asList(node._tables));
+            return;
+        }
+        for (Node<K> child : node._children) { collect(child, paths); }
+    }
+
+    /** 沿最左侧的子结点下降，计算层数. 各外部结点位于同一层. */
+    private static <K> int height(Node<K> root) {
+        int height = 0;
+        for (Node<K> node = root; node != null; node = node.leaf() ? null : node._children.get(0)) {
+            height++;
+        }
+        return height;
+    }
+
+    /** 递归地复制一个块及其所有子块. */
+    private Node<K> copy(Block<K> block) {
+        int length = block.length();
+        Range<K>[] ranges = Arrays.copyOf(block.subRanges(), length);
+        for (int i = 0; i < length; i++) { ranges[i] = copy(ranges[i]); }
+        if (block instanceof Page<K, ?> page) {
+            String[] tables = new String[length];
+            for (int i = 0; i < length; i++) { tables[i] = page.tables()[i].path(); }
+            return new Node<>(ranges, null, tables);
+        }
+        IndexBlock<K> index = (IndexBlock<K>) block;
+        List<Node<K>> children = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) { children.add(copy(index.block(i))); }
+        return new Node<>(ranges, children, null);
+    }
+
+    /** 复制一个区间. 写者会原地修改区间的端点，因此快照不能与其共享区间对象. */
+    private Range<K> copy(Range<K> range) {
+        return range == null ? null : new Range<>(range._left, range._right);
+    }
+
+    /**
+     * 快照中的结点. 内部结点的子项为下一级结点，外部结点的子项为表的文件路径.
+     * @param <K> 索引中键的类型.
+     */
+    private static final class Node<K> {
+
+        /** 每个子项对应的索引区间. */
+        private final Range<K>[] _ranges;
+
+        /** 内部结点的下一级结点，外部结点为null. */
+        private final List<Node<K>> _children;
+
+        /** 外部结点中各表的文件路径，内部结点为null. */
+        private final String[] _tables;
+
+        private Node(Range<K>[] ranges, List<Node<K>> children, String[] tables) {
+            _ranges = ranges;
+            _children = children;
+            _tables = tables;
+        }
+
+        /** 是否为外部结点. */
+        private boolean leaf() { return _tables != null; }
+
+        /** 返回索引区间包含该键的子项的位置，不存在时返回-1. */
+        private int locate(K key) {
+            for (int i = 0; i < _ranges.length; i++) {
+                if (_ranges[i] != null && _ranges[i].contains(key)) { return i; }
+            }
+            return -1;
+        }
+    }
+}
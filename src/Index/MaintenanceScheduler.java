@@ -0,0 +1,142 @@
+package Index;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 在后台线程上按限定的速率执行索引结构维护(表的分裂、页的重平衡等)的调度器.
+ * <p>
+ * 前台的写操作只登记需要维护的对象并调用{@link #signal()}，由后台线程反复调用{@link Task#runOnce()}，
+ * 每次完成一项维护，直到没有待维护的对象. 相邻两次维护之间至少间隔{@code 1 / opsPerSecond}秒，
+ * 因此维护占用写锁的时间被均匀地摊开，不会集中在某一次请求上.
+ * <p>
+ * 维护失败(如IO异常)时只计数并放弃该项，对象若仍需维护会在下一次写入时被重新登记.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+final class MaintenanceScheduler {
+
+    /** 一项维护. */
+    @FunctionalInterface
+    interface Task {
+
+        /**
+         * 完成一项待进行的维护.
+         * @return 若确实进行了一项维护则返回true，没有待维护的对象时返回false
+         */
+        boolean runOnce() throws Exception;
+    }
+
+    /** 执行的维护. */
+    private final Task _task;
+
+    /** 相邻两次维护之间的最小间隔(纳秒). */
+    private final long _intervalNanos;
+
+    /** 等待新的维护登记. */
+    private final ReentrantLock _lock;
+    private final Condition _signalled;
+
+    /** 自上次被唤醒以来是否有新的登记. 由_lock保护. */
+    private boolean _pending;
+
+    /** 调度器是否已经停止. */
+    private volatile boolean _closed;
+
+    /** 已完成与失败的维护项数. */
+    private final AtomicLong _performed, _failed;
+
+    /** 后台线程. */
+    private final Thread _worker;
+
+    /**
+     * 创建并启动调度器.
+     * @param name 后台线程的名字
+     * @param opsPerSecond 每秒最多进行的维护项数
+     * @param task 执行的维护
+     * @throws IllegalArgumentException 若速率不为正数
+     */
+    MaintenanceScheduler(String name, double opsPerSecond, Task task) throws IllegalArgumentException {
+        if (!(opsPerSecond > 0)) {
+            throw new IllegalArgumentException(String.format("opsPerSecond should be positive. Got %s", opsPerSecond));
+        }
+        _task = task;
+        _intervalNanos = (long) (1e9 / opsPerSecond);
+        _lock = new ReentrantLock();
+        _signalled = _lock.newCondition();
+        _performed = new AtomicLong();
+        _failed = new AtomicLong();
+        _worker = new Thread(this::loop, name);
+        _worker.setDaemon(true);
+        _worker.start();
+    }
+
+    /** 通知后台线程有新的待维护对象. */
+    void signal() {
+        _lock.lock();
+        try {
+            _pending = true;
+            _signalled.signal();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /** 返回已完成的维护项数. */
+    long performed() { return _performed.get(); }
+
+    /** 返回失败的维护项数. */
+    long failed() { return _failed.get(); }
+
+    /** 停止后台线程并等待它退出. 正在进行的一项维护会先完成. */
+    void close() {
+        _closed = true;
+        signal();
+        // 后台线程可能正在等待下一个额度
+        LockSupport.unpark(_worker);
+        try {
+            _worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** 后台线程：等待登记，然后按速率逐项维护，直到没有待维护的对象. */
+    private void loop() {
+        long next = System.nanoTime();
+        while (!_closed) {
+            if (!awaitSignal()) { return; }
+            while (!_closed) {
+                long now;
+                while ((now = System.nanoTime()) < next && !_closed) { LockSupport.parkNanos(next - now); }
+                if (_closed) { return; }
+                boolean performed;
+                try {
+                    performed = _task.runOnce();
+                    if (performed) { _performed.incrementAndGet(); }
+                } catch (Exception e) {
+                    // 失败的一项同样占用额度
+                    _failed.incrementAndGet();
+                    performed = true;
+                }
+                if (!performed) { break; }
+                // 空闲之后不积攒额度，避免一次性补做大量维护
+                next = Math.max(next, now) + _intervalNanos;
+            }
+        }
+    }
+
+    /** 等待新的登记. 调度器停止时返回false. */
+    private boolean awaitSignal() {
+        _lock.lock();
+        try {
+            while (!_pending && !_closed) { _signalled.awaitUninterruptibly(); }
+            _pending = false;
+            return !_closed;
+        } finally {
+            _lock.unlock();
+        }
+    }
+}
@@ -101,14 +101,31 @@ public class Page<K, V> implements Block<K> {
         return table;
     }
 
+    /**
+     * 用给定的表替换{@code index}对应位置的表，同时按新表更新该位置的索引区域.
+     * @return 被替换掉的表.
+     */
+    public Table<K, V> replaceAt(int index, Table<K, V> table) {
+        Table<K, V> replaced = _tables[index];
+        _tables[index] = table;
+        _ranges[index]._left = table.minKey();
+        _ranges[index]._right = table.maxKey();
+        return replaced;
+    }
+
     /** 获取当前页的索引区域. */
     @Override
     public Range<K> blockRange() {
         if (_length == 0) { return null; }
-        K minKey = _ranges[0]._left, maxKey = _ranges[_length - 1]._right;
-        return new Range<>(minKey, maxKey);
+        return new Range<>(minKey(), maxKey());
     }
 
+    @Override
+    public K minKey() { return _length == 0 ? null : _ranges[0]._left; }
+
+    @Override
+    public K maxKey() { return _length == 0 ? null : _ranges[_length - 1]._right; }
+
     /** 获取当前页中每个表对应的索引区域. */
     @Override
     public Range<K>[] subRanges() { return _ranges; }
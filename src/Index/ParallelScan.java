@@ -0,0 +1,137 @@
+package Index;
+
+import KVTable.Table;
+import Index.TableSpliterator.TableSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 基于fork/join的并行范围查询. 与查询区间相交的表被递归地对半划分为子任务，每个子任务独立地
+ * 打开与处理自己的表，最后将结果按键的顺序拼接，或者归约为{@link RangeAggregate}.
+ * <p>
+ * 由于各张表的键的范围互不相交且按顺序排列，按表的顺序拼接子任务的结果即是按键有序的结果.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public final class ParallelScan {
+
+    /** 每个子任务最多直接处理的表的张数，超过时继续划分. 读表以IO为主，因此划分到单张表为止. */
+    private static final int TABLES_PER_TASK = 1;
+
+    private ParallelScan() {}
+
+    /**
+     * 并行地收集区间内的所有记录.
+     * @param sources 按键的顺序排列的、与查询区间相交的表.
+     * @param low 查询区间的左端点.
+     * @param high 查询区间的右端点.
+     * @param pool 执行子任务的线程池.
+     * @return 按键有序的记录.
+     * @throws UncheckedIOException 读取表失败时抛出.
+     */
+    public static <K, V> List<Map.Entry<K, V>> collect(List<TableSource<K, V>> sources, K low, K high,
+                                                       ForkJoinPool pool) {
+        return pool.invoke(new CollectTask<>(sources, 0, sources.size(), low, high));
+    }
+
+    /**
+     * 并行地对区间内的所有记录进行聚合.
+     * @param sources 按键的顺序排列的、与查询区间相交的表.
+     * @param low 查询区间的左端点.
+     * @param high 查询区间的右端点.
+     * @param pool 执行子任务的线程池.
+     * @return 聚合结果.
+     * @throws UncheckedIOException 读取表失败时抛出.
+     */
+    public static <K, V> RangeAggregate aggregate(List<TableSource<K, V>> sources, K low, K high,
+                                                  ForkJoinPool pool) {
+        return pool.invoke(new AggregateTask<>(sources, 0, sources.size(), low, high));
+    }
+
+    /** 打开一张表，并将受检异常包装为非受检异常. */
+    private static <K, V> Table<K, V> open(TableSource<K, V> source) {
+        try {
+            return source.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ClassNotFoundException e) {
+            throw new UncheckedIOException(new IOException(e));
+        }
+    }
+
+    /** 收集[from, to)范围内的表中的记录的子任务. */
+    private static final class CollectTask<K, V> extends RecursiveTask<List<Map.Entry<K, V>>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<TableSource<K, V>> _sources;
+        private final int _from, _to;
+        private final K _low, _high;
+
+        private CollectTask(List<TableSource<K, V>> sources, int from, int to, K low, K high) {
+            _sources = sources;
+            _from = from;
+            _to = to;
+            _low = low;
+            _high = high;
+        }
+
+        @Override
+        protected List<Map.Entry<K, V>> compute() {
+            if (_to - _from <= TABLES_PER_TASK) {
+                List<Map.Entry<K, V>> records = new ArrayList<>();
+                for (int i = _from; i < _to; i++) {
+                    records.addAll(open(_sources.get(i)).entries(_low, _high));
+                }
+                return records;
+            }
+            int mid = (_from + _to) >>> 1;
+            CollectTask<K, V> left = new CollectTask<>(_sources, _from, mid, _low, _high);
+            left.fork();
+            List<Map.Entry<K, V>> right = new CollectTask<>(_sources, mid, _to, _low, _high).compute();
+            // 左半部分的键总是更小
+            List<Map.Entry<K, V>> records = left.join();
+            records.addAll(right);
+            return records;
+        }
+    }
+
+    /** 聚合[from, to)范围内的表中的记录的子任务. */
+    private static final class AggregateTask<K, V> extends RecursiveTask<RangeAggregate> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<TableSource<K, V>> _sources;
+        private final int _from, _to;
+        private final K _low, _high;
+
+        private AggregateTask(List<TableSource<K, V>> sources, int from, int to, K low, K high) {
+            _sources = sources;
+            _from = from;
+            _to = to;
+            _low = low;
+            _high = high;
+        }
+
+        @Override
+        protected RangeAggregate compute() {
+            if (_to - _from <= TABLES_PER_TASK) {
+                RangeAggregate aggregate = new RangeAggregate();
+                for (int i = _from; i < _to; i++) {
+                    open(_sources.get(i)).entries(_low, _high).forEach(aggregate::accept);
+                }
+                return aggregate;
+            }
+            int mid = (_from + _to) >>> 1;
+            AggregateTask<K, V> left = new AggregateTask<>(_sources, _from, mid, _low, _high);
+            left.fork();
+            RangeAggregate right = new AggregateTask<>(_sources, mid, _to, _low, _high).compute();
+            return left.join().combine(right);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package Index;
+
+import java.math.BigInteger;
+import java.util.Map;
+
+/**
+ * 范围查询的聚合结果，包括记录条数，以及数值类型的值的最小值、最大值、和与平均值.
+ * <p>
+ * 值不是{@link Number}的记录只计入条数. 整数类型的值的和是精确的，不会因为累加到double上而丢失低位，
+ * 只在求平均值时才转换为浮点数. 聚合结果满足结合律，因此可以由并行计算出的部分结果
+ * 通过{@link #combine}合并得到.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public final class RangeAggregate {
+
+    /** 记录的条数. */
+    private long _count;
+
+    /** 数值类型的值的个数. */
+    private long _numericCount;
+
+    /** 数值类型的值的最小值与最大值. */
+    private double _min = Double.POSITIVE_INFINITY, _max = Double.NEGATIVE_INFINITY;
+
+    /** 整数类型的值的和. 先在long上精确累加，溢出的部分转入{@link #_overflow}. */
+    private long _sum;
+
+    /** 整数类型的值的和中超出long范围的部分. */
+    private BigInteger _overflow = BigInteger.ZERO;
+
+    /** 浮点类型的值的和. */
+    private double _floatingSum;
+
+    /** 将一条记录计入聚合结果. */
+    public void accept(Map.Entry<?, ?> record) {
+        _count += 1;
+        if (record.getValue() instanceof Number number) {
+            double value = number.doubleValue();
+            _numericCount += 1;
+            _min = Math.min(_min, value);
+            _max = Math.max(_max, value);
+            if (number instanceof Long || number instanceof Integer || number instanceof Short
+                    || number instanceof Byte) {
+                add(number.longValue());
+            } else if (number instanceof BigInteger big) {
+                _overflow = _overflow.add(big);
+            } else {
+                _floatingSum += value;
+            }
+        }
+    }
+
+    /** 将一个整数精确地累加到和中. */
+    private void add(long value) {
+        try {
+            _sum = Math.addExact(_sum, value);
+        } catch (ArithmeticException e) {
+            _overflow = _overflow.add(BigInteger.valueOf(_sum)).add(BigInteger.valueOf(value));
+            _sum = 0;
+        }
+    }
+
+    /** 将另一部分的聚合结果合并到当前结果中，返回当前结果. */
+    public RangeAggregate combine(RangeAggregate other) {
+        _count += other._count;
+        _numericCount += other._numericCount;
+        _min = Math.min(_min, other._min);
+        _max = Math.max(_max, other._max);
+        add(other._sum);
+        _overflow = _overflow.add(other._overflow);
+        _floatingSum += other._floatingSum;
+        return this;
+    }
+
+    /** 返回记录的条数. */
+    public long count() { return _count; }
+
+    /** 返回数值类型的值的最小值，若不存在数值类型的值则返回NaN. */
+    public double min() { return _numericCount == 0 ? Double.NaN : _min; }
+
+    /** 返回数值类型的值的最大值，若不存在数值类型的值则返回NaN. */
+    public double max() { return _numericCount == 0 ? Double.NaN : _max; }
+
+    /** 返回整数类型的值的精确的和. */
+    public BigInteger sum() { return _overflow.add(BigInteger.valueOf(_sum)); }
+
+    /** 返回浮点类型的值的和. */
+    public double floatingSum() { return _floatingSum; }
+
+    /** 返回数值类型的值的平均值，若不存在数值类型的值则返回NaN. */
+    public double average() {
+        return _numericCount == 0 ? Double.NaN : (sum().doubleValue() + _floatingSum) / _numericCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count: %d, min: %s, max: %s, sum: %s, avg: %s", count(), min(), max(),
+                _floatingSum == 0 ? sum() : sum().doubleValue() + _floatingSum, average());
+    }
+}
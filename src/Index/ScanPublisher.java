@@ -0,0 +1,255 @@
+package Index;
+
+import Index.TableSpliterator.TableSource;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 以{@link Flow.Publisher}的形式发布范围查询的结果，记录按键升序排列.
+ * <p>
+ * 每个订阅者各自开始一次独立的范围查询. 表只有在订阅者的需求超过已经读入内存的记录条数时才会被打开，
+ * 且最多提前打开{@code prefetch}张表，因此消费缓慢的订阅者不会迫使整个区间都被读入内存.
+ * 订阅被取消后不再打开新的表，正在进行的读取完成后即释放查询所需的资源.
+ * <p>
+ * 表的读取与向订阅者发送信号都在给定的{@link Executor}上进行，发给同一个订阅者的信号是串行的.
+ * @param <K> 表中键的类型.
+ * @param <V> 表中值的类型.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class ScanPublisher<K, V> implements Flow.Publisher<Map.Entry<K, V>> {
+
+    /**
+     * 一次范围查询所需的资源：与区间相交的表，以及查询结束时的回调.
+     * @param tables 按键的顺序排列的、与查询区间相交的表
+     * @param onFinish 查询结束时的回调，可以为null
+     */
+    public record Source<K, V>(List<TableSource<K, V>> tables, Runnable onFinish) {}
+
+    /** 每个订阅者开始查询时调用，获取查询所需的资源. */
+    private final Supplier<Source<K, V>> _source;
+
+    /** 查询区间的左右端点. */
+    private final K _low, _high;
+
+    /** 读取表与发送信号的执行器. */
+    private final Executor _executor;
+
+    /** 最多提前打开的表的张数. */
+    private final int _prefetch;
+
+    /**
+     * 范围查询发布者的构造函数.
+     * @param source 每个订阅者开始查询时调用，获取查询所需的资源
+     * @param low 查询区间的左端点
+     * @param high 查询区间的右端点
+     * @param executor 读取表与发送信号的执行器
+     * @param prefetch 最多提前打开的表的张数
+     * @throws IllegalArgumentException 若prefetch不为正数
+     */
+    public ScanPublisher(Supplier<Source<K, V>> source, K low, K high, Executor executor, int prefetch)
+            throws IllegalArgumentException {
+        if (prefetch <= 0) {
+            throw new IllegalArgumentException(String.format("prefetch should be positive. Got %d", prefetch));
+        }
+        _source = source;
+        _low = low;
+        _high = high;
+        _executor = executor;
+        _prefetch = prefetch;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Map.Entry<K, V>> subscriber) {
+        new ScanSubscription(subscriber, _source.get()).start();
+    }
+
+    /** 一个订阅者的一次范围查询. */
+    private final class ScanSubscription implements Flow.Subscription {
+
+        /** 订阅者. */
+        private final Flow.Subscriber<? super Map.Entry<K, V>> _subscriber;
+
+        /** 按键的顺序排列的、与查询区间相交的表. */
+        private final List<TableSource<K, V>> _tables;
+
+        /** 查询结束时的回调. */
+        private final Runnable _onFinish;
+
+        /** 订阅者尚未满足的需求. */
+        private final AtomicLong _demand;
+
+        /** 待处理的事件个数. 只有把它从0改为正数的线程负责调度处理循环，从而保证信号是串行的. */
+        private final AtomicInteger _wip;
+
+        /** 回调是否已经触发. */
+        private final AtomicBoolean _finished;
+
+        /** 订阅是否已被取消. */
+        private volatile boolean _cancelled;
+
+        /** 订阅者是否请求了非正数条记录. */
+        private volatile boolean _badRequest;
+
+        // 以下字段只在处理循环中访问
+
+        /** 下一张待打开的表. */
+        private int _nextTable;
+
+        /** 已经开始读取的表，按键的顺序排列. */
+        private final ArrayDeque<CompletableFuture<List<Map.Entry<K, V>>>> _loading;
+
+        /** 当前正在发送的表中落在区间内的记录，以及下一条待发送记录的位置. */
+        private List<Map.Entry<K, V>> _current;
+        private int _position;
+
+        /** 是否已经发出终止信号. */
+        private boolean _terminated;
+
+        private ScanSubscription(Flow.Subscriber<? super Map.Entry<K, V>> subscriber, Source<K, V> source) {
+            _subscriber = subscriber;
+            _tables = source.tables();
+            _onFinish = source.onFinish();
+            _demand = new AtomicLong();
+            // onSubscribe返回之前不处理任何事件
+            _wip = new AtomicInteger(1);
+            _finished = new AtomicBoolean(false);
+            _loading = new ArrayDeque<>();
+        }
+
+        /** 通知订阅者，随后处理订阅者在onSubscribe中发起的请求. */
+        private void start() {
+            _subscriber.onSubscribe(this);
+            if (_wip.decrementAndGet() != 0) { _executor.execute(this::run); }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                _badRequest = true;
+            } else {
+                // 需求累加溢出时视为无上限
+                _demand.getAndAccumulate(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            _cancelled = true;
+            drain();
+        }
+
+        /** 登记一个事件，必要时调度处理循环. */
+        private void drain() {
+            if (_wip.getAndIncrement() == 0) { _executor.execute(this::run); }
+        }
+
+        /** 处理循环，直到没有待处理的事件. */
+        private void run() {
+            int missed = 1;
+            while (true) {
+                if (!_terminated) { step(); }
+                missed = _wip.addAndGet(-missed);
+                if (missed == 0) { return; }
+            }
+        }
+
+        /** 在需求范围内尽可能多地发送记录，并按需求提前打开后续的表. */
+        private void step() {
+            while (true) {
+                if (_cancelled) {
+                    terminate();
+                    return;
+                }
+                if (_badRequest) {
+                    terminate();
+                    _subscriber.onError(new IllegalArgumentException("请求的记录条数必须为正数"));
+                    return;
+                }
+                long demand = _demand.get(), emitted = 0;
+                while (emitted < demand && _current != null && _position < _current.size()) {
+                    _subscriber.onNext(_current.get(_position++));
+                    emitted++;
+                    if (_cancelled) {
+                        terminate();
+                        return;
+                    }
+                }
+                if (emitted > 0 && demand != Long.MAX_VALUE) { _demand.addAndGet(-emitted); }
+                if (_current != null && _position == _current.size()) { _current = null; }
+                prefetch();
+                if (_current == null) {
+                    CompletableFuture<List<Map.Entry<K, V>>> head = _loading.peek();
+                    if (head == null) {
+                        terminate();
+                        _subscriber.onComplete();
+                        return;
+                    }
+                    // 读取完成时会再次进入处理循环
+                    if (!head.isDone()) { return; }
+                    _loading.poll();
+                    try {
+                        _current = head.join();
+                        _position = 0;
+                    } catch (CompletionException e) {
+                        terminate();
+                        _subscriber.onError(e.getCause());
+                        return;
+                    }
+                    continue;
+                }
+                if (_demand.get() == 0) { return; }
+            }
+        }
+
+        /** 未满足的需求超过已经读入(或正在读入)的记录条数时，提前打开后续的表. */
+        private void prefetch() {
+            long need = _demand.get() - (_current == null ? 0 : _current.size() - _position);
+            for (CompletableFuture<List<Map.Entry<K, V>>> loading : _loading) {
+                // 尚未读完的表至少能提供一条记录
+                need -= loading.isDone() && !loading.isCompletedExceptionally() ? loading.join().size() : 1;
+            }
+            while (need > 0 && _loading.size() < _prefetch && _nextTable < _tables.size()) {
+                TableSource<K, V> table = _tables.get(_nextTable++);
+                CompletableFuture<List<Map.Entry<K, V>>> loading =
+                        CompletableFuture.supplyAsync(() -> open(table), _executor);
+                loading.whenComplete((records, e) -> drain());
+                _loading.add(loading);
+                need--;
+            }
+        }
+
+        /** 读取一张表中落在区间内的记录. */
+        private List<Map.Entry<K, V>> open(TableSource<K, V> table) {
+            try {
+                return table.open().entries(_low, _high);
+            } catch (IOException | ClassNotFoundException e) {
+                throw new CompletionException(e);
+            }
+        }
+
+        /** 停止查询. 等正在进行的读取完成后触发结束回调. */
+        private void terminate() {
+            _terminated = true;
+            CompletableFuture<?>[] loading = _loading.toArray(new CompletableFuture<?>[0]);
+            _loading.clear();
+            _current = null;
+            CompletableFuture.allOf(loading).whenComplete((ignored, e) -> finish());
+        }
+
+        private void finish() {
+            if (_onFinish != null && _finished.compareAndSet(false, true)) { _onFinish.run(); }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package Index;
+
+import static Utils.Utils.*;
+import KVTable.Table;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 范围查询结果的可分割迭代器，以表为单位对结果进行划分，从而可以作为并行流的数据源.
+ * <p>
+ * 迭代器持有一组按键的顺序排列的表，每张表只在遍历到它时才会被打开，遍历结果按键升序排列.
+ * 划分时前一半的表交给新的迭代器，因此划分出的各部分之间依旧保持键的顺序.
+ * <p>
+ * 迭代器及其划分出的所有部分共享一个结束回调，所有部分都遍历完毕(或调用{@link #close()})后回调才会触发，
+ * 调用方可以借此释放遍历期间需要保持的资源. 提前结束遍历的调用方必须关闭迭代器，
+ * 最好通过try-with-resources，否则回调永远不会触发.
+ * <p>
+ * 由于表的读取发生在遍历过程中，读取失败时抛出的{@link IOException}会被包装为
+ * {@link UncheckedIOException}.
+ * @param <K> 表中键的类型.
+ * @param <V> 表中值的类型.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class TableSpliterator<K, V> implements Spliterator<Map.Entry<K, V>>, AutoCloseable {
+
+    /** 按需打开一张表. */
+    @FunctionalInterface
+    public interface TableSource<K, V> {
+        Table<K, V> open() throws IOException, ClassNotFoundException;
+    }
+
+    /** 按键的顺序排列的所有表. 划分出的迭代器共享该列表. */
+    private final List<TableSource<K, V>> _sources;
+
+    /** 当前迭代器负责的表在列表中的范围[_from, _to). */
+    private int _from, _to;
+
+    /** 查询区间的左右端点. */
+    private final K _low, _high;
+
+    /** 当前正在遍历的表中剩余的记录. */
+    private Iterator<Map.Entry<K, V>> _current;
+
+    /** 每张表中记录条数的估计值. */
+    private final long _recordsPerTable;
+
+    /** 划分出的所有迭代器共享的结束回调. */
+    private final Completion _completion;
+
+    /** 当前迭代器是否已经遍历完毕. */
+    private boolean _finished;
+
+    /**
+     * 范围查询迭代器的构造函数.
+     * @param sources 按键的顺序排列的、与查询区间相交的表.
+     * @param low 查询区间的左端点.
+     * @param high 查询区间的右端点.
+     * @param recordsPerTable 每张表中记录条数的估计值，用于估计结果的规模.
+     * @param onFinish 遍历结束时的回调，可以为null.
+     */
+    public TableSpliterator(List<TableSource<K, V>> sources, K low, K high, long recordsPerTable, Runnable onFinish) {
+        this(sources, 0, sources.size(), low, high, null, recordsPerTable, new Completion(onFinish));
+    }
+
+    private TableSpliterator(List<TableSource<K, V>> sources, int from, int to, K low, K high,
+                             Iterator<Map.Entry<K, V>> current, long recordsPerTable, Completion completion) {
+        _sources = sources;
+        _from = from;
+        _to = to;
+        _low = low;
+        _high = high;
+        _current = current;
+        _recordsPerTable = recordsPerTable;
+        _completion = completion;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Map.Entry<K, V>> action) {
+        while (_current == null || !_current.hasNext()) {
+            if (_from >= _to) {
+                finish();
+                return false;
+            }
+            _current = open(_sources.get(_from++)).entries(_low, _high).iterator();
+        }
+        action.accept(_current.next());
+        return true;
+    }
+
+    /** 将前一半的表(以及当前正在遍历的表中剩余的记录)划分给新的迭代器. */
+    @Override
+    public Spliterator<Map.Entry<K, V>> trySplit() {
+        int remaining = _to - _from;
+        if (remaining < 2 || _finished) { return null; }
+        int mid = _from + remaining / 2;
+        _completion.fork();
+        TableSpliterator<K, V> prefix = new TableSpliterator<>(_sources, _from, mid, _low, _high, _current,
+                _recordsPerTable, _completion);
+        _from = mid;
+        _current = null;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() { return (long) (_to - _from) * _recordsPerTable; }
+
+    @Override
+    public int characteristics() { return ORDERED | SORTED | NONNULL | IMMUTABLE; }
+
+    @Override
+    public Comparator<? super Map.Entry<K, V>> getComparator() {
+        return (e1, e2) -> compare(e1.getKey(), e2.getKey());
+    }
+
+    /** 不再需要遍历时调用，无论各部分是否遍历完毕都会立即触发结束回调. 可以重复调用. */
+    @Override
+    public void close() { _completion.close(); }
+
+    /** 当前迭代器遍历完毕. */
+    private void finish() {
+        if (_finished) { return; }
+        _finished = true;
+        _completion.join();
+    }
+
+    /** 打开一张表，并将受检异常包装为非受检异常. 读取失败意味着整个遍历失败，因此会立即触发结束回调. */
+    private Table<K, V> open(TableSource<K, V> source) {
+        try {
+            return source.open();
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException(e);
+        } catch (ClassNotFoundException e) {
+            close();
+            throw new UncheckedIOException(new IOException(e));
+        }
+    }
+
+    /** 划分出的所有迭代器共享的结束回调，只会被触发一次. */
+    private static final class Completion {
+
+        /** 尚未遍历完毕的迭代器个数. */
+        private final AtomicInteger _parts = new AtomicInteger(1);
+
+        /** 回调是否已经触发. */
+        private final AtomicBoolean _done = new AtomicBoolean(false);
+
+        /** 结束回调. */
+        private final Runnable _onFinish;
+
+        private Completion(Runnable onFinish) { _onFinish = onFinish; }
+
+        /** 划分出一个新的迭代器. */
+        private void fork() { _parts.incrementAndGet(); }
+
+        /** 一个迭代器遍历完毕，所有迭代器都完毕时触发回调. */
+        private void join() {
+            if (_parts.decrementAndGet() == 0) { close(); }
+        }
+
+        /** 立即触发回调. */
+        private void close() {
+            if (_onFinish != null && _done.compareAndSet(false, true)) { _onFinish.run(); }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package KVTable;
+
+import static Utils.Utils.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于无锁跳表的内存K-V表，用作执行器{@link Main.Executor}中的写缓冲区.
+ * <p>
+ * 与红黑树实现的{@link Table}不同，跳表的读操作不需要加锁，可以与唯一的写者并发进行.
+ * 缓冲区写满后会被整体换下，然后通过{@link #toTable()}转换为{@link Table}写入索引区.
+ * @param <K> K-V表中键的类型.
+ * @param <V> K-V表中值的类型.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class MemTable<K, V> implements KVTable<K, V> {
+
+    /** 按键有序存放的记录. */
+    private final ConcurrentSkipListMap<K, V> _records;
+
+    /** 记录的条数. 跳表的size()需要遍历整张表，因此单独计数. */
+    private final AtomicInteger _size;
+
+    /** 默认构造函数. */
+    public MemTable() {
+        _records = new ConcurrentSkipListMap<>((k1, k2) -> compare(k1, k2));
+        _size = new AtomicInteger(0);
+    }
+
+    /** 根据给定的键查询表中的值, 如果记录不存在则返回null. */
+    @Override
+    public V get(K key) { return _records.get(key); }
+
+    /**
+     * 将给定的键值对存入表中. 需要保证给定的键不为{@code null}.
+     * @throws IllegalArgumentException 如果给定的键为{@code null}.
+     */
+    @Override
+    public void put(K key, V value) throws IllegalArgumentException {
+        if (key == null) {
+            throw new IllegalArgumentException("The parameter key cannot be null.");
+        }
+        if (_records.put(key, value) == null) { _size.incrementAndGet(); }
+    }
+
+    /** 删除表中对应给定键的记录，并返回值. */
+    @Override
+    public V delete(K key) {
+        V value = _records.remove(key);
+        if (value != null) { _size.decrementAndGet(); }
+        return value;
+    }
+
+    /** 根据给定的键查询当前表中是否有相关的记录. */
+    @Override
+    public boolean contains(K key) { return _records.containsKey(key); }
+
+    /** 返回当前表中记录的条数. */
+    @Override
+    public int size() { return _size.get(); }
+
+    /** 获取当前表中所有记录的键的集合. */
+    @Override
+    public Object[] keys() { return _records.keySet().toArray(); }
+
+    /** 获取当前表中所有记录的值的集合. */
+    @Override
+    public Object[] values() { return _records.values().toArray(); }
+
+    /** 获取当前表中键的最大值，表空时返回null. */
+    public K maxKey() {
+        Map.Entry<K, V> last = _records.lastEntry();
+        return last == null ? null : last.getKey();
+    }
+
+    /**
+     * 按键的顺序返回闭区间[low, high]内的记录视图，端点为null时表示该侧无界. 视图是弱一致的，
+     * 可以与写者并发遍历.
+     */
+    public Iterable<Map.Entry<K, V>> entries(K low, K high) {
+        ConcurrentNavigableMap<K, V> view = _records;
+        if (low != null) { view = view.tailMap(low, true); }
+        if (high != null) { view = view.headMap(high, true); }
+        return view.entrySet();
+    }
+
+    /** 将当前表中的记录按序转存为一张可以写入索引区的{@link Table}. */
+    public Table<K, V> toTable() { return toTable("./data"); }
+
+    /**
+     * 将当前表中的记录按序转存为一张可以写入索引区的{@link Table}.
+     * @param directory 转存得到的表的文件所在的目录.
+     */
+    public Table<K, V> toTable(String directory) {
+        Table<K, V> table = new Table<K, V>(directory);
+        for (Map.Entry<K, V> record : _records.entrySet()) {
+            table.put(record.getKey(), record.getValue());
+        }
+        return table;
+    }
+}
@@ -0,0 +1,452 @@
+package KVTable;
+
+import Metrics.EngineEvents.CacheEviction;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 有界的行缓存，缓存从存储引擎中读出的记录，采用W-TinyLFU的准入与淘汰策略.
+ * <p>
+ * 缓存分为窗口区(约占容量的1%)与主区，主区又分为试用段(约占主区的20%)与保护段. 新记录先进入窗口区，
+ * 被窗口区按LRU淘汰后成为进入主区的候选者，与试用段中最久未访问的记录比较近期的访问频率，
+ * 频率较低的一方被淘汰；试用段中再次被访问的记录晋升到保护段. 访问频率由一个定期减半的Count-Min Sketch估计，
+ * 未命中的访问同样计入，因此只被访问一次的键(如一次范围扫描)无法挤掉真正的热点键.
+ * <p>
+ * 缓存本身不感知写操作，调用方需要在每次写入或删除记录之后调用{@link #invalidate(Object)}. 为避免并发的读者
+ * 把写入之前读到的旧值填回缓存，读者在读存储引擎之前先取得键的版本戳{@link #stamp(Object)}，填充时
+ * 若其间有写操作则放弃填充.
+ * <p>
+ * 读取不加锁：记录存放在{@link ConcurrentHashMap}中，命中时只需一次哈希查找，本次访问则放入按线程分段的
+ * 有损环形缓冲区，由随后取得淘汰锁的线程批量重放到频率估计与LRU链表中. 缓冲区已满或发生竞争时直接丢弃本次访问，
+ * 只会使频率的估计略微偏低，不影响读到的值. 填充、作废与淘汰在淘汰锁下进行. 记录被淘汰时产生JFR事件{@link CacheEviction}.
+ * @param <K> 记录的键的类型.
+ * @param <V> 记录的值的类型.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class RowCache<K, V> {
+
+    /** 记录所在的区段. */
+    private static final int WINDOW = 0, PROBATION = 1, PROTECTED = 2;
+
+    /** 版本戳的分段数. */
+    private static final int STRIPES = 64;
+
+    /** 每个访问缓冲区的容量，须为2的幂. */
+    private static final int READ_BUFFER_SIZE = 16;
+
+    /** 访问缓冲区中积攒的访问达到该个数时尝试重放. */
+    private static final int DRAIN_THRESHOLD = READ_BUFFER_SIZE / 2;
+
+    /** 每条记录除键与值以外的估计开销(字节)：链表结点以及哈希表中的条目. */
+    private static final long ENTRY_OVERHEAD = 96;
+
+    /** 缓存的容量(记录条数). */
+    private final int _capacity;
+
+    /** 窗口区、主区以及保护段的容量. */
+    private final int _windowCapacity, _mainCapacity, _protectedCapacity;
+
+    /** 键到结点的映射. 读者不加锁地查找，增删在_lock下进行. */
+    private final ConcurrentHashMap<K, Node<K, V>> _nodes;
+
+    /** 窗口区、试用段与保护段的LRU链表的哨兵结点，哨兵的后继为最久未访问的结点. 由_lock保护. */
+    private final Node<K, V> _window, _probation, _protected;
+
+    /** 三个区段中的记录条数. 由_lock保护. */
+    private final int[] _sizes;
+
+    /** 近期访问频率的估计. 由_lock保护. */
+    private final FrequencySketch _sketch;
+
+    /** 每个分段被写操作作废的次数. */
+    private final AtomicLongArray _stamps;
+
+    /** 按线程分段的访问缓冲区，个数为2的幂. */
+    private final ReadBuffer[] _readBuffers;
+
+    /** 淘汰锁，保护链表、频率估计与访问缓冲区的重放. */
+    private final ReentrantLock _lock;
+
+    /** 命中与未命中的次数. */
+    private final LongAdder _hits, _misses;
+
+    /** 淘汰以及被拒绝准入的次数. 只在持有_lock时修改. */
+    private volatile long _evictions, _rejections;
+
+    /** 缓存中记录的估计内存占用(字节). 只在持有_lock时修改. */
+    private volatile long _bytes;
+
+    /**
+     * 创建一个空的行缓存.
+     * @param capacity 缓存的容量(记录条数)
+     * @throws IllegalArgumentException 若容量不为正数
+     */
+    public RowCache(int capacity) throws IllegalArgumentException {
+        if (capacity <= 0) {
+            String errorMsg = String.format("""
+                    Capacity of the row cache should be positive. Got
+                    capacity: %d
+                    """, capacity);
+            throw new IllegalArgumentException(errorMsg);
+        }
+        _capacity = capacity;
+        _windowCapacity = Math.max(1, capacity / 100);
+        _mainCapacity = capacity - _windowCapacity;
+        _protectedCapacity = (int) (_mainCapacity * 0.8);
+        _nodes = new ConcurrentHashMap<>();
+        _window = sentinel();
+        _probation = sentinel();
+        _protected = sentinel();
+        _sizes = new int[3];
+        _sketch = new FrequencySketch(capacity);
+        _stamps = new AtomicLongArray(STRIPES);
+        // 缓冲区的个数取不小于处理器个数的2的幂，至多64个
+        int processors = Math.max(1, Runtime.getRuntime().availableProcessors());
+        _readBuffers = new ReadBuffer[Math.min(64, Integer.highestOneBit(2 * processors - 1))];
+        for (int i = 0; i < _readBuffers.length; i++) { _readBuffers[i] = new ReadBuffer(); }
+        _lock = new ReentrantLock();
+        _hits = new LongAdder();
+        _misses = new LongAdder();
+    }
+
+    /**
+     * 查找缓存中的记录. 无论是否命中，本次访问都计入键的访问频率.
+     * @return 缓存的值，未命中时返回null
+     */
+    public V get(K key) {
+        Node<K, V> node = _nodes.get(key);
+        if (node == null) {
+            _misses.increment();
+            // 未命中的访问只需计入频率，记录键即可
+            record(key);
+            return null;
+        }
+        _hits.increment();
+        record(node);
+        return node._value;
+    }
+
+    /**
+     * 返回键当前的版本戳. 读者需要在读取存储引擎之前取得版本戳，并在填充缓存时交回.
+     */
+    public long stamp(K key) { return _stamps.get(stripe(key)); }
+
+    /**
+     * 将从存储引擎中读到的记录填入缓存. 若取得版本戳之后该键所在的分段被写操作作废过，读到的值可能已经过时，
+     * 放弃填充.
+     * @param stamp 读取存储引擎之前由{@link #stamp(Object)}取得的版本戳
+     */
+    public void fill(K key, V value, long stamp) {
+        _lock.lock();
+        try {
+            // 先重放积攒的访问，准入时比较的频率才是最新的
+            drainReadBuffers();
+            if (_stamps.get(stripe(key)) != stamp || _nodes.containsKey(key)) { return; }
+            Node<K, V> node = new Node<>(key, value, ENTRY_OVERHEAD + estimate(key) + estimate(value));
+            _nodes.put(key, node);
+            _bytes += node._bytes;
+            append(WINDOW, node);
+            if (_sizes[WINDOW] > _windowCapacity) { admit(_window._next); }
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /** 在写入或删除记录之后调用，移除缓存中的记录，并使正在进行的填充失效. */
+    public void invalidate(K key) {
+        _lock.lock();
+        try {
+            _stamps.incrementAndGet(stripe(key));
+            Node<K, V> node = _nodes.remove(key);
+            if (node != null) {
+                unlink(node);
+                _bytes -= node._bytes;
+            }
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /** 返回缓存的容量. */
+    public int capacity() { return _capacity; }
+
+    /** 返回缓存中的记录条数. */
+    public int size() { return _nodes.size(); }
+
+    /** 返回命中的次数. */
+    public long hits() { return _hits.sum(); }
+
+    /** 返回未命中的次数. */
+    public long misses() { return _misses.sum(); }
+
+    /** 返回命中率，尚无访问时返回0. */
+    public double hitRatio() {
+        long hits = hits(), total = hits + misses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /** 返回因容量而被淘汰的记录条数，包括被拒绝进入主区的候选者. */
+    public long evictions() { return _evictions; }
+
+    /** 返回估计的内存占用(字节)：记录及其结点，加上频率估计所用的计数器. */
+    public long memoryBytes() { return _bytes + _sketch.bytes(); }
+
+    /** 返回一行文字形式的统计，供{@code SHOW STATS}使用. 各项分别读取，彼此之间不保证是同一时刻的值. */
+    public String report() {
+        long hits = hits(), misses = misses(), total = hits + misses;
+        return String.format("行缓存: %d/%d条，约%.1fKB，命中率%.2f%% (命中%d，未命中%d)，淘汰%d条(其中拒绝准入%d条)\n",
+                size(), _capacity, memoryBytes() / 1024.0,
+                total == 0 ? 0 : 100.0 * hits / total, hits, misses, _evictions, _rejections);
+    }
+
+    /** 将一次访问放入当前线程的访问缓冲区，积攒到一定个数时若淘汰锁空闲则顺带重放. */
+    private void record(Object access) {
+        ReadBuffer buffer = _readBuffers[(int) Thread.currentThread().getId() & (_readBuffers.length - 1)];
+        if (buffer.offer(access) && _lock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                _lock.unlock();
+            }
+        }
+    }
+
+    /** 重放所有访问缓冲区中积攒的访问. 需要在持有_lock时调用. */
+    private void drainReadBuffers() {
+        for (ReadBuffer buffer : _readBuffers) { buffer.drain(this); }
+    }
+
+    /** 重放一次访问：计入频率，命中的记录若仍在缓存中则调整其位置. 需要在持有_lock时调用. */
+    @SuppressWarnings("unchecked")
+    private void replay(Object access) {
+        if (access instanceof Node<?, ?> hit) {
+            Node<K, V> node = (Node<K, V>) hit;
+            _sketch.increment(node._key);
+            // 记录可能在访问之后已被作废或淘汰
+            if (node._queue >= 0) { onHit(node); }
+        } else {
+            _sketch.increment(access);
+        }
+    }
+
+    /** 命中时调整结点在区段中的位置. */
+    private void onHit(Node<K, V> node) {
+        int queue = node._queue;
+        if (queue != PROBATION) {
+            unlink(node);
+            append(queue, node);
+            return;
+        }
+        // 试用段中再次被访问的记录晋升到保护段，保护段溢出的记录降回试用段
+        unlink(node);
+        append(PROTECTED, node);
+        if (_sizes[PROTECTED] > _protectedCapacity) {
+            Node<K, V> demoted = _protected._next;
+            unlink(demoted);
+            append(PROBATION, demoted);
+        }
+    }
+
+    /** 窗口区淘汰的候选者进入主区，主区溢出时淘汰候选者与试用段中最久未访问的记录里频率较低的一方. */
+    private void admit(Node<K, V> candidate) {
+        unlink(candidate);
+        append(PROBATION, candidate);
+        while (_sizes[PROBATION] + _sizes[PROTECTED] > _mainCapacity) {
+            Node<K, V> victim = _probation._next;
+            if (victim == candidate) {
+                evict(candidate, "size");
+            } else if (_sketch.frequency(candidate._key) > _sketch.frequency(victim._key)) {
+                evict(victim, "size");
+            } else {
+                _rejections += 1;
+                evict(candidate, "rejected");
+            }
+            // 候选者被淘汰后主区已不再溢出
+            if (candidate._queue < 0) { return; }
+        }
+    }
+
+    /** 淘汰一条记录并按需提交JFR事件. */
+    private void evict(Node<K, V> node, String cause) {
+        unlink(node);
+        _nodes.remove(node._key, node);
+        _bytes -= node._bytes;
+        _evictions += 1;
+        CacheEviction event = new CacheEviction();
+        if (event.shouldCommit()) {
+            event.cache = "row";
+            event.key = String.valueOf(node._key);
+            event.cause = cause;
+            event.size = _nodes.size();
+            event.commit();
+        }
+    }
+
+    /** 将结点加入区段的队尾，即最近访问的一端. */
+    private void append(int queue, Node<K, V> node) {
+        Node<K, V> sentinel = queue == WINDOW ? _window : queue == PROBATION ? _probation : _protected;
+        node._prev = sentinel._prev;
+        node._next = sentinel;
+        sentinel._prev._next = node;
+        sentinel._prev = node;
+        node._queue = queue;
+        _sizes[queue] += 1;
+    }
+
+    /** 将结点从其所在的区段中摘下. */
+    private void unlink(Node<K, V> node) {
+        node._prev._next = node._next;
+        node._next._prev = node._prev;
+        node._prev = node._next = null;
+        _sizes[node._queue] -= 1;
+        node._queue = -1;
+    }
+
+    /** 创建一个空链表的哨兵结点. */
+    private static <K, V> Node<K, V> sentinel() {
+        Node<K, V> sentinel = new Node<>(null, null, 0);
+        sentinel._prev = sentinel._next = sentinel;
+        return sentinel;
+    }
+
+    /** 返回键所在的版本戳分段. */
+    private static int stripe(Object key) { return (key.hashCode() & 0x7fffffff) % STRIPES; }
+
+    /** 估计一个键或值占用的内存(字节). 字符串按紧凑编码估计，其余对象按一个装箱的基本类型估计. */
+    private static long estimate(Object object) {
+        if (object instanceof String string) { return 40 + string.length(); }
+        return 16;
+    }
+
+    /**
+     * 缓存中的一条记录，同时是所在区段的双向链表的结点.
+     * @param <K> 记录的键的类型.
+     * @param <V> 记录的值的类型.
+     */
+    private static final class Node<K, V> {
+        private final K _key;
+        private final V _value;
+        private final long _bytes;
+        private int _queue = -1;
+        private Node<K, V> _prev, _next;
+
+        private Node(K key, V value, long bytes) {
+            _key = key;
+            _value = value;
+            _bytes = bytes;
+        }
+    }
+
+    /**
+     * 有损的访问缓冲区：多个读者通过CAS占位写入，持有淘汰锁的线程按写入的顺序重放. 缓冲区已满或占位失败时
+     * 丢弃本次访问，读者从不等待.
+     */
+    private static final class ReadBuffer {
+
+        private final AtomicReferenceArray<Object> _slots = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+
+        /** 已占位的次数. */
+        private final AtomicLong _writes = new AtomicLong();
+
+        /** 已重放的次数. 只在持有淘汰锁时修改. */
+        private volatile long _reads;
+
+        /**
+         * 放入一次访问.
+         * @return 缓冲区中积攒的访问是否已经达到需要重放的个数
+         */
+        private boolean offer(Object access) {
+            long reads = _reads, writes = _writes.get();
+            if (writes - reads >= READ_BUFFER_SIZE) { return true; }
+            if (!_writes.compareAndSet(writes, writes + 1)) { return false; }
+            _slots.lazySet((int) writes & (READ_BUFFER_SIZE - 1), access);
+            return writes + 1 - reads >= DRAIN_THRESHOLD;
+        }
+
+        /** 按写入的顺序将已经写入的访问重放到缓存中. 需要在持有缓存的淘汰锁时调用. */
+        private void drain(RowCache<?, ?> cache) {
+            long reads = _reads, writes = _writes.get();
+            for (; reads < writes; reads++) {
+                int index = (int) reads & (READ_BUFFER_SIZE - 1);
+                Object access = _slots.get(index);
+                // 读者已经占位但尚未写入，留待下次重放
+                if (access == null) { break; }
+                _slots.lazySet(index, null);
+                cache.replay(access);
+            }
+            _reads = reads;
+        }
+    }
+
+    /**
+     * 估计键的近期访问频率的Count-Min Sketch. 计数器上限为15，累计的访问次数达到计数器宽度的10倍时，
+     * 所有计数器减半，使频率反映的是近期而不是全部历史的访问.
+     */
+    private static final class FrequencySketch {
+
+        /** 行数，即每个键对应的计数器个数. */
+        private static final int DEPTH = 4;
+
+        /** 计数器的上限. */
+        private static final int MAX_COUNT = 15;
+
+        /** 每行一个独立的哈希种子. */
+        private static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F };
+
+        private final byte[][] _counters;
+        private final int _mask;
+        private final int _sampleSize;
+        private int _additions;
+
+        private FrequencySketch(int capacity) {
+            int width = Integer.highestOneBit(Math.max(16, capacity - 1)) << 1;
+            _counters = new byte[DEPTH][width];
+            _mask = width - 1;
+            _sampleSize = 10 * width;
+        }
+
+        /** 计入一次访问. */
+        private void increment(Object key) {
+            int hash = key.hashCode();
+            boolean added = false;
+            for (int row = 0; row < DEPTH; row++) {
+                int index = index(hash, row);
+                if (_counters[row][index] < MAX_COUNT) {
+                    _counters[row][index] += 1;
+                    added = true;
+                }
+            }
+            if (added && ++_additions >= _sampleSize) { reset(); }
+        }
+
+        /** 返回键的访问频率的估计值. */
+        private int frequency(Object key) {
+            int hash = key.hashCode(), frequency = MAX_COUNT;
+            for (int row = 0; row < DEPTH; row++) {
+                frequency = Math.min(frequency, _counters[row][index(hash, row)]);
+            }
+            return frequency;
+        }
+
+        /** 返回计数器占用的字节数. */
+        private long bytes() { return (long) DEPTH * (_mask + 1); }
+
+        /** 所有计数器减半. */
+        private void reset() {
+            for (byte[] row : _counters) {
+                for (int i = 0; i < row.length; i++) { row[i] >>= 1; }
+            }
+            _additions /= 2;
+        }
+
+        private int index(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * SEEDS[row];
+            return (h ^ (h >>> 16)) & _mask;
+        }
+    }
+}
@@ -2,7 +2,13 @@ package KVTable;
 
 import static View.TableView.viewInString;
 import static Utils.Utils.*;
+import Metrics.EngineEvents.TableClose;
+import Metrics.EngineEvents.TableOpen;
+import Metrics.IOStats;
+import java.util.AbstractMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.function.Function;
 import java.io.*;
@@ -10,6 +16,7 @@ import java.io.*;
 /**
  * 继承了红黑树K-V表，并且缓存了最大/最小键，支持在原有红黑树基础上对分重构的K-V表.
  * 1.1在原版的基础上其父类RBT支持了序列化与反序列化存储
+ * 表文件的每次读写都会记入所在数据目录的{@link IOStats}，并产生JFR事件{@link TableOpen}与{@link TableClose}.
  * <p>
  * 用于适配类 {@link Index.Page} 中存储的K-V表的要求.
  * @param <K> K-V表中键的类型.
@@ -28,16 +35,32 @@ public class Table<K, V> extends RBT<K, V> {
     /** 存放当前表对应的文件名，规则：文件名 = this.hashCode().table */
     private final String _filename;
 
+    /** 表文件所在的目录，默认为项目根路径下的data目录. */
+    private final String _directory;
+
+    /** 当前表在磁盘上的版本号，每次{@link #commit()}都会生成一个新版本的文件，0表示尚未写入磁盘. */
+    private int _version;
+
     /** 默认构造函数. */
     public Table() {
+        this("./data");
+    }
+
+    /**
+     * 构造一张将文件存放在给定目录下的表.
+     * @param directory 表文件所在的目录.
+     */
+    public Table(String directory) {
         super();
         _filename = String.format("%s.table", this.hashCode());
+        _directory = directory;
     }
 
     /** 用一棵已知的结点表示的红黑树来初始化一张表. */
-    private Table(RBTNode<K, V> root, RBTNode<K, V> NIL, int rootSize) {
+    private Table(RBTNode<K, V> root, RBTNode<K, V> NIL, int rootSize, String directory) {
         super(root, NIL, rootSize);
         _filename = String.format("%s.table", this.hashCode());
+        _directory = directory;
     }
 
     /** 获取当前表中键的最小值. */
@@ -47,6 +70,10 @@ public class Table<K, V> extends RBT<K, V> {
     public K maxKey() { return _maxKey; }
 
     public String name() { return _filename; }
+
+    /** 获取当前版本的表在磁盘上对应的文件路径，规则：目录/文件名.v版本号 */
+    public String path() { return String.format("%s/%s.v%d", _directory, _filename, _version); }
+
     @Override
     public void put(K key, V value) {
         // 检查新插入的key
@@ -79,6 +106,18 @@ public class Table<K, V> extends RBT<K, V> {
         return (V[]) values.get().toArray();
     }
 
+    /**
+     * 按键的顺序获取表中键位于闭区间[low, high]内的所有记录.
+     * @param low 区间的左端点.
+     * @param high 区间的右端点.
+     * @return 区间内的记录组成的有序列表.
+     */
+    public List<Map.Entry<K, V>> entries(K low, K high) {
+        LinkedList<Map.Entry<K, V>> entries = new LinkedList<>();
+        collect(_root, low, high, entries);
+        return entries;
+    }
+
     /**
      * 将当前的红黑树按*根结点*的键划分成左右两棵子树，保证左子树中所有的键小于等于根节点，
      * 右子树中所有的键大于根节点，令当前红黑树为划分出的左子树，然后返回右子树.
@@ -100,7 +139,7 @@ public class Table<K, V> extends RBT<K, V> {
         K rootKey = _root._key;
         V rootValue = _root._value;
         // 划分右子树
-        Table<K, V> rightTree = new Table<K, V>(_root._right, this.NIL, rightTreeSize);
+        Table<K, V> rightTree = new Table<K, V>(_root._right, this.NIL, rightTreeSize, _directory);
         this._root._right = this.NIL;
         // 令当前红黑树为左子树
         this._root = _root._left;
@@ -116,6 +155,24 @@ public class Table<K, V> extends RBT<K, V> {
         return rightTree;
     }
 
+    /**
+     * 将当前表中的全部记录移入一张新命名的、尚未写入磁盘的表并返回它，当前表随之清空.
+     * <p>
+     * 从某个版本的独立副本(见{@link #load(String)})出发离线地重建一张表时，副本与原表同名同版本，
+     * 直接提交会与原表之后的版本冲突，需要先移入新表.
+     * @return 持有原先全部记录的新表.
+     */
+    public Table<K, V> detach() {
+        Table<K, V> detached = new Table<K, V>(_root, this.NIL, _size, _directory);
+        detached._minKey = _minKey;
+        detached._maxKey = _maxKey;
+        this._root = this.NIL;
+        this._size = 0;
+        this._minKey = null;
+        this._maxKey = null;
+        return detached;
+    }
+
     /** 返回一张表格的视图，通过打印表格中的前10项记录条数. */
     @Override
     public String toString() {
@@ -134,35 +191,86 @@ public class Table<K, V> extends RBT<K, V> {
     }
 
     /**
-     * 关闭当前Table，将Table中所有的K-V对写入项目根路径下的data目录，随后将root置空.
+     * 关闭当前Table，将Table中所有的K-V对写入表文件所在的目录，随后将root置空.
      * @throws IOException 发生IO异常时抛出.
      */
     public void close () throws IOException {
+        // 尚未写入过磁盘的表从第一个版本开始
+        if (_version == 0) { _version = 1; }
         // 写入磁盘
-        String path = String.format("./data/%s", _filename);
-        try(FileOutputStream fos = new FileOutputStream(path);
-            ObjectOutputStream oos = new ObjectOutputStream(fos)) {
-            oos.writeObject(this);
-            oos.flush();
-        }
+        write(path());
         // 置空root
         this._root = null;
     }
 
     /**
-     * 打开当前的Table，将Table中所有的K-V对从根路径的data目录中对应的文件加载回内存里.
+     * 提交当前Table，将Table中所有的K-V对以一个*新版本*写入表文件所在的目录，随后将root置空.
+     * <p>
+     * 与{@link #close()}的原地覆盖不同，旧版本的文件会被保留，由调用方在确认没有读者持有它之后
+     * 再回收. 新版本的文件在调用方公布其路径之前不会被任何读者看到，因此读者永远不会读到写了一半的表.
+     * @return 被替换掉的旧版本文件的路径，若当前表此前从未写入磁盘则返回null.
+     * @throws IOException 发生IO异常时抛出.
+     */
+    public String commit() throws IOException {
+        String previous = _version == 0 ? null : path();
+        _version += 1;
+        write(path());
+        this._root = null;
+        return previous;
+    }
+
+    /** 丢弃当前Table在内存中的内容而不写入磁盘，用于打开后未作修改的表. 表文件保持不变. */
+    public void discard() { this._root = null; }
+
+    /**
+     * 打开当前的Table，将Table中所有的K-V对从其所在目录中对应的文件加载回内存里.
      * @throws IOException 发生IO异常时抛出.
      * @throws ClassNotFoundException 发生类加载异常时抛出.
      */
     public void open() throws IOException, ClassNotFoundException {
-        Table<K, V> inDiskTable;
-        String path = String.format("./data/%s", _filename);
+        Table<K, V> inDiskTable = load(path());
+        _root = inDiskTable._root;
+        NIL = inDiskTable.NIL;
+    }
+
+    /**
+     * 从给定路径的文件中读取一张表的*独立副本*. 读取不会修改任何已有的Table实例，
+     * 因此可以在不持有锁的情况下由多个读者并发调用.
+     * @param path 表的某个版本在磁盘上的路径，见{@link #path()}.
+     * @return 从磁盘中反序列化得到的表.
+     * @throws IOException 发生IO异常时抛出.
+     * @throws ClassNotFoundException 发生类加载异常时抛出.
+     */
+    public static <K, V> Table<K, V> load(String path) throws IOException, ClassNotFoundException {
+        TableOpen event = new TableOpen();
+        event.begin();
+        long start = System.nanoTime();
         try (FileInputStream fis = new FileInputStream(path);
              ObjectInputStream ois = new ObjectInputStream(fis)) {
-            inDiskTable = (Table<K, V>) ois.readObject();
+            Table<K, V> table = read(ois);
+            recordOpen(path, fis.getChannel().position(), table.size(), System.nanoTime() - start, event);
+            return table;
+        }
+    }
+
+    /**
+     * 从表文件的完整内容中反序列化出一张表的独立副本，供以异步IO读取表文件的调用方使用.
+     * @param path 表文件的路径，用于记录IO统计.
+     * @param bytes 某个版本的表文件的全部字节.
+     * @return 反序列化得到的表.
+     * @throws IOException 内容不是合法的表文件时抛出.
+     * @throws ClassNotFoundException 发生类加载异常时抛出.
+     */
+    public static <K, V> Table<K, V> load(String path, byte[] bytes) throws IOException, ClassNotFoundException {
+        TableOpen event = new TableOpen();
+        event.begin();
+        long start = System.nanoTime();
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            Table<K, V> table = read(ois);
+            // 读取文件的耗时由调用方承担，这里只统计反序列化
+            recordOpen(path, bytes.length, table.size(), System.nanoTime() - start, event);
+            return table;
         }
-        _root = inDiskTable._root;
-        NIL = inDiskTable.NIL;
     }
 
     /** 判断根节点是否为空 */
@@ -170,6 +278,79 @@ public class Table<K, V> extends RBT<K, V> {
         return _root == null;
     }
 
+    /**
+     * 表被删除、其最后一个版本的文件也已回收后，从所在数据目录的统计中移除该表.
+     * @param path 表的最后一个版本的文件路径
+     */
+    public static void forgetStats(String path) {
+        File file = new File(path);
+        IOStats.forget(directoryOf(file), nameOf(file));
+    }
+
+    /** 从流中反序列化出一张表. */
+    private static <K, V> Table<K, V> read(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+        return (Table<K, V>) ois.readObject();
+    }
+
+    /** 返回表文件所在的数据目录. */
+    private static String directoryOf(File file) {
+        String directory = file.getParent();
+        return directory == null ? "." : directory;
+    }
+
+    /** 返回表文件对应的表名，即文件名去掉版本号后缀. */
+    private static String nameOf(File file) {
+        String name = file.getName();
+        int version = name.lastIndexOf(".v");
+        return version < 0 ? name : name.substring(0, version);
+    }
+
+    /** 将一次表文件的读取记入其所在数据目录的统计并提交事件，表名为文件名去掉版本号后缀. */
+    private static void recordOpen(String path, long bytes, long records, long nanos, TableOpen event) {
+        event.end();
+        File file = new File(path);
+        String name = nameOf(file);
+        IOStats.of(directoryOf(file)).recordOpen(name, bytes, records, nanos);
+        if (event.shouldCommit()) {
+            event.table = name;
+            event.path = path;
+            event.bytes = bytes;
+            event.records = records;
+            event.commit();
+        }
+    }
+
+    /** 将当前表序列化写入给定路径的文件. */
+    private void write(String path) throws IOException {
+        TableClose event = new TableClose();
+        event.begin();
+        long start = System.nanoTime();
+        try(FileOutputStream fos = new FileOutputStream(path);
+            ObjectOutputStream oos = new ObjectOutputStream(fos)) {
+            oos.writeObject(this);
+            oos.flush();
+            long bytes = fos.getChannel().position();
+            IOStats.of(_directory).recordClose(_filename, bytes, _size, System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.table = _filename;
+                event.path = path;
+                event.bytes = bytes;
+                event.records = _size;
+                event.commit();
+            }
+        }
+    }
+
+    /** 中序遍历以{@code node}为根的子树，并跳过完全落在区间[low, high]之外的子树. */
+    private void collect(RBTNode<K, V> node, K low, K high, List<Map.Entry<K, V>> entries) {
+        if (node == NIL) { return; }
+        boolean aboveLow = !lessThan(node._key, low), belowHigh = !greaterThan(node._key, high);
+        if (aboveLow) { collect(node._left, low, high, entries); }
+        if (aboveLow && belowHigh) { entries.add(new AbstractMap.SimpleImmutableEntry<>(node._key, node._value)); }
+        if (belowHigh) { collect(node._right, low, high, entries); }
+    }
+
     /** 获取以{@code start} 为根节点的树中的最小键. */
     private K min(final RBTNode<K, V> start) {
         if (start == this.NIL) { return null; }
@@ -0,0 +1,33 @@
+package Main;
+
+import Index.BPlusTree;
+
+/**
+ * 存储引擎的配置，即{@link Executor}的构造参数. 由{@link Main}的启动参数给出，{@link Tuner}据此搜索并推荐配置.
+ * @param order B+树的阶M
+ * @param capacity 每张表的最大容量(记录条数)
+ * @param upperThreshold 表的容量上限因子，表的记录条数达到{@code upperThreshold * capacity}时分裂
+ * @param bufferCapacity 执行器缓冲区的容量
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public record EngineConfig(int order, int capacity, double upperThreshold, int bufferCapacity) {
+
+    /** 默认配置. */
+    public static final EngineConfig DEFAULT = new EngineConfig(16, 20, BPlusTree.DEFAULT_UPPERTHRESHOLD, 12);
+
+    /**
+     * 按该配置创建执行器.
+     * @param directory 表文件所在的目录
+     * @throws IllegalArgumentException 若配置非法
+     */
+    public Executor<String, String> newExecutor(String directory) throws IllegalArgumentException {
+        return new Executor<String, String>("B+-Tree", order, capacity, upperThreshold, bufferCapacity, directory);
+    }
+
+    /** 返回以该配置启动{@link Main}所需的参数. */
+    public String toArguments() {
+        return String.format("--M %d --capacity %d --threshold %s --buffer %d",
+                order, capacity, upperThreshold, bufferCapacity);
+    }
+}
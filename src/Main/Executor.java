@@ -1,46 +1,178 @@
 package Main;
 
+import KVTable.MemTable;
+import KVTable.RowCache;
 import KVTable.Table;
 import Index.Index;
 import Index.BPlusTree;
+import Index.Range;
+import Metrics.EngineEvents.BufferFlush;
+import Metrics.IOStats;
+import Metrics.Operation;
+import Metrics.OperationStats;
+import Metrics.OperationTrace;
+import Metrics.OperationTrace.Phase;
+import Metrics.SlowOpLog;
 import static Utils.Utils.*;
-import edu.princeton.cs.algs4.Stopwatch;
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
 
 /**
  * 用户输入的query语句的执行器. <p>
  * 由{@link Parser}解析用户输入的query语句后通过{@link Parser#parseWithExecutor()}执行<p>
  * Executor在初始化时会制定一个数据库的引擎层，当前仅支持基于B+树的引擎. <p>
+ * 缓冲区写满后会被原子地换成一个空的缓冲区，写满的缓冲区由后台线程写入存储引擎，写者无需等待. <p>
+ * 写操作(插入、更新、删除)需要由同一个线程发起；读操作可以与写操作在其它线程上并发进行. <p>
+ * 每次操作的耗时以纳秒精度记入{@link OperationStats}，可通过SHOW STATS语句查看；
+ * 表文件的读写记入数据目录的{@link IOStats}，可通过SHOW IO语句或{@link #ioDump()}查看；
+ * 设置了慢操作日志{@link SlowOpLog}时，耗时达到阈值的操作连同各阶段的耗时被写入日志. <p>
+ * 后台写入跟不上时，写操作按待写入的缓冲区个数被限流：积压达到减速阈值后每次写入被逐渐加长地延迟，
+ * 达到停写阈值后写入被阻塞，直到积压降到阈值以下，从而限制了缓冲区占用的内存.
+ * 等待的时间记入{@link Operation#STALL}. <p>
+ * 不再使用的执行器需要调用{@link #close()}，以结束后台写入线程与后台维护. <p>
  * @param <K> 存储引擎的键的类型.
  * @param <V> 存储引擎的值的类型.
  * @author Episode-Zhang
  * @version 1.0
  */
-public class Executor<K, V> {
+public class Executor<K, V> implements QueryExecutor<K, V>, AutoCloseable {
+
+    /** 默认的减速阈值、停写阈值与减速时每次写入的最大延迟. */
+    public static final int DEFAULT_SLOWDOWN_BACKLOG = 4, DEFAULT_STOP_BACKLOG = 8;
+    public static final long DEFAULT_MAX_DELAY_NANOS = 1_000_000L;
 
     /** 数据库的存储引擎. */
     private Index<K, V> _storageEngine;
 
     /** 数据在内存中的暂存区，始终位于所有数据表分块的右侧. */
-    private Table<K, V> _buffer;
+    private final AtomicReference<MemTable<K, V>> _buffer;
+
+    /** 已经写满、正在等待后台线程写入存储引擎的缓冲区，按写满的先后排列. */
+    private final ConcurrentLinkedDeque<MemTable<K, V>> _flushing;
+
+    /** 负责将写满的缓冲区写入存储引擎的后台线程. */
+    private final ExecutorService _flusher;
+
+    /** 最近一次提交给后台线程的写入任务. */
+    private Future<?> _lastFlush;
 
     /** 缓冲区的容量. */
     private int _bufferCapacity;
 
+    /** 存储引擎的表文件所在的目录. */
+    private final String _directory;
+
+    /** 数据目录的IO统计. 登记表只弱引用地持有它，由执行器持有以免在执行器存活期间被回收. */
+    private final IOStats _ioStats;
+
+    /** 各类操作的耗时统计，与存储引擎共享. */
+    private final OperationStats _stats;
+
+    /** 慢操作日志，为null时不记录. */
+    private volatile SlowOpLog _slowLog;
+
+    /** 存储引擎前的行缓存，为null时不缓存. */
+    private volatile RowCache<K, V> _rowCache;
+
+    /** 待写入的缓冲区个数达到该值时，写操作被延迟. */
+    private volatile int _slowdownBacklog;
+
+    /** 待写入的缓冲区个数达到该值时，写操作被阻塞. */
+    private volatile int _stopBacklog;
+
+    /** 减速时每次写入的最大延迟(纳秒)，积压越接近停写阈值延迟越长. */
+    private volatile long _maxDelayNanos;
+
+    /** 被延迟与被阻塞的写操作的次数. */
+    private final LongAdder _slowdowns, _stops;
+
+    /** 后台线程每写完一个缓冲区时通知被阻塞的写者. */
+    private final ReentrantLock _backlogLock;
+    private final Condition _backlogShrunk;
+
+    /** 后台写入失败的原因. 写入失败的缓冲区不会移出队列，被阻塞的写者据此报错而不是无限等待. */
+    private volatile Throwable _flushFailure;
+
     /**
      * query语句执行器的构造函数.
      * @param engineName 引擎的类型，当前版本为“B+-Tree”
      * @param order B+树的阶，或者称之为M
      * @param capacity B+树外部节点管理的表的最大容量
+     * @param bufferCapacity 缓冲区的容量
      * @throws IllegalArgumentException 若给出未知的存储引擎名
      */
     public Executor(String engineName, int order, int capacity, int bufferCapacity) throws IllegalArgumentException {
+        this(engineName, order, capacity, bufferCapacity, "./data");
+    }
+
+    /**
+     * query语句执行器的构造函数，存储引擎的表文件存放在给定的目录下.
+     * @param engineName 引擎的类型，当前版本为“B+-Tree”
+     * @param order B+树的阶，或者称之为M
+     * @param capacity B+树外部节点管理的表的最大容量
+     * @param bufferCapacity 缓冲区的容量
+     * @param directory 表文件所在的目录，不存在时会被创建
+     * @throws IllegalArgumentException 若给出未知的存储引擎名
+     */
+    public Executor(String engineName, int order, int capacity, int bufferCapacity, String directory)
+            throws IllegalArgumentException {
+        this(engineName, order, capacity, BPlusTree.DEFAULT_UPPERTHRESHOLD, bufferCapacity, directory);
+    }
+
+    /**
+     * query语句执行器的构造函数，可以指定表的容量上限因子.
+     * @param engineName 引擎的类型，当前版本为“B+-Tree”
+     * @param order B+树的阶，或者称之为M
+     * @param capacity B+树外部节点管理的表的最大容量
+     * @param upperThreshold 表的容量上限因子，表的记录条数达到{@code upperThreshold * capacity}时分裂
+     * @param bufferCapacity 缓冲区的容量
+     * @param directory 表文件所在的目录，不存在时会被创建
+     * @throws IllegalArgumentException 若给出未知的存储引擎名，或容量上限因子不在(0, 1]内
+     */
+    public Executor(String engineName, int order, int capacity, double upperThreshold, int bufferCapacity,
+                    String directory) throws IllegalArgumentException {
         if (!engineName.equals("B+-Tree")) {
             throw new IllegalArgumentException(String.format("未知的存储引擎名: %s", engineName));
         }
-        _storageEngine = new BPlusTree<K, V>(order, capacity);
-        _buffer = new Table<K, V>();
+        _stats = new OperationStats();
+        _storageEngine = new BPlusTree<K, V>(order, capacity, upperThreshold, _stats);
+        _buffer = new AtomicReference<>(new MemTable<K, V>());
+        _flushing = new ConcurrentLinkedDeque<>();
+        _flusher = Executors.newSingleThreadExecutor(task -> {
+            Thread flusher = new Thread(task, "buffer-flusher");
+            flusher.setDaemon(true);
+            return flusher;
+        });
         _bufferCapacity = bufferCapacity;
+        _directory = directory;
+        _ioStats = IOStats.of(directory);
+        _slowdownBacklog = DEFAULT_SLOWDOWN_BACKLOG;
+        _stopBacklog = DEFAULT_STOP_BACKLOG;
+        _maxDelayNanos = DEFAULT_MAX_DELAY_NANOS;
+        _slowdowns = new LongAdder();
+        _stops = new LongAdder();
+        _backlogLock = new ReentrantLock();
+        _backlogShrunk = _backlogLock.newCondition();
+        new File(_directory).mkdirs();
     }
 
     /**
@@ -49,8 +181,145 @@ public class Executor<K, V> {
      * @return 若该条记录应该写入内存中的缓冲区，则返回true，否则返回false
      */
     public boolean recordBelongToBuffer(K key) {
-        // 缓冲区维护的数据的范围始终在最右侧
-        return _storageEngine.empty() || greaterThan(key, _storageEngine.indexRange()._right);
+        // 缓冲区维护的数据的范围始终在最右侧，包括正在写入的缓冲区
+        K bound = bufferBound();
+        return bound == null || greaterThan(key, bound);
+    }
+
+    /** 返回各类操作的耗时统计. */
+    public OperationStats stats() { return _stats; }
+
+    /**
+     * 设置慢操作日志. 耗时达到日志阈值的操作连同各阶段的耗时被写入日志.
+     * @param slowLog 慢操作日志，为null时停止记录
+     */
+    public void setSlowOpLog(SlowOpLog slowLog) { _slowLog = slowLog; }
+
+    /**
+     * 设置存储引擎前的行缓存. 缓冲区中没有的记录先在缓存中查找，未命中时再读取存储引擎并填入缓存；
+     * 每次写入或删除都会使缓存中对应的记录失效.
+     * @param rowCache 行缓存，为null时停止缓存
+     */
+    public void setRowCache(RowCache<K, V> rowCache) { _rowCache = rowCache; }
+
+    /** 返回存储引擎前的行缓存，未设置时返回null. */
+    public RowCache<K, V> rowCache() { return _rowCache; }
+
+    /**
+     * 设置写操作的限流阈值. 待写入的缓冲区个数为b时：
+     * <ul>
+     *   <li>b &lt; slowdownBacklog：不限流；</li>
+     *   <li>slowdownBacklog &le; b &lt; stopBacklog：每次写入延迟
+     *       {@code maxDelay * (b - slowdownBacklog + 1) / (stopBacklog - slowdownBacklog + 1)}；</li>
+     *   <li>b &ge; stopBacklog：阻塞写入，直到b降到stopBacklog以下.</li>
+     * </ul>
+     * 阈值为{@link Integer#MAX_VALUE}时即关闭相应的限流.
+     * @param slowdownBacklog 减速阈值
+     * @param stopBacklog 停写阈值
+     * @param maxDelay 减速时每次写入的最大延迟
+     * @throws IllegalArgumentException 若阈值不为正数，减速阈值大于停写阈值，或最大延迟为负
+     */
+    public void setWriteStall(int slowdownBacklog, int stopBacklog, Duration maxDelay)
+            throws IllegalArgumentException {
+        if (slowdownBacklog <= 0 || stopBacklog < slowdownBacklog || maxDelay.isNegative()) {
+            String errorMsg = String.format("""
+                    Backlog thresholds should be positive with slowdown <= stop, and the delay non-negative. Got
+                    slowdown: %d
+                    stop: %d
+                    max delay: %s
+                    """, slowdownBacklog, stopBacklog, maxDelay);
+            throw new IllegalArgumentException(errorMsg);
+        }
+        _slowdownBacklog = slowdownBacklog;
+        _stopBacklog = stopBacklog;
+        _maxDelayNanos = maxDelay.toNanos();
+    }
+
+    /** 返回当前的限流状态：0为正常，1为减速，2为停写. */
+    public int writeStallState() {
+        int backlog = _flushing.size();
+        return backlog >= _stopBacklog ? 2 : backlog >= _slowdownBacklog ? 1 : 0;
+    }
+
+    /** 返回被延迟的写操作的次数. */
+    public long writeSlowdowns() { return _slowdowns.sum(); }
+
+    /** 返回被阻塞的写操作的次数. */
+    public long writeStops() { return _stops.sum(); }
+
+    /**
+     * 将存储引擎中表的分裂与页的重平衡移到后台线程，以不超过给定的速率进行.
+     * @param opsPerSecond 每秒最多进行的维护项数
+     * @throws IllegalArgumentException 若速率不为正数
+     * @see BPlusTree#startMaintenance(double)
+     */
+    public void startMaintenance(double opsPerSecond) throws IllegalArgumentException {
+        ((BPlusTree<K, V>) _storageEngine).startMaintenance(opsPerSecond);
+    }
+
+    /** 停止后台维护，并完成所有尚未进行的维护. */
+    public void stopMaintenance() throws IOException, ClassNotFoundException {
+        ((BPlusTree<K, V>) _storageEngine).stopMaintenance();
+    }
+
+    /** 返回等待后台维护的表与页的个数. */
+    public int maintenanceBacklog() { return ((BPlusTree<K, V>) _storageEngine).pendingMaintenance(); }
+
+    /** 返回后台因异常而放弃的维护项数. 后台维护未启动时返回0. */
+    public long maintenanceFailures() { return ((BPlusTree<K, V>) _storageEngine).maintenanceFailed(); }
+
+    /** 返回存储引擎中是否存在给定表名的数据表. */
+    public boolean hasTable(String tableName) { return _storageEngine.hasTable(tableName); }
+
+    /** 返回存储引擎中表的张数. */
+    public int tables() { return _storageEngine.size(); }
+
+    /** 返回存储引擎索引区的层数. */
+    public int height() { return _storageEngine.height(); }
+
+    /** 返回缓冲区中的记录条数. */
+    public int bufferSize() { return _buffer.get().size(); }
+
+    /** 返回缓冲区的容量. */
+    public int bufferCapacity() { return _bufferCapacity; }
+
+    /** 返回已经写满、正在等待写入存储引擎的缓冲区个数. */
+    public int flushBacklog() { return _flushing.size(); }
+
+    /** 返回数据目录的IO统计. 同一目录下的多个执行器共享统计. */
+    public IOStats ioStats() { return _ioStats; }
+
+    /** 以JSON的形式返回数据目录的IO统计以及读写放大，供脚本读取. */
+    public String ioDump() { return ioStats().toJson(_stats); }
+
+    /** 等待所有已经写满的缓冲区写入存储引擎. */
+    public void awaitFlush() throws IOException {
+        if (_lastFlush == null) { return; }
+        try {
+            _lastFlush.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待缓冲区写入时被中断", e);
+        } catch (ExecutionException e) {
+            throw new IOException("缓冲区写入存储引擎失败", e.getCause());
+        }
+    }
+
+    /**
+     * 关闭执行器：等待已经写满的缓冲区写入存储引擎，停止后台维护并完成剩余的维护，随后结束后台写入线程.
+     * 可以重复调用. 关闭后仍可以读取，但不能再写入；缓冲区中尚未写满的记录只保留在内存中.
+     * @throws IOException 若缓冲区写入存储引擎失败，或完成剩余的维护时读写表文件失败
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            awaitFlush();
+            stopMaintenance();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("完成剩余的维护时读取表文件失败", e);
+        } finally {
+            _flusher.shutdown();
+        }
     }
 
     /**
@@ -61,23 +330,14 @@ public class Executor<K, V> {
      * @throws IOException 发生IO异常
      * @throws ClassNotFoundException 发生反序列化异常
      */
+    @Override
     public String executeInsert(K key, V value) throws IOException, ClassNotFoundException {
-        Stopwatch sw = new Stopwatch();
-        boolean hitBuffer = false;
-        if (recordBelongToBuffer(key)) {
-            hitBuffer = true;
-            // 记录计入缓冲区
-            _buffer.put(key, value);
-            // 查看缓冲区是否达到临界容量
-            if (_buffer.size() == _bufferCapacity) {
-                _storageEngine.write(_buffer);
-                _buffer = new Table<K, V>();
-            }
-        } else {
-            _storageEngine.insert(key, value);
-        }
-        double timeInSeconds = sw.elapsedTime();
-        return String.format("插入记录耗时%.5fs，命中缓冲: %b\n", timeInSeconds, hitBuffer);
+        long start = System.nanoTime();
+        OperationTrace trace = OperationTrace.begin(start);
+        boolean hitBuffer = recordBelongToBuffer(key);
+        write(key, value);
+        long elapsed = finish(Operation.INSERT, key, null, start, trace);
+        return String.format("插入记录耗时%.5fs，命中缓冲: %b\n", elapsed / 1e9, hitBuffer);
     }
 
     /**
@@ -88,12 +348,14 @@ public class Executor<K, V> {
      * @throws IOException 发生IO异常
      * @throws ClassNotFoundException 发生反序列化异常
      */
+    @Override
     public String executeUpdate(K key, V value) throws IOException, ClassNotFoundException {
-        Stopwatch sw = new Stopwatch();
+        long start = System.nanoTime();
+        OperationTrace trace = OperationTrace.begin(start);
         boolean hitBuffer = recordBelongToBuffer(key);
-        executeInsert(key, value);
-        double timeInSeconds = sw.elapsedTime();
-        return String.format("更新记录耗时%.5fs，命中缓冲: %b\n", timeInSeconds, hitBuffer);
+        write(key, value);
+        long elapsed = finish(Operation.UPDATE, key, null, start, trace);
+        return String.format("更新记录耗时%.5fs，命中缓冲: %b\n", elapsed / 1e9, hitBuffer);
     }
 
     /**
@@ -102,55 +364,402 @@ public class Executor<K, V> {
      * @throws IOException 发生IO异常
      * @throws ClassNotFoundException 发生反序列化异常
      */
+    @Override
     public String executeDelete(K key) throws IOException, ClassNotFoundException {
-        Stopwatch sw = new Stopwatch();
-        boolean hitBuffer = false;
-        V deletedValue = null;
-        if (recordBelongToBuffer(key)) {
-            hitBuffer = true;
-            // 记录计入缓冲区
-            deletedValue = _buffer.delete(key);
-        } else {
-            deletedValue = _storageEngine.delete(key);
-        }
-        double timeInSeconds = sw.elapsedTime();
+        long start = System.nanoTime();
+        OperationTrace trace = OperationTrace.begin(start);
+        boolean hitBuffer = recordBelongToBuffer(key);
+        V deletedValue = remove(key);
+        long elapsed = finish(Operation.DELETE, key, null, start, trace);
         return deletedValue == null ? "目标记录不存在" :
-                String.format("删除记录耗时%.5fs，命中缓冲: %b\n", timeInSeconds, hitBuffer);
+                String.format("删除记录耗时%.5fs，命中缓冲: %b\n", elapsed / 1e9, hitBuffer);
     }
 
     /** 查看对应键的记录. */
+    @Override
     public String executeShowKey(K key) throws IOException, ClassNotFoundException {
-        Stopwatch sw = new Stopwatch();
-        boolean hitBuffer = false;
-        V targetValue = null;
-        if (recordBelongToBuffer(key)) {
-            hitBuffer = true;
-            // 记录计入缓冲区
-            targetValue = _buffer.get(key);
-        } else {
-            targetValue = _storageEngine.get(key);
+        long start = System.nanoTime();
+        OperationTrace trace = OperationTrace.begin(start);
+        boolean hitBuffer = true;
+        // 按 缓冲区 -> 正在写入的缓冲区 -> 存储引擎 的顺序查找，与记录的迁移方向一致，
+        // 因此即便查找过程中缓冲区被换下或写入完成，记录也不会被漏掉.
+        V targetValue = _buffer.get().get(key);
+        if (targetValue == null) { targetValue = getFromFlushing(key); }
+        OperationTrace.mark(Phase.BUFFER);
+        if (targetValue == null) {
+            hitBuffer = false;
+            targetValue = getFromStorage(key);
         }
-        double timeInSeconds = sw.elapsedTime();
+        long elapsed = finish(Operation.GET, key, null, start, trace);
         return targetValue == null ? "目标记录不存在" :
                 String.format("目标记录为 key: %s, value: %s\n" +
-                        "查询记录耗时%.5fs，命中缓冲: %b\n", key, targetValue, timeInSeconds, hitBuffer);
+                        "查询记录耗时%.5fs，命中缓冲: %b\n", key, targetValue, elapsed / 1e9, hitBuffer);
     }
 
     /** 查看对应表的视图 */
+    @Override
     public String executeShowTable(String tableName) throws IOException, ClassNotFoundException {
-        Stopwatch sw = new Stopwatch();
+        long start = System.nanoTime();
         String view = _storageEngine.tableView(tableName);
-        double timeInSeconds = sw.elapsedTime();
+        double timeInSeconds = (System.nanoTime() - start) / 1e9;
         return String.format("目标表的视图为\n%s\n" +
                 "查询记录耗时%.5fs\n", view, timeInSeconds);
     }
 
     /** 查看整个索引区的视图 */
+    @Override
     public String executeShowIndex() throws IOException, ClassNotFoundException {
-        Stopwatch sw = new Stopwatch();
+        long start = System.nanoTime();
         String view = _storageEngine.indexView();
-        double timeInSeconds = sw.elapsedTime();
+        double timeInSeconds = (System.nanoTime() - start) / 1e9;
         return String.format("索引区的视图为\n%s\n" +
                 "查询记录耗时%.5fs\n", view, timeInSeconds);
     }
+
+    /** 查看各类操作的耗时分位数与吞吐量. */
+    @Override
+    public String executeShowStats() {
+        RowCache<K, V> rowCache = _rowCache;
+        return String.format("运行统计为\n%s%s", _stats.report(), rowCache == null ? "" : rowCache.report());
+    }
+
+    /** 查看表文件的IO统计以及读写放大，列出读写字节数最多的10张表. */
+    @Override
+    public String executeShowIO() {
+        return String.format("IO统计为\n%s", ioStats().report(_stats, 10));
+    }
+
+    /**
+     * 查询键对应的值. 与{@link #executeShowKey(Object)}的查找顺序相同，但直接返回值，供网络服务等前端使用.
+     * @param key 待查询的键
+     * @return 键对应的值，记录不存在时返回null
+     * @throws IOException 发生IO异常
+     * @throws ClassNotFoundException 发生反序列化异常
+     */
+    public V get(K key) throws IOException, ClassNotFoundException {
+        long start = System.nanoTime();
+        OperationTrace trace = OperationTrace.begin(start);
+        V value = _buffer.get().get(key);
+        if (value == null) { value = getFromFlushing(key); }
+        OperationTrace.mark(Phase.BUFFER);
+        if (value == null) { value = getFromStorage(key); }
+        finish(Operation.GET, key, null, start, trace);
+        return value;
+    }
+
+    /**
+     * 写入一条记录，记录已存在时覆盖其值. 与{@link #executeInsert(Object, Object)}相同，但不返回格式化的结果.
+     * @throws IOException 发生IO异常
+     * @throws ClassNotFoundException 发生反序列化异常
+     */
+    public void put(K key, V value) throws IOException, ClassNotFoundException {
+        long start = System.nanoTime();
+        OperationTrace trace = OperationTrace.begin(start);
+        write(key, value);
+        finish(Operation.INSERT, key, null, start, trace);
+    }
+
+    /**
+     * 删除一条记录.
+     * @return 被删除记录的值，记录不存在时返回null
+     * @throws IOException 发生IO异常
+     * @throws ClassNotFoundException 发生反序列化异常
+     */
+    public V delete(K key) throws IOException, ClassNotFoundException {
+        long start = System.nanoTime();
+        OperationTrace trace = OperationTrace.begin(start);
+        V deleted = remove(key);
+        finish(Operation.DELETE, key, null, start, trace);
+        return deleted;
+    }
+
+    /** 将记录写入缓冲区或存储引擎，不统计耗时. */
+    private void write(K key, V value) throws IOException, ClassNotFoundException {
+        throttle();
+        try {
+            if (recordBelongToBuffer(key)) {
+                // 记录计入缓冲区
+                MemTable<K, V> buffer = _buffer.get();
+                buffer.put(key, value);
+                // 查看缓冲区是否达到临界容量
+                if (buffer.size() == _bufferCapacity) {
+                    flush(buffer);
+                }
+                OperationTrace.mark(Phase.BUFFER);
+            } else {
+                awaitFlushIfPending(key);
+                OperationTrace.mark(Phase.WAIT);
+                _storageEngine.insert(key, value);
+            }
+        } finally {
+            // 写入完成之后才使缓存失效，此后的读者不会再读到旧值
+            invalidateCache(key);
+        }
+    }
+
+    /** 从缓冲区或存储引擎中删除记录，不统计耗时. */
+    private V remove(K key) throws IOException, ClassNotFoundException {
+        try {
+            if (recordBelongToBuffer(key)) {
+                V deleted = _buffer.get().delete(key);
+                OperationTrace.mark(Phase.BUFFER);
+                return deleted;
+            }
+            awaitFlushIfPending(key);
+            OperationTrace.mark(Phase.WAIT);
+            return _storageEngine.delete(key);
+        } finally {
+            invalidateCache(key);
+        }
+    }
+
+    /**
+     * 经由行缓存读取存储引擎中的记录. 未命中时先取得键的版本戳再读取存储引擎，
+     * 若其间有写操作使该键失效，读到的值不会被填入缓存.
+     */
+    private V getFromStorage(K key) throws IOException, ClassNotFoundException {
+        RowCache<K, V> rowCache = _rowCache;
+        if (rowCache == null) { return _storageEngine.get(key); }
+        V value = rowCache.get(key);
+        if (value != null) { return value; }
+        long stamp = rowCache.stamp(key);
+        value = _storageEngine.get(key);
+        if (value != null) { rowCache.fill(key, value, stamp); }
+        return value;
+    }
+
+    /** 使行缓存中对应键的记录失效. */
+    private void invalidateCache(K key) {
+        RowCache<K, V> rowCache = _rowCache;
+        if (rowCache != null) { rowCache.invalidate(key); }
+    }
+
+    /**
+     * 按键的顺序返回闭区间[low, high]内的所有记录. 区间的端点为null时表示该侧无界.
+     * <p>
+     * 依次合并存储引擎、正在写入的缓冲区(先写满的在前)以及缓冲区中的记录，后合并的覆盖先合并的，
+     * 因此正在写入存储引擎的记录不会重复出现.
+     * @throws IOException 发生IO异常
+     * @throws ClassNotFoundException 发生反序列化异常
+     */
+    public List<Map.Entry<K, V>> scan(K low, K high) throws IOException, ClassNotFoundException {
+        long start = System.nanoTime();
+        OperationTrace trace = OperationTrace.begin(start);
+        TreeMap<K, V> records = new TreeMap<>((k1, k2) -> compare(k1, k2));
+        if (!_storageEngine.empty()) {
+            Range<K> range = _storageEngine.indexRange();
+            K from = low == null ? range._left : low, to = high == null ? range._right : high;
+            if (!lessThan(to, from)) {
+                try (Stream<Map.Entry<K, V>> stream = _storageEngine.stream(from, to, false)) {
+                    stream.forEach(record -> records.put(record.getKey(), record.getValue()));
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+        }
+        // 范围查询中读取并合并表的耗时计入OPEN
+        OperationTrace.mark(Phase.OPEN);
+        for (MemTable<K, V> flushing : _flushing) { collect(flushing, low, high, records); }
+        collect(_buffer.get(), low, high, records);
+        OperationTrace.mark(Phase.BUFFER);
+        finish(Operation.SCAN, low, high, start, trace);
+        return new ArrayList<>(records.entrySet());
+    }
+
+    /**
+     * 按键的顺序返回键严格大于after的前limit条记录，after为null时从最小的键开始. 用于分批遍历：
+     * 以上一批最后一条记录的键作为下一批的after，每批的开销只与批的大小有关，且不受其间插入与删除的影响.
+     * <p>
+     * 存储引擎按表惰性地读取，取够limit条后即停止；缓冲区中的记录同样只取前limit条，再与之归并.
+     * @param after 上一批最后一条记录的键
+     * @param limit 本批至多返回的记录条数
+     * @throws IOException 发生IO异常
+     * @throws ClassNotFoundException 发生反序列化异常
+     * @throws IllegalArgumentException 若limit不为正数
+     */
+    public List<Map.Entry<K, V>> scanAfter(K after, int limit)
+            throws IOException, ClassNotFoundException, IllegalArgumentException {
+        if (limit <= 0) {
+            String errorMsg = String.format("""
+                    The limit of a scan should be positive. Got
+                    limit: %d
+                    """, limit);
+            throw new IllegalArgumentException(errorMsg);
+        }
+        long start = System.nanoTime();
+        OperationTrace trace = OperationTrace.begin(start);
+        TreeMap<K, V> records = new TreeMap<>((k1, k2) -> compare(k1, k2));
+        if (!_storageEngine.empty()) {
+            Range<K> range = _storageEngine.indexRange();
+            K from = after == null ? range._left : after;
+            if (!lessThan(range._right, from)) {
+                try (Stream<Map.Entry<K, V>> stream = _storageEngine.stream(from, range._right, false)) {
+                    stream.filter(record -> after == null || greaterThan(record.getKey(), after))
+                            .limit(limit)
+                            .forEachOrdered(record -> records.put(record.getKey(), record.getValue()));
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+        }
+        OperationTrace.mark(Phase.OPEN);
+        for (MemTable<K, V> flushing : _flushing) { collectAfter(flushing, after, limit, records); }
+        collectAfter(_buffer.get(), after, limit, records);
+        OperationTrace.mark(Phase.BUFFER);
+        finish(Operation.SCAN, after, null, start, trace);
+        List<Map.Entry<K, V>> batch = new ArrayList<>(Math.min(limit, records.size()));
+        for (Map.Entry<K, V> record : records.entrySet()) {
+            if (batch.size() == limit) { break; }
+            batch.add(record);
+        }
+        return batch;
+    }
+
+    /**
+     * 返回缓冲区与存储引擎的分界：存储引擎以及正在写入的缓冲区中最大的键. 大于它的键属于缓冲区.
+     * @return 分界处的键，若存储引擎与正在写入的缓冲区均为空则返回null.
+     */
+    private K bufferBound() {
+        K bound = _storageEngine.empty() ? null : _storageEngine.indexRange()._right;
+        // 后写满的缓冲区中的键总是更大
+        MemTable<K, V> latest = _flushing.peekLast();
+        K flushingMax = latest == null ? null : latest.maxKey();
+        if (flushingMax != null && (bound == null || greaterThan(flushingMax, bound))) {
+            bound = flushingMax;
+        }
+        return bound;
+    }
+
+    /**
+     * 按待写入的缓冲区个数限流，见{@link #setWriteStall}. 等待的时间记入{@link Operation#STALL}与阶段WAIT.
+     * @throws IOException 若停写期间后台写入失败，积压不会再减少
+     */
+    private void throttle() throws IOException {
+        // 绝大多数时刻没有积压，此时不必遍历队列
+        if (_flushing.isEmpty()) { return; }
+        int backlog = _flushing.size(), slowdown = _slowdownBacklog, stop = _stopBacklog;
+        if (backlog < slowdown) { return; }
+        long start = System.nanoTime();
+        if (backlog < stop) {
+            _slowdowns.increment();
+            long delay = _maxDelayNanos * (backlog - slowdown + 1) / ((long) stop - slowdown + 1);
+            LockSupport.parkNanos(delay);
+        } else {
+            _stops.increment();
+            _backlogLock.lock();
+            try {
+                while (_flushing.size() >= _stopBacklog) {
+                    if (_flushFailure != null) { throw new IOException("缓冲区写入存储引擎失败", _flushFailure); }
+                    // 限时等待，以便察觉阈值的调整
+                    _backlogShrunk.await(10, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("等待缓冲区写入时被中断", e);
+            } finally {
+                _backlogLock.unlock();
+            }
+        }
+        _stats.record(Operation.STALL, System.nanoTime() - start);
+        OperationTrace.mark(Phase.WAIT);
+    }
+
+    /**
+     * 将写满的缓冲区换下，并交给后台线程写入存储引擎. 写满的缓冲区先加入待写入队列再换上新的
+     * 缓冲区，从而保证并发的读者在任意时刻都至少能在其中一处找到记录.
+     */
+    private void flush(MemTable<K, V> fullBuffer) {
+        _flushing.addLast(fullBuffer);
+        _buffer.set(new MemTable<K, V>());
+        _lastFlush = _flusher.submit(() -> {
+            BufferFlush event = new BufferFlush();
+            event.begin();
+            long start = System.nanoTime();
+            OperationTrace trace = OperationTrace.begin(start);
+            Table<K, V> table = fullBuffer.toTable(_directory);
+            try {
+                _storageEngine.write(table);
+            } catch (IOException | RuntimeException e) {
+                _flushFailure = e;
+                throw e;
+            }
+            finish(Operation.FLUSH, table.name(), null, start, trace);
+            event.end();
+            if (event.shouldCommit()) {
+                event.table = table.name();
+                event.records = fullBuffer.size();
+                event.backlog = _flushing.size();
+                event.commit();
+            }
+            // 写入完成后再移出队列，在此之前的读者仍可以在缓冲区中找到记录
+            _flushing.remove(fullBuffer);
+            _backlogLock.lock();
+            try {
+                _backlogShrunk.signalAll();
+            } finally {
+                _backlogLock.unlock();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 结束一次操作：记录耗时，耗时达到阈值时提交给慢操作日志.
+     * @param operation 操作的类型
+     * @param key 操作的键，范围查询时为区间的左端点
+     * @param high 范围查询时为区间的右端点，其余操作为null
+     * @param start 操作开始的时刻
+     * @param trace 当前线程上的阶段耗时
+     * @return 操作的耗时(纳秒)
+     */
+    private long finish(Operation operation, Object key, Object high, long start, OperationTrace trace) {
+        long elapsed = System.nanoTime() - start;
+        trace.end();
+        _stats.record(operation, elapsed);
+        SlowOpLog slowLog = _slowLog;
+        if (slowLog != null && slowLog.isSlow(elapsed)) {
+            String target = operation == Operation.SCAN ? String.format("[%s,%s]", key, high) : String.valueOf(key);
+            slowLog.submit(operation, target, elapsed, trace);
+        }
+        return elapsed;
+    }
+
+    /** 将缓冲区中落在区间[low, high]内的记录放入records. 端点为null时表示该侧无界. */
+    private void collect(MemTable<K, V> buffer, K low, K high, TreeMap<K, V> records) {
+        for (Map.Entry<K, V> record : buffer.entries(low, high)) {
+            records.put(record.getKey(), record.getValue());
+        }
+    }
+
+    /** 将缓冲区中键严格大于after的前limit条记录合并到records中. */
+    private void collectAfter(MemTable<K, V> buffer, K after, int limit, TreeMap<K, V> records) {
+        int taken = 0;
+        for (Map.Entry<K, V> record : buffer.entries(after, null)) {
+            if (after != null && !greaterThan(record.getKey(), after)) { continue; }
+            if (taken++ == limit) { break; }
+            records.put(record.getKey(), record.getValue());
+        }
+    }
+
+    /** 在正在写入存储引擎的缓冲区中查找记录，后写满的缓冲区优先. */
+    private V getFromFlushing(K key) {
+        // 绝大多数时刻没有正在写入的缓冲区，此时不必构造迭代器
+        if (_flushing.isEmpty()) { return null; }
+        Iterator<MemTable<K, V>> it = _flushing.descendingIterator();
+        while (it.hasNext()) {
+            V value = it.next().get(key);
+            if (value != null) { return value; }
+        }
+        return null;
+    }
+
+    /**
+     * 若给定的键落在正在写入存储引擎的缓冲区的范围内，则等待写入完成后再修改存储引擎.
+     * 只有紧挨着缓冲区的少量键会进入这一分支.
+     */
+    private void awaitFlushIfPending(K key) throws IOException {
+        if (_flushing.isEmpty()) { return; }
+        K engineBound = _storageEngine.empty() ? null : _storageEngine.indexRange()._right;
+        if (engineBound == null || greaterThan(key, engineBound)) { awaitFlush(); }
+    }
 }
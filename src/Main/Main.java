@@ -1,10 +1,20 @@
 package Main;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import KVTable.RowCache;
 import Main.Parser;
+import Metrics.SlowOpLog;
+import Server.BinaryServer;
+import Server.MetricsServer;
+import Server.RespServer;
 
 public class Main {
 
@@ -15,8 +25,8 @@ public class Main {
                 " - 同一类型数据的插入、删除、查询、修改\n" +
                 " - 同时利用了内存与磁盘，支持大批量数据的操作\n" +
                 " - 单表数据量过大时会自动剖分，负载均衡\n" +
+                " - 按键的哈希值分片，多个分片并发读写数据(--shards)\n" +
                 "遗憾的是，它不支持：\n" +
-                " - 多线程并发读写数据\n" +
                 " - 事务\n" +
                 " - 非正常退出(如断电、程序崩溃)下的数据恢复\n\n" +
                 "你可以输入\"help\"来获取详细操作说明\n" +
@@ -35,41 +45,222 @@ public class Main {
                     4.1 查看键对应的值: SHOW KEY {key}
                     4.2 查看表名对应的视图: SHOW TABLE {tableFileName}
                     4.3 查看索引区的视图: SHOW INDEX
+                    4.4 查看各类操作的耗时分位数与吞吐量: SHOW STATS
+                    4.5 查看表文件的读写统计与读写放大: SHOW IO
                 注: 所有的关键字均大小写不敏感
                 """);
     }
 
-    /** 从文件中加载预先准备好的数据 */
-    public static void loadDemo(Parser parser) throws IOException, ClassNotFoundException {
+    /**
+     * 从文件中加载预先准备好的数据. 所有语句先全部提交给异步执行流水线{@link RequestPipeline}，
+     * 再按提交的顺序输出执行结果.
+     * @param trace 录制加载的语句的轨迹写入器，为null时不录制
+     */
+    public static void loadDemo(QueryExecutor<String, String> executor, TraceWriter trace) throws IOException {
         String fileName = "./test/testDataSet.txt";
-        // 从文件中读取指令并逐行输入到命令行中
-        File file = new File(fileName);
-        Scanner scanner = new Scanner(file);
-        while (scanner.hasNextLine()) {
-            String line = scanner.nextLine();
-            System.setIn(new ByteArrayInputStream(line.getBytes()));
-            parser.setUserInput(line);
-            parser.parseWithExecutor();
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        try (Scanner scanner = new Scanner(new File(fileName));
+             RequestPipeline pipeline = new RequestPipeline(executor, 1024, 4)) {
+            pipeline.setTrace(trace);
+            while (scanner.hasNextLine()) {
+                results.add(pipeline.submit(scanner.nextLine()));
+            }
+            for (CompletableFuture<String> result : results) {
+                try {
+                    System.out.println(result.join());
+                } catch (CompletionException e) {
+                    System.out.println(e.getCause().getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 根据启动参数创建执行器. 以{@code --shards N}启动时按键的哈希值将数据划分到N个分片中，
+     * 否则使用单个存储引擎.
+     */
+    private static QueryExecutor<String, String> createExecutor(String[] args, EngineConfig config) {
+        if (args.length == 2 && args[0].equals("--shards")) {
+            int shards = Integer.parseInt(args[1]);
+            return new ShardedExecutor<String, String>(shards, config.order(), config.capacity(),
+                    config.upperThreshold(), config.bufferCapacity(), 1024);
+        }
+        return config.newExecutor("./data");
+    }
+
+    /**
+     * 从启动参数中取出存储引擎的配置{@code --M}、{@code --capacity}、{@code --threshold}与{@code --buffer}，
+     * 未给出的项取{@link EngineConfig#DEFAULT}中的值. 推荐的配置可由{@link Tuner}得到.
+     * @param args 启动参数，取出的选项会从中删除
+     */
+    private static EngineConfig takeConfig(List<String> args) {
+        EngineConfig defaults = EngineConfig.DEFAULT;
+        String order = takeArgument(args, "--M"), capacity = takeArgument(args, "--capacity");
+        String threshold = takeArgument(args, "--threshold"), buffer = takeArgument(args, "--buffer");
+        return new EngineConfig(
+                order == null ? defaults.order() : Integer.parseInt(order),
+                capacity == null ? defaults.capacity() : Integer.parseInt(capacity),
+                threshold == null ? defaults.upperThreshold() : Double.parseDouble(threshold),
+                buffer == null ? defaults.bufferCapacity() : Integer.parseInt(buffer));
+    }
+
+    /**
+     * 从启动参数中取出的、创建执行器之后才应用的选项.
+     * @param metricsPort Prometheus指标服务端的端口，为负数时不启动
+     * @param slowLogMillis 慢操作的阈值(毫秒)，为负数时不记录
+     * @param writeStall 形如{@code SLOWDOWN,STOP}的写入限流阈值，为null时使用默认值
+     * @param maintenanceRate 后台维护每秒最多进行的次数，不为正数时不启动
+     * @param rowCache 行缓存的容量(记录条数)，不为正数时不设置
+     */
+    private record RuntimeOptions(int metricsPort, int slowLogMillis, String writeStall, int maintenanceRate,
+                                  int rowCache) {
+
+        /**
+         * 从启动参数中取出{@code --metrics-port}、{@code --slow-log}、{@code --write-stall}、
+         * {@code --maintenance-rate}与{@code --row-cache}.
+         * @param args 启动参数，取出的选项会从中删除
+         */
+        private static RuntimeOptions take(List<String> args) {
+            return new RuntimeOptions(takeOption(args, "--metrics-port"), takeOption(args, "--slow-log"),
+                    takeArgument(args, "--write-stall"), takeOption(args, "--maintenance-rate"),
+                    takeOption(args, "--row-cache"));
         }
-        scanner.close();
+    }
+
+    /** 返回执行器所包含的存储引擎的执行器，分片执行器返回其每个分片. */
+    private static List<Executor<String, String>> executors(QueryExecutor<String, String> executor) {
+        return executor instanceof ShardedExecutor<String, String> sharded ?
+                sharded.executors() : List.of((Executor<String, String>) executor);
+    }
+
+    /** 将启动参数中的选项应用到执行器上，分片执行器的每个分片分别应用. */
+    private static void configure(QueryExecutor<String, String> executor, RuntimeOptions options) throws IOException {
+        List<Executor<String, String>> executors = executors(executor);
+        if (options.metricsPort() >= 0) { startMetrics(options.metricsPort(), executors); }
+        if (options.slowLogMillis() >= 0) { startSlowLog(options.slowLogMillis(), executors); }
+        if (options.writeStall() != null) { setWriteStall(options.writeStall(), executors); }
+        if (options.maintenanceRate() > 0) {
+            for (Executor<String, String> e : executors) { e.startMaintenance(options.maintenanceRate()); }
+        }
+        if (options.rowCache() > 0) {
+            for (Executor<String, String> e : executors) {
+                e.setRowCache(new RowCache<String, String>(options.rowCache()));
+            }
+        }
+    }
+
+    /**
+     * 在给定端口上启动Prometheus指标服务端.
+     * @param port 监听的端口
+     * @param executors 被导出的执行器，每个分片分别导出
+     */
+    private static void startMetrics(int port, List<Executor<String, String>> executors) throws IOException {
+        MetricsServer server = new MetricsServer(executors, port);
+        server.start();
+        System.out.printf("指标导出于 http://127.0.0.1:%d/metrics\n", server.port());
+    }
+
+    /**
+     * 为执行器设置慢操作日志，写入当前目录下的slow.log.
+     * @param thresholdMillis 慢操作的阈值(毫秒)
+     * @param executors 执行器，所有分片共用同一份日志
+     */
+    private static void startSlowLog(int thresholdMillis, List<Executor<String, String>> executors) throws IOException {
+        SlowOpLog slowLog = new SlowOpLog("./slow.log", Duration.ofMillis(thresholdMillis), 16 << 20, 5);
+        for (Executor<String, String> e : executors) { e.setSlowOpLog(slowLog); }
+        System.out.printf("耗时不少于%dms的操作记录于./slow.log\n", thresholdMillis);
+    }
+
+    /**
+     * 设置执行器的写入限流阈值.
+     * @param thresholds 形如{@code SLOWDOWN,STOP}的减速阈值与停写阈值(待写入的缓冲区个数)
+     * @param executors 执行器，每个分片分别限流
+     */
+    private static void setWriteStall(String thresholds, List<Executor<String, String>> executors) {
+        String[] parts = thresholds.split(",");
+        int slowdown = Integer.parseInt(parts[0].trim()), stop = Integer.parseInt(parts[1].trim());
+        for (Executor<String, String> e : executors) {
+            e.setWriteStall(slowdown, stop, Duration.ofNanos(Executor.DEFAULT_MAX_DELAY_NANOS));
+        }
+    }
+
+    /**
+     * 从启动参数中取出形如{@code name N}的选项.
+     * @param args 启动参数，取出的选项会从中删除
+     * @param name 选项名
+     * @return 选项的值，不存在时返回-1
+     */
+    private static int takeOption(List<String> args, String name) {
+        String value = takeArgument(args, name);
+        return value == null ? -1 : Integer.parseInt(value);
+    }
+
+    /**
+     * 从启动参数中取出形如{@code name value}的选项.
+     * @param args 启动参数，取出的选项会从中删除
+     * @param name 选项名
+     * @return 选项的值，不存在时返回null
+     */
+    private static String takeArgument(List<String> args, String name) {
+        int index = args.indexOf(name);
+        if (index < 0 || index + 1 >= args.size()) { return null; }
+        String value = args.get(index + 1);
+        args.subList(index, index + 2).clear();
+        return value;
     }
 
     public static void main(String[] args) throws IOException, ClassNotFoundException {
-        greeting();
-        // 初始化解析器与执行器
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        // 以--metrics-port N启动时另外在本机导出Prometheus指标，以--slow-log N启动时记录耗时不少于N毫秒的操作，
+        // 以--write-stall SLOWDOWN,STOP启动时调整写入限流的阈值(默认为4,8)，
+        // 以--maintenance-rate N启动时表的分裂与页的重平衡由后台线程以每秒至多N次的速率进行，
+        // 以--row-cache N启动时在存储引擎前设置容量为N条记录的行缓存(统计见SHOW STATS)，
+        // 它们都可以与其它参数组合
+        RuntimeOptions runtime = RuntimeOptions.take(options);
+        // 以--trace FILE启动时将命令行中执行的语句(包括load demo加载的语句)录制到轨迹文件，可由TraceReplay回放
+        String tracePath = takeArgument(options, "--trace");
+        // 以--M、--capacity、--threshold与--buffer指定存储引擎的配置，推荐值可由Tuner给出
+        EngineConfig config = takeConfig(options);
+        args = options.toArray(new String[0]);
+        // 以--port N启动时作为Redis协议的网络服务端运行，以--binary-port N启动时作为二进制协议的网络服务端运行，
+        // 二者都不进入命令行，且只使用单个存储引擎
+        String serverMode = args.length == 2 && (args[0].equals("--port") || args[0].equals("--binary-port"))
+                ? args[0] : null;
+        if (serverMode == null) { greeting(); }
+        Executor<String, String> single = serverMode == null ? null : config.newExecutor("./data");
+        QueryExecutor<String, String> bpt_engine = single != null ? single : createExecutor(args, config);
+        configure(bpt_engine, runtime);
+        if ("--port".equals(serverMode)) {
+            RespServer server = new RespServer(single, Integer.parseInt(args[1]));
+            System.out.printf("正在监听 127.0.0.1:%d\n", server.port());
+            server.serve();
+            return;
+        }
+        if ("--binary-port".equals(serverMode)) {
+            BinaryServer server = new BinaryServer(single, Integer.parseInt(args[1]));
+            server.start();
+            System.out.printf("正在监听 127.0.0.1:%d，虚拟线程: %b\n", server.port(), server.virtualThreads());
+            return;
+        }
+        // 初始化解析器
         Scanner sc = new Scanner(System.in);
-        Executor<String, String> bpt_engine = new Executor<String, String>("B+-Tree", 16, 20, 12);
         Parser parser = new Parser();
         parser.setExecutor(bpt_engine);
+        TraceWriter trace = tracePath == null ? null : new TraceWriter(tracePath);
+        parser.setTrace(trace);
         // 事件循环
         while (true) {
             String input = sc.nextLine();
             if (input.equals("exit")) {
+                if (trace != null) {
+                    trace.close();
+                    System.out.printf("已录制%d条语句于%s\n", trace.records(), tracePath);
+                }
                 break;
             } else if (input.equals("help")) {
                 help();
             } else if (input.equals("load demo")) {
-                loadDemo(parser);
+                loadDemo(bpt_engine, trace);
             }
             else {
                 parser.setUserInput(input);
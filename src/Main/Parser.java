@@ -24,7 +24,10 @@ public class Parser {
     private Matcher _matcher;
 
     /** 用户输入语句的执行器. */
-    private Executor<String, String> _executor;
+    private QueryExecutor<String, String> _executor;
+
+    /** 录制执行的语句的轨迹，为null时不录制. */
+    private TraceWriter _trace;
 
     /** 设置待解析的用户输入. */
     public void setUserInput(String userInput) {
@@ -32,33 +35,53 @@ public class Parser {
     }
 
     /** 设置执行器. */
-    public void setExecutor(Executor<String, String> executor) {
+    public void setExecutor(QueryExecutor<String, String> executor) {
         _executor = executor;
     }
 
+    /** 设置录制轨迹的写入器，此后经由{@link #parseWithExecutor()}执行的语句都会被录制. 为null时停止录制. */
+    public void setTrace(TraceWriter trace) {
+        _trace = trace;
+    }
+
     /** 解析用户输入的同时将关键字与变量提交给执行器. */
     public void parseWithExecutor() throws IOException, ClassNotFoundException {
+        Statement statement = parse();
+        if (statement == null) {
+            System.out.println("不支持的命令，请输入help命令查看更多.");
+            return;
+        }
+        if (_trace != null) { _trace.append(statement); }
+        String res = statement.executeOn(_executor);
+        System.out.println(res);
+    }
+
+    /**
+     * 解析用户输入，但不执行.
+     * @return 解析得到的语句，若不是支持的命令则返回null
+     * @throws RuntimeException 若用户输入的query语句不合语法
+     */
+    public Statement parse() {
         if (_userInput.startsWith("insert")) {
-            parseInsert();
+            return parseInsert();
         } else if (_userInput.startsWith("update")) {
-            parseUpdate();
+            return parseUpdate();
         } else if (_userInput.startsWith("delete")) {
-            parseDelete();
+            return parseDelete();
         } else if (_userInput.startsWith("show")) {
-            parseShow();
-        } else {
-            System.out.println("不支持的命令，请输入help命令查看更多.");
+            return parseShow();
         }
+        return null;
     }
 
     /**
-     * 解析用户的插入query，并提交给执行器{@link Executor}.<p>
+     * 解析用户的插入query.<p>
      * 插入query的形式类似于(关键字大小写不敏感):<p>
      * INSERT {@code {key}} AS {@code (val1, val2, ...)}
      * <p>
      * @throws RuntimeException 若用户输入的insert query语句不合语法
      */
-    private void parseInsert() throws IOException, ClassNotFoundException {
+    private Statement parseInsert() {
         // 匹配查询语句
         final String insertRule = "^insert\\s[a-zA-Z0-9 \\u0000-\\uffff]+\\sas\\s[a-zA-Z0-9 \\u0000-\\uffff]+";
         _rule = insertRule;
@@ -80,19 +103,17 @@ public class Parser {
         final int keyIndex = 1;
         String key = (query.split(" "))[keyIndex];
         String value = valueMatcher.group(0);
-        // 提交给Executor
-        String res = _executor.executeInsert(key, value);
-        System.out.println(res);
+        return new Statement(Statement.Type.INSERT, key, value);
     }
 
     /**
-     * 解析用户的更新query，并提交给执行器{@link Executor}.<p>
+     * 解析用户的更新query.<p>
      * 更新query的形式类似于(关键字大小写不敏感):<p>
      * UPDATE {@code {key}} AS {@code (val1, val2, ...)}
      * <p>
      * @throws RuntimeException 若用户输入的update query语句不合语法
      */
-    private void parseUpdate() throws IOException, ClassNotFoundException {
+    private Statement parseUpdate() {
         // 匹配更新语句
         final String updateRule = "^update\\s[a-zA-Z0-9 \\u0000-\\uffff]+\\sas\\s[a-zA-Z0-9 \\u0000-\\uffff]+";
         _rule = updateRule;
@@ -114,19 +135,17 @@ public class Parser {
         final int keyIndex = 1;
         String key = (query.split(" "))[keyIndex];
         String value = valueMatcher.group(0);
-        // 提交给Executor
-        String res = _executor.executeUpdate(key, value);
-        System.out.println(res);
+        return new Statement(Statement.Type.UPDATE, key, value);
     }
 
     /**
-     * 解析用户的删除query，并提交给执行器{@link Executor}.<p>
+     * 解析用户的删除query.<p>
      * 删除query的形式类似于(关键字大小写不敏感):<p>
      * DELETE {@code {key}}
      * <p>
      * @throws RuntimeException 若用户输入的delete query语句不合语法
      */
-    private void parseDelete() throws IOException, ClassNotFoundException {
+    private Statement parseDelete() {
         // 匹配更新语句
         final String deleteRule = "^delete\\s[a-zA-Z0-9 \\u0000-\\uffff]+";
         _rule = deleteRule;
@@ -139,52 +158,42 @@ public class Parser {
         String query = _matcher.group(0);
         final int keyIndex = 1;
         String key = (query.split(" "))[keyIndex];
-        // 提交给Executor
-        String res = _executor.executeDelete(key);
-        System.out.println(res);
+        return new Statement(Statement.Type.DELETE, key, null);
     }
 
     /**
-     * 解析用户的查看query，并提交给执行器{@link Executor}.<p>
-     * 查看query类型有3种，其形式类似于(关键字大小写不敏感):<p>
+     * 解析用户的查看query.<p>
+     * 查看query类型有5种，其形式类似于(关键字大小写不敏感):<p>
      *   1. 查看某个键的值：SHOW KEY {@code {key}} <p>
      *   2. 查看某张表的视图：SHOW TABLE {@code {tableName}} <p>
-     *   3. 查看索引的视图：SHOW INDEX
+     *   3. 查看索引的视图：SHOW INDEX <p>
+     *   4. 查看运行统计：SHOW STATS <p>
+     *   5. 查看IO统计：SHOW IO
      * <p>
      * @throws RuntimeException 若用户输入的show query语句不合语法
      */
-    private void parseShow() throws IOException, ClassNotFoundException {
+    private Statement parseShow() {
         // 配置每种类型的SHOW对应的规则
         String[] rules = { "^show key\\s[a-zA-Z0-9 \\u0000-\\uffff]+",
                 "^show table\\s[a-zA-Z0-9 \\u0000-\\uffff]+",
-                "^show index\\s*" };
+                "^show index\\s*",
+                "^show stats\\s*",
+                "^show io\\s*" };
         for (int i = 0; i < rules.length; i++) {
             _pattern = Pattern.compile(rules[i]);
             _matcher = _pattern.matcher(_userInput);
             if (!_matcher.find()) {
                 continue;
             }
-            // 匹配命中，根据不同的show语句调度执行器
+            // 匹配命中，根据不同的show语句生成对应的语句
             final int keyIndex = 2;
-            String res = null;
-            switch (i) {
-                case 0 -> {
-                    String key = (_userInput.split(" "))[keyIndex];
-                    // 提交给Executor
-                    res = _executor.executeShowKey(key);
-                }
-                case 1 -> {
-                    String table = (_userInput.split(" "))[keyIndex];
-                    // 提交给Executor
-                    res = _executor.executeShowTable(table);
-                }
-                case 2 -> {
-                    // 提交给Executor
-                    res = _executor.executeShowIndex();
-                }
-            }
-            System.out.println(res);
-            return;
+            return switch (i) {
+                case 0 -> new Statement(Statement.Type.SHOW_KEY, (_userInput.split(" "))[keyIndex], null);
+                case 1 -> new Statement(Statement.Type.SHOW_TABLE, (_userInput.split(" "))[keyIndex], null);
+                case 2 -> new Statement(Statement.Type.SHOW_INDEX, null, null);
+                case 3 -> new Statement(Statement.Type.SHOW_STATS, null, null);
+                default -> new Statement(Statement.Type.SHOW_IO, null, null);
+            };
         }
         // for语句未命中，则抛出异常
         throw new RuntimeException("查看语句的语法非法！请输入\"help\"命令查看详情.");
@@ -0,0 +1,39 @@
+package Main;
+
+import java.io.IOException;
+
+/**
+ * query语句执行器的接口. <p>
+ * 解析器{@link Parser}只依赖该接口，单个存储引擎的{@link Executor}与按键分片的
+ * {@link ShardedExecutor}都可以作为其执行器. <p>
+ * @param <K> 存储引擎的键的类型.
+ * @param <V> 存储引擎的值的类型.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public interface QueryExecutor<K, V> {
+
+    /** 执行记录的插入操作，返回执行结果. */
+    String executeInsert(K key, V value) throws IOException, ClassNotFoundException;
+
+    /** 执行记录的更新操作，返回执行结果. */
+    String executeUpdate(K key, V value) throws IOException, ClassNotFoundException;
+
+    /** 执行记录的删除操作，返回执行结果. */
+    String executeDelete(K key) throws IOException, ClassNotFoundException;
+
+    /** 查看对应键的记录. */
+    String executeShowKey(K key) throws IOException, ClassNotFoundException;
+
+    /** 查看对应表的视图. */
+    String executeShowTable(String tableName) throws IOException, ClassNotFoundException;
+
+    /** 查看整个索引区的视图. */
+    String executeShowIndex() throws IOException, ClassNotFoundException;
+
+    /** 查看各类操作的耗时分位数与吞吐量. */
+    String executeShowStats() throws IOException, ClassNotFoundException;
+
+    /** 查看表文件的IO统计以及读写放大. */
+    String executeShowIO() throws IOException, ClassNotFoundException;
+}
@@ -0,0 +1,383 @@
+package Main;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * query语句的异步执行流水线. <p>
+ * 用户输入经过 解析 -> 路由 -> 执行 三个阶段，各阶段之间通过一块预先分配的环形缓冲区衔接
+ * (参考LMAX Disruptor)：请求只在提交时写入缓冲区中的槽位，此后各阶段按序号依次处理同一个槽位，
+ * 每个阶段只发布自己处理到的序号，后一阶段只处理前一阶段已经发布的序号，阶段之间不需要加锁，也不会在
+ * 稳定运行时分配队列结点. <p>
+ * <ul>
+ *     <li>解析阶段：由单个线程调用{@link Parser#parse()}将输入解析为{@link Statement}；</li>
+ *     <li>路由阶段：读语句若之前提交的写语句均已执行完毕，则立即交给读线程池执行，否则留给执行阶段转交；</li>
+ *     <li>执行阶段：唯一的写线程按序执行写语句，从而满足执行器单一写者的要求. 写线程每次取出所有已经路由的请求
+ *     成批执行，整批执行完毕后再统一完成这些请求的结果.</li>
+ * </ul>
+ * 读语句总能看到在它之前提交的所有写语句的结果；写语句会等待在它之前提交的、读取同一个键的读语句执行完毕，
+ * 因此查看键的语句也不会看到在它之后提交的写语句. 查看表与索引视图的语句不受后一条限制. <p>
+ * 缓冲区写满时提交请求的线程会等待，从而对上游形成反压. <p>
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class RequestPipeline implements Closeable {
+
+    /** 等待时先自旋的次数. */
+    private static final int SPIN_TRIES = 100;
+
+    /** 自旋之后让出CPU的次数，之后改为短暂休眠. */
+    private static final int YIELD_TRIES = 100;
+
+    /** 每次休眠的时长(纳秒). */
+    private static final long PARK_NANOS = 50_000;
+
+    /** 执行语句的执行器. */
+    private final QueryExecutor<String, String> _executor;
+
+    /** 环形缓冲区中的槽位. */
+    private final Slot[] _slots;
+
+    /** 序号到槽位下标的掩码，缓冲区的容量为2的幂. */
+    private final int _mask;
+
+    /** 每个槽位当前已经发布的序号，用于多个提交线程并发地发布请求. */
+    private final AtomicLongArray _published;
+
+    /** 已经分配出去的最大序号. */
+    private final AtomicLong _claimed;
+
+    /** 各阶段已经处理完毕的最大序号. */
+    private final AtomicLong _parsed, _routed, _written;
+
+    /** 已经交给读线程池但尚未执行完毕的查看键的语句，按键计数. */
+    private final ConcurrentHashMap<String, Integer> _pendingReads;
+
+    /** 执行读语句的线程池. */
+    private final ExecutorService _readers;
+
+    /** 各阶段的线程. */
+    private final List<Thread> _stages;
+
+    /** 是否接受新的请求. */
+    private volatile boolean _accepting;
+
+    /** 提交时检查是否接受请求并分配序号，与关闭时停止接受请求互斥. 提交者共享读锁，关闭时持有写锁. */
+    private final ReentrantReadWriteLock _claimLock;
+
+    /** 各阶段的线程是否应当退出. */
+    private volatile boolean _stopped;
+
+    /** 录制解析出的语句的轨迹写入器，为null时不录制. */
+    private volatile TraceWriter _trace;
+
+    /**
+     * 执行流水线的构造函数.
+     * @param executor 执行语句的执行器
+     * @param capacity 环形缓冲区的容量，必须为2的幂
+     * @param readers 读线程池中线程的个数
+     * @throws IllegalArgumentException 若容量不为2的幂或读线程的个数不为正数
+     */
+    public RequestPipeline(QueryExecutor<String, String> executor, int capacity, int readers)
+            throws IllegalArgumentException {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1 || readers <= 0) {
+            String errorMsg = String.format("""
+                    The capacity should be a power of 2 and the number of readers should be positive. Got
+                    capacity: %d
+                    readers: %d
+                    """, capacity, readers);
+            throw new IllegalArgumentException(errorMsg);
+        }
+        _executor = executor;
+        _slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) { _slots[i] = new Slot(); }
+        _mask = capacity - 1;
+        _published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) { _published.set(i, -1); }
+        _claimed = new AtomicLong(-1);
+        _parsed = new AtomicLong(-1);
+        _routed = new AtomicLong(-1);
+        _written = new AtomicLong(-1);
+        _pendingReads = new ConcurrentHashMap<>();
+        AtomicInteger readerCount = new AtomicInteger();
+        _readers = Executors.newFixedThreadPool(readers, task -> {
+            Thread reader = new Thread(task, "pipeline-reader-" + readerCount.getAndIncrement());
+            reader.setDaemon(true);
+            return reader;
+        });
+        _stages = List.of(stage("pipeline-parse", this::parseStage),
+                stage("pipeline-route", this::routeStage),
+                stage("pipeline-write", this::writeStage));
+        _accepting = true;
+        _claimLock = new ReentrantReadWriteLock();
+        for (Thread stage : _stages) { stage.start(); }
+    }
+
+    /**
+     * 提交一条用户输入. 缓冲区已满时阻塞等待.
+     * @param input 用户输入的query语句
+     * @return 语句的执行结果；语法非法或执行失败时以对应的异常完成；不支持的命令以
+     * {@link UnsupportedOperationException}完成.
+     */
+    public CompletableFuture<String> submit(String input) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        long sequence;
+        // 分配到序号的请求都会被关闭前的等待覆盖，不会在各阶段停止后才发布
+        _claimLock.readLock().lock();
+        try {
+            if (!_accepting) {
+                result.completeExceptionally(new IllegalStateException("执行流水线已经关闭"));
+                return result;
+            }
+            sequence = _claimed.incrementAndGet();
+        } finally {
+            _claimLock.readLock().unlock();
+        }
+        // 等待写线程处理完上一轮使用该槽位的请求
+        long wrapPoint = sequence - _slots.length;
+        for (int tries = 0; _written.get() < wrapPoint; tries++) { idle(tries); }
+        int index = (int) sequence & _mask;
+        Slot slot = _slots[index];
+        slot._input = input;
+        slot._result = result;
+        slot._statement = null;
+        slot._error = null;
+        slot._dispatched = false;
+        // 发布序号，之前对槽位的写入对解析线程可见
+        _published.set(index, sequence);
+        return result;
+    }
+
+    /**
+     * 设置录制轨迹的写入器，此后解析阶段解析出的语句都会按提交的顺序被录制，语法非法与不支持的命令不会被录制.
+     * 录制失败的请求以{@link UncheckedIOException}完成且不会被执行. 为null时停止录制.
+     */
+    public void setTrace(TraceWriter trace) {
+        _trace = trace;
+    }
+
+    /** 停止接受新的请求，等待已经提交的请求全部执行完毕后停止各阶段的线程与读线程池. */
+    @Override
+    public void close() {
+        _claimLock.writeLock().lock();
+        try {
+            _accepting = false;
+        } finally {
+            _claimLock.writeLock().unlock();
+        }
+        // 此后不会再分配新的序号
+        for (int tries = 0; _written.get() < _claimed.get(); tries++) { idle(tries); }
+        _stopped = true;
+        for (Thread stage : _stages) {
+            LockSupport.unpark(stage);
+            try {
+                stage.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        _readers.shutdown();
+        try {
+            _readers.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** 解析阶段. 解析器不是线程安全的，只在该线程上使用. */
+    private void parseStage() {
+        Parser parser = new Parser();
+        long next = 0;
+        while (true) {
+            long available = waitForPublished(next);
+            if (available < next) { return; }
+            for (long sequence = next; sequence <= available; sequence++) {
+                Slot slot = slot(sequence);
+                try {
+                    parser.setUserInput(slot._input);
+                    slot._statement = parser.parse();
+                    if (slot._statement == null) {
+                        slot._error = new UnsupportedOperationException("不支持的命令，请输入help命令查看更多.");
+                    } else {
+                        record(slot._statement);
+                    }
+                } catch (RuntimeException e) {
+                    slot._error = e;
+                }
+            }
+            _parsed.set(available);
+            next = available + 1;
+        }
+    }
+
+    /** 将解析出的语句追加到轨迹中. 解析阶段是单线程的，因此轨迹中语句的顺序与提交的顺序一致. */
+    private void record(Statement statement) {
+        TraceWriter trace = _trace;
+        if (trace == null) { return; }
+        try {
+            trace.append(statement);
+        } catch (IOException e) {
+            throw new UncheckedIOException("录制轨迹失败", e);
+        }
+    }
+
+    /** 路由阶段. */
+    private void routeStage() {
+        long next = 0, lastWrite = -1;
+        while (true) {
+            long available = waitFor(_parsed, next);
+            if (available < next) { return; }
+            for (long sequence = next; sequence <= available; sequence++) {
+                Slot slot = slot(sequence);
+                if (slot._error != null) {
+                    slot._result.completeExceptionally(slot._error);
+                } else if (slot._statement.isWrite()) {
+                    lastWrite = sequence;
+                } else if (_written.get() >= lastWrite) {
+                    // 之前的写语句都已经执行完毕，读语句无需等待写线程
+                    slot._dispatched = true;
+                    read(slot._statement, slot._result);
+                }
+            }
+            _routed.set(available);
+            next = available + 1;
+        }
+    }
+
+    /** 执行阶段，唯一的写线程. */
+    private void writeStage() {
+        long next = 0;
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        List<Object> outcomes = new ArrayList<>();
+        while (true) {
+            long available = waitFor(_routed, next);
+            if (available < next) { return; }
+            for (long sequence = next; sequence <= available; sequence++) {
+                Slot slot = slot(sequence);
+                if (slot._error != null) { continue; }
+                if (slot._statement.isWrite()) {
+                    // 等待之前提交的读取同一个键的语句执行完毕
+                    String key = slot._statement.key();
+                    for (int tries = 0; _pendingReads.containsKey(key); tries++) { idle(tries); }
+                    futures.add(slot._result);
+                    try {
+                        outcomes.add(slot._statement.executeOn(_executor));
+                    } catch (Throwable e) {
+                        outcomes.add(e);
+                    }
+                } else if (!slot._dispatched) {
+                    // 在它之前的写语句已经由本线程执行完毕
+                    read(slot._statement, slot._result);
+                }
+            }
+            _written.set(available);
+            next = available + 1;
+            // 整批执行完毕后再完成结果，回调不会占用写线程处理下一条写语句的时间
+            for (int i = 0; i < futures.size(); i++) {
+                Object outcome = outcomes.get(i);
+                if (outcome instanceof Throwable) { futures.get(i).completeExceptionally((Throwable) outcome); }
+                else { futures.get(i).complete((String) outcome); }
+            }
+            futures.clear();
+            outcomes.clear();
+        }
+    }
+
+    /** 将读语句交给读线程池. */
+    private void read(Statement statement, CompletableFuture<String> result) {
+        String key = statement.type() == Statement.Type.SHOW_KEY ? statement.key() : null;
+        if (key != null) { _pendingReads.merge(key, 1, Integer::sum); }
+        _readers.execute(() -> {
+            try {
+                result.complete(statement.executeOn(_executor));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                if (key != null) { _pendingReads.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1); }
+            }
+        });
+    }
+
+    /**
+     * 等待序号next被发布，返回从next开始连续发布的最大序号.
+     * @return 连续发布的最大序号；流水线停止时返回next - 1
+     */
+    private long waitForPublished(long next) {
+        for (int tries = 0; _published.get((int) next & _mask) != next; tries++) {
+            if (_stopped) { return next - 1; }
+            idle(tries);
+        }
+        long available = next;
+        while (available - next < _mask && _published.get((int) (available + 1) & _mask) == available + 1) {
+            available++;
+        }
+        return available;
+    }
+
+    /**
+     * 等待上一阶段处理到序号next.
+     * @return 上一阶段已经处理完毕的最大序号；流水线停止时返回next - 1
+     */
+    private long waitFor(AtomicLong upstream, long next) {
+        long available;
+        for (int tries = 0; (available = upstream.get()) < next; tries++) {
+            if (_stopped) { return next - 1; }
+            idle(tries);
+        }
+        return available;
+    }
+
+    /** 等待策略：先自旋，再让出CPU，最后短暂休眠. */
+    private static void idle(int tries) {
+        if (tries < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (tries < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    private Slot slot(long sequence) { return _slots[(int) sequence & _mask]; }
+
+    private static Thread stage(String name, Runnable body) {
+        Thread stage = new Thread(body, name);
+        stage.setDaemon(true);
+        return stage;
+    }
+
+    /**
+     * 环形缓冲区中的一个槽位. 槽位在构造时分配，此后被反复使用.
+     * 各字段由序号的发布保证可见性：后一阶段只读取前一阶段已经发布的槽位.
+     */
+    private static final class Slot {
+
+        /** 用户输入. */
+        private String _input;
+
+        /** 请求的结果. */
+        private CompletableFuture<String> _result;
+
+        /** 解析得到的语句. */
+        private Statement _statement;
+
+        /** 解析失败的原因. */
+        private RuntimeException _error;
+
+        /** 读语句是否已经由路由阶段交给读线程池. */
+        private boolean _dispatched;
+    }
+}
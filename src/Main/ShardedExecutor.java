@@ -0,0 +1,317 @@
+package Main;
+
+import Index.BPlusTree;
+import KVTable.RowCache;
+import Metrics.IOStats;
+import Metrics.OperationStats;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import static Utils.Utils.compare;
+
+/**
+ * 按键的哈希值分片的query语句执行器. <p>
+ * 键空间被划分给N个相互独立的{@link Executor}，每个分片拥有自己的B+树、缓冲区以及数据目录
+ * {@code ./data/shard-i}，并由一个专属线程执行. 请求按键的哈希值路由到对应分片的有界队列中，
+ * 队列满时提交请求的线程会被阻塞，从而对上游形成反压. <p>
+ * 由于每个分片中的操作都在同一个线程上执行，单个{@link Executor}仍满足单一写者的要求. <p>
+ * @param <K> 存储引擎的键的类型.
+ * @param <V> 存储引擎的值的类型.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class ShardedExecutor<K, V> implements QueryExecutor<K, V> {
+
+    /** 所有分片. */
+    private final List<Shard> _shards;
+
+    /**
+     * 分片执行器的构造函数.
+     * @param shards 分片的个数
+     * @param order 每个分片中B+树的阶
+     * @param capacity 每个分片中B+树外部节点管理的表的最大容量
+     * @param bufferCapacity 每个分片中缓冲区的容量
+     * @param queueCapacity 每个分片的请求队列的容量
+     * @throws IllegalArgumentException 若分片个数或队列容量不为正数
+     */
+    public ShardedExecutor(int shards, int order, int capacity, int bufferCapacity, int queueCapacity)
+            throws IllegalArgumentException {
+        this(shards, order, capacity, BPlusTree.DEFAULT_UPPERTHRESHOLD, bufferCapacity, queueCapacity);
+    }
+
+    /**
+     * 分片执行器的构造函数，可以指定表的容量上限因子.
+     * @param shards 分片的个数
+     * @param order 每个分片中B+树的阶
+     * @param capacity 每个分片中B+树外部节点管理的表的最大容量
+     * @param upperThreshold 表的容量上限因子
+     * @param bufferCapacity 每个分片中缓冲区的容量
+     * @param queueCapacity 每个分片的请求队列的容量
+     * @throws IllegalArgumentException 若分片个数或队列容量不为正数，或容量上限因子不在(0, 1]内
+     */
+    public ShardedExecutor(int shards, int order, int capacity, double upperThreshold, int bufferCapacity,
+                           int queueCapacity) throws IllegalArgumentException {
+        if (shards <= 0 || queueCapacity <= 0) {
+            String errorMsg = String.format("""
+                    The number of shards and the queue capacity should be positive. Got
+                    shards: %d
+                    queue capacity: %d
+                    """, shards, queueCapacity);
+            throw new IllegalArgumentException(errorMsg);
+        }
+        _shards = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            String directory = String.format("./data/shard-%d", i);
+            Executor<K, V> executor = new Executor<K, V>("B+-Tree", order, capacity, upperThreshold, bufferCapacity,
+                    directory);
+            _shards.add(new Shard(i, executor, queueCapacity));
+        }
+    }
+
+    /** 返回分片的个数. */
+    public int shards() { return _shards.size(); }
+
+    /** 返回每个分片的执行器，下标即分片编号. 只应在分片线程之外读取其统计，而不应执行读写操作. */
+    public List<Executor<K, V>> executors() {
+        List<Executor<K, V>> executors = new ArrayList<>(_shards.size());
+        for (Shard shard : _shards) { executors.add(shard._executor); }
+        return executors;
+    }
+
+    /** 异步地执行记录的插入操作. */
+    public CompletableFuture<String> submitInsert(K key, V value) {
+        return shardOf(key).submit(executor -> executor.executeInsert(key, value));
+    }
+
+    /** 异步地执行记录的更新操作. */
+    public CompletableFuture<String> submitUpdate(K key, V value) {
+        return shardOf(key).submit(executor -> executor.executeUpdate(key, value));
+    }
+
+    /** 异步地执行记录的删除操作. */
+    public CompletableFuture<String> submitDelete(K key) {
+        return shardOf(key).submit(executor -> executor.executeDelete(key));
+    }
+
+    /** 异步地查看对应键的记录. */
+    public CompletableFuture<String> submitShowKey(K key) {
+        return shardOf(key).submit(executor -> executor.executeShowKey(key));
+    }
+
+    @Override
+    public String executeInsert(K key, V value) throws IOException, ClassNotFoundException {
+        return await(submitInsert(key, value));
+    }
+
+    @Override
+    public String executeUpdate(K key, V value) throws IOException, ClassNotFoundException {
+        return await(submitUpdate(key, value));
+    }
+
+    @Override
+    public String executeDelete(K key) throws IOException, ClassNotFoundException {
+        return await(submitDelete(key));
+    }
+
+    @Override
+    public String executeShowKey(K key) throws IOException, ClassNotFoundException {
+        return await(submitShowKey(key));
+    }
+
+    /** 表名不携带分片信息，因此依次询问每个分片，返回第一个存在该表的分片上的视图. */
+    @Override
+    public String executeShowTable(String tableName) throws IOException, ClassNotFoundException {
+        for (Shard shard : _shards) {
+            String view = await(shard.submit(
+                    executor -> executor.hasTable(tableName) ? executor.executeShowTable(tableName) : null));
+            if (view != null) { return view; }
+        }
+        // 所有分片中都不存在，由存储引擎给出提示
+        return await(_shards.get(0).submit(executor -> executor.executeShowTable(tableName)));
+    }
+
+    /** 依次拼接每个分片的索引区视图. */
+    @Override
+    public String executeShowIndex() throws IOException, ClassNotFoundException {
+        StringBuilder view = new StringBuilder();
+        for (Shard shard : _shards) {
+            view.append(String.format("shard-%d:\n", shard._id));
+            String index = await(shard.submit(Executor::executeShowIndex));
+            view.append(index);
+        }
+        return view.toString();
+    }
+
+    /**
+     * 按键的顺序返回闭区间[low, high]内的所有记录. 区间的端点为null时表示该侧无界.
+     * <p>
+     * 每个分片在各自的线程上并行地完成范围查询，得到的有序结果再做多路归并. 键按哈希值分片，
+     * 不同分片的结果互不相交.
+     * @throws IOException 发生IO异常
+     * @throws ClassNotFoundException 发生反序列化异常
+     */
+    public List<Map.Entry<K, V>> scan(K low, K high) throws IOException, ClassNotFoundException {
+        List<CompletableFuture<List<Map.Entry<K, V>>>> results = new ArrayList<>(_shards.size());
+        for (Shard shard : _shards) { results.add(shard.submit(executor -> executor.scan(low, high))); }
+        List<List<Map.Entry<K, V>>> parts = new ArrayList<>(_shards.size());
+        for (CompletableFuture<List<Map.Entry<K, V>>> result : results) { parts.add(await(result)); }
+        return merge(parts);
+    }
+
+    /** 多路归并各分片有序的查询结果. 堆中的元素为{分片下标, 该分片中下一条记录的下标}. */
+    private static <K, V> List<Map.Entry<K, V>> merge(List<List<Map.Entry<K, V>>> parts) {
+        PriorityQueue<int[]> heads = new PriorityQueue<>(
+                (a, b) -> compare(parts.get(a[0]).get(a[1]).getKey(), parts.get(b[0]).get(b[1]).getKey()));
+        int total = 0;
+        for (int i = 0; i < parts.size(); i++) {
+            if (!parts.get(i).isEmpty()) { heads.add(new int[] { i, 0 }); }
+            total += parts.get(i).size();
+        }
+        List<Map.Entry<K, V>> merged = new ArrayList<>(total);
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<Map.Entry<K, V>> part = parts.get(head[0]);
+            merged.add(part.get(head[1]));
+            if (++head[1] < part.size()) { heads.add(head); }
+        }
+        return merged;
+    }
+
+    /** 合并所有分片的耗时统计，并列出每个分片的行缓存统计. 统计本身是线程安全的，无需经过分片线程. */
+    @Override
+    public String executeShowStats() {
+        List<OperationStats> stats = new ArrayList<>(_shards.size());
+        StringBuilder rowCaches = new StringBuilder();
+        for (Shard shard : _shards) {
+            stats.add(shard._executor.stats());
+            RowCache<K, V> rowCache = shard._executor.rowCache();
+            if (rowCache != null) { rowCaches.append(String.format("shard-%d %s", shard._id, rowCache.report())); }
+        }
+        return String.format("运行统计为(%d个分片合计)\n%s%s", _shards.size(), OperationStats.merge(stats).report(),
+                rowCaches);
+    }
+
+    /** 合并所有分片的IO统计，读写放大按所有分片的操作合计. */
+    @Override
+    public String executeShowIO() {
+        List<IOStats> io = new ArrayList<>(_shards.size());
+        List<OperationStats> stats = new ArrayList<>(_shards.size());
+        for (Shard shard : _shards) {
+            io.add(shard._executor.ioStats());
+            stats.add(shard._executor.stats());
+        }
+        return IOStats.merge("./data/shard-*", io).report(OperationStats.merge(stats), 10);
+    }
+
+    /**
+     * 停止所有分片的线程并关闭各分片的执行器. 已经进入队列的请求会在线程退出前执行完毕.
+     * 关闭后各分片的执行器仍可以通过{@link #executors()}读取.
+     */
+    public void shutdown() throws InterruptedException, IOException {
+        for (Shard shard : _shards) { shard.stop(); }
+        for (Shard shard : _shards) { shard._worker.join(); }
+        for (Shard shard : _shards) { shard._executor.close(); }
+    }
+
+    /** 根据键的哈希值找到其所属的分片. */
+    private Shard shardOf(K key) {
+        int hash = key.hashCode();
+        // 混合高位，避免低位相同的哈希值集中在少数分片上
+        hash ^= (hash >>> 16);
+        return _shards.get(Math.floorMod(hash, _shards.size()));
+    }
+
+    /** 等待异步执行的结果，并还原执行过程中抛出的受检异常. */
+    private static <R> R await(CompletableFuture<R> result) throws IOException, ClassNotFoundException {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) { throw (IOException) cause; }
+            if (cause instanceof ClassNotFoundException) { throw (ClassNotFoundException) cause; }
+            if (cause instanceof RuntimeException) { throw (RuntimeException) cause; }
+            throw e;
+        }
+    }
+
+    /**
+     * 在分片线程上执行的操作.
+     * @param <K> 存储引擎的键的类型.
+     * @param <V> 存储引擎的值的类型.
+     * @param <R> 操作结果的类型.
+     */
+    @FunctionalInterface
+    private interface Operation<K, V, R> {
+        R apply(Executor<K, V> executor) throws IOException, ClassNotFoundException;
+    }
+
+    /** 一个分片：一个执行器、一条有界的请求队列以及一个专属线程. */
+    private class Shard {
+
+        /** 分片的编号. */
+        private final int _id;
+
+        /** 分片的执行器，读写操作只在分片线程上进行. */
+        private final Executor<K, V> _executor;
+
+        /** 等待执行的请求. */
+        private final BlockingQueue<Runnable> _queue;
+
+        /** 分片线程. */
+        private final Thread _worker;
+
+        /** 分片线程是否应当退出. 只在分片线程上读写. */
+        private boolean _stopped;
+
+        private Shard(int id, Executor<K, V> executor, int queueCapacity) {
+            _id = id;
+            _executor = executor;
+            _queue = new ArrayBlockingQueue<>(queueCapacity);
+            _worker = new Thread(this::run, String.format("shard-%d", id));
+            _worker.setDaemon(true);
+            _worker.start();
+        }
+
+        /** 将操作放入队列，队列满时阻塞等待. */
+        private <R> CompletableFuture<R> submit(Operation<K, V, R> operation) {
+            CompletableFuture<R> result = new CompletableFuture<>();
+            enqueue(() -> {
+                try {
+                    result.complete(operation.apply(_executor));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+            return result;
+        }
+
+        /** 在队列末尾放入一个停止标记. */
+        private void stop() { enqueue(() -> _stopped = true); }
+
+        private void enqueue(Runnable task) {
+            try {
+                _queue.put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("提交请求时被中断", e);
+            }
+        }
+
+        /** 分片线程的事件循环. */
+        private void run() {
+            while (!_stopped) {
+                try {
+                    _queue.take().run();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
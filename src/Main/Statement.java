@@ -0,0 +1,47 @@
+package Main;
+
+import java.io.IOException;
+
+/**
+ * 解析器{@link Parser}从用户输入中解析出的一条query语句.
+ * <p>
+ * 语句只记录操作的类型与参数，由{@link #executeOn(QueryExecutor)}提交给执行器执行，
+ * 因此解析与执行可以发生在不同的线程上.
+ * @param type 语句的类型
+ * @param key 语句操作的键；SHOW TABLE语句中为表名；SHOW INDEX、SHOW STATS与SHOW IO语句中为null
+ * @param value 插入或更新的值，其余语句中为null
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public record Statement(Type type, String key, String value) {
+
+    /** 语句的类型. */
+    public enum Type {
+        INSERT, UPDATE, DELETE, SHOW_KEY, SHOW_TABLE, SHOW_INDEX, SHOW_STATS, SHOW_IO;
+
+        /** 返回该类型的语句是否会修改数据. */
+        public boolean isWrite() { return this == INSERT || this == UPDATE || this == DELETE; }
+    }
+
+    /** 返回该语句是否会修改数据. */
+    public boolean isWrite() { return type.isWrite(); }
+
+    /**
+     * 在给定的执行器上执行该语句.
+     * @return 执行结果
+     * @throws IOException 发生IO异常
+     * @throws ClassNotFoundException 发生反序列化异常
+     */
+    public String executeOn(QueryExecutor<String, String> executor) throws IOException, ClassNotFoundException {
+        return switch (type) {
+            case INSERT -> executor.executeInsert(key, value);
+            case UPDATE -> executor.executeUpdate(key, value);
+            case DELETE -> executor.executeDelete(key);
+            case SHOW_KEY -> executor.executeShowKey(key);
+            case SHOW_TABLE -> executor.executeShowTable(key);
+            case SHOW_INDEX -> executor.executeShowIndex();
+            case SHOW_STATS -> executor.executeShowStats();
+            case SHOW_IO -> executor.executeShowIO();
+        };
+    }
+}
@@ -0,0 +1,99 @@
+package Main;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 顺序读取{@link TraceWriter}写出的轨迹文件.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class TraceReader implements Closeable {
+
+    /**
+     * 轨迹中的一条记录.
+     * @param offsetNanos 语句发出的时刻相对开始录制的偏移(纳秒)
+     * @param statement 语句
+     */
+    public record Record(long offsetNanos, Statement statement) {}
+
+    private static final Statement.Type[] TYPES = Statement.Type.values();
+
+    private final DataInputStream _in;
+
+    /** 开始录制时的墙上时间(毫秒). */
+    private final long _startMillis;
+
+    /** 上一条记录的时刻. */
+    private long _offset;
+
+    /**
+     * 打开轨迹文件并校验文件头.
+     * @param path 轨迹文件的路径
+     * @throws IOException 若文件无法打开或不是轨迹文件
+     */
+    public TraceReader(String path) throws IOException {
+        _in = new DataInputStream(new BufferedInputStream(new FileInputStream(path), 1 << 16));
+        try {
+            if (_in.readInt() != TraceWriter.MAGIC) { throw new IOException(String.format("%s不是轨迹文件", path)); }
+            byte version = _in.readByte();
+            if (version != TraceWriter.VERSION) {
+                throw new IOException(String.format("不支持的轨迹格式版本: %d", version));
+            }
+            _startMillis = _in.readLong();
+        } catch (IOException e) {
+            _in.close();
+            throw e;
+        }
+    }
+
+    /** 返回开始录制时的墙上时间(毫秒). */
+    public long startMillis() { return _startMillis; }
+
+    /**
+     * 读取下一条记录.
+     * @return 下一条记录，轨迹已经读完时返回null
+     * @throws IOException 若文件损坏
+     */
+    public Record next() throws IOException {
+        int first = _in.read();
+        // 录制中途被终止时，最后一条记录可能不完整，此时视为轨迹结束
+        if (first < 0) { return null; }
+        try {
+            _offset += readVarLong(first);
+            int type = _in.readUnsignedByte();
+            if (type >= TYPES.length) { throw new IOException(String.format("未知的语句类型: %d", type)); }
+            return new Record(_offset, new Statement(TYPES[type], readString(), readString()));
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException { _in.close(); }
+
+    private long readVarLong(int first) throws IOException {
+        long value = first & 0x7F;
+        int shift = 7;
+        int b = first;
+        while ((b & 0x80) != 0) {
+            b = _in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+
+    private String readString() throws IOException {
+        long length = readVarLong(_in.readUnsignedByte());
+        if (length == 0) { return null; }
+        byte[] bytes = new byte[(int) (length - 1)];
+        _in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
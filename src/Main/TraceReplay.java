@@ -0,0 +1,212 @@
+package Main;
+
+import Index.BPlusTree;
+import Index.BufferedIndex;
+import Index.InMemBPlusTree;
+import Index.Index;
+import Metrics.LatencyHistogram;
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 将{@link TraceWriter}录制的轨迹回放到执行器或索引上，报告吞吐量与每类语句的延迟.
+ * <p>
+ * 回放在单个线程上按轨迹中的顺序进行，因此同一份轨迹在同样配置的目标上得到相同的最终状态，
+ * 可以用来复现性能回退以及在相同的输入上比较调优前后的表现. 回放速度可以是：
+ * <ul>
+ *   <li>尽可能快：前一条语句执行完即执行下一条；</li>
+ *   <li>按录制的速度，或其若干倍：语句按录制时的间隔发出，目标跟不上时立即发出下一条，并记录最大的滞后.</li>
+ * </ul>
+ * 用法：
+ * <pre>
+ * java -cp out Main.TraceReplay trace.bin [--target executor|bplustree|inmem] [--speed max|recorded|倍数]
+ *                               [--M 16] [--capacity 20] [--buffer 12]
+ * </pre>
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class TraceReplay {
+
+    /** 回放的目标. */
+    @FunctionalInterface
+    public interface Target {
+
+        /**
+         * 执行一条语句.
+         * @return 是否执行了该语句；目标不支持的语句被跳过
+         */
+        boolean apply(Statement statement) throws IOException, ClassNotFoundException;
+
+        /** 回放到执行器上，语句的执行方式与{@link Parser#parseWithExecutor()}相同. */
+        static Target of(QueryExecutor<String, String> executor) {
+            return statement -> {
+                statement.executeOn(executor);
+                return true;
+            };
+        }
+
+        /**
+         * 直接回放到索引上. 插入与更新都写入记录，删除删除记录，SHOW KEY读取记录，其余语句被跳过.
+         * 键超过索引右端点的记录先写入一张待写入的表，达到表容量的一半时写入索引，与执行器的缓冲区相同.
+         * @param index 索引
+         * @param capacity 索引中表的容量
+         */
+        static Target of(Index<String, String> index, int capacity) {
+            return new IndexTarget(index, capacity);
+        }
+    }
+
+    /** 轨迹文件的路径. */
+    private final String _path;
+
+    /** 回放的目标. */
+    private final Target _target;
+
+    public TraceReplay(String path, Target target) {
+        _path = path;
+        _target = target;
+    }
+
+    /**
+     * 回放整份轨迹.
+     * @param speed 相对录制速度的倍数，不为正数时尽可能快地回放
+     * @return 回放的结果
+     * @throws IOException 若轨迹无法读取
+     */
+    public Report replay(double speed) throws IOException {
+        Report report = new Report();
+        try (TraceReader reader = new TraceReader(_path)) {
+            long start = System.nanoTime();
+            TraceReader.Record record;
+            while ((record = reader.next()) != null) {
+                if (speed > 0) {
+                    long due = start + (long) (record.offsetNanos() / speed), now;
+                    while ((now = System.nanoTime()) < due) { LockSupport.parkNanos(due - now); }
+                    report._maxLagNanos = Math.max(report._maxLagNanos, now - due);
+                }
+                Statement statement = record.statement();
+                long begin = System.nanoTime();
+                try {
+                    if (_target.apply(statement)) {
+                        report._latencies.get(statement.type()).record(System.nanoTime() - begin);
+                    } else {
+                        report._skipped++;
+                    }
+                } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                    // 语句在录制时同样可能失败(如重复插入)，失败也是轨迹的一部分
+                    report._errors++;
+                }
+            }
+            report._elapsedNanos = System.nanoTime() - start;
+        }
+        return report;
+    }
+
+    /** 一次回放的结果. */
+    public static class Report {
+
+        private final Map<Statement.Type, LatencyHistogram> _latencies = new EnumMap<>(Statement.Type.class);
+
+        private long _elapsedNanos, _maxLagNanos, _skipped, _errors;
+
+        private Report() {
+            for (Statement.Type type : Statement.Type.values()) { _latencies.put(type, new LatencyHistogram()); }
+        }
+
+        /** 返回某类语句的延迟分布. */
+        public LatencyHistogram latency(Statement.Type type) { return _latencies.get(type); }
+
+        /** 返回成功执行的语句条数. */
+        public long executed() {
+            return _latencies.values().stream().mapToLong(LatencyHistogram::count).sum();
+        }
+
+        /** 返回被目标跳过的语句条数. */
+        public long skipped() { return _skipped; }
+
+        /** 返回执行失败的语句条数. */
+        public long errors() { return _errors; }
+
+        /** 返回按录制速度回放时最大的滞后(纳秒). */
+        public long maxLagNanos() { return _maxLagNanos; }
+
+        /** 返回吞吐量(条/秒). */
+        public double throughput() { return _elapsedNanos == 0 ? 0 : executed() * 1e9 / _elapsedNanos; }
+
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder();
+            report.append(String.format("耗时%.3fs，执行%d条语句，跳过%d条，失败%d条，吞吐量%.1f ops/s，最大滞后%.3fms\n",
+                    _elapsedNanos / 1e9, executed(), _skipped, _errors, throughput(), _maxLagNanos / 1e6));
+            report.append(String.format("%-12s%12s%12s%12s%12s%12s%12s\n",
+                    "statement", "count", "avg(us)", "p50(us)", "p99(us)", "p999(us)", "max(us)"));
+            for (Map.Entry<Statement.Type, LatencyHistogram> e : _latencies.entrySet()) {
+                LatencyHistogram h = e.getValue();
+                if (h.count() == 0) { continue; }
+                report.append(String.format("%-12s%12d%12.1f%12.1f%12.1f%12.1f%12.1f\n",
+                        e.getKey(), h.count(), h.mean() / 1e3, h.quantile(0.5) / 1e3,
+                        h.quantile(0.99) / 1e3, h.quantile(0.999) / 1e3, h.max() / 1e3));
+            }
+            return report.toString();
+        }
+    }
+
+    /** 回放到索引上的目标. */
+    private static final class IndexTarget implements Target {
+
+        private final BufferedIndex<String, String> _index;
+
+        private IndexTarget(Index<String, String> index, int capacity) {
+            _index = new BufferedIndex<>(index, capacity);
+        }
+
+        @Override
+        public boolean apply(Statement statement) throws IOException, ClassNotFoundException {
+            switch (statement.type()) {
+                case INSERT, UPDATE -> _index.put(statement.key(), statement.value());
+                case DELETE -> _index.delete(statement.key());
+                case SHOW_KEY -> _index.get(statement.key());
+                default -> { return false; }
+            }
+            return true;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("用法: TraceReplay <trace> [--target executor|bplustree|inmem] [--speed max|recorded|倍数]"
+                    + " [--M 16] [--capacity 20] [--buffer 12]");
+            return;
+        }
+        String target = "executor", speed = "max";
+        int order = 16, capacity = 20, buffer = 12;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--target" -> target = args[i + 1];
+                case "--speed" -> speed = args[i + 1];
+                case "--M" -> order = Integer.parseInt(args[i + 1]);
+                case "--capacity" -> capacity = Integer.parseInt(args[i + 1]);
+                case "--buffer" -> buffer = Integer.parseInt(args[i + 1]);
+                default -> throw new IllegalArgumentException(String.format("未知的参数: %s", args[i]));
+            }
+        }
+        // 每次回放使用新的目录，避免受到已有数据的影响
+        String directory = String.format("./data/replay-%d", System.nanoTime());
+        new File(directory).mkdirs();
+        Target replayTarget = switch (target) {
+            case "executor" -> Target.of(new Executor<String, String>("B+-Tree", order, capacity, buffer, directory));
+            case "bplustree" -> Target.of(new BPlusTree<String, String>(order, capacity), capacity);
+            case "inmem" -> Target.of(new InMemBPlusTree<String, String>(order, capacity), capacity);
+            default -> throw new IllegalArgumentException(String.format("未知的回放目标: %s", target));
+        };
+        double factor = switch (speed) {
+            case "max" -> 0;
+            case "recorded" -> 1;
+            default -> Double.parseDouble(speed);
+        };
+        System.out.println(new TraceReplay(args[0], replayTarget).replay(factor));
+    }
+}
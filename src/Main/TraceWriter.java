@@ -0,0 +1,94 @@
+package Main;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 将解析出的语句连同发出的时刻写入紧凑的二进制轨迹文件，供{@link TraceReplay}回放.
+ * <p>
+ * 文件以魔数、格式版本与开始录制时的墙上时间(毫秒)开头，随后每条记录依次为：
+ * <ul>
+ *   <li>与上一条记录的时间间隔(纳秒)，变长编码；</li>
+ *   <li>语句类型的序号，1字节；</li>
+ *   <li>键与值，各为变长编码的长度加UTF-8编码的内容，长度为0表示null，否则为字节数加1.</li>
+ * </ul>
+ * 典型的写语句只占键值长度之外的3到6个字节. 写入是缓冲的，需要调用{@link #close()}或{@link #flush()}落盘.
+ * 多个线程可以共用同一个写入器，记录按到达的顺序排列.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class TraceWriter implements Closeable {
+
+    /** 文件开头的魔数"KVTR". */
+    static final int MAGIC = 0x4B565452;
+
+    /** 格式版本. */
+    static final byte VERSION = 1;
+
+    private final DataOutputStream _out;
+
+    /** 开始录制时的{@link System#nanoTime()}. */
+    private final long _start;
+
+    /** 上一条记录相对开始录制的时刻(纳秒). */
+    private long _last;
+
+    /** 已经写入的记录条数. */
+    private long _records;
+
+    /**
+     * 创建轨迹文件并写入文件头. 文件已存在时被覆盖.
+     * @param path 轨迹文件的路径
+     * @throws IOException 若文件无法创建
+     */
+    public TraceWriter(String path) throws IOException {
+        _out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16));
+        _start = System.nanoTime();
+        _out.writeInt(MAGIC);
+        _out.writeByte(VERSION);
+        _out.writeLong(System.currentTimeMillis());
+    }
+
+    /** 以当前时刻记录一条语句. */
+    public synchronized void append(Statement statement) throws IOException {
+        // 多个线程并发追加时，保证时间间隔不为负
+        long now = Math.max(_last, System.nanoTime() - _start);
+        writeVarLong(_out, now - _last);
+        _last = now;
+        _out.writeByte(statement.type().ordinal());
+        writeString(_out, statement.key());
+        writeString(_out, statement.value());
+        _records++;
+    }
+
+    /** 返回已经写入的记录条数. */
+    public synchronized long records() { return _records; }
+
+    /** 将缓冲的记录写入文件. */
+    public synchronized void flush() throws IOException { _out.flush(); }
+
+    @Override
+    public synchronized void close() throws IOException { _out.close(); }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+}
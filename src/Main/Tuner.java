@@ -0,0 +1,313 @@
+package Main;
+
+import Metrics.LatencyHistogram;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * 存储引擎配置的调优工具. 在临时的数据目录中把同一份样本负载(轨迹文件)依次回放到不同配置的{@link Executor}上，
+ * 扫描B+树的阶M、表的容量CAPACITY、表的容量上限因子UPPERTHRESHOLD以及缓冲区的容量，
+ * 测量每种配置的吞吐量、延迟分位数与磁盘占用，按给定的目标推荐一种配置，并把全部结果写为CSV.
+ * <p>
+ * 每次回放都尽可能快地在单个线程上执行，结束后等待缓冲区写入完成再计时，因此吞吐量包含了缓冲区写入的开销.
+ * 磁盘占用为回放结束后数据目录中表文件的总字节数，写入字节数为回放期间写回表文件的总字节数(反映写放大).
+ * 每种配置可以回放多次，取吞吐量居中的一次，以减少噪声. 表内分裂要求表中至少有3条记录，
+ * 因此{@code UPPERTHRESHOLD * CAPACITY < 3}的组合会被跳过.
+ * <p>
+ * 推荐的目标：
+ * <ul>
+ *   <li>throughput：吞吐量最高；</li>
+ *   <li>latency：p99延迟最低；</li>
+ *   <li>disk：磁盘占用最少；</li>
+ *   <li>balanced：三者相对最优值之比的几何平均最高(默认).</li>
+ * </ul>
+ * 用法：
+ * <pre>
+ * java -cp out Main.Tuner [trace.bin] [--sample 20000] [--M 8,16,64] [--capacity 20,128,512]
+ *                         [--threshold 0.7,0.8,0.9] [--buffer 12,128,1024] [--repeat 1]
+ *                         [--objective balanced|throughput|latency|disk] [--out tuning.csv]
+ * </pre>
+ * 不给出轨迹文件时，生成一份含有--sample条语句的合成样本(插入、查询、更新与删除的比例为50:30:15:5).
+ * 推荐的配置以{@link Main}的启动参数的形式给出.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class Tuner {
+
+    /** 推荐配置时的目标. */
+    public enum Objective { BALANCED, THROUGHPUT, LATENCY, DISK }
+
+    /**
+     * 一种配置的测量结果.
+     * @param config 配置
+     * @param throughput 吞吐量(条/秒)
+     * @param p50Nanos 所有语句延迟的中位数(纳秒)
+     * @param p99Nanos 所有语句延迟的p99(纳秒)
+     * @param p999Nanos 所有语句延迟的p999(纳秒)
+     * @param maxNanos 所有语句延迟的最大值(纳秒)
+     * @param diskBytes 回放结束后表文件的总字节数
+     * @param bytesWritten 回放期间写回表文件的总字节数
+     * @param tables 回放结束后表的张数
+     * @param height 回放结束后B+树索引区的层数
+     * @param errors 执行失败的语句条数
+     */
+    public record Result(EngineConfig config, double throughput, long p50Nanos, long p99Nanos, long p999Nanos,
+                         long maxNanos, long diskBytes, long bytesWritten, int tables, int height, long errors) {}
+
+    /** 样本负载的轨迹文件. */
+    private final String _trace;
+
+    /** 存放各次回放的数据目录的临时目录. */
+    private final String _scratch;
+
+    /**
+     * 调优工具的构造函数.
+     * @param trace 样本负载的轨迹文件
+     * @param scratch 存放各次回放的数据目录的临时目录，每次回放结束后其数据目录即被删除
+     */
+    public Tuner(String trace, String scratch) {
+        _trace = trace;
+        _scratch = scratch;
+    }
+
+    /**
+     * 给定各参数的候选值，返回它们的全部组合. {@code upperThreshold * capacity < 3}的组合被跳过.
+     */
+    public static List<EngineConfig> grid(int[] orders, int[] capacities, double[] thresholds, int[] buffers) {
+        List<EngineConfig> configs = new ArrayList<>();
+        for (int order : orders) {
+            for (int capacity : capacities) {
+                for (double threshold : thresholds) {
+                    if (threshold * capacity < 3) { continue; }
+                    for (int buffer : buffers) { configs.add(new EngineConfig(order, capacity, threshold, buffer)); }
+                }
+            }
+        }
+        return configs;
+    }
+
+    /**
+     * 依次测量每种配置.
+     * @param configs 待测量的配置
+     * @param repeat 每种配置回放的次数，取吞吐量居中的一次
+     * @param progress 每测完一种配置时输出进度，可以为null
+     */
+    public List<Result> sweep(List<EngineConfig> configs, int repeat, PrintWriter progress)
+            throws IOException {
+        List<Result> results = new ArrayList<>();
+        for (EngineConfig config : configs) {
+            List<Result> runs = new ArrayList<>();
+            for (int i = 0; i < Math.max(1, repeat); i++) { runs.add(measure(config)); }
+            runs.sort(Comparator.comparingDouble(Result::throughput));
+            Result result = runs.get(runs.size() / 2);
+            results.add(result);
+            if (progress != null) {
+                progress.printf("[%d/%d] %s -> %.1f ops/s, p99 %.1fus, %d bytes on disk\n", results.size(),
+                        configs.size(), config.toArguments(), result.throughput(), result.p99Nanos() / 1e3,
+                        result.diskBytes());
+                progress.flush();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 在新的数据目录中以给定的配置回放一次样本负载.
+     * @throws IOException 若轨迹无法读取，或表文件无法写入
+     */
+    public Result measure(EngineConfig config) throws IOException {
+        String directory = String.format("%s/M%d-C%d-T%s-B%d-%d", _scratch, config.order(), config.capacity(),
+                config.upperThreshold(), config.bufferCapacity(), System.nanoTime());
+        try (Executor<String, String> executor = config.newExecutor(directory)) {
+            long start = System.nanoTime();
+            TraceReplay.Report report = new TraceReplay(_trace, TraceReplay.Target.of(executor)).replay(0);
+            executor.awaitFlush();
+            long elapsed = System.nanoTime() - start;
+            LatencyHistogram latency = new LatencyHistogram();
+            for (Statement.Type type : Statement.Type.values()) { latency.add(report.latency(type)); }
+            return new Result(config, elapsed == 0 ? 0 : report.executed() * 1e9 / elapsed,
+                    latency.quantile(0.5), latency.quantile(0.99), latency.quantile(0.999), latency.max(),
+                    diskBytes(directory), executor.ioStats().total().bytesWritten(),
+                    executor.tables(), executor.height(), report.errors());
+        } finally {
+            delete(Paths.get(directory));
+        }
+    }
+
+    /**
+     * 按给定的目标推荐一种配置.
+     * @param results 各配置的测量结果，不能为空
+     * @return 得分最高的结果，得分相同时取靠前的一个
+     */
+    public static Result recommend(List<Result> results, Objective objective) {
+        Result best = null;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (Result result : results) {
+            double score = score(result, results, objective);
+            if (score > bestScore) {
+                best = result;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /** 结果在给定目标下的得分，取值在(0, 1]内，1为所有结果中的最优. */
+    public static double score(Result result, List<Result> results, Objective objective) {
+        double maxThroughput = results.stream().mapToDouble(Result::throughput).max().orElse(0);
+        long minP99 = results.stream().mapToLong(Result::p99Nanos).min().orElse(0);
+        long minDisk = results.stream().mapToLong(Result::diskBytes).min().orElse(0);
+        double throughput = ratio(result.throughput(), maxThroughput);
+        double latency = ratio(minP99, result.p99Nanos());
+        double disk = ratio(minDisk, result.diskBytes());
+        return switch (objective) {
+            case THROUGHPUT -> throughput;
+            case LATENCY -> latency;
+            case DISK -> disk;
+            case BALANCED -> Math.cbrt(throughput * latency * disk);
+        };
+    }
+
+    private static double ratio(double numerator, double denominator) {
+        return denominator == 0 ? 1 : numerator / denominator;
+    }
+
+    /** 把全部结果连同各目标下的得分写为CSV. */
+    public static void writeCsv(Path path, List<Result> results) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+            out.println("M,capacity,threshold,buffer,throughput,p50_us,p99_us,p999_us,max_us,disk_bytes,"
+                    + "bytes_written,tables,height,errors,score_balanced,score_throughput,score_latency,score_disk");
+            for (Result r : results) {
+                EngineConfig c = r.config();
+                out.printf("%d,%d,%s,%d,%.1f,%.1f,%.1f,%.1f,%.1f,%d,%d,%d,%d,%d,%.4f,%.4f,%.4f,%.4f\n",
+                        c.order(), c.capacity(), c.upperThreshold(), c.bufferCapacity(), r.throughput(),
+                        r.p50Nanos() / 1e3, r.p99Nanos() / 1e3, r.p999Nanos() / 1e3, r.maxNanos() / 1e3,
+                        r.diskBytes(), r.bytesWritten(), r.tables(), r.height(), r.errors(),
+                        score(r, results, Objective.BALANCED), score(r, results, Objective.THROUGHPUT),
+                        score(r, results, Objective.LATENCY), score(r, results, Objective.DISK));
+            }
+        }
+    }
+
+    /**
+     * 生成一份合成的样本负载. 插入的键一半按顺序追加在键空间的末尾，一半随机落在已有的键之间；
+     * 查询、更新与删除均匀地访问追加过的键.
+     * @param path 轨迹文件的路径
+     * @param statements 语句条数
+     * @param seed 随机数种子，相同的种子生成相同的语句
+     */
+    public static void sample(String path, int statements, long seed) throws IOException {
+        Random random = new Random(seed);
+        long appended = 0;
+        try (TraceWriter writer = new TraceWriter(path)) {
+            for (int i = 0; i < statements; i++) {
+                int dice = random.nextInt(100);
+                Statement statement;
+                if (dice < 50 || appended == 0) {
+                    // 偶数序号按顺序追加，奇数序号落在已有的键之间
+                    long n = appended == 0 || random.nextBoolean() ?
+                            2 * appended++ : 2L * random.nextInt((int) appended) + 1;
+                    statement = new Statement(Statement.Type.INSERT, sampleKey(n), sampleValue(random));
+                } else {
+                    String key = sampleKey(2L * random.nextInt((int) appended));
+                    if (dice < 80) { statement = new Statement(Statement.Type.SHOW_KEY, key, null); }
+                    else if (dice < 95) { statement = new Statement(Statement.Type.UPDATE, key, sampleValue(random)); }
+                    else { statement = new Statement(Statement.Type.DELETE, key, null); }
+                }
+                writer.append(statement);
+            }
+        }
+    }
+
+    private static String sampleKey(long n) { return String.format("key%08d", n); }
+
+    private static String sampleValue(Random random) {
+        StringBuilder value = new StringBuilder("(");
+        for (int i = 0; i < 4; i++) {
+            if (i > 0) { value.append(", "); }
+            for (int j = 0; j < 8; j++) { value.append((char) ('a' + random.nextInt(26))); }
+        }
+        return value.append(')').toString();
+    }
+
+    /** 数据目录中所有文件的总字节数. */
+    private static long diskBytes(String directory) throws IOException {
+        Path root = Paths.get(directory);
+        if (!Files.exists(root)) { return 0; }
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    /** 删除目录及其中的所有文件. */
+    private static void delete(Path root) throws IOException {
+        if (!Files.exists(root)) { return; }
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) { Files.deleteIfExists(file); }
+        }
+    }
+
+    private static int[] ints(String list) {
+        return Stream.of(list.split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+    }
+
+    private static double[] doubles(String list) {
+        return Stream.of(list.split(",")).mapToDouble(s -> Double.parseDouble(s.trim())).toArray();
+    }
+
+    public static void main(String[] args) throws IOException {
+        String trace = null, out = "tuning.csv";
+        String orders = "8,16,64", capacities = "20,128,512", thresholds = "0.7,0.8,0.9", buffers = "12,128,1024";
+        int sample = 20000, repeat = 1;
+        Objective objective = Objective.BALANCED;
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                trace = args[i];
+                continue;
+            }
+            if (i + 1 >= args.length) { throw new IllegalArgumentException(String.format("参数缺少取值: %s", args[i])); }
+            String value = args[++i];
+            switch (args[i - 1]) {
+                case "--sample" -> sample = Integer.parseInt(value);
+                case "--M" -> orders = value;
+                case "--capacity" -> capacities = value;
+                case "--threshold" -> thresholds = value;
+                case "--buffer" -> buffers = value;
+                case "--repeat" -> repeat = Integer.parseInt(value);
+                case "--objective" -> objective = Objective.valueOf(value.toUpperCase());
+                case "--out" -> out = value;
+                default -> throw new IllegalArgumentException(String.format("未知的参数: %s", args[i - 1]));
+            }
+        }
+        String scratch = String.format("./data/tune-%d", System.nanoTime());
+        new File(scratch).mkdirs();
+        if (trace == null) {
+            trace = scratch + "/sample.trace";
+            sample(trace, sample, 42);
+            System.out.printf("已生成含有%d条语句的样本负载\n", sample);
+        }
+        List<EngineConfig> configs = grid(ints(orders), ints(capacities), doubles(thresholds), ints(buffers));
+        if (configs.isEmpty()) {
+            System.out.println("没有可测量的配置");
+            return;
+        }
+        PrintWriter progress = new PrintWriter(System.out, true);
+        List<Result> results = new Tuner(trace, scratch).sweep(configs, repeat, progress);
+        writeCsv(Paths.get(out), results);
+        Result best = recommend(results, objective);
+        System.out.printf("全部结果已写入%s\n", out);
+        System.out.printf("推荐配置(%s): %s\n", objective.name().toLowerCase(), best.config().toArguments());
+        System.out.printf("吞吐量%.1f ops/s，p99 %.1fus，p999 %.1fus，磁盘占用%d字节，写入%d字节\n", best.throughput(),
+                best.p99Nanos() / 1e3, best.p999Nanos() / 1e3, best.diskBytes(), best.bytesWritten());
+    }
+}
@@ -0,0 +1,160 @@
+package Metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 存储引擎内部的Java Flight Recorder事件，在JFR中归入"KV Store"分类.
+ * <p>
+ * 记录一个事件的方式为：创建事件并调用{@code begin()}，操作结束后调用{@code end()}，
+ * 仅当{@code shouldCommit()}为真时才填写字段并{@code commit()}. 未开启录制时{@code shouldCommit()}恒为假，
+ * JIT会消除事件对象的分配，字段也不会被计算，因此可以常驻在热路径上.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public final class EngineEvents {
+
+    private EngineEvents() {}
+
+    /** 从磁盘读入并反序列化一张表. */
+    @Name("kvstore.TableOpen")
+    @Label("Table Open")
+    @Category({ "KV Store", "Table" })
+    @Description("A table file was read and deserialized.")
+    @StackTrace(false)
+    public static final class TableOpen extends Event {
+        @Label("Table")
+        public String table;
+
+        @Label("Path")
+        public String path;
+
+        @Label("Bytes Read")
+        @DataAmount
+        public long bytes;
+
+        @Label("Records")
+        public long records;
+    }
+
+    /** 将一张表序列化并写回磁盘. */
+    @Name("kvstore.TableClose")
+    @Label("Table Close")
+    @Category({ "KV Store", "Table" })
+    @Description("A table was serialized and written to a table file.")
+    @StackTrace(false)
+    public static final class TableClose extends Event {
+        @Label("Table")
+        public String table;
+
+        @Label("Path")
+        public String path;
+
+        @Label("Bytes Written")
+        @DataAmount
+        public long bytes;
+
+        @Label("Records")
+        public long records;
+    }
+
+    /** 表内分裂，包括写回分裂出的两张表. */
+    @Name("kvstore.TableSplit")
+    @Label("Table Split")
+    @Category({ "KV Store", "Index" })
+    @Description("A table reached its size threshold and was split in two.")
+    public static final class TableSplit extends Event {
+        @Label("Table")
+        public String table;
+
+        @Label("New Table")
+        public String newTable;
+
+        @Label("Records Before")
+        public long recordsBefore;
+
+        @Label("Left Records")
+        public long leftRecords;
+
+        @Label("Right Records")
+        public long rightRecords;
+    }
+
+    /** 页中的表达到B+树的阶时，页一分为二. */
+    @Name("kvstore.PageSplit")
+    @Label("Page Split")
+    @Category({ "KV Store", "Index" })
+    @Description("A page reached the order of the B+ tree and was split in two.")
+    public static final class PageSplit extends Event {
+        @Label("Tables Before")
+        public int tablesBefore;
+
+        @Label("Left Tables")
+        public int leftTables;
+
+        @Label("Right Tables")
+        public int rightTables;
+
+        @Label("Pages After")
+        public int pages;
+    }
+
+    /** 删除表后页中的表不足B+树的阶的一半，且兄弟页无法借出表时，两页合并. */
+    @Name("kvstore.PageMerge")
+    @Label("Page Merge")
+    @Category({ "KV Store", "Index" })
+    @Description("An underflowing page was merged with its sibling.")
+    public static final class PageMerge extends Event {
+        @Label("Left Tables")
+        public int leftTables;
+
+        @Label("Right Tables")
+        public int rightTables;
+
+        @Label("Pages After")
+        public int pages;
+    }
+
+    /** 写满的缓冲区被写入存储引擎. */
+    @Name("kvstore.BufferFlush")
+    @Label("Buffer Flush")
+    @Category({ "KV Store", "Executor" })
+    @Description("A full write buffer was written to the storage engine as a new table.")
+    @StackTrace(false)
+    public static final class BufferFlush extends Event {
+        @Label("Table")
+        public String table;
+
+        @Label("Records")
+        public long records;
+
+        @Label("Backlog")
+        @Description("Full buffers still waiting to be written, this one included.")
+        public int backlog;
+    }
+
+    /** 缓存淘汰了一条记录. */
+    @Name("kvstore.CacheEviction")
+    @Label("Cache Eviction")
+    @Category({ "KV Store", "Cache" })
+    @Description("An entry was evicted from a cache.")
+    @StackTrace(false)
+    public static final class CacheEviction extends Event {
+        @Label("Cache")
+        public String cache;
+
+        @Label("Key")
+        public String key;
+
+        @Label("Cause")
+        public String cause;
+
+        @Label("Size After")
+        public long size;
+    }
+}
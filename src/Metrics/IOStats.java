@@ -0,0 +1,303 @@
+package Metrics;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 表文件的IO统计，按数据目录划分：每个目录一份，同一目录下的多个执行器共享统计.
+ * <p>
+ * 打开(反序列化)与关闭(序列化写回)一张表时分别记录调用次数、读写的字节数与记录条数以及耗时，
+ * 统计同时按表和按目录汇总. 表以其不带版本号的文件名区分，同一张表的各个版本计入同一处.
+ * 计数器使用{@link LongAdder}，多个读者并发打开表时不会在同一个缓存行上竞争.
+ * <p>
+ * 统计不会无限增长：表被删除且其文件回收后，可以通过{@link #forget}移除该表的统计(目录的汇总保持不变)；
+ * 目录的统计只被弱引用地登记，使用该目录的执行器不再被引用后即可被回收.
+ * <p>
+ * 结合执行器的{@link OperationStats}可以得到读放大与写放大：
+ * <ul>
+ *     <li>读放大 = 从磁盘读入的记录条数 / 用户操作次数；</li>
+ *     <li>写放大 = 写入磁盘的记录条数 / 用户写入(插入、更新、删除)的次数.</li>
+ * </ul>
+ * 由于键与值的类型是泛型的，无法得知用户数据的字节数，因此放大系数以记录条数计，另外给出每次用户操作的平均读写字节数.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class IOStats {
+
+    /** 所有数据目录的统计，弱引用地登记，由持有统计的执行器决定其生命周期. */
+    private static final ConcurrentHashMap<String, Registration> DIRECTORIES = new ConcurrentHashMap<>();
+
+    /** 已经被回收的统计的登记，在下次访问登记表时清除. */
+    private static final ReferenceQueue<IOStats> COLLECTED = new ReferenceQueue<>();
+
+    /** 统计所属的数据目录. */
+    private final String _directory;
+
+    /** 每张表的统计. */
+    private final ConcurrentHashMap<String, Counters> _tables;
+
+    /** 目录中所有表的汇总. */
+    private final Counters _total;
+
+    private IOStats(String directory) {
+        _directory = directory;
+        _tables = new ConcurrentHashMap<>();
+        _total = new Counters();
+    }
+
+    /**
+     * 返回给定数据目录的统计，不存在时创建. 登记表只弱引用地持有统计，
+     * 需要长期累计的使用者(如执行器)应当自行持有返回的对象.
+     */
+    public static IOStats of(String directory) {
+        expunge();
+        while (true) {
+            Registration registration = DIRECTORIES.get(directory);
+            IOStats stats = registration == null ? null : registration.get();
+            if (stats != null) { return stats; }
+            IOStats created = new IOStats(directory);
+            Registration fresh = new Registration(created);
+            boolean registered = registration == null ? DIRECTORIES.putIfAbsent(directory, fresh) == null
+                    : DIRECTORIES.replace(directory, registration, fresh);
+            if (registered) { return created; }
+        }
+    }
+
+    /** 返回所有数据目录的汇总. */
+    public static IOStats aggregate() {
+        expunge();
+        List<IOStats> parts = new ArrayList<>();
+        for (Registration registration : DIRECTORIES.values()) {
+            IOStats stats = registration.get();
+            if (stats != null) { parts.add(stats); }
+        }
+        return merge("*", parts);
+    }
+
+    /**
+     * 移除一张已经删除的表的统计，目录的汇总不受影响. 目录的统计不存在时不做任何事.
+     * @param directory 表所在的数据目录
+     * @param table 表名
+     */
+    public static void forget(String directory, String table) {
+        Registration registration = DIRECTORIES.get(directory);
+        IOStats stats = registration == null ? null : registration.get();
+        if (stats != null) { stats._tables.remove(table); }
+    }
+
+    /** 清除统计已经被回收的登记. */
+    private static void expunge() {
+        Registration collected;
+        while ((collected = (Registration) COLLECTED.poll()) != null) {
+            DIRECTORIES.remove(collected._directory, collected);
+        }
+    }
+
+    /**
+     * 将若干份统计合并为一份新的统计，原有的统计不受影响.
+     * @param name 合并结果的名称，用于展示
+     * @param parts 待合并的统计
+     * @return 合并后的统计
+     */
+    public static IOStats merge(String name, Iterable<IOStats> parts) {
+        IOStats merged = new IOStats(name);
+        for (IOStats part : parts) {
+            merged._total.add(part._total);
+            part._tables.forEach((table, counters) ->
+                    merged._tables.computeIfAbsent(table, t -> new Counters()).add(counters));
+        }
+        return merged;
+    }
+
+    /**
+     * 记录一次表的打开.
+     * @param table 表名
+     * @param bytes 读入的字节数
+     * @param records 读入的记录条数
+     * @param nanos 读取与反序列化的耗时(纳秒)
+     */
+    public void recordOpen(String table, long bytes, long records, long nanos) {
+        _total.open(bytes, records, nanos);
+        _tables.computeIfAbsent(table, t -> new Counters()).open(bytes, records, nanos);
+    }
+
+    /**
+     * 记录一次表的关闭(写回磁盘).
+     * @param table 表名
+     * @param bytes 写出的字节数
+     * @param records 写出的记录条数
+     * @param nanos 序列化与写出的耗时(纳秒)
+     */
+    public void recordClose(String table, long bytes, long records, long nanos) {
+        _total.close(bytes, records, nanos);
+        _tables.computeIfAbsent(table, t -> new Counters()).close(bytes, records, nanos);
+    }
+
+    /** 返回统计所属的数据目录. */
+    public String directory() { return _directory; }
+
+    /** 返回目录中所有表的汇总. */
+    public Counters total() { return _total; }
+
+    /** 返回每张表的统计，按表名排序. */
+    public Map<String, Counters> tables() { return new TreeMap<>(_tables); }
+
+    /** 返回读放大：从磁盘读入的记录条数 / 用户操作次数. 没有用户操作时返回0. */
+    public double readAmplification(OperationStats operations) {
+        long ops = userOperations(operations);
+        return ops == 0 ? 0 : (double) _total.recordsRead() / ops;
+    }
+
+    /** 返回写放大：写入磁盘的记录条数 / 用户写入的次数. 没有用户写入时返回0. */
+    public double writeAmplification(OperationStats operations) {
+        long writes = userWrites(operations);
+        return writes == 0 ? 0 : (double) _total.recordsWritten() / writes;
+    }
+
+    /**
+     * 以文本的形式返回汇总、放大系数以及读写字节数最多的若干张表.
+     * @param operations 同一数据目录上的执行器的操作统计
+     * @param topN 列出的表的张数
+     */
+    public String report(OperationStats operations, int topN) {
+        long ops = userOperations(operations), writes = userWrites(operations);
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("数据目录: %s\n", _directory));
+        report.append(String.format("打开表%d次，读入%d字节、%d条记录，读取与反序列化耗时%.5fs\n",
+                _total.opens(), _total.bytesRead(), _total.recordsRead(), _total.readNanos() / 1e9));
+        report.append(String.format("关闭表%d次，写出%d字节、%d条记录，序列化与写出耗时%.5fs\n",
+                _total.closes(), _total.bytesWritten(), _total.recordsWritten(), _total.writeNanos() / 1e9));
+        report.append(String.format("读放大%.2f(每次操作读入%.1f字节)，写放大%.2f(每次写入写出%.1f字节)\n",
+                readAmplification(operations), ops == 0 ? 0 : (double) _total.bytesRead() / ops,
+                writeAmplification(operations), writes == 0 ? 0 : (double) _total.bytesWritten() / writes));
+        report.append(String.format("%-24s%10s%10s%14s%14s\n", "table", "opens", "closes", "bytesRead", "bytesWritten"));
+        _tables.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().traffic(), a.getValue().traffic()))
+                .limit(topN)
+                .forEach(e -> report.append(String.format("%-24s%10d%10d%14d%14d\n", e.getKey(),
+                        e.getValue().opens(), e.getValue().closes(),
+                        e.getValue().bytesRead(), e.getValue().bytesWritten())));
+        return report.toString();
+    }
+
+    /**
+     * 以JSON的形式返回全部统计，供脚本读取.
+     * @param operations 同一数据目录上的执行器的操作统计
+     */
+    public String toJson(OperationStats operations) {
+        StringBuilder json = new StringBuilder();
+        json.append(String.format("{\"directory\":\"%s\",\"userOperations\":%d,\"userWrites\":%d,",
+                escape(_directory), userOperations(operations), userWrites(operations)));
+        json.append(String.format("\"readAmplification\":%.4f,\"writeAmplification\":%.4f,",
+                readAmplification(operations), writeAmplification(operations)));
+        json.append("\"total\":").append(_total.toJson()).append(",\"tables\":{");
+        boolean first = true;
+        for (Map.Entry<String, Counters> e : tables().entrySet()) {
+            if (!first) { json.append(','); }
+            first = false;
+            json.append('"').append(escape(e.getKey())).append("\":").append(e.getValue().toJson());
+        }
+        return json.append("}}").toString();
+    }
+
+    private static long userWrites(OperationStats operations) {
+        return operations.histogram(Operation.INSERT).count() + operations.histogram(Operation.UPDATE).count()
+                + operations.histogram(Operation.DELETE).count();
+    }
+
+    private static long userOperations(OperationStats operations) {
+        return userWrites(operations) + operations.histogram(Operation.GET).count()
+                + operations.histogram(Operation.SCAN).count();
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /** 一个数据目录的统计在登记表中的弱引用. */
+    private static final class Registration extends WeakReference<IOStats> {
+
+        /** 统计所属的数据目录，统计被回收后用于清除登记. */
+        private final String _directory;
+
+        private Registration(IOStats stats) {
+            super(stats, COLLECTED);
+            _directory = stats._directory;
+        }
+    }
+
+    /** 一组表的IO计数器. */
+    public static final class Counters {
+
+        private final LongAdder _opens = new LongAdder(), _bytesRead = new LongAdder(),
+                _recordsRead = new LongAdder(), _readNanos = new LongAdder();
+
+        private final LongAdder _closes = new LongAdder(), _bytesWritten = new LongAdder(),
+                _recordsWritten = new LongAdder(), _writeNanos = new LongAdder();
+
+        /** 打开的次数. */
+        public long opens() { return _opens.sum(); }
+
+        /** 读入的字节数. */
+        public long bytesRead() { return _bytesRead.sum(); }
+
+        /** 读入的记录条数. */
+        public long recordsRead() { return _recordsRead.sum(); }
+
+        /** 读取与反序列化的总耗时(纳秒). */
+        public long readNanos() { return _readNanos.sum(); }
+
+        /** 关闭的次数. */
+        public long closes() { return _closes.sum(); }
+
+        /** 写出的字节数. */
+        public long bytesWritten() { return _bytesWritten.sum(); }
+
+        /** 写出的记录条数. */
+        public long recordsWritten() { return _recordsWritten.sum(); }
+
+        /** 序列化与写出的总耗时(纳秒). */
+        public long writeNanos() { return _writeNanos.sum(); }
+
+        /** 读写的总字节数. */
+        private long traffic() { return bytesRead() + bytesWritten(); }
+
+        private void open(long bytes, long records, long nanos) {
+            _opens.increment();
+            _bytesRead.add(bytes);
+            _recordsRead.add(records);
+            _readNanos.add(nanos);
+        }
+
+        private void close(long bytes, long records, long nanos) {
+            _closes.increment();
+            _bytesWritten.add(bytes);
+            _recordsWritten.add(records);
+            _writeNanos.add(nanos);
+        }
+
+        private void add(Counters other) {
+            _opens.add(other.opens());
+            _bytesRead.add(other.bytesRead());
+            _recordsRead.add(other.recordsRead());
+            _readNanos.add(other.readNanos());
+            _closes.add(other.closes());
+            _bytesWritten.add(other.bytesWritten());
+            _recordsWritten.add(other.recordsWritten());
+            _writeNanos.add(other.writeNanos());
+        }
+
+        private String toJson() {
+            return String.format("{\"opens\":%d,\"bytesRead\":%d,\"recordsRead\":%d,\"readNanos\":%d,"
+                            + "\"closes\":%d,\"bytesWritten\":%d,\"recordsWritten\":%d,\"writeNanos\":%d}",
+                    opens(), bytesRead(), recordsRead(), readNanos(),
+                    closes(), bytesWritten(), recordsWritten(), writeNanos());
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package Metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁的延迟直方图，以纳秒为单位记录耗时.
+ * <p>
+ * 桶的划分与HdrHistogram相同：小于{@code 2^SUB_BITS}的值各占一个桶；更大的值按2的幂分段，
+ * 每段再均分为{@code 2^(SUB_BITS-1)}个子桶，因此任意值的相对误差不超过{@code 1/2^(SUB_BITS-1)}(约1.6%).
+ * <p>
+ * 记录只包括若干次原子加法，既不加锁也不分配内存，可以在热路径上被多个线程并发调用；
+ * 读取分位数时遍历所有的桶，得到的是一个近似一致的结果.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class LatencyHistogram {
+
+    /** 每段的精度位数. */
+    private static final int SUB_BITS = 7;
+
+    /** 每段中子桶的个数. */
+    private static final int HALF = 1 << (SUB_BITS - 1);
+
+    /** 桶的总数，足以覆盖所有非负的long. */
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * HALF + HALF;
+
+    /** 每个桶中的记录次数. */
+    private final AtomicLongArray _counts;
+
+    /** 记录的总次数、耗时的总和与最大值. */
+    private final AtomicLong _count, _sum, _max;
+
+    /** 默认构造函数. */
+    public LatencyHistogram() {
+        _counts = new AtomicLongArray(BUCKETS);
+        _count = new AtomicLong();
+        _sum = new AtomicLong();
+        _max = new AtomicLong();
+    }
+
+    /**
+     * 记录一次耗时.
+     * @param nanos 耗时(纳秒)，负数按0记录
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        _counts.incrementAndGet(indexOf(value));
+        _count.incrementAndGet();
+        _sum.addAndGet(value);
+        long max;
+        while (value > (max = _max.get()) && !_max.compareAndSet(max, value)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /** 返回记录的总次数. */
+    public long count() { return _count.get(); }
+
+    /** 返回耗时的总和(纳秒). */
+    public long sum() { return _sum.get(); }
+
+    /** 返回耗时的最大值(纳秒). */
+    public long max() { return _max.get(); }
+
+    /** 返回耗时的平均值(纳秒)，没有记录时返回0. */
+    public double mean() {
+        long count = _count.get();
+        return count == 0 ? 0 : (double) _sum.get() / count;
+    }
+
+    /**
+     * 返回给定分位数处的耗时.
+     * @param quantile 分位数，取值范围[0, 1]
+     * @return 分位数所在的桶中最大的值(纳秒)，不超过记录到的最大值；没有记录时返回0
+     */
+    public long quantile(double quantile) {
+        long count = _count.get();
+        if (count == 0) { return 0; }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count)), seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += _counts.get(i);
+            if (seen >= rank) { return Math.min(highestEquivalent(i), _max.get()); }
+        }
+        return _max.get();
+    }
+
+    /** 返回第i个桶中的记录次数. */
+    public long countAt(int i) { return _counts.get(i); }
+
+    /** 返回桶的个数. */
+    public static int buckets() { return BUCKETS; }
+
+    /** 返回第i个桶所能容纳的最大值. */
+    public static long highestEquivalent(int i) {
+        if (i < 2 * HALF) { return i; }
+        int shift = i / HALF - 1;
+        long mantissa = i - (long) shift * HALF;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /** 将另一个直方图中的记录累加到当前直方图中. */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long n = other._counts.get(i);
+            if (n != 0) { _counts.addAndGet(i, n); }
+        }
+        _count.addAndGet(other._count.get());
+        _sum.addAndGet(other._sum.get());
+        long max, otherMax = other._max.get();
+        while (otherMax > (max = _max.get()) && !_max.compareAndSet(max, otherMax)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /** 计算值所在的桶. */
+    private static int indexOf(long value) {
+        if (value < 2 * HALF) { return (int) value; }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+        return shift * HALF + (int) (value >>> shift);
+    }
+}
@@ -0,0 +1,25 @@
+package Metrics;
+
+/**
+ * 需要统计耗时的操作.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public enum Operation {
+    /** 插入一条记录. */
+    INSERT,
+    /** 更新一条记录. */
+    UPDATE,
+    /** 删除一条记录. */
+    DELETE,
+    /** 查询一条记录. */
+    GET,
+    /** 范围查询. */
+    SCAN,
+    /** 将写满的缓冲区写入存储引擎. */
+    FLUSH,
+    /** 表内分裂. */
+    SPLIT,
+    /** 写操作因待写入的缓冲区积压而被延迟或阻塞. 记录的是每次被限流的写操作等待的时间. */
+    STALL
+}
@@ -0,0 +1,85 @@
+package Metrics;
+
+/**
+ * 按操作分类的延迟统计，每种{@link Operation}对应一个{@link LatencyHistogram}.
+ * <p>
+ * 记录时只按操作的序号取出直方图并累加，不加锁也不分配内存，可以在执行器与存储引擎的热路径上调用.
+ * 吞吐量按统计开始以来的平均值计算.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class OperationStats {
+
+    /** 所有操作. */
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    /** 每种操作的直方图，按操作的序号排列. */
+    private final LatencyHistogram[] _histograms;
+
+    /** 统计开始的时刻(纳秒). */
+    private final long _since;
+
+    /** 默认构造函数，统计从此刻开始. */
+    public OperationStats() { this(System.nanoTime()); }
+
+    private OperationStats(long since) {
+        _histograms = new LatencyHistogram[OPERATIONS.length];
+        for (int i = 0; i < _histograms.length; i++) { _histograms[i] = new LatencyHistogram(); }
+        _since = since;
+    }
+
+    /**
+     * 记录一次操作的耗时.
+     * @param operation 操作的类型
+     * @param nanos 耗时(纳秒)
+     */
+    public void record(Operation operation, long nanos) {
+        _histograms[operation.ordinal()].record(nanos);
+    }
+
+    /** 返回给定操作的直方图. */
+    public LatencyHistogram histogram(Operation operation) {
+        return _histograms[operation.ordinal()];
+    }
+
+    /** 返回统计开始以来经过的时间(纳秒). */
+    public long elapsedNanos() { return System.nanoTime() - _since; }
+
+    /** 返回给定操作自统计开始以来的平均吞吐量(次/秒). */
+    public double throughput(Operation operation) {
+        long elapsed = elapsedNanos();
+        return elapsed <= 0 ? 0 : histogram(operation).count() * 1e9 / elapsed;
+    }
+
+    /**
+     * 将若干份统计合并为一份新的统计，原有的统计不受影响. 合并结果的统计开始时刻取其中最早的一个.
+     * @param parts 待合并的统计
+     * @return 合并后的统计
+     */
+    public static OperationStats merge(Iterable<OperationStats> parts) {
+        long since = System.nanoTime();
+        for (OperationStats part : parts) { since = Math.min(since, part._since); }
+        OperationStats merged = new OperationStats(since);
+        for (OperationStats part : parts) {
+            for (int i = 0; i < merged._histograms.length; i++) { merged._histograms[i].add(part._histograms[i]); }
+        }
+        return merged;
+    }
+
+    /** 以表格的形式返回每种操作的次数、吞吐量以及p50/p99/p999/最大耗时(微秒). 没有发生过的操作不列出. */
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("统计时长%.3fs\n", elapsedNanos() / 1e9));
+        report.append(String.format("%-8s%12s%14s%12s%12s%12s%12s\n",
+                "op", "count", "ops/s", "p50(us)", "p99(us)", "p999(us)", "max(us)"));
+        for (Operation operation : OPERATIONS) {
+            LatencyHistogram histogram = histogram(operation);
+            if (histogram.count() == 0) { continue; }
+            report.append(String.format("%-8s%12d%14.1f%12.1f%12.1f%12.1f%12.1f\n",
+                    operation, histogram.count(), throughput(operation),
+                    histogram.quantile(0.5) / 1e3, histogram.quantile(0.99) / 1e3,
+                    histogram.quantile(0.999) / 1e3, histogram.max() / 1e3));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,81 @@
+package Metrics;
+
+import java.util.Arrays;
+
+/**
+ * 记录当前线程上一次操作在各个阶段的耗时，供慢操作日志{@link SlowOpLog}使用.
+ * <p>
+ * 执行器在操作开始时调用{@link #begin(long)}，存储引擎在每个阶段结束时调用{@link #mark(Phase)}，
+ * 自上一次标记(或操作开始)以来经过的时间计入该阶段. 每个线程复用同一个实例，标记时不分配内存；
+ * 不在{@link #begin(long)}与{@link #end()}之间的标记会被忽略，例如后台线程写入缓冲区时的标记.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public final class OperationTrace {
+
+    /** 操作的阶段. */
+    public enum Phase {
+        /** 等待正在写入存储引擎的缓冲区. */
+        WAIT,
+        /** 查找或修改缓冲区. */
+        BUFFER,
+        /** 沿索引下降，定位记录所在的表. */
+        FIND,
+        /** 从磁盘读入并反序列化表. */
+        OPEN,
+        /** 在表中查找或修改记录. */
+        LOOKUP,
+        /** 表内分裂. */
+        SPLIT,
+        /** 将表写回磁盘. */
+        CLOSE
+    }
+
+    /** 所有阶段. */
+    private static final Phase[] PHASES = Phase.values();
+
+    /** 每个线程的实例. */
+    private static final ThreadLocal<OperationTrace> CURRENT = ThreadLocal.withInitial(OperationTrace::new);
+
+    /** 每个阶段的耗时(纳秒)，按阶段的序号排列. */
+    private final long[] _nanos;
+
+    /** 上一次标记的时刻. */
+    private long _last;
+
+    /** 是否处于一次操作之中. */
+    private boolean _active;
+
+    private OperationTrace() { _nanos = new long[PHASES.length]; }
+
+    /**
+     * 在当前线程上开始记录一次操作.
+     * @param start 操作开始的时刻，取自{@link System#nanoTime()}
+     * @return 当前线程的实例
+     */
+    public static OperationTrace begin(long start) {
+        OperationTrace trace = CURRENT.get();
+        Arrays.fill(trace._nanos, 0);
+        trace._last = start;
+        trace._active = true;
+        return trace;
+    }
+
+    /** 将自上一次标记以来的时间计入给定的阶段. */
+    public static void mark(Phase phase) {
+        OperationTrace trace = CURRENT.get();
+        if (!trace._active) { return; }
+        long now = System.nanoTime();
+        trace._nanos[phase.ordinal()] += now - trace._last;
+        trace._last = now;
+    }
+
+    /** 结束当前操作的记录，之后的标记被忽略. */
+    public void end() { _active = false; }
+
+    /** 返回给定阶段的耗时(纳秒). */
+    public long nanos(Phase phase) { return _nanos[phase.ordinal()]; }
+
+    /** 返回各阶段耗时的副本，按阶段的序号排列. */
+    public long[] phases() { return _nanos.clone(); }
+}
@@ -0,0 +1,94 @@
+package Metrics;
+
+/**
+ * 以Prometheus文本格式(0.0.4)输出指标.
+ * <p>
+ * 同名的指标需要连续输出，且{@code # HELP}与{@code # TYPE}只输出一次，因此调用方先调用{@link #header}，
+ * 再为每组标签输出一个样本. 标签以{@code name="value"}的形式拼接好后传入，例如{@code shard="0"}.
+ * <p>
+ * 延迟直方图按固定的边界(1微秒至10秒，每个数量级取1、2.5、5三档)累加输出，而不是输出全部的桶，
+ * 因此每次抓取的输出与直方图的精度无关.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class PrometheusWriter {
+
+    /** 直方图的桶的上界(纳秒). */
+    private static final long[] BOUNDS = bounds();
+
+    /** 输出的文本. */
+    private final StringBuilder _out;
+
+    /** 默认构造函数. */
+    public PrometheusWriter() { _out = new StringBuilder(16 * 1024); }
+
+    /**
+     * 输出一个指标的说明与类型.
+     * @param name 指标名
+     * @param type 指标类型：counter、gauge或histogram
+     * @param help 说明
+     */
+    public PrometheusWriter header(String name, String type, String help) {
+        _out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        _out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    /** 输出一个整数样本. */
+    public PrometheusWriter sample(String name, String labels, long value) {
+        appendName(name, labels);
+        _out.append(' ').append(value).append('\n');
+        return this;
+    }
+
+    /** 输出一个浮点数样本. */
+    public PrometheusWriter sample(String name, String labels, double value) {
+        appendName(name, labels);
+        _out.append(' ').append(value).append('\n');
+        return this;
+    }
+
+    /**
+     * 以秒为单位输出一个延迟直方图的累积桶、总和与个数.
+     * @param name 指标名，不包括{@code _bucket}等后缀
+     * @param labels 标签
+     * @param histogram 以纳秒记录的直方图
+     */
+    public PrometheusWriter histogram(String name, String labels, LatencyHistogram histogram) {
+        // 先读取个数，再累加桶：并发记录时桶的累加值可能略大于个数，+Inf桶取二者中较大的一个
+        long count = histogram.count(), sum = histogram.sum(), cumulative = 0;
+        int bucket = 0, buckets = LatencyHistogram.buckets();
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        for (long bound : BOUNDS) {
+            while (bucket < buckets && LatencyHistogram.highestEquivalent(bucket) <= bound) {
+                cumulative += histogram.countAt(bucket++);
+            }
+            sample(name + "_bucket", prefix + "le=\"" + bound / 1e9 + "\"", cumulative);
+        }
+        while (bucket < buckets) { cumulative += histogram.countAt(bucket++); }
+        sample(name + "_bucket", prefix + "le=\"+Inf\"", Math.max(count, cumulative));
+        sample(name + "_sum", labels, sum / 1e9);
+        sample(name + "_count", labels, Math.max(count, cumulative));
+        return this;
+    }
+
+    @Override
+    public String toString() { return _out.toString(); }
+
+    private void appendName(String name, String labels) {
+        _out.append(name);
+        if (!labels.isEmpty()) { _out.append('{').append(labels).append('}'); }
+    }
+
+    /** 1微秒至10秒，每个数量级取1、2.5、5三档. */
+    private static long[] bounds() {
+        long[] bounds = new long[22];
+        long scale = 1000;
+        for (int i = 0; i < bounds.length; scale *= 10) {
+            bounds[i++] = scale;
+            if (i < bounds.length) { bounds[i++] = scale * 5 / 2; }
+            if (i < bounds.length) { bounds[i++] = scale * 5; }
+        }
+        return bounds;
+    }
+}
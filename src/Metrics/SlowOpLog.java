@@ -0,0 +1,233 @@
+package Metrics;
+
+import Metrics.OperationTrace.Phase;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 慢操作日志. 耗时达到阈值的操作连同其各阶段的耗时({@link OperationTrace})被写入本地的滚动文件.
+ * <p>
+ * 提交日志的线程只把记录放入一个有界队列，由后台线程格式化并写入文件，因此记录日志不会阻塞请求；
+ * 队列已满时丢弃记录并计数. 文件超过给定大小时滚动：{@code slow.log}改名为{@code slow.log.1}，
+ * 原有的{@code slow.log.i}改名为{@code slow.log.(i+1)}，超过保留个数的文件被删除.
+ * <p>
+ * 每条记录占一行，字段以空格分隔，形如：
+ * <pre>
+ * 2026-10-19T10:00:00.123 op=GET key=050 total_us=12345.6 wait_us=0.0 buffer_us=1.2 find_us=3.4 open_us=12001.0 lookup_us=2.1 split_us=0.0 close_us=0.0 other_us=337.9
+ * </pre>
+ * 其中{@code other}为未归入任何阶段的耗时，例如发布索引快照.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class SlowOpLog implements Closeable {
+
+    /** 等待写入的记录个数的上限. */
+    private static final int QUEUE_CAPACITY = 4096;
+
+    /** 后台线程在没有新记录时将缓冲的内容刷出的间隔(毫秒). */
+    private static final long FLUSH_INTERVAL_MILLIS = 200;
+
+    /** 记录时间的格式. */
+    private static final DateTimeFormatter TIME =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    /** 慢操作的阈值(纳秒). */
+    private final long _thresholdNanos;
+
+    /** 日志文件. */
+    private final Path _file;
+
+    /** 单个日志文件的大小上限(字节). */
+    private final long _maxBytes;
+
+    /** 保留的历史文件个数. */
+    private final int _maxFiles;
+
+    /** 等待写入的记录. */
+    private final ArrayBlockingQueue<Entry> _queue;
+
+    /** 写入的记录条数与因队列已满而丢弃的记录条数. */
+    private final AtomicLong _logged, _dropped;
+
+    /** 写入文件的后台线程. */
+    private final Thread _writer;
+
+    /** 日志是否已经关闭. */
+    private volatile boolean _closed;
+
+    /** 以下字段只在后台线程上访问. */
+    private BufferedWriter _out;
+    private long _size;
+
+    /**
+     * 慢操作日志的构造函数.
+     * @param file 日志文件的路径，所在目录不存在时会被创建
+     * @param threshold 慢操作的阈值，耗时不小于它的操作被记录
+     * @param maxBytes 单个日志文件的大小上限(字节)
+     * @param maxFiles 保留的历史文件个数
+     * @throws IllegalArgumentException 若阈值为负或文件大小上限不为正数或历史文件个数为负
+     * @throws IOException 若日志文件无法打开
+     */
+    public SlowOpLog(String file, Duration threshold, long maxBytes, int maxFiles)
+            throws IllegalArgumentException, IOException {
+        if (threshold.isNegative() || maxBytes <= 0 || maxFiles < 0) {
+            String errorMsg = String.format("""
+                    Invalid slow log configuration. Got
+                    threshold: %s
+                    max bytes: %d
+                    max files: %d
+                    """, threshold, maxBytes, maxFiles);
+            throw new IllegalArgumentException(errorMsg);
+        }
+        _thresholdNanos = threshold.toNanos();
+        _file = Paths.get(file);
+        _maxBytes = maxBytes;
+        _maxFiles = maxFiles;
+        _queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        _logged = new AtomicLong();
+        _dropped = new AtomicLong();
+        open();
+        _writer = new Thread(this::writeLoop, "slow-op-log");
+        _writer.setDaemon(true);
+        _writer.start();
+    }
+
+    /** 返回耗时是否达到慢操作的阈值. */
+    public boolean isSlow(long nanos) { return nanos >= _thresholdNanos; }
+
+    /**
+     * 提交一条慢操作记录，不会阻塞.
+     * @param operation 操作的类型
+     * @param key 操作的键，范围查询为区间
+     * @param nanos 操作的总耗时(纳秒)
+     * @param trace 操作各阶段的耗时
+     */
+    public void submit(Operation operation, String key, long nanos, OperationTrace trace) {
+        if (_closed || !_queue.offer(new Entry(System.currentTimeMillis(), operation, key, nanos, trace.phases()))) {
+            _dropped.incrementAndGet();
+        }
+    }
+
+    /** 返回已经写入文件的记录条数. */
+    public long logged() { return _logged.get(); }
+
+    /** 返回因队列已满或日志已关闭而丢弃的记录条数. */
+    public long dropped() { return _dropped.get(); }
+
+    /** 写完队列中剩余的记录后关闭日志. */
+    @Override
+    public void close() throws IOException {
+        _closed = true;
+        try {
+            _writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** 后台线程：取出记录并写入文件，没有新记录时刷出缓冲的内容. */
+    private void writeLoop() {
+        try {
+            while (!_closed || !_queue.isEmpty()) {
+                Entry entry;
+                try {
+                    entry = _queue.poll(FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                if (entry == null) {
+                    _out.flush();
+                    continue;
+                }
+                do {
+                    write(entry);
+                } while ((entry = _queue.poll()) != null);
+                _out.flush();
+            }
+        } catch (IOException e) {
+            // 日志文件不可写，此后的记录全部丢弃
+            _closed = true;
+            _dropped.addAndGet(_queue.size());
+            _queue.clear();
+        } finally {
+            try {
+                _out.close();
+            } catch (IOException ignored) {
+                // 关闭失败时无法补救，忽略
+            }
+        }
+    }
+
+    /** 写入一条记录，必要时先滚动文件. */
+    private void write(Entry entry) throws IOException {
+        String line = entry.format();
+        int length = line.getBytes(StandardCharsets.UTF_8).length;
+        if (_size > 0 && _size + length > _maxBytes) { roll(); }
+        _out.write(line);
+        _size += length;
+        _logged.incrementAndGet();
+    }
+
+    /** 以追加的方式打开日志文件. */
+    private void open() throws IOException {
+        Path parent = _file.toAbsolutePath().getParent();
+        if (parent != null) { Files.createDirectories(parent); }
+        _out = Files.newBufferedWriter(_file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        _size = Files.size(_file);
+    }
+
+    /** 滚动日志文件. */
+    private void roll() throws IOException {
+        _out.close();
+        if (_maxFiles == 0) {
+            Files.delete(_file);
+        } else {
+            Files.deleteIfExists(history(_maxFiles));
+            for (int i = _maxFiles - 1; i >= 1; i--) {
+                if (Files.exists(history(i))) {
+                    Files.move(history(i), history(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(_file, history(1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        open();
+    }
+
+    /** 第i个历史文件. */
+    private Path history(int i) { return Paths.get(_file + "." + i); }
+
+    /** 一条慢操作记录. */
+    private record Entry(long timeMillis, Operation operation, String key, long nanos, long[] phases) {
+
+        private String format() {
+            StringBuilder line = new StringBuilder(256);
+            line.append(TIME.format(Instant.ofEpochMilli(timeMillis)))
+                    .append(" op=").append(operation)
+                    .append(" key=").append(key == null ? "-" : key.replace('\n', ' ').replace(' ', '_'))
+                    .append(String.format(" total_us=%.1f", nanos / 1e3));
+            long traced = 0;
+            for (Phase phase : Phase.values()) {
+                long phaseNanos = phases[phase.ordinal()];
+                traced += phaseNanos;
+                line.append(String.format(" %s_us=%.1f", phase.name().toLowerCase(), phaseNanos / 1e3));
+            }
+            line.append(String.format(" other_us=%.1f\n", Math.max(0, nanos - traced) / 1e3));
+            return line.toString();
+        }
+    }
+}
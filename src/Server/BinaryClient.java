@@ -0,0 +1,300 @@
+package Server;
+
+import static Server.BinaryProtocol.*;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * {@link BinaryServer}的客户端，内部维护一个连接池，可以被多个线程共享.
+ * <p>
+ * 单条操作(如{@link #get(String)})从连接池中借出一个连接，发送请求并等待响应后归还连接.
+ * 需要发送大量请求时可以使用{@link #pipeline()}：请求先写入缓冲区，调用{@link Pipeline#sync()}时一次性发出，
+ * 再按顺序读取所有响应，从而把多次往返合并为一次.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class BinaryClient implements Closeable {
+
+    /** 服务端地址. */
+    private final InetSocketAddress _address;
+
+    /** 空闲的连接. */
+    private final ConcurrentLinkedQueue<Connection> _idle;
+
+    /** 限制同时借出的连接个数. */
+    private final Semaphore _permits;
+
+    /** 客户端是否已经关闭. */
+    private volatile boolean _closed;
+
+    /**
+     * 客户端的构造函数. 连接在第一次被借出时才建立.
+     * @param host 服务端的主机名
+     * @param port 服务端的端口
+     * @param maxConnections 连接池中连接个数的上限，超过时借用连接的线程会被阻塞
+     * @throws IllegalArgumentException 若连接个数的上限不为正数
+     */
+    public BinaryClient(String host, int port, int maxConnections) throws IllegalArgumentException {
+        if (maxConnections <= 0) {
+            throw new IllegalArgumentException("The maximum number of connections should be positive.");
+        }
+        _address = new InetSocketAddress(host, port);
+        _idle = new ConcurrentLinkedQueue<>();
+        _permits = new Semaphore(maxConnections);
+    }
+
+    /** 检查服务端是否可用. */
+    public void ping() throws IOException {
+        try (Pipeline pipeline = pipeline()) {
+            await(pipeline.ping(), pipeline);
+        }
+    }
+
+    /** 查询键对应的值，记录不存在时返回null. */
+    public String get(String key) throws IOException {
+        try (Pipeline pipeline = pipeline()) {
+            return await(pipeline.get(key), pipeline);
+        }
+    }
+
+    /** 写入一条记录. */
+    public void put(String key, String value) throws IOException {
+        try (Pipeline pipeline = pipeline()) {
+            await(pipeline.put(key, value), pipeline);
+        }
+    }
+
+    /** 删除一条记录，返回被删除的值，记录不存在时返回null. */
+    public String delete(String key) throws IOException {
+        try (Pipeline pipeline = pipeline()) {
+            return await(pipeline.delete(key), pipeline);
+        }
+    }
+
+    /** 按键的顺序返回闭区间[low, high]内的记录，端点为null时表示该侧无界. */
+    public List<Map.Entry<String, String>> scan(String low, String high) throws IOException {
+        try (Pipeline pipeline = pipeline()) {
+            return await(pipeline.scan(low, high), pipeline);
+        }
+    }
+
+    /**
+     * 从连接池中借出一个连接，用于流水线地发送请求. 用完后需要关闭以归还连接.
+     * @throws IOException 若无法建立连接
+     */
+    public Pipeline pipeline() throws IOException {
+        if (_closed) { throw new IOException("客户端已经关闭"); }
+        try {
+            _permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待连接时被中断", e);
+        }
+        Connection connection = _idle.poll();
+        if (connection == null) {
+            try {
+                connection = new Connection(_address);
+            } catch (IOException e) {
+                _permits.release();
+                throw e;
+            }
+        }
+        return new Pipeline(connection);
+    }
+
+    /** 关闭所有空闲的连接. 已经借出的连接在归还时关闭. */
+    @Override
+    public void close() {
+        _closed = true;
+        Connection connection;
+        while ((connection = _idle.poll()) != null) { connection.close(); }
+    }
+
+    /** 发送请求并等待单个请求的响应. */
+    private static <T> T await(CompletableFuture<T> result, Pipeline pipeline) throws IOException {
+        pipeline.sync();
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) { throw (IOException) e.getCause(); }
+            throw e;
+        }
+    }
+
+    /** 归还连接. 连接已经失效或客户端已经关闭时直接关闭连接. */
+    private void release(Connection connection) {
+        if (connection._broken || _closed) { connection.close(); }
+        else { _idle.offer(connection); }
+        _permits.release();
+    }
+
+    /**
+     * 借出的一个连接上的一组流水线请求. 每个请求立即返回一个future，在{@link #sync()}读到对应的响应后完成.
+     * 不是线程安全的.
+     */
+    public class Pipeline implements Closeable {
+
+        /** 尚未读取响应的请求数达到该值时自动同步，以免双方的套接字缓冲区都被写满而相互等待. */
+        private static final int MAX_PENDING = 1024;
+
+        /** 借出的连接. */
+        private final Connection _connection;
+
+        /** 尚未读取响应的请求，按发送的顺序排列. */
+        private final ArrayDeque<Pending<?>> _pending;
+
+        /** 连接是否已经归还. */
+        private boolean _released;
+
+        private Pipeline(Connection connection) {
+            _connection = connection;
+            _pending = new ArrayDeque<>();
+        }
+
+        /** 检查服务端是否可用. */
+        public CompletableFuture<Void> ping() throws IOException {
+            return send(frame -> null, PING);
+        }
+
+        /** 查询键对应的值，记录不存在时结果为null. */
+        public CompletableFuture<String> get(String key) throws IOException {
+            return send(Frame::readString, GET, key);
+        }
+
+        /** 写入一条记录. */
+        public CompletableFuture<Void> put(String key, String value) throws IOException {
+            return send(frame -> null, PUT, key, value);
+        }
+
+        /** 删除一条记录，结果为被删除的值，记录不存在时结果为null. */
+        public CompletableFuture<String> delete(String key) throws IOException {
+            return send(Frame::readString, DELETE, key);
+        }
+
+        /** 按键的顺序返回闭区间[low, high]内的记录，端点为null时表示该侧无界. */
+        public CompletableFuture<List<Map.Entry<String, String>>> scan(String low, String high) throws IOException {
+            return send(frame -> {
+                int count = frame.readInt();
+                List<Map.Entry<String, String>> records = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    records.add(new AbstractMap.SimpleImmutableEntry<>(frame.readString(), frame.readString()));
+                }
+                return records;
+            }, SCAN, low, high);
+        }
+
+        /** 发出所有缓冲的请求，并按顺序读取它们的响应. */
+        public void sync() throws IOException {
+            if (_pending.isEmpty()) { return; }
+            try {
+                _connection._out.flush();
+                while (!_pending.isEmpty()) {
+                    _pending.peek().complete(readFrame(_connection._in));
+                    _pending.poll();
+                }
+            } catch (IOException e) {
+                _connection._broken = true;
+                while (!_pending.isEmpty()) { _pending.poll()._result.completeExceptionally(e); }
+                throw e;
+            }
+        }
+
+        /** 读取剩余的响应并归还连接. */
+        @Override
+        public void close() throws IOException {
+            if (_released) { return; }
+            try {
+                sync();
+            } finally {
+                _released = true;
+                release(_connection);
+            }
+        }
+
+        /** 将请求写入缓冲区. */
+        private <T> CompletableFuture<T> send(Decoder<T> decoder, byte code, String... fields) throws IOException {
+            if (_released) { throw new IllegalStateException("连接已经归还"); }
+            if (_pending.size() >= MAX_PENDING) { sync(); }
+            Pending<T> pending = new Pending<>(decoder);
+            try {
+                writeFrame(_connection._out, code, fields);
+            } catch (IOException e) {
+                _connection._broken = true;
+                throw e;
+            }
+            _pending.add(pending);
+            return pending._result;
+        }
+    }
+
+    /** 从状态为{@link BinaryProtocol#OK}的响应中解析结果. */
+    @FunctionalInterface
+    private interface Decoder<T> {
+        T decode(Frame frame) throws IOException;
+    }
+
+    /** 一个等待响应的请求. */
+    private static final class Pending<T> {
+
+        private final Decoder<T> _decoder;
+
+        private final CompletableFuture<T> _result = new CompletableFuture<>();
+
+        private Pending(Decoder<T> decoder) { _decoder = decoder; }
+
+        /** 根据响应完成请求. 响应格式非法时抛出异常，连接随之失效. */
+        private void complete(Frame response) throws IOException {
+            switch (response.code()) {
+                case OK -> _result.complete(_decoder.decode(response));
+                case NOT_FOUND -> _result.complete(null);
+                case ERROR -> _result.completeExceptionally(new IOException(response.readString()));
+                default -> throw new ProtocolException("unknown status: " + response.code());
+            }
+        }
+    }
+
+    /** 到服务端的一个连接. */
+    private static final class Connection {
+
+        private final Socket _socket;
+
+        private final DataInputStream _in;
+
+        private final DataOutputStream _out;
+
+        /** 连接上是否发生过IO异常. 失效的连接不再归还连接池. */
+        private boolean _broken;
+
+        private Connection(InetSocketAddress address) throws IOException {
+            _socket = new Socket();
+            _socket.setTcpNoDelay(true);
+            _socket.connect(address);
+            _in = new DataInputStream(new BufferedInputStream(_socket.getInputStream()));
+            _out = new DataOutputStream(new BufferedOutputStream(_socket.getOutputStream()));
+        }
+
+        private void close() {
+            try {
+                _socket.close();
+            } catch (IOException ignored) {
+                // 连接已经失效，忽略
+            }
+        }
+    }
+}
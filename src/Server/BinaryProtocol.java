@@ -0,0 +1,118 @@
+package Server;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 长度前缀的二进制协议，由{@link BinaryServer}与{@link BinaryClient}共用.
+ * <p>
+ * 请求与响应都以帧为单位传输，所有整数均为大端序：
+ * <pre>
+ * 请求: | 帧长度(int) | 操作码(byte) | 参数 ... |
+ * 响应: | 帧长度(int) | 状态码(byte) | 结果 ... |
+ * </pre>
+ * 帧长度不包括自身的4个字节. 字符串参数编码为{@code | 字节数(int) | UTF-8字节 |}，字节数为-1时表示null.
+ * <ul>
+ *     <li>{@link #PING}：无参数，响应无结果；</li>
+ *     <li>{@link #GET}：参数为键，结果为值，记录不存在时状态码为{@link #NOT_FOUND}；</li>
+ *     <li>{@link #PUT}：参数为键与值，响应无结果；</li>
+ *     <li>{@link #DELETE}：参数为键，结果为被删除的值，记录不存在时状态码为{@link #NOT_FOUND}；</li>
+ *     <li>{@link #SCAN}：参数为区间的左右端点(可以为null，表示该侧无界)，结果为记录条数(int)以及按键的顺序排列的键值对.</li>
+ * </ul>
+ * 出错时状态码为{@link #ERROR}，结果为错误信息. 同一连接上的响应与请求一一对应且顺序相同，因此客户端可以流水线地发送请求.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public final class BinaryProtocol {
+
+    /** 操作码. */
+    public static final byte PING = 0, GET = 1, PUT = 2, DELETE = 3, SCAN = 4;
+
+    /** 状态码. */
+    public static final byte OK = 0, NOT_FOUND = 1, ERROR = 2;
+
+    /** 单帧的最大字节数，超过时视为协议错误. */
+    public static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+    private BinaryProtocol() {}
+
+    /** 返回字符串编码后的字节数. */
+    static int encodedLength(byte[] utf8) { return 4 + (utf8 == null ? 0 : utf8.length); }
+
+    /** 将字符串编码为UTF-8字节，null保持为null. */
+    static byte[] utf8(String s) { return s == null ? null : s.getBytes(StandardCharsets.UTF_8); }
+
+    /** 写出一个已经编码的字符串. */
+    static void writeBytes(DataOutputStream out, byte[] utf8) throws IOException {
+        if (utf8 == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    /** 写出一个只包含若干字符串的帧. */
+    static void writeFrame(DataOutputStream out, byte code, String... fields) throws IOException {
+        byte[][] encoded = new byte[fields.length][];
+        int length = 1;
+        for (int i = 0; i < fields.length; i++) {
+            encoded[i] = utf8(fields[i]);
+            length += encodedLength(encoded[i]);
+        }
+        out.writeInt(length);
+        out.writeByte(code);
+        for (byte[] field : encoded) { writeBytes(out, field); }
+    }
+
+    /**
+     * 读取一个完整的帧.
+     * @return 帧的内容，第一个字节为操作码或状态码.
+     * @throws java.io.EOFException 若连接在帧的边界处被关闭.
+     * @throws ProtocolException 若帧长度非法.
+     */
+    static Frame readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 1 || length > MAX_FRAME_LENGTH) { throw new ProtocolException("invalid frame length: " + length); }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new Frame(bytes);
+    }
+
+    /** 读入内存的一个帧，按顺序解析其中的字段. */
+    static final class Frame {
+
+        private final ByteBuffer _bytes;
+
+        private Frame(byte[] bytes) {
+            _bytes = ByteBuffer.wrap(bytes);
+            // 跳过操作码或状态码
+            _bytes.position(1);
+        }
+
+        /** 操作码或状态码. */
+        byte code() { return _bytes.get(0); }
+
+        /** 读取下一个整数. */
+        int readInt() throws ProtocolException {
+            if (_bytes.remaining() < 4) { throw new ProtocolException("truncated frame"); }
+            return _bytes.getInt();
+        }
+
+        /** 读取下一个字符串. */
+        String readString() throws ProtocolException {
+            int length = readInt();
+            if (length == -1) { return null; }
+            if (length < 0 || length > _bytes.remaining()) {
+                throw new ProtocolException("invalid string length: " + length);
+            }
+            String s = new String(_bytes.array(), _bytes.position(), length, StandardCharsets.UTF_8);
+            _bytes.position(_bytes.position() + length);
+            return s;
+        }
+    }
+}
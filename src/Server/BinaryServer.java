@@ -0,0 +1,266 @@
+package Server;
+
+import static Server.BinaryProtocol.*;
+import Main.Executor;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 以{@link BinaryProtocol}对外提供{@link Executor}读写操作的TCP服务端，每个连接由一个线程以阻塞IO处理.
+ * <p>
+ * 运行在支持虚拟线程的JDK(21及以上)上时，每个连接使用一个虚拟线程，表的读写阻塞时不会占用平台线程，
+ * 大量空闲连接也无需调整线程池；在更早的JDK上退化为每个连接一个栈空间较小的平台线程.
+ * <p>
+ * 执行器要求同一时刻只有一个写者，因此写操作由一把{@link ReentrantLock}串行化；读操作不加锁，
+ * 与写操作并发进行. 这里不使用{@code synchronized}，以免虚拟线程在持有监视器时执行磁盘IO而被钉住.
+ * <p>
+ * 同一连接上的请求按顺序执行，输入缓冲区中已经没有待处理的请求时才将响应刷出，因此流水线请求的响应会被合并写回.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class BinaryServer implements Closeable {
+
+    /** 不支持虚拟线程时，每个连接线程的栈大小. 连接线程的调用栈很浅，较小的栈可以容纳更多的空闲连接. */
+    private static final long PLATFORM_STACK_SIZE = 256 * 1024;
+
+    /** 等待被接受的连接队列的长度. */
+    private static final int BACKLOG = 4096;
+
+    /** 被访问的执行器. */
+    private final Executor<String, String> _executor;
+
+    /** 串行化写操作的锁. */
+    private final ReentrantLock _writeLock;
+
+    /** 监听套接字. */
+    private final ServerSocket _server;
+
+    /** 创建连接线程的工厂. */
+    private final ThreadFactory _connectionThreads;
+
+    /** 当前打开的所有连接. */
+    private final Set<Socket> _connections;
+
+    /** 接受连接的线程. */
+    private final Thread _acceptor;
+
+    /** 服务端是否已经关闭. */
+    private volatile boolean _closed;
+
+    /**
+     * 在本机回环地址上监听的服务端.
+     * @param executor 被访问的执行器
+     * @param port 监听的端口，为0时由系统分配
+     * @throws IOException 若端口无法绑定
+     */
+    public BinaryServer(Executor<String, String> executor, int port) throws IOException {
+        this(executor, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /**
+     * 在给定地址上监听的服务端.
+     * @param executor 被访问的执行器
+     * @param address 监听的地址
+     * @throws IOException 若地址无法绑定
+     */
+    public BinaryServer(Executor<String, String> executor, InetSocketAddress address) throws IOException {
+        _executor = executor;
+        _writeLock = new ReentrantLock();
+        _server = new ServerSocket();
+        _server.setReuseAddress(true);
+        _server.bind(address, BACKLOG);
+        _connectionThreads = connectionThreads();
+        _connections = ConcurrentHashMap.newKeySet();
+        _acceptor = new Thread(this::acceptLoop, "binary-server-acceptor");
+    }
+
+    /** 返回实际监听的端口. */
+    public int port() { return _server.getLocalPort(); }
+
+    /** 返回当前打开的连接个数. */
+    public int connections() { return _connections.size(); }
+
+    /** 返回连接线程是否为虚拟线程. */
+    public boolean virtualThreads() { return !(_connectionThreads instanceof PlatformThreads); }
+
+    /** 启动接受连接的线程. */
+    public void start() { _acceptor.start(); }
+
+    /** 停止接受连接并关闭所有连接. */
+    @Override
+    public void close() throws IOException {
+        _closed = true;
+        _server.close();
+        for (Socket socket : _connections) { closeQuietly(socket); }
+        try {
+            _acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** 接受连接，并为每个连接启动一个线程. */
+    private void acceptLoop() {
+        while (!_closed) {
+            Socket socket;
+            try {
+                socket = _server.accept();
+            } catch (IOException e) {
+                if (_closed) { return; }
+                // 多为文件描述符耗尽，稍后重试，避免空转
+                LockSupport.parkNanos(10_000_000L);
+                continue;
+            }
+            _connections.add(socket);
+            // close()可能在add之前遍历完连接集合，此时由这里负责关闭
+            if (_closed) {
+                closeQuietly(socket);
+                return;
+            }
+            _connectionThreads.newThread(() -> serve(socket)).start();
+        }
+    }
+
+    /** 在连接线程上依次处理一个连接的所有请求. */
+    private void serve(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (true) {
+                Frame request;
+                try {
+                    request = readFrame(in);
+                } catch (EOFException e) {
+                    return;
+                }
+                execute(request, out);
+                // 输入中没有已经到达的请求时再刷出，流水线请求的响应因此被合并
+                if (in.available() == 0) { out.flush(); }
+            }
+        } catch (IOException e) {
+            // 连接被对端重置、服务端关闭或请求格式非法，关闭连接
+        } finally {
+            _connections.remove(socket);
+        }
+    }
+
+    /** 执行一条请求并写出响应. */
+    private void execute(Frame request, DataOutputStream out) throws IOException {
+        try {
+            switch (request.code()) {
+                case PING -> writeFrame(out, OK);
+                case GET -> {
+                    String value = _executor.get(request.readString());
+                    if (value == null) { writeFrame(out, NOT_FOUND); }
+                    else { writeFrame(out, OK, value); }
+                }
+                case PUT -> {
+                    String key = request.readString(), value = request.readString();
+                    _writeLock.lock();
+                    try {
+                        _executor.put(key, value);
+                    } finally {
+                        _writeLock.unlock();
+                    }
+                    writeFrame(out, OK);
+                }
+                case DELETE -> {
+                    String key = request.readString(), deleted;
+                    _writeLock.lock();
+                    try {
+                        deleted = _executor.delete(key);
+                    } finally {
+                        _writeLock.unlock();
+                    }
+                    if (deleted == null) { writeFrame(out, NOT_FOUND); }
+                    else { writeFrame(out, OK, deleted); }
+                }
+                case SCAN -> scan(request.readString(), request.readString(), out);
+                default -> writeFrame(out, ERROR, "unknown operation: " + request.code());
+            }
+        } catch (ProtocolException e) {
+            // 请求格式非法，交由调用方关闭连接
+            throw e;
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            writeFrame(out, ERROR, e.toString());
+        }
+    }
+
+    /** 执行范围查询并写出结果. */
+    private void scan(String low, String high, DataOutputStream out) throws IOException, ClassNotFoundException {
+        if (low != null && high != null && low.compareTo(high) > 0) {
+            writeFrame(out, ERROR, "the low end of the range is greater than the high end");
+            return;
+        }
+        List<Map.Entry<String, String>> records = _executor.scan(low, high);
+        byte[][] encoded = new byte[records.size() * 2][];
+        int length = 1 + 4;
+        for (int i = 0; i < records.size(); i++) {
+            encoded[2 * i] = utf8(records.get(i).getKey());
+            encoded[2 * i + 1] = utf8(records.get(i).getValue());
+            length += encodedLength(encoded[2 * i]) + encodedLength(encoded[2 * i + 1]);
+        }
+        out.writeInt(length);
+        out.writeByte(OK);
+        out.writeInt(records.size());
+        for (byte[] field : encoded) { writeBytes(out, field); }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // 连接已经失效，忽略
+        }
+    }
+
+    /**
+     * 创建连接线程的工厂. 运行时支持虚拟线程则使用虚拟线程，否则使用栈空间较小的平台守护线程.
+     * 通过反射访问虚拟线程的接口，以便在更早的JDK上也能编译与运行.
+     */
+    private static ThreadFactory connectionThreads() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "binary-conn-", 0L);
+            Method factory = builderClass.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // JDK 19/20未启用预览特性时同样不可用
+            return new PlatformThreads();
+        }
+    }
+
+    /** 不支持虚拟线程时使用的平台线程工厂. */
+    private static final class PlatformThreads implements ThreadFactory {
+
+        private final AtomicLong _count = new AtomicLong();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(null, task, "binary-conn-" + _count.getAndIncrement(), PLATFORM_STACK_SIZE);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
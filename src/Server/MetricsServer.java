@@ -0,0 +1,193 @@
+package Server;
+
+import Main.Executor;
+import Metrics.IOStats;
+import Metrics.Operation;
+import Metrics.OperationStats;
+import Metrics.PrometheusWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 以Prometheus文本格式在{@code /metrics}上导出执行器指标的HTTP服务端，只在本机回环地址上监听.
+ * <p>
+ * 导出的指标包括：各类操作的延迟直方图(其{@code _count}即操作次数，据此计算速率)与p50/p99/p999、
+ * 表的张数、B+树的层数、缓冲区的填充程度与待写入的缓冲区个数、表文件的打开/关闭次数与读写字节数，
+ * 以及启用行缓存时缓存的命中、未命中与淘汰次数、记录条数与估计的内存占用.
+ * 分片执行器的每个分片以{@code shard}标签区分.
+ * <p>
+ * 抓取只读取原子计数器与已经发布的索引快照，不获取执行器与存储引擎的任何锁，也不访问磁盘，
+ * 因此不会干扰读写的热路径. 请求由一个专属的守护线程依次处理.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class MetricsServer implements Closeable {
+
+    /** 指标名的公共前缀. */
+    private static final String PREFIX = "kvstore_";
+
+    /** 导出的百分位数. */
+    private static final double[] QUANTILES = { 0.5, 0.99, 0.999 };
+
+    /** 被导出的执行器，下标即分片编号. */
+    private final List<? extends Executor<?, ?>> _executors;
+
+    /** HTTP服务端. */
+    private final HttpServer _server;
+
+    /** 处理请求的线程. */
+    private final ExecutorService _handler;
+
+    /**
+     * 在本机回环地址上监听的服务端.
+     * @param executors 被导出的执行器，下标即分片编号
+     * @param port 监听的端口，为0时由系统分配
+     * @throws IOException 若端口无法绑定
+     */
+    public MetricsServer(List<? extends Executor<?, ?>> executors, int port) throws IOException {
+        _executors = executors;
+        _server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        _handler = Executors.newSingleThreadExecutor(task -> {
+            Thread handler = new Thread(task, "metrics-http");
+            handler.setDaemon(true);
+            return handler;
+        });
+        _server.setExecutor(_handler);
+        _server.createContext("/metrics", this::handle);
+    }
+
+    /** 返回实际监听的端口. */
+    public int port() { return _server.getAddress().getPort(); }
+
+    /** 开始处理请求. */
+    public void start() { _server.start(); }
+
+    /** 停止服务端. */
+    @Override
+    public void close() {
+        _server.stop(0);
+        _handler.shutdown();
+    }
+
+    /** 以Prometheus文本格式返回当前的所有指标. */
+    public String scrape() {
+        PrometheusWriter out = new PrometheusWriter();
+        String latency = PREFIX + "operation_duration_seconds";
+        out.header(latency, "histogram", "Latency of executor operations.");
+        for (int i = 0; i < _executors.size(); i++) {
+            OperationStats stats = _executors.get(i).stats();
+            for (Operation operation : Operation.values()) {
+                out.histogram(latency, labels(i, operation), stats.histogram(operation));
+            }
+        }
+        String quantile = PREFIX + "operation_duration_quantile_seconds";
+        out.header(quantile, "gauge", "Latency quantiles of executor operations since start.");
+        for (int i = 0; i < _executors.size(); i++) {
+            OperationStats stats = _executors.get(i).stats();
+            for (Operation operation : Operation.values()) {
+                for (double q : QUANTILES) {
+                    out.sample(quantile, labels(i, operation) + ",quantile=\"" + q + "\"",
+                            stats.histogram(operation).quantile(q) / 1e9);
+                }
+            }
+        }
+        gauge(out, "tables", "Number of tables indexed by the B+ tree.", Executor::tables);
+        gauge(out, "bplustree_height", "Number of levels of the B+ tree index, pages included.", Executor::height);
+        gauge(out, "buffer_records", "Number of records in the write buffer.", Executor::bufferSize);
+        gauge(out, "buffer_capacity", "Capacity of the write buffer.", Executor::bufferCapacity);
+        gauge(out, "flush_backlog", "Number of full buffers waiting to be written.", Executor::flushBacklog);
+        gauge(out, "write_stall_state", "Write throttling: 0 normal, 1 slowed down, 2 stopped.",
+                Executor::writeStallState);
+        executorCounter(out, "write_slowdowns_total", "Number of writes delayed because of the flush backlog.",
+                Executor::writeSlowdowns);
+        executorCounter(out, "write_stops_total", "Number of writes blocked because of the flush backlog.",
+                Executor::writeStops);
+        executorCounter(out, "row_cache_hits_total", "Number of reads served by the row cache.",
+                e -> e.rowCache() == null ? 0 : e.rowCache().hits());
+        executorCounter(out, "row_cache_misses_total", "Number of row cache lookups that went to the storage engine.",
+                e -> e.rowCache() == null ? 0 : e.rowCache().misses());
+        executorCounter(out, "row_cache_evictions_total", "Number of entries evicted or refused by the row cache.",
+                e -> e.rowCache() == null ? 0 : e.rowCache().evictions());
+        gauge(out, "row_cache_entries", "Number of entries in the row cache.",
+                e -> e.rowCache() == null ? 0 : e.rowCache().size());
+        gauge(out, "row_cache_bytes", "Estimated memory used by the row cache.",
+                e -> e.rowCache() == null ? 0 : e.rowCache().memoryBytes());
+        gauge(out, "maintenance_backlog", "Number of tables and pages waiting for background split or rebalance.",
+                Executor::maintenanceBacklog);
+        executorCounter(out, "maintenance_failures_total", "Number of background splits or rebalances that failed.",
+                Executor::maintenanceFailures);
+        counter(out, "table_opens_total", "Number of table files opened.", IOStats.Counters::opens);
+        counter(out, "table_closes_total", "Number of table files written.", IOStats.Counters::closes);
+        counter(out, "table_read_bytes_total", "Bytes read from table files.", IOStats.Counters::bytesRead);
+        counter(out, "table_written_bytes_total", "Bytes written to table files.", IOStats.Counters::bytesWritten);
+        counter(out, "table_read_records_total", "Records read from table files.", IOStats.Counters::recordsRead);
+        counter(out, "table_written_records_total", "Records written to table files.",
+                IOStats.Counters::recordsWritten);
+        return out.toString();
+    }
+
+    /** 处理一次抓取. */
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) { out.write(body); }
+        }
+    }
+
+    /** 输出每个分片的一个整数指标. */
+    private void gauge(PrometheusWriter out, String name, String help, Gauge gauge) {
+        executorMetric(out, name, "gauge", help, gauge);
+    }
+
+    /** 输出每个分片的执行器的一个计数器. */
+    private void executorCounter(PrometheusWriter out, String name, String help, Gauge counter) {
+        executorMetric(out, name, "counter", help, counter);
+    }
+
+    private void executorMetric(PrometheusWriter out, String name, String type, String help, Gauge metric) {
+        out.header(PREFIX + name, type, help);
+        for (int i = 0; i < _executors.size(); i++) {
+            out.sample(PREFIX + name, labels(i, null), metric.read(_executors.get(i)));
+        }
+    }
+
+    /** 输出每个分片的数据目录的一个IO计数器. */
+    private void counter(PrometheusWriter out, String name, String help, Counter counter) {
+        out.header(PREFIX + name, "counter", help);
+        for (int i = 0; i < _executors.size(); i++) {
+            out.sample(PREFIX + name, labels(i, null), counter.read(_executors.get(i).ioStats().total()));
+        }
+    }
+
+    private static String labels(int shard, Operation operation) {
+        String labels = "shard=\"" + shard + "\"";
+        return operation == null ? labels : labels + ",op=\"" + operation.name().toLowerCase() + "\"";
+    }
+
+    /** 从执行器中读取一个整数指标. */
+    @FunctionalInterface
+    private interface Gauge {
+        long read(Executor<?, ?> executor);
+    }
+
+    /** 从IO计数器中读取一个值. */
+    @FunctionalInterface
+    private interface Counter {
+        long read(IOStats.Counters counters);
+    }
+}
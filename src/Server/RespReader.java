@@ -0,0 +1,157 @@
+package Server;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * RESP(REdis Serialization Protocol)请求的增量解码器.
+ * <p>
+ * 从套接字读到的字节可能只包含半条请求，也可能包含多条流水线请求. 解码器把收到的字节先追加到内部缓冲区，
+ * 再由{@link #next()}逐条取出完整的请求，不完整的部分留待下次收到数据后继续解析.
+ * <p>
+ * 支持两种请求格式：
+ * <ul>
+ *     <li>由批量字符串组成的数组，如{@code *2\r\n$3\r\nGET\r\n$3\r\nfoo\r\n}，Redis客户端均使用该格式；</li>
+ *     <li>以空白分隔、以换行结尾的内联命令，如{@code GET foo\r\n}，便于用telnet等工具调试.</li>
+ * </ul>
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class RespReader {
+
+    /** 单条批量字符串的最大长度，与Redis的默认值一致. */
+    private static final int MAX_BULK_LENGTH = 512 * 1024 * 1024;
+
+    /** 单条请求中参数个数的上限. */
+    private static final int MAX_ARGUMENTS = 1024 * 1024;
+
+    /** 内联命令的最大长度. */
+    private static final int MAX_INLINE_LENGTH = 64 * 1024;
+
+    /** 尚未解析的字节. */
+    private byte[] _buffer;
+
+    /** 有效字节在缓冲区中的范围[_start, _end). */
+    private int _start, _end;
+
+    /** 默认构造函数. */
+    public RespReader() {
+        _buffer = new byte[4096];
+    }
+
+    /** 将收到的字节追加到缓冲区中. */
+    public void feed(ByteBuffer bytes) {
+        int length = bytes.remaining();
+        ensureCapacity(length);
+        bytes.get(_buffer, _end, length);
+        _end += length;
+    }
+
+    /**
+     * 取出下一条完整的请求.
+     * @return 请求的各个参数，第一个参数为命令名；缓冲区中没有完整的请求时返回null.
+     * @throws ProtocolException 若请求的格式非法，此时连接应当被关闭.
+     */
+    public List<String> next() throws ProtocolException {
+        while (_start < _end) {
+            List<String> request;
+            if (_buffer[_start] == '*') {
+                request = parseArray();
+            } else {
+                request = parseInline();
+            }
+            if (request == null) { return null; }
+            // 空行或空数组不构成请求，跳过后继续解析
+            if (!request.isEmpty()) { return request; }
+        }
+        return null;
+    }
+
+    /** 解析一条数组格式的请求，数据不完整时不移动读位置并返回null. */
+    private List<String> parseArray() throws ProtocolException {
+        int position = _start + 1;
+        int lineEnd = findCRLF(position);
+        if (lineEnd < 0) { return null; }
+        long count = parseLong(position, lineEnd);
+        if (count > MAX_ARGUMENTS) { throw new ProtocolException("invalid multibulk length"); }
+        position = lineEnd + 2;
+        List<String> request = new ArrayList<>((int) Math.max(count, 0));
+        for (long i = 0; i < count; i++) {
+            if (position >= _end) { return null; }
+            if (_buffer[position] != '$') {
+                throw new ProtocolException(String.format("expected '$', got '%c'", (char) _buffer[position]));
+            }
+            lineEnd = findCRLF(position + 1);
+            if (lineEnd < 0) { return null; }
+            long length = parseLong(position + 1, lineEnd);
+            if (length < 0 || length > MAX_BULK_LENGTH) { throw new ProtocolException("invalid bulk length"); }
+            position = lineEnd + 2;
+            if (_end - position < length + 2) { return null; }
+            request.add(new String(_buffer, position, (int) length, StandardCharsets.UTF_8));
+            position += (int) length + 2;
+        }
+        consume(position);
+        return request;
+    }
+
+    /** 解析一条内联命令，数据不完整时不移动读位置并返回null. */
+    private List<String> parseInline() throws ProtocolException {
+        int lineEnd = -1;
+        for (int i = _start; i < _end; i++) {
+            if (_buffer[i] == '\n') {
+                lineEnd = i;
+                break;
+            }
+        }
+        if (lineEnd < 0) {
+            if (_end - _start > MAX_INLINE_LENGTH) { throw new ProtocolException("too big inline request"); }
+            return null;
+        }
+        String line = new String(_buffer, _start, lineEnd - _start, StandardCharsets.UTF_8).strip();
+        consume(lineEnd + 1);
+        return line.isEmpty() ? List.of() : Arrays.asList(line.split("\\s+"));
+    }
+
+    /** 从position开始查找"\r\n"，返回'\r'的位置，找不到时返回-1. */
+    private int findCRLF(int position) {
+        for (int i = position; i + 1 < _end; i++) {
+            if (_buffer[i] == '\r' && _buffer[i + 1] == '\n') { return i; }
+        }
+        return -1;
+    }
+
+    /** 解析[from, to)中的十进制整数. */
+    private long parseLong(int from, int to) throws ProtocolException {
+        if (from == to) { throw new ProtocolException("empty length"); }
+        boolean negative = _buffer[from] == '-';
+        long value = 0;
+        for (int i = negative ? from + 1 : from; i < to; i++) {
+            byte b = _buffer[i];
+            if (b < '0' || b > '9' || value > Integer.MAX_VALUE) { throw new ProtocolException("invalid length"); }
+            value = value * 10 + (b - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    /** 丢弃position之前已经解析完毕的字节. */
+    private void consume(int position) {
+        _start = position;
+        if (_start == _end) { _start = _end = 0; }
+    }
+
+    /** 保证缓冲区末尾至少还能容纳length个字节，必要时先压缩再扩容. */
+    private void ensureCapacity(int length) {
+        if (_buffer.length - _end >= length) { return; }
+        int used = _end - _start;
+        byte[] target = used + length > _buffer.length ?
+                new byte[Math.max(_buffer.length * 2, used + length)] : _buffer;
+        System.arraycopy(_buffer, _start, target, 0, used);
+        _buffer = target;
+        _start = 0;
+        _end = used;
+    }
+}
@@ -0,0 +1,391 @@
+package Server;
+
+import Main.Executor;
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于NIO选择器的TCP服务端，以Redis协议(RESP)的一个子集对外提供{@link Executor}的读写操作，
+ * 因此可以直接使用redis-cli、redis-benchmark等Redis客户端访问.
+ * <p>
+ * 所有连接都由同一个事件循环线程处理，执行器也只在该线程上被访问，从而满足执行器单一写者的要求.
+ * 同一连接上流水线发送的多条请求会被依次执行，响应按请求的顺序合并写回.
+ * <p>
+ * 支持的命令(大小写不敏感)：
+ * <ul>
+ *     <li>{@code GET key}：返回键对应的值，不存在时返回空回复；</li>
+ *     <li>{@code SET key value}：写入记录，返回{@code OK}；</li>
+ *     <li>{@code DEL key [key ...]}：删除记录，返回被删除的条数；</li>
+ *     <li>{@code EXISTS key [key ...]}：返回存在的键的个数；</li>
+ *     <li>{@code SCAN cursor [COUNT count]}：按键的顺序分批遍历所有的键，游标编码了上一批返回的最后一个键，
+ *     返回的游标为0时表示遍历结束. 每批只从该键之后读取count个键，与Redis一样，遍历开始时就存在且期间
+ *     未被删除的键恰好返回一次；</li>
+ *     <li>{@code PING}、{@code ECHO}、{@code QUIT}，以及供客户端启动时探测使用的{@code COMMAND}、{@code CONFIG GET}
+ *     (均返回空数组).</li>
+ * </ul>
+ * 表的读写在事件循环线程上同步进行，单次磁盘IO期间其它连接的请求需要等待.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class RespServer implements Closeable {
+
+    /** SCAN命令默认每批返回的键的个数，与Redis一致. */
+    private static final int DEFAULT_SCAN_COUNT = 10;
+
+    /** 单个连接待写出的响应超过该字节数时暂停读取该连接的请求，直到响应写出. */
+    private static final int MAX_PENDING_OUTPUT = 1 << 20;
+
+    /** 被访问的执行器，只在事件循环线程上使用. */
+    private final Executor<String, String> _executor;
+
+    /** 监听套接字. */
+    private final ServerSocketChannel _server;
+
+    /** 事件循环使用的选择器. */
+    private final Selector _selector;
+
+    /** 所有连接共用的读缓冲区. */
+    private final ByteBuffer _readBuffer;
+
+    /** 事件循环线程. */
+    private Thread _loop;
+
+    /** 事件循环是否应当继续运行. */
+    private volatile boolean _running;
+
+    /**
+     * 在本机回环地址上监听的服务端.
+     * @param executor 被访问的执行器
+     * @param port 监听的端口，为0时由系统分配
+     * @throws IOException 若端口无法绑定
+     */
+    public RespServer(Executor<String, String> executor, int port) throws IOException {
+        this(executor, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /**
+     * 在给定地址上监听的服务端.
+     * @param executor 被访问的执行器
+     * @param address 监听的地址
+     * @throws IOException 若地址无法绑定
+     */
+    public RespServer(Executor<String, String> executor, InetSocketAddress address) throws IOException {
+        _executor = executor;
+        _selector = Selector.open();
+        _server = ServerSocketChannel.open();
+        _server.bind(address);
+        _server.configureBlocking(false);
+        _server.register(_selector, SelectionKey.OP_ACCEPT);
+        _readBuffer = ByteBuffer.allocateDirect(64 * 1024);
+    }
+
+    /** 返回实际监听的端口. */
+    public int port() { return _server.socket().getLocalPort(); }
+
+    /** 在新的线程上启动事件循环. */
+    public synchronized void start() {
+        if (_loop != null) { throw new IllegalStateException("服务端已经启动"); }
+        _running = true;
+        _loop = new Thread(this::serve, "resp-server");
+        _loop.start();
+    }
+
+    /** 在当前线程上运行事件循环，直到{@link #close()}被调用. */
+    public void serve() {
+        _running = true;
+        try {
+            while (_running) {
+                _selector.select();
+                Iterator<SelectionKey> it = _selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) { continue; }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) { connection.read(); }
+                        if (key.isValid() && key.isWritable()) { connection.write(); }
+                    } catch (IOException e) {
+                        // 连接被对端重置或请求格式非法，只关闭该连接
+                        connection.close();
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (_running) { throw new IllegalStateException("事件循环异常退出", e); }
+        } finally {
+            closeAll();
+        }
+    }
+
+    /** 停止事件循环并关闭所有连接. */
+    @Override
+    public void close() throws IOException {
+        _running = false;
+        _selector.wakeup();
+        Thread loop;
+        synchronized (this) { loop = _loop; }
+        if (loop != null && loop != Thread.currentThread()) {
+            try {
+                loop.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** 接受所有等待中的连接. */
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = _server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            SelectionKey key = channel.register(_selector, SelectionKey.OP_READ);
+            key.attach(new Connection(channel, key));
+        }
+    }
+
+    /** 关闭监听套接字、选择器以及所有连接. */
+    private void closeAll() {
+        try {
+            for (SelectionKey key : _selector.keys()) {
+                if (key.attachment() instanceof Connection) { ((Connection) key.attachment()).close(); }
+            }
+            _selector.close();
+        } catch (IOException | ClosedSelectorException ignored) {
+            // 已经在关闭过程中，忽略
+        }
+        try {
+            _server.close();
+        } catch (IOException ignored) {
+            // 已经在关闭过程中，忽略
+        }
+    }
+
+    /**
+     * 执行一条请求并将响应写入out.
+     * @return 若该请求要求关闭连接则返回false.
+     */
+    private boolean execute(List<String> request, RespWriter out) {
+        String command = request.get(0).toUpperCase();
+        try {
+            switch (command) {
+                case "GET" -> {
+                    if (!checkArity(request, 2, 2, out)) { break; }
+                    out.bulk(_executor.get(request.get(1)));
+                }
+                case "SET" -> {
+                    if (!checkArity(request, 3, 3, out)) { break; }
+                    _executor.put(request.get(1), request.get(2));
+                    out.simple("OK");
+                }
+                case "DEL" -> {
+                    if (!checkArity(request, 2, Integer.MAX_VALUE, out)) { break; }
+                    int deleted = 0;
+                    for (int i = 1; i < request.size(); i++) {
+                        if (_executor.delete(request.get(i)) != null) { deleted++; }
+                    }
+                    out.integer(deleted);
+                }
+                case "EXISTS" -> {
+                    if (!checkArity(request, 2, Integer.MAX_VALUE, out)) { break; }
+                    int exists = 0;
+                    for (int i = 1; i < request.size(); i++) {
+                        if (_executor.get(request.get(i)) != null) { exists++; }
+                    }
+                    out.integer(exists);
+                }
+                case "SCAN" -> scan(request, out);
+                case "PING" -> {
+                    if (request.size() == 1) { out.simple("PONG"); }
+                    else if (checkArity(request, 2, 2, out)) { out.bulk(request.get(1)); }
+                }
+                case "ECHO" -> {
+                    if (checkArity(request, 2, 2, out)) { out.bulk(request.get(1)); }
+                }
+                case "COMMAND", "CONFIG" -> out.array(0);
+                case "QUIT" -> {
+                    out.simple("OK");
+                    return false;
+                }
+                default -> out.error(String.format("ERR unknown command '%s'", request.get(0)));
+            }
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            out.error("ERR " + e);
+        }
+        return true;
+    }
+
+    /** 执行SCAN命令. */
+    private void scan(List<String> request, RespWriter out) throws IOException, ClassNotFoundException {
+        if (!checkArity(request, 2, 4, out)) { return; }
+        int count = DEFAULT_SCAN_COUNT;
+        try {
+            if (request.size() == 4 && request.get(2).equalsIgnoreCase("COUNT")) {
+                count = Integer.parseInt(request.get(3));
+            } else if (request.size() != 2) {
+                out.error("ERR syntax error");
+                return;
+            }
+        } catch (NumberFormatException e) {
+            out.error("ERR value is not an integer or out of range");
+            return;
+        }
+        if (count <= 0) {
+            out.error("ERR value is not an integer or out of range");
+            return;
+        }
+        String after;
+        try {
+            after = decodeCursor(request.get(1));
+        } catch (IllegalArgumentException e) {
+            out.error("ERR invalid cursor");
+            return;
+        }
+        List<Map.Entry<String, String>> records = _executor.scanAfter(after, count);
+        // 不足一批时遍历结束
+        String cursor = records.size() < count ? "0" : encodeCursor(records.get(records.size() - 1).getKey());
+        out.array(2).bulk(cursor).array(records.size());
+        for (Map.Entry<String, String> record : records) { out.bulk(record.getKey()); }
+    }
+
+    /**
+     * 将键编码为游标. 游标是在键的UTF-8编码前加上一个字节1后得到的无符号大整数的十进制表示，
+     * 因此与Redis的游标一样是非负整数，且不会与表示开始或结束的0冲突.
+     */
+    private static String encodeCursor(String key) {
+        byte[] utf8 = key.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[utf8.length + 1];
+        bytes[0] = 1;
+        System.arraycopy(utf8, 0, bytes, 1, utf8.length);
+        return new BigInteger(1, bytes).toString();
+    }
+
+    /**
+     * 将游标解码为键，游标为0时返回null.
+     * @throws IllegalArgumentException 若游标不是由{@link #encodeCursor}得到的
+     */
+    private static String decodeCursor(String cursor) throws IllegalArgumentException {
+        BigInteger value = new BigInteger(cursor);
+        if (value.signum() == 0) { return null; }
+        byte[] bytes = value.toByteArray();
+        // 去掉符号位占用的前导0
+        int offset = bytes[0] == 0 ? 1 : 0;
+        if (value.signum() < 0 || bytes[offset] != 1) {
+            throw new IllegalArgumentException(String.format("Invalid cursor: %s", cursor));
+        }
+        return new String(bytes, offset + 1, bytes.length - offset - 1, StandardCharsets.UTF_8);
+    }
+
+    /** 检查参数个数(包括命令名)是否在[min, max]之间，否则写入错误. */
+    private static boolean checkArity(List<String> request, int min, int max, RespWriter out) {
+        if (request.size() >= min && request.size() <= max) { return true; }
+        out.error(String.format("ERR wrong number of arguments for '%s' command", request.get(0).toLowerCase()));
+        return false;
+    }
+
+    /** 一个客户端连接及其读写状态. */
+    private class Connection {
+
+        /** 客户端套接字. */
+        private final SocketChannel _channel;
+
+        /** 套接字在选择器上的注册. */
+        private final SelectionKey _key;
+
+        /** 请求解码器. */
+        private final RespReader _reader;
+
+        /** 待写出的响应. */
+        private final RespWriter _writer;
+
+        /** 是否在响应写出后关闭连接. */
+        private boolean _closing;
+
+        private Connection(SocketChannel channel, SelectionKey key) {
+            _channel = channel;
+            _key = key;
+            _reader = new RespReader();
+            _writer = new RespWriter();
+        }
+
+        /** 读取并执行所有已经完整到达的请求，然后尝试写回响应. */
+        private void read() throws IOException {
+            _readBuffer.clear();
+            int n = _channel.read(_readBuffer);
+            if (n < 0) {
+                close();
+                return;
+            }
+            _readBuffer.flip();
+            _reader.feed(_readBuffer);
+            write();
+        }
+
+        /**
+         * 执行解码器中所有完整的请求. 待写出的响应过多时暂停，等响应写出后再继续.
+         * @return 若因响应积压而暂停则返回true.
+         */
+        private boolean process() throws ProtocolException {
+            List<String> request;
+            while (!_closing && (request = _reader.next()) != null) {
+                if (!execute(request, _writer)) { _closing = true; }
+                if (_writer.size() >= MAX_PENDING_OUTPUT) { return true; }
+            }
+            return false;
+        }
+
+        /**
+         * 执行已经到达的请求并尽可能多地写出响应. 写不完时改为关注可写事件，暂停读取新的请求.
+         */
+        private void write() throws IOException {
+            while (true) {
+                if (_writer.size() > 0) {
+                    _channel.write(_writer.flip());
+                    _writer.compact();
+                }
+                if (_writer.size() > 0) {
+                    _key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+                if (_closing) {
+                    close();
+                    return;
+                }
+                _key.interestOps(SelectionKey.OP_READ);
+                if (!process()) {
+                    if (_writer.size() > 0) { continue; }
+                    return;
+                }
+            }
+        }
+
+        private void close() {
+            _key.cancel();
+            try {
+                _channel.close();
+            } catch (IOException ignored) {
+                // 连接已经失效，忽略
+            }
+        }
+    }
+}
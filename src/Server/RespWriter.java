@@ -0,0 +1,98 @@
+package Server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * RESP响应的编码器.
+ * <p>
+ * 同一连接上流水线请求的响应按顺序追加到同一块输出缓冲区中，由事件循环在套接字可写时一次性写出，
+ * 从而把多条响应合并到尽量少的系统调用里.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class RespWriter {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    /** 待写出的字节，处于写模式. */
+    private ByteBuffer _buffer;
+
+    /** 默认构造函数. */
+    public RespWriter() {
+        _buffer = ByteBuffer.allocate(4096);
+    }
+
+    /** 简单字符串，如{@code +OK}. */
+    public RespWriter simple(String message) {
+        return put((byte) '+').put(line(message)).put(CRLF);
+    }
+
+    /** 错误，如{@code -ERR unknown command}. 消息可能包含用户输入与中文的异常信息. */
+    public RespWriter error(String message) {
+        return put((byte) '-').put(line(message)).put(CRLF);
+    }
+
+    /** 整数，如{@code :1}. */
+    public RespWriter integer(long value) {
+        return put((byte) ':').put(Long.toString(value)).put(CRLF);
+    }
+
+    /** 批量字符串，值为null时写出空回复{@code $-1}. */
+    public RespWriter bulk(String value) {
+        if (value == null) { return put((byte) '$').put("-1").put(CRLF); }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return put((byte) '$').put(Integer.toString(bytes.length)).put(CRLF).put(bytes).put(CRLF);
+    }
+
+    /** 数组的头部，其后需要紧跟size个元素. */
+    public RespWriter array(int size) {
+        return put((byte) '*').put(Integer.toString(size)).put(CRLF);
+    }
+
+    /** 返回待写出的字节数. */
+    public int size() { return _buffer.position(); }
+
+    /**
+     * 切换到读模式，返回待写出的字节. 写出后需调用{@link #compact()}回到写模式.
+     */
+    public ByteBuffer flip() {
+        _buffer.flip();
+        return _buffer;
+    }
+
+    /** 丢弃已经写出的字节，回到写模式. */
+    public void compact() { _buffer.compact(); }
+
+    private RespWriter put(byte b) {
+        ensureCapacity(1);
+        _buffer.put(b);
+        return this;
+    }
+
+    private RespWriter put(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        _buffer.put(bytes);
+        return this;
+    }
+
+    /** 将单行回复的内容编码为UTF-8，换行符被替换为空格以免截断回复. */
+    private static byte[] line(String message) {
+        return message.replace('\r', ' ').replace('\n', ' ').getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** 写出ASCII字符串. 长度、整数等字段都只包含ASCII字符. */
+    private RespWriter put(String ascii) {
+        ensureCapacity(ascii.length());
+        for (int i = 0; i < ascii.length(); i++) { _buffer.put((byte) ascii.charAt(i)); }
+        return this;
+    }
+
+    private void ensureCapacity(int length) {
+        if (_buffer.remaining() >= length) { return; }
+        ByteBuffer target = ByteBuffer.allocate(Math.max(_buffer.capacity() * 2, _buffer.position() + length));
+        _buffer.flip();
+        target.put(_buffer);
+        _buffer = target;
+    }
+}
@@ -59,4 +59,15 @@ public class Utils {
             return k1.hashCode() - k2.hashCode() > 0;
         }
     }
+
+    /**
+     * 按照{@link #lessThan}与{@link #greaterThan}所定义的序比较两个键，便于构造比较器.
+     * @param k1 待比较键的前者.
+     * @param k2 待比较键的后者.
+     * @return 前者小于后者时返回负数，大于时返回正数，否则返回0.
+     */
+    public static<K> int compare(K k1, K k2) {
+        if (lessThan(k1, k2)) { return -1; }
+        return greaterThan(k1, k2) ? 1 : 0;
+    }
 }
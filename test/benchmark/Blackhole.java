@@ -0,0 +1,34 @@
+package benchmark;
+
+/**
+ * 吸收基准操作的结果，防止JIT将没有副作用的操作整个消除.
+ * <p>
+ * 与JMH的Blackhole相同：把结果与两个volatile字段比较，条件永远不成立，但JIT无法证明这一点，
+ * 因此必须真正算出结果，而比较本身的开销只有几纳秒.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public final class Blackhole {
+
+    private volatile Object _object1 = new Object(), _object2 = new Object();
+
+    private volatile long _long1 = 1, _long2 = 2;
+
+    /** 永远不会被写入，仅用于让条件分支有副作用. */
+    public Object leak;
+
+    /** 吸收一个对象. */
+    public void consume(Object o) {
+        if (o == _object1 && o == _object2) { leak = o; }
+    }
+
+    /** 吸收一个整数. */
+    public void consume(long v) {
+        if (v == _long1 && v == _long2) { leak = v; }
+    }
+
+    /** 吸收一个布尔值. */
+    public void consume(boolean b) {
+        consume(b ? 1L : 0L);
+    }
+}
@@ -0,0 +1,262 @@
+package benchmark;
+
+import Index.BPlusTree;
+import Index.InMemBPlusTree;
+import Index.Index;
+import KVTable.MemTable;
+import KVTable.RBT;
+import KVTable.Table;
+import java.io.File;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+
+/**
+ * 测量各类结构每条记录占用的堆空间与磁盘空间，以{@link TreeMap}为基准.
+ * <p>
+ * 堆空间以"构造前后、各自充分GC之后已用堆的差值"来衡量，即结构保留(retained)的全部字节，
+ * 包括键与值本身. 单独测量同样的键与值(保存在数组中)得到"有效载荷"，二者之差即结构本身的开销.
+ * 较小的结构会构造多份取平均，以降低测量的噪声. 建议以{@code -XX:+UseSerialGC}运行，结果最稳定.
+ * <p>
+ * 覆盖的结构：
+ * <ul>
+ *   <li>TreeMap: 基准</li>
+ *   <li>RBT、Table: 每张表容量条记录，同时报告每张表的字节数与写入磁盘后的文件大小</li>
+ *   <li>MemTable: 执行器的缓冲区</li>
+ *   <li>InMemBPlusTree: 表全部常驻内存的索引</li>
+ *   <li>BPlusTree: 表写入磁盘后常驻内存的部分(页、索引块、快照)，以及表文件的总大小</li>
+ * </ul>
+ * 用法：
+ * <pre>
+ * java -XX:+UseSerialGC -cp out:lib/* benchmark.Footprint [-records 100000] [-M 16] [-o footprint.csv]
+ * </pre>
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class Footprint {
+
+    /** 参与测量的表容量. */
+    private static final int[] CAPACITIES = { 20, 128, 1024 };
+
+    /** 键与值的类型. */
+    private enum Types {
+        /** Integer键，Integer值. */
+        INT,
+        /** 16个字符的String键，100个字符的String值. */
+        STRING;
+
+        Comparable<Object> key(int i) {
+            return cast(this == INT ? Integer.valueOf(i) : String.format("key%013d", i));
+        }
+
+        Object value(SplittableRandom random) {
+            if (this == INT) { return random.nextInt(); }
+            char[] chars = new char[100];
+            for (int i = 0; i < chars.length; i++) { chars[i] = (char) ('a' + random.nextInt(26)); }
+            return new String(chars);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Comparable<Object> cast(Comparable<?> key) { return (Comparable<Object>) key; }
+    }
+
+    /** 一行测量结果. */
+    private record Row(String structure, Types types, int capacity, int records,
+                       double heapPerRecord, double overheadPerRecord, double heapPerTable, double diskPerRecord) {}
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    public static void main(String[] args) throws Exception {
+        int records = 100_000, order = 16;
+        String output = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "-records" -> records = Integer.parseInt(args[i + 1]);
+                case "-M" -> order = Integer.parseInt(args[i + 1]);
+                case "-o" -> output = args[i + 1];
+                default -> throw new IllegalArgumentException(String.format("未知的参数: %s", args[i]));
+            }
+        }
+        // 第一遍只用于加载类与初始化各类静态缓存，它们占用的堆空间不应计入任何结构
+        measureAll(Math.min(records, 2048), order);
+        print(measureAll(records, order), output);
+    }
+
+    /** 对每种键值类型与表容量测量所有结构. */
+    private static List<Row> measureAll(int records, int order) throws Exception {
+        List<Row> rows = new ArrayList<>();
+        for (Types types : Types.values()) {
+            double payload = measure(1, records, i -> payload(types, records));
+            rows.add(row("TreeMap", types, 0, records, measure(1, records, i -> treeMap(types, records)), payload));
+            rows.add(row("MemTable", types, 0, records, measure(1, records, i -> memTable(types, records)), payload));
+            for (int capacity : CAPACITIES) {
+                // 与有效载荷相同规模的多张表，分别以红黑树与表的形式
+                int copies = Math.max(1, records / capacity);
+                double tablePayload = measure(copies, capacity, i -> payload(types, capacity));
+                rows.add(row("RBT", types, capacity, capacity,
+                        measure(copies, capacity, i -> table(new RBT<>(), types, capacity)), tablePayload));
+                String directory = directory();
+                Table<Object, Object> sample = table(new Table<>(directory), types, capacity);
+                sample.close();
+                Row table = row("Table", types, capacity, capacity,
+                        measure(copies, capacity, i -> table(new Table<>(directory), types, capacity)), tablePayload);
+                rows.add(new Row(table.structure(), types, capacity, capacity, table.heapPerRecord(),
+                        table.overheadPerRecord(), table.heapPerRecord() * capacity,
+                        (double) diskBytes(directory) / capacity));
+                rows.add(row("InMemBPlusTree", types, capacity, records,
+                        measure(1, records, i -> index(new InMemBPlusTree<>(order, capacity), null,
+                                types, capacity, records)), payload));
+                String bptDirectory = directory();
+                double resident = measure(1, records, i -> index(new BPlusTree<>(order, capacity), bptDirectory,
+                        types, capacity, records));
+                rows.add(new Row("BPlusTree", types, capacity, records, resident, Double.NaN, Double.NaN,
+                        (double) diskBytes(bptDirectory) / records));
+            }
+        }
+        return rows;
+    }
+
+    /** 构造copies份结构并保留它们，返回平均每条记录保留的堆字节数. */
+    private static double measure(int copies, int recordsPerCopy, Builder builder) throws Exception {
+        Object[] holder = new Object[copies];
+        long before = usedHeap();
+        for (int i = 0; i < copies; i++) { holder[i] = builder.build(i); }
+        long after = usedHeap();
+        double perRecord = (double) (after - before) / ((long) copies * recordsPerCopy);
+        // 保证测量结束之前结构一直可达
+        java.lang.ref.Reference.reachabilityFence(holder);
+        return perRecord;
+    }
+
+    /**
+     * 反复GC直到已用堆连续几次不再减少，返回已用堆的字节数. 文件流等对象要等清理线程处理完之后的下一次GC
+     * 才能被回收，因此只GC一次是不够的.
+     */
+    private static long usedHeap() throws InterruptedException {
+        long used = Long.MAX_VALUE;
+        for (int i = 0, stable = 0; i < 20 && stable < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+            long now = MEMORY.getHeapMemoryUsage().getUsed();
+            stable = now >= used ? stable + 1 : 0;
+            used = Math.min(used, now);
+        }
+        return used;
+    }
+
+    @FunctionalInterface
+    private interface Builder {
+        Object build(int copy) throws Exception;
+    }
+
+    /** 只有键与值，每条记录另有数组中的两个引用. */
+    private static Object[] payload(Types types, int records) {
+        SplittableRandom random = new SplittableRandom(7);
+        Object[] payload = new Object[2 * records];
+        for (int i = 0; i < records; i++) {
+            payload[2 * i] = types.key(i);
+            payload[2 * i + 1] = types.value(random);
+        }
+        return payload;
+    }
+
+    private static TreeMap<Object, Object> treeMap(Types types, int records) {
+        TreeMap<Object, Object> map = new TreeMap<>();
+        fill(map::put, types, records);
+        return map;
+    }
+
+    private static MemTable<Object, Object> memTable(Types types, int records) {
+        MemTable<Object, Object> table = new MemTable<>();
+        fill(table::put, types, records);
+        return table;
+    }
+
+    private static <T extends RBT<Object, Object>> T table(T table, Types types, int records) {
+        fill(table::put, types, records);
+        return table;
+    }
+
+    /**
+     * 按键的顺序把记录分成容量一半的表写入索引，与执行器刷出缓冲区的方式相同.
+     * @param directory 表文件所在的目录，为null时使用默认目录
+     */
+    private static Index<Object, Object> index(Index<Object, Object> index, String directory,
+                                               Types types, int capacity, int records) throws Exception {
+        SplittableRandom random = new SplittableRandom(7);
+        IntFunction<Table<Object, Object>> newTable = i -> directory == null ? new Table<>() : new Table<>(directory);
+        Table<Object, Object> table = newTable.apply(0);
+        for (int i = 0; i < records; i++) {
+            table.put(types.key(i), types.value(random));
+            if (table.size() == Math.max(1, capacity / 2)) {
+                index.write(table);
+                table = newTable.apply(i);
+            }
+        }
+        if (!table.empty()) { index.write(table); }
+        return index;
+    }
+
+    /** 以随机的顺序写入键，使树的形状接近实际的负载. */
+    private static void fill(Putter putter, Types types, int records) {
+        SplittableRandom random = new SplittableRandom(7);
+        int[] order = new int[records];
+        for (int i = 0; i < records; i++) { order[i] = i; }
+        for (int i = records - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1), t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+        for (int i : order) { putter.put(types.key(i), types.value(random)); }
+    }
+
+    @FunctionalInterface
+    private interface Putter {
+        void put(Object key, Object value);
+    }
+
+    private static Row row(String structure, Types types, int capacity, int records, double heap, double payload) {
+        return new Row(structure, types, capacity, records, heap, heap - payload,
+                capacity == 0 ? Double.NaN : heap * capacity, Double.NaN);
+    }
+
+    private static String directory() {
+        String directory = String.format("./data/footprint-%d", System.nanoTime());
+        new File(directory).mkdirs();
+        return directory;
+    }
+
+    private static long diskBytes(String directory) {
+        File[] files = new File(directory).listFiles();
+        long bytes = 0;
+        if (files != null) { for (File file : files) { bytes += file.length(); } }
+        return bytes;
+    }
+
+    private static void print(List<Row> rows, String output) throws Exception {
+        System.out.printf("%-16s%-8s%10s%10s%14s%14s%14s%14s\n", "structure", "types", "capacity", "records",
+                "heap B/rec", "overhead B/rec", "heap B/table", "disk B/rec");
+        for (Row r : rows) {
+            System.out.printf("%-16s%-8s%10s%10d%14.1f%14.1f%14.0f%14.1f\n", r.structure(), r.types(),
+                    r.capacity() == 0 ? "-" : String.valueOf(r.capacity()), r.records(), r.heapPerRecord(),
+                    r.overheadPerRecord(), r.heapPerTable(), r.diskPerRecord());
+        }
+        if (output == null) { return; }
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8))) {
+            out.println("structure,types,capacity,records,heap_bytes_per_record,overhead_bytes_per_record,"
+                    + "heap_bytes_per_table,disk_bytes_per_record");
+            for (Row r : rows) {
+                out.printf("%s,%s,%d,%d,%.1f,%.1f,%.0f,%.1f\n", r.structure(), r.types(), r.capacity(),
+                        r.records(), r.heapPerRecord(), r.overheadPerRecord(), r.heapPerTable(), r.diskPerRecord());
+            }
+        }
+    }
+}
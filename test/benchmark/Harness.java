@@ -0,0 +1,290 @@
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 一个仿照JMH的微基准框架，只依赖JDK，因此可以离线构建.
+ * <p>
+ * 每个基准在给定参数的每种组合下，先预热若干轮，再测量若干轮，每轮持续固定的时间并统计吞吐量(次/秒).
+ * 默认每种组合在新的JVM中运行(fork)，以免不同基准之间的JIT编译与堆状态相互影响.
+ * 结果以JMH的JSON格式写出，可以直接交给现有的JMH结果比较工具做回归跟踪.
+ * <p>
+ * 操作的耗时在微秒以下时，框架把多次操作合并为一批再读一次时钟；需要在每次操作前准备状态的基准
+ * (见{@link State#prepare()})则单独为每次操作计时，准备的耗时不计入结果.
+ * <p>
+ * 命令行参数：
+ * <pre>
+ * -wi N   预热轮数，默认3
+ * -i N    测量轮数，默认5
+ * -r MS   每轮的时长(毫秒)，默认1000
+ * -f N    fork的次数，为0时在当前JVM中运行，默认1
+ * -o FILE 结果文件，默认benchmark-results.json
+ * -p name=v1,v2  覆盖某个参数的取值，可以出现多次
+ * REGEX   只运行名称匹配的基准
+ * </pre>
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public final class Harness {
+
+    /** 一次基准运行的状态. 由{@link Benchmark#setup(Map)}创建，运行结束后被关闭. */
+    public interface State extends AutoCloseable {
+
+        /** 执行一次被测量的操作. */
+        void run(Blackhole blackhole) throws Exception;
+
+        /** 返回是否需要在每次操作前调用{@link #prepare()}. */
+        default boolean perInvocation() { return false; }
+
+        /** 在每次操作前准备状态，耗时不计入结果. */
+        default void prepare() throws Exception {}
+
+        /** 释放状态占用的资源. 需要等待的实现应当自行处理中断，并恢复线程的中断标志. */
+        @Override
+        default void close() {}
+    }
+
+    /** 一个基准：给定参数创建运行所需的状态. */
+    @FunctionalInterface
+    public interface Benchmark {
+        State setup(Map<String, String> params) throws Exception;
+    }
+
+    /** 注册的基准. */
+    private record Spec(String name, Map<String, List<String>> params, Benchmark benchmark) {}
+
+    /** 子JVM输出结果时使用的前缀. */
+    private static final String RESULT = "#RESULT ";
+
+    /** 所有注册的基准，按注册的顺序排列. */
+    private final Map<String, Spec> _specs = new LinkedHashMap<>();
+
+    private int _warmups = 3, _iterations = 5, _forks = 1;
+    private long _iterationMillis = 1000;
+    private String _output = "benchmark-results.json";
+    private Pattern _filter = Pattern.compile(".*");
+    private final Map<String, List<String>> _overrides = new LinkedHashMap<>();
+
+    /**
+     * 注册一个基准.
+     * @param name 基准的名称
+     * @param params 参数名及其所有取值，按给出的顺序组合；没有参数时为空表
+     * @param benchmark 基准
+     */
+    public Harness register(String name, Map<String, List<String>> params, Benchmark benchmark) {
+        _specs.put(name, new Spec(name, params, benchmark));
+        return this;
+    }
+
+    /** 按命令行参数运行基准，或者作为子JVM运行单个组合. */
+    public void main(String[] args) throws Exception {
+        String child = null, childParams = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-wi" -> _warmups = Integer.parseInt(args[++i]);
+                case "-i" -> _iterations = Integer.parseInt(args[++i]);
+                case "-r" -> _iterationMillis = Long.parseLong(args[++i]);
+                case "-f" -> _forks = Integer.parseInt(args[++i]);
+                case "-o" -> _output = args[++i];
+                case "-p" -> {
+                    String[] kv = args[++i].split("=", 2);
+                    _overrides.put(kv[0], List.of(kv[1].split(",")));
+                }
+                case "-child" -> {
+                    child = args[++i];
+                    childParams = args[++i];
+                }
+                default -> _filter = Pattern.compile(args[i]);
+            }
+        }
+        if (child != null) {
+            double[] scores = measure(_specs.get(child), decode(childParams));
+            StringBuilder line = new StringBuilder(RESULT);
+            for (double score : scores) { line.append(score).append(' '); }
+            System.out.println(line.toString().trim());
+            return;
+        }
+        List<String> results = new ArrayList<>();
+        for (Spec spec : _specs.values()) {
+            if (!_filter.matcher(spec.name()).find()) { continue; }
+            for (Map<String, String> params : combinations(spec)) {
+                // 与JMH相同，单个基准失败时跳过它，继续运行其余的基准
+                try {
+                    results.add(runForks(spec, params));
+                } catch (Exception e) {
+                    System.out.printf("%s %s 运行失败: %s\n", spec.name(), params, e);
+                }
+            }
+        }
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(_output), StandardCharsets.UTF_8))) {
+            out.println("[");
+            out.println(String.join(",\n", results));
+            out.println("]");
+        }
+        System.out.printf("结果已写入%s\n", _output);
+    }
+
+    /** 在每个fork中运行一种参数组合，汇总并以JMH的JSON格式返回结果. */
+    private String runForks(Spec spec, Map<String, String> params) throws Exception {
+        System.out.printf("# %s %s\n", spec.name(), params);
+        List<double[]> forks = new ArrayList<>();
+        if (_forks == 0) {
+            forks.add(measure(spec, params));
+        } else {
+            for (int f = 0; f < _forks; f++) { forks.add(fork(spec, params)); }
+        }
+        List<Double> all = new ArrayList<>();
+        for (double[] fork : forks) { for (double score : fork) { all.add(score); } }
+        double mean = all.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+        double variance = all.stream().mapToDouble(s -> (s - mean) * (s - mean)).sum() / Math.max(1, all.size() - 1);
+        // 99.9%置信区间的半宽，样本较少时以正态分布近似t分布
+        double error = all.size() > 1 ? 3.291 * Math.sqrt(variance / all.size()) : Double.NaN;
+        System.out.printf("%s %s: %.3f ± %.3f ops/s\n", spec.name(), params, mean, error);
+        StringBuilder json = new StringBuilder();
+        json.append("  {\"benchmark\":\"").append(spec.name()).append("\",\"mode\":\"thrpt\"")
+                .append(",\"forks\":").append(_forks)
+                .append(",\"warmupIterations\":").append(_warmups)
+                .append(",\"warmupTime\":\"").append(_iterationMillis).append(" ms\"")
+                .append(",\"measurementIterations\":").append(_iterations)
+                .append(",\"measurementTime\":\"").append(_iterationMillis).append(" ms\"")
+                .append(",\"params\":{");
+        boolean first = true;
+        for (Map.Entry<String, String> e : params.entrySet()) {
+            if (!first) { json.append(','); }
+            first = false;
+            json.append('"').append(e.getKey()).append("\":\"").append(e.getValue()).append('"');
+        }
+        json.append("},\"primaryMetric\":{\"score\":").append(mean)
+                .append(",\"scoreError\":").append(Double.isNaN(error) ? "\"NaN\"" : String.valueOf(error))
+                .append(",\"scoreUnit\":\"ops/s\",\"rawData\":[");
+        for (int f = 0; f < forks.size(); f++) {
+            if (f > 0) { json.append(','); }
+            json.append('[');
+            for (int i = 0; i < forks.get(f).length; i++) {
+                if (i > 0) { json.append(','); }
+                json.append(forks.get(f)[i]);
+            }
+            json.append(']');
+        }
+        return json.append("]}}").toString();
+    }
+
+    /** 在一个新的JVM中运行一种参数组合，返回每轮测量的吞吐量. */
+    private double[] fork(Spec spec, Map<String, String> params) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(mainClass());
+        command.addAll(List.of("-wi", String.valueOf(_warmups), "-i", String.valueOf(_iterations),
+                "-r", String.valueOf(_iterationMillis), "-child", spec.name(), encode(params)));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        double[] scores = null;
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(RESULT)) {
+                    String[] parts = line.substring(RESULT.length()).split(" ");
+                    scores = new double[parts.length];
+                    for (int i = 0; i < parts.length; i++) { scores[i] = Double.parseDouble(parts[i]); }
+                } else {
+                    System.out.println(line);
+                }
+            }
+        }
+        if (process.waitFor() != 0 || scores == null) {
+            throw new IllegalStateException(String.format("fork失败: %s %s", spec.name(), params));
+        }
+        return scores;
+    }
+
+    /** 在当前JVM中预热并测量，返回每轮测量的吞吐量. */
+    private double[] measure(Spec spec, Map<String, String> params) throws Exception {
+        double[] scores = new double[_iterations];
+        Blackhole blackhole = new Blackhole();
+        try (State state = spec.benchmark().setup(params)) {
+            int batch = 1;
+            for (int i = 0; i < _warmups + _iterations; i++) {
+                long ops = 0, timed = 0, deadline = System.nanoTime() + _iterationMillis * 1_000_000;
+                while (System.nanoTime() < deadline) {
+                    if (state.perInvocation()) {
+                        state.prepare();
+                        long start = System.nanoTime();
+                        state.run(blackhole);
+                        timed += System.nanoTime() - start;
+                        ops++;
+                    } else {
+                        long start = System.nanoTime();
+                        for (int b = 0; b < batch; b++) { state.run(blackhole); }
+                        long elapsed = System.nanoTime() - start;
+                        timed += elapsed;
+                        ops += batch;
+                        // 预热期间调整批的大小，使每批约100微秒，读时钟的开销可以忽略
+                        if (i < _warmups && elapsed < 100_000 && batch < (1 << 20)) { batch <<= 1; }
+                    }
+                }
+                double score = timed == 0 ? 0 : ops * 1e9 / timed;
+                String kind = i < _warmups ? "Warmup" : "Iteration";
+                int n = i < _warmups ? i + 1 : i - _warmups + 1;
+                System.out.printf("%s %3d: %.3f ops/s\n", kind, n, score);
+                if (i >= _warmups) { scores[i - _warmups] = score; }
+            }
+        }
+        return scores;
+    }
+
+    /** 列出参数的所有组合，命令行中给出的取值优先. */
+    private List<Map<String, String>> combinations(Spec spec) {
+        List<Map<String, String>> combinations = new ArrayList<>();
+        combinations.add(new LinkedHashMap<>());
+        for (Map.Entry<String, List<String>> param : spec.params().entrySet()) {
+            List<String> values = _overrides.getOrDefault(param.getKey(), param.getValue());
+            List<Map<String, String>> next = new ArrayList<>();
+            for (Map<String, String> prefix : combinations) {
+                for (String value : values) {
+                    Map<String, String> combination = new LinkedHashMap<>(prefix);
+                    combination.put(param.getKey(), value);
+                    next.add(combination);
+                }
+            }
+            combinations = next;
+        }
+        return combinations;
+    }
+
+    private static String encode(Map<String, String> params) {
+        StringBuilder encoded = new StringBuilder();
+        params.forEach((k, v) -> encoded.append(k).append('=').append(v).append(';'));
+        return encoded.toString();
+    }
+
+    private static Map<String, String> decode(String encoded) {
+        Map<String, String> params = new LinkedHashMap<>();
+        for (String kv : encoded.split(";")) {
+            if (kv.isEmpty()) { continue; }
+            String[] parts = kv.split("=", 2);
+            params.put(parts[0], parts[1]);
+        }
+        return params;
+    }
+
+    /** 返回启动当前JVM的主类. */
+    private static String mainClass() {
+        String command = System.getProperty("sun.java.command", "benchmark.Suite");
+        return command.split(" ")[0];
+    }
+}
@@ -0,0 +1,520 @@
+package benchmark;
+
+import Main.Executor;
+import Metrics.LatencyHistogram;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * 对{@link Executor}的开环(open-loop)延迟基准：操作按固定的到达速率发出，与执行器处理得快慢无关，
+ * 并将延迟尾部的操作与同一时段内的表分裂、页分裂与合并以及缓冲区写入对应起来.
+ * <p>
+ * 第k次操作的计划发出时刻为{@code start + k / rate}. 闭环的负载驱动(如{@code Ycsb})在执行器停顿时
+ * 会同时停止发出请求，停顿期间本应到达的请求因此不被测量，这就是协调遗漏(coordinated omission).
+ * 这里的"修正延迟"从计划发出的时刻算起，包含因前面的操作未完成而推迟发出的时间；"服务时间"
+ * 从实际发出的时刻算起，即未经修正的延迟. 两者的差距反映了停顿对排队的影响.
+ * <p>
+ * 运行期间以JFR录制{@code Metrics.EngineEvents}中的分裂、合并与缓冲区写入事件，运行结束后
+ * 把事件的时间区间换算到{@link System#nanoTime()}的时间轴上，统计与每类事件重叠的操作及其延迟，
+ * 并列出延迟最高的若干次操作以及与之重叠的事件. 事件与操作的时间换算依赖墙上时钟，误差在微秒量级.
+ * <p>
+ * 装载时写入键{@code key(0), key(2), ...}；写操作中的一部分在已有的键之间插入(落入存储引擎，引发表与页的分裂)，
+ * 其余追加在键空间的末尾(进入缓冲区，引发缓冲区写入)；读操作均匀地访问装载的记录.
+ * 写操作由一把{@link ReentrantLock}串行化，以满足执行器单写者的约定.
+ * <p>
+ * 用法示例：
+ * <pre>
+ * java -cp out:lib/* benchmark.OpenLoop -rate 20000 -duration 30 -threads 4 -o latency.csv
+ * </pre>
+ * 参数(括号中为默认值)：
+ * <pre>
+ * -records   装载的记录条数 (100000)
+ * -rate      目标到达速率(次/秒) (10000)
+ * -duration  测量的时长(秒) (10)
+ * -warmup    测量前以同样速率预热的时长(秒) (3)
+ * -threads   发出操作的线程数 (4)
+ * -writes    写操作的比例 (0.5)
+ * -appends   写操作中追加在末尾的比例 (0.5)
+ * -outlier   视为离群值的修正延迟分位数 (0.999)
+ * -M         B+树的阶 (16)
+ * -capacity  表的容量 (128)
+ * -buffer    执行器缓冲区的容量 (1024)
+ * -o         把完整的延迟分布写入CSV文件
+ * </pre>
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class OpenLoop {
+
+    /** 操作的类型. */
+    public enum Op { GET, PUT }
+
+    /** 参与关联的JFR事件. */
+    public static final String[] EVENTS = { "TableSplit", "PageSplit", "PageMerge", "BufferFlush" };
+
+    /** 列出的延迟最高的操作个数. */
+    private static final int SLOWEST = 10;
+
+    /** 被测的执行器. */
+    private final Executor<String, String> _executor;
+
+    /** 串行化写操作的锁. */
+    private final ReentrantLock _writeLock;
+
+    /** 装载的记录条数. */
+    private final long _records;
+
+    /** 写操作的比例，以及写操作中追加在末尾的比例. */
+    private final double _writeRatio, _appendRatio;
+
+    /** 下一次追加的序号. */
+    private final AtomicLong _nextAppend;
+
+    /**
+     * 开环基准的构造函数.
+     * @param executor 被测的执行器
+     * @param records 装载的记录条数
+     * @param writeRatio 写操作的比例
+     * @param appendRatio 写操作中追加在键空间末尾的比例
+     * @throws IllegalArgumentException 若记录条数不为正数，或比例不在[0, 1]内
+     */
+    public OpenLoop(Executor<String, String> executor, long records, double writeRatio, double appendRatio)
+            throws IllegalArgumentException {
+        if (records <= 0 || writeRatio < 0 || writeRatio > 1 || appendRatio < 0 || appendRatio > 1) {
+            throw new IllegalArgumentException(String.format(
+                    "records should be positive and ratios should be in [0, 1]. Got %d, %s, %s",
+                    records, writeRatio, appendRatio));
+        }
+        _executor = executor;
+        _writeLock = new ReentrantLock();
+        _records = records;
+        _writeRatio = writeRatio;
+        _appendRatio = appendRatio;
+        _nextAppend = new AtomicLong(2 * records);
+    }
+
+    /** 返回序号对应的键. */
+    public static String key(long n) { return String.format("key%012d", n); }
+
+    /** 按键的顺序装载全部记录，并等待缓冲区写入完成. */
+    public void load() throws IOException, ClassNotFoundException {
+        for (long i = 0; i < _records; i++) { _executor.put(key(2 * i), value()); }
+        _executor.awaitFlush();
+    }
+
+    /**
+     * 以固定的到达速率执行操作.
+     * @param rate 目标到达速率(次/秒)
+     * @param seconds 运行的时长(秒)
+     * @param threads 发出操作的线程数
+     * @param outlier 视为离群值的修正延迟分位数
+     * @throws IllegalArgumentException 若速率、时长或线程数不为正数，或操作总数超过int的范围
+     */
+    public Report run(double rate, double seconds, int threads, double outlier) throws Exception {
+        long total = (long) (rate * seconds);
+        if (rate <= 0 || seconds <= 0 || threads <= 0 || total <= 0 || total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format(
+                    "rate, duration and threads should be positive. Got %s, %s, %d", rate, seconds, threads));
+        }
+        Report report = new Report((int) total, rate, outlier);
+        double interval = 1e9 / rate;
+        AtomicLong next = new AtomicLong();
+        Path dump = Files.createTempFile("open-loop", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String event : EVENTS) { recording.enable("kvstore." + event).withoutThreshold(); }
+            recording.start();
+            // 把nanoTime与墙上时钟对齐，用于换算事件的时刻
+            Instant wall = Instant.now();
+            long start = System.nanoTime();
+            report._origin = start;
+            report._originEpochNanos = wall.getEpochSecond() * 1_000_000_000L + wall.getNano();
+            List<Thread> workers = new ArrayList<>();
+            Exception[] failure = new Exception[1];
+            for (int t = 0; t < threads; t++) {
+                Thread worker = new Thread(() -> {
+                    int k;
+                    while ((k = (int) Math.min(next.getAndIncrement(), total)) < total) {
+                        long intended = start + (long) (k * interval);
+                        waitUntil(intended);
+                        long issued = System.nanoTime();
+                        Op op = ThreadLocalRandom.current().nextDouble() < _writeRatio ? Op.PUT : Op.GET;
+                        try {
+                            execute(op);
+                        } catch (Exception e) {
+                            synchronized (failure) { failure[0] = e; }
+                            return;
+                        }
+                        report.record(k, op, intended, issued, System.nanoTime());
+                    }
+                }, "open-loop-" + t);
+                worker.start();
+                workers.add(worker);
+            }
+            for (Thread worker : workers) { worker.join(); }
+            report._elapsedNanos = System.nanoTime() - start;
+            recording.stop();
+            synchronized (failure) {
+                if (failure[0] != null) { throw failure[0]; }
+            }
+            recording.dump(dump);
+            for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+                String name = event.getEventType().getName().substring("kvstore.".length());
+                report.event(name, report.toNanoTime(event.getStartTime()), report.toNanoTime(event.getEndTime()));
+            }
+        } finally {
+            Files.deleteIfExists(dump);
+        }
+        report.correlate();
+        return report;
+    }
+
+    /** 等待到给定的时刻. 距离较远时挂起线程，最后一段自旋，以免挂起的粒度推迟发出. */
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > 100_000) { LockSupport.parkNanos(remaining - 50_000); }
+            else { Thread.onSpinWait(); }
+        }
+    }
+
+    /** 执行一次操作. */
+    private void execute(Op op) throws IOException, ClassNotFoundException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (op == Op.GET) {
+            _executor.get(key(2 * random.nextLong(_records)));
+            return;
+        }
+        _writeLock.lock();
+        try {
+            if (random.nextDouble() < _appendRatio) { _executor.put(key(_nextAppend.getAndIncrement()), value()); }
+            // 奇数序号落在装载的记录之间
+            else { _executor.put(key(2 * random.nextLong(_records) + 1), value()); }
+        } finally {
+            _writeLock.unlock();
+        }
+    }
+
+    /** 生成一条100个字符的值. */
+    private static String value() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] value = new char[100];
+        for (int i = 0; i < value.length; i++) { value[i] = (char) ('a' + random.nextInt(26)); }
+        return new String(value);
+    }
+
+    /** 一次运行的结果：每次操作的时刻、延迟分布、事件以及二者的关联. */
+    public static class Report {
+
+        /** 目标到达速率与离群值的分位数. */
+        private final double _rate, _outlier;
+
+        /** 每次操作的类型、计划发出、实际发出与完成的时刻，按计划发出的顺序排列. */
+        private final Op[] _ops;
+        private final long[] _intended, _issued, _completed;
+
+        /** 每类操作修正后的延迟与服务时间. */
+        private final Map<Op, LatencyHistogram> _corrected, _service;
+
+        /** 全部操作修正后的延迟与服务时间. */
+        private final LatencyHistogram _allCorrected, _allService;
+
+        /** 每类事件的时间区间，按开始的时刻排列. */
+        private final Map<String, List<long[]>> _events;
+
+        /** 与每类事件重叠的操作的修正延迟. */
+        private final Map<String, LatencyHistogram> _overlapping;
+
+        /** 与每类事件重叠的离群操作的个数，以及不与任何事件重叠的离群操作的个数. */
+        private final Map<String, Integer> _outliersOverlapping;
+        private int _outliersAlone;
+
+        /** 离群值的阈值与离群操作的个数. */
+        private long _threshold;
+        private int _outliers;
+
+        /** 修正延迟最高的若干次操作的序号，按延迟降序排列. */
+        private int[] _slowest;
+
+        /** 计时起点的nanoTime与对应的墙上时钟(纳秒). */
+        private long _origin, _originEpochNanos;
+
+        /** 运行的总耗时. */
+        private long _elapsedNanos;
+
+        private Report(int total, double rate, double outlier) {
+            _rate = rate;
+            _outlier = outlier;
+            _ops = new Op[total];
+            _intended = new long[total];
+            _issued = new long[total];
+            _completed = new long[total];
+            _corrected = new EnumMap<>(Op.class);
+            _service = new EnumMap<>(Op.class);
+            for (Op op : Op.values()) {
+                _corrected.put(op, new LatencyHistogram());
+                _service.put(op, new LatencyHistogram());
+            }
+            _allCorrected = new LatencyHistogram();
+            _allService = new LatencyHistogram();
+            _events = new LinkedHashMap<>();
+            _overlapping = new LinkedHashMap<>();
+            _outliersOverlapping = new LinkedHashMap<>();
+            for (String event : EVENTS) {
+                _events.put(event, new ArrayList<>());
+                _overlapping.put(event, new LatencyHistogram());
+                _outliersOverlapping.put(event, 0);
+            }
+        }
+
+        /** 记录第k次操作. 每个k只由一个线程写入，线程结束(join)之后才被读取. */
+        private void record(int k, Op op, long intended, long issued, long completed) {
+            _ops[k] = op;
+            _intended[k] = intended;
+            _issued[k] = issued;
+            _completed[k] = completed;
+            _corrected.get(op).record(completed - intended);
+            _service.get(op).record(completed - issued);
+            _allCorrected.record(completed - intended);
+            _allService.record(completed - issued);
+        }
+
+        /** 把JFR事件的时刻换算到nanoTime的时间轴上. */
+        private long toNanoTime(Instant instant) {
+            return _origin + (instant.getEpochSecond() * 1_000_000_000L + instant.getNano() - _originEpochNanos);
+        }
+
+        private void event(String name, long start, long end) {
+            List<long[]> events = _events.get(name);
+            if (events != null) { events.add(new long[] { start, end }); }
+        }
+
+        /** 统计与每类事件重叠的操作，找出离群操作与延迟最高的操作. */
+        private void correlate() {
+            Map<String, long[][]> merged = new LinkedHashMap<>();
+            for (Map.Entry<String, List<long[]>> entry : _events.entrySet()) {
+                entry.getValue().sort(Comparator.comparingLong(interval -> interval[0]));
+                merged.put(entry.getKey(), merge(entry.getValue()));
+            }
+            // 逐次操作的延迟都已保存，阈值取精确的分位数而不是桶的上界
+            long[] sorted = new long[_ops.length];
+            for (int k = 0; k < sorted.length; k++) { sorted[k] = corrected(k); }
+            Arrays.sort(sorted);
+            _threshold = sorted[Math.max(0, Math.min(sorted.length - 1, (int) Math.ceil(_outlier * sorted.length) - 1))];
+            PriorityQueue<Integer> slowest = new PriorityQueue<>(Comparator.comparingLong(this::corrected));
+            for (int k = 0; k < _ops.length; k++) {
+                boolean outlier = corrected(k) >= _threshold, alone = true;
+                for (Map.Entry<String, long[][]> entry : merged.entrySet()) {
+                    if (!overlaps(entry.getValue(), _intended[k], _completed[k])) { continue; }
+                    alone = false;
+                    _overlapping.get(entry.getKey()).record(corrected(k));
+                    if (outlier) { _outliersOverlapping.merge(entry.getKey(), 1, Integer::sum); }
+                }
+                if (outlier) {
+                    _outliers++;
+                    if (alone) { _outliersAlone++; }
+                }
+                slowest.add(k);
+                if (slowest.size() > SLOWEST) { slowest.poll(); }
+            }
+            _slowest = new int[slowest.size()];
+            for (int i = _slowest.length - 1; i >= 0; i--) { _slowest[i] = slowest.poll(); }
+        }
+
+        /** 合并相互重叠的区间. 输入按开始的时刻排列. */
+        private static long[][] merge(List<long[]> intervals) {
+            List<long[]> merged = new ArrayList<>();
+            for (long[] interval : intervals) {
+                long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+                if (last != null && interval[0] <= last[1]) { last[1] = Math.max(last[1], interval[1]); }
+                else { merged.add(new long[] { interval[0], interval[1] }); }
+            }
+            return merged.toArray(new long[0][]);
+        }
+
+        /** 互不重叠且有序的区间中是否有与[start, end]重叠的区间. */
+        private static boolean overlaps(long[][] intervals, long start, long end) {
+            // 开始时刻不晚于end的最后一个区间
+            int lo = 0, hi = intervals.length - 1, last = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (intervals[mid][0] <= end) {
+                    last = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return last >= 0 && intervals[last][1] >= start;
+        }
+
+        /** 与[start, end]重叠的各类事件的名称. */
+        private List<String> eventsDuring(long start, long end) {
+            List<String> names = new ArrayList<>();
+            for (Map.Entry<String, List<long[]>> entry : _events.entrySet()) {
+                long count = entry.getValue().stream().filter(e -> e[0] <= end && e[1] >= start).count();
+                if (count > 0) { names.add(count == 1 ? entry.getKey() : entry.getKey() + "x" + count); }
+            }
+            return names;
+        }
+
+        private long corrected(int k) { return _completed[k] - _intended[k]; }
+
+        /** 返回某类操作修正后的延迟分布. 为null时返回全部操作的分布. */
+        public LatencyHistogram corrected(Op op) { return op == null ? _allCorrected : _corrected.get(op); }
+
+        /** 返回某类操作的服务时间(未经修正的延迟)分布. 为null时返回全部操作的分布. */
+        public LatencyHistogram service(Op op) { return op == null ? _allService : _service.get(op); }
+
+        /** 返回某类事件发生的次数. */
+        public int events(String name) { return _events.get(name).size(); }
+
+        /** 返回与某类事件重叠的操作的修正延迟分布. */
+        public LatencyHistogram overlapping(String name) { return _overlapping.get(name); }
+
+        /** 返回离群操作的个数. */
+        public int outliers() { return _outliers; }
+
+        /** 返回与某类事件重叠的离群操作的个数. */
+        public int outliersOverlapping(String name) { return _outliersOverlapping.get(name); }
+
+        /** 返回操作实际发出的时刻相对计划的最大滞后. */
+        public long maxLag() {
+            long lag = 0;
+            for (int k = 0; k < _ops.length; k++) { lag = Math.max(lag, _issued[k] - _intended[k]); }
+            return lag;
+        }
+
+        /** 返回实际的吞吐量(次/秒). */
+        public double throughput() { return _elapsedNanos == 0 ? 0 : _ops.length * 1e9 / _elapsedNanos; }
+
+        /**
+         * 把完整的延迟分布写入CSV文件. 每行为一个非空的桶：操作类型、延迟的口径、桶的上界(微秒)、
+         * 桶中的次数以及累计的分位数.
+         */
+        public void writeDistribution(Path path) throws IOException {
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+                out.println("op,latency,value_us,count,percentile");
+                List<Op> ops = new ArrayList<>(Arrays.asList(Op.values()));
+                ops.add(null);
+                for (Op op : ops) {
+                    String name = op == null ? "ALL" : op.name();
+                    spectrum(out, name, "corrected", corrected(op));
+                    spectrum(out, name, "service", service(op));
+                }
+            }
+        }
+
+        private static void spectrum(PrintWriter out, String op, String latency, LatencyHistogram histogram) {
+            long seen = 0, total = histogram.count();
+            for (int i = 0; i < LatencyHistogram.buckets() && seen < total; i++) {
+                long count = histogram.countAt(i);
+                if (count == 0) { continue; }
+                seen += count;
+                out.printf("%s,%s,%.3f,%d,%.6f\n", op, latency,
+                        LatencyHistogram.highestEquivalent(i) / 1e3, count, 100.0 * seen / total);
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder();
+            report.append(String.format("目标速率%.1f ops/s，实际%.1f ops/s，共%d次操作，最大发出滞后%.3fms\n",
+                    _rate, throughput(), _ops.length, maxLag() / 1e6));
+            report.append(String.format("%-8s%-11s%10s%11s%11s%11s%11s%11s%11s%11s\n", "op", "latency",
+                    "count", "p50(us)", "p90(us)", "p99(us)", "p999(us)", "p9999(us)", "max(us)", "avg(us)"));
+            List<Op> ops = new ArrayList<>(Arrays.asList(Op.values()));
+            ops.add(null);
+            for (Op op : ops) {
+                appendRow(report, op == null ? "ALL" : op.name(), "corrected", corrected(op));
+                appendRow(report, op == null ? "ALL" : op.name(), "service", service(op));
+            }
+            report.append(String.format("\n离群值：修正延迟 >= p%s = %.1fus 的操作共%d次，其中%d次未与任何事件重叠\n",
+                    _outlier * 100, _threshold / 1e3, _outliers, _outliersAlone));
+            report.append(String.format("%-13s%8s%14s%14s%12s%14s%14s%12s\n", "event", "count", "avg dur(us)",
+                    "max dur(us)", "ops", "p99(us)", "p999(us)", "outliers"));
+            for (String name : EVENTS) {
+                List<long[]> events = _events.get(name);
+                long sum = 0, max = 0;
+                for (long[] event : events) {
+                    sum += event[1] - event[0];
+                    max = Math.max(max, event[1] - event[0]);
+                }
+                LatencyHistogram h = _overlapping.get(name);
+                report.append(String.format("%-13s%8d%14.1f%14.1f%12s%14.1f%14.1f%12s\n", name, events.size(),
+                        events.isEmpty() ? 0 : sum / 1e3 / events.size(), max / 1e3,
+                        String.format("%.2f%%", 100.0 * h.count() / Math.max(1, _ops.length)),
+                        h.quantile(0.99) / 1e3, h.quantile(0.999) / 1e3,
+                        String.format("%.1f%%", 100.0 * _outliersOverlapping.get(name) / Math.max(1, _outliers))));
+            }
+            report.append("\n修正延迟最高的操作：\n");
+            for (int k : _slowest) {
+                report.append(String.format("  #%-9d%-4s t=%9.3fms 修正%10.1fus 服务%10.1fus  %s\n", k, _ops[k],
+                        (_intended[k] - _origin) / 1e6, corrected(k) / 1e3, (_completed[k] - _issued[k]) / 1e3,
+                        eventsDuring(_intended[k], _completed[k])));
+            }
+            return report.toString();
+        }
+
+        private static void appendRow(StringBuilder report, String op, String latency, LatencyHistogram h) {
+            report.append(String.format("%-8s%-11s%10d%11.1f%11.1f%11.1f%11.1f%11.1f%11.1f%11.1f\n", op, latency,
+                    h.count(), h.quantile(0.5) / 1e3, h.quantile(0.9) / 1e3, h.quantile(0.99) / 1e3,
+                    h.quantile(0.999) / 1e3, h.quantile(0.9999) / 1e3, h.max() / 1e3, h.mean() / 1e3));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) { options.put(args[i].substring(1), args[i + 1]); }
+        long records = Long.parseLong(options.getOrDefault("records", "100000"));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "10000"));
+        double duration = Double.parseDouble(options.getOrDefault("duration", "10"));
+        double warmup = Double.parseDouble(options.getOrDefault("warmup", "3"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", "4"));
+        double outlier = Double.parseDouble(options.getOrDefault("outlier", "0.999"));
+        int order = Integer.parseInt(options.getOrDefault("M", "16"));
+        int capacity = Integer.parseInt(options.getOrDefault("capacity", "128"));
+        int buffer = Integer.parseInt(options.getOrDefault("buffer", "1024"));
+        String directory = String.format("./data/open-loop-%d", System.nanoTime());
+        new File(directory).mkdirs();
+
+        try (Executor<String, String> executor = new Executor<>("B+-Tree", order, capacity, buffer, directory)) {
+            OpenLoop benchmark = new OpenLoop(executor, records,
+                    Double.parseDouble(options.getOrDefault("writes", "0.5")),
+                    Double.parseDouble(options.getOrDefault("appends", "0.5")));
+            System.out.printf("[LOAD] records=%d M=%d capacity=%d buffer=%d\n", records, order, capacity, buffer);
+            benchmark.load();
+            if (warmup > 0) {
+                System.out.printf("[WARMUP] %.1fs\n", warmup);
+                benchmark.run(rate, warmup, threads, outlier);
+            }
+            System.out.printf("[RUN] rate=%.1f duration=%.1fs threads=%d\n", rate, duration, threads);
+            Report report = benchmark.run(rate, duration, threads, outlier);
+            System.out.println(report);
+            if (options.containsKey("o")) {
+                report.writeDistribution(Paths.get(options.get("o")));
+                System.out.printf("完整的延迟分布已写入%s\n", options.get("o"));
+            }
+        }
+    }
+}
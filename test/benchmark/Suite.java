@@ -0,0 +1,258 @@
+package benchmark;
+
+import Index.BPlusTree;
+import Index.BufferedIndex;
+import Index.InMemBPlusTree;
+import Index.Index;
+import KVTable.RBT;
+import KVTable.Table;
+import Main.Executor;
+import Main.Parser;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * 存储引擎各层的微基准，由{@link Harness}运行. 用法示例：
+ * <pre>
+ * java -cp out:lib/* benchmark.Suite -f 1 -wi 3 -i 5 -o results.json "index\\..*"
+ * </pre>
+ * 基准分为以下几组，参数可以通过{@code -p name=v1,v2}覆盖：
+ * <ul>
+ *   <li>table.*: 红黑树({@link RBT})与表({@link Table})的写入、读取、删除与划分</li>
+ *   <li>index.*: {@link BPlusTree}与{@link InMemBPlusTree}在不同的阶M与表容量CAPACITY下的插入、读取与删除</li>
+ *   <li>executor.*: {@link Executor}从缓冲区到存储引擎的端到端读写</li>
+ *   <li>parser.*: {@link Parser}解析语句的吞吐量</li>
+ * </ul>
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class Suite {
+
+    /** 表文件存放的目录. */
+    private static final String DATA = "./data";
+
+    public static void main(String[] args) throws Exception {
+        new File(DATA).mkdirs();
+        Harness harness = new Harness();
+        registerTables(harness);
+        registerIndexes(harness);
+        registerExecutor(harness);
+        registerParser(harness);
+        harness.main(args);
+    }
+
+    /** 红黑树与表的基准. 表中预先装入size条键在[0, 2*size)内的偶数键记录. */
+    private static void registerTables(Harness harness) {
+        Map<String, List<String>> params = params("impl", List.of("RBT", "Table"), "size", List.of("1000", "100000"));
+        harness.register("table.put", params, p -> {
+            RBT<Integer, Integer> table = filledTable(p);
+            int range = 2 * Integer.parseInt(p.get("size"));
+            SplittableRandom random = new SplittableRandom(42);
+            return blackhole -> table.put(random.nextInt(range), 0);
+        });
+        harness.register("table.get", params, p -> {
+            RBT<Integer, Integer> table = filledTable(p);
+            int range = 2 * Integer.parseInt(p.get("size"));
+            SplittableRandom random = new SplittableRandom(42);
+            return blackhole -> blackhole.consume(table.get(random.nextInt(range)));
+        });
+        harness.register("table.delete", params, p -> {
+            RBT<Integer, Integer> table = filledTable(p);
+            int size = Integer.parseInt(p.get("size"));
+            SplittableRandom random = new SplittableRandom(42);
+            return new Harness.State() {
+                private int _key = -1;
+
+                @Override
+                public boolean perInvocation() { return true; }
+
+                @Override
+                public void prepare() {
+                    // 放回上一次删除的记录，使表的大小保持不变
+                    if (_key >= 0) { table.put(_key, _key); }
+                    _key = 2 * random.nextInt(size);
+                }
+
+                @Override
+                public void run(Blackhole blackhole) { blackhole.consume(table.delete(_key)); }
+            };
+        });
+        harness.register("table.split", params("size", List.of("128", "1024")), p -> {
+            int size = Integer.parseInt(p.get("size"));
+            return new Harness.State() {
+                private Table<Integer, Integer> _table;
+
+                @Override
+                public boolean perInvocation() { return true; }
+
+                @Override
+                public void prepare() {
+                    _table = new Table<>(DATA);
+                    for (int i = 0; i < size; i++) { _table.put(i, i); }
+                }
+
+                @Override
+                public void run(Blackhole blackhole) { blackhole.consume(_table.split()); }
+            };
+        });
+    }
+
+    /** 索引的基准. 索引中预先写入records条键在[0, 2*records)内的偶数键记录. */
+    private static void registerIndexes(Harness harness) {
+        Map<String, List<String>> params = params("impl", List.of("BPlusTree", "InMemBPlusTree"),
+                "M", List.of("4", "16", "64"), "CAPACITY", List.of("20", "128"), "records", List.of("20000"));
+        harness.register("index.insert", params, p -> {
+            Index<Integer, Integer> index = filledIndex(p);
+            int range = 2 * Integer.parseInt(p.get("records"));
+            SplittableRandom random = new SplittableRandom(42);
+            // 奇数键为新记录，偶数键为更新
+            return blackhole -> index.insert(random.nextInt(range - 1), 0);
+        });
+        harness.register("index.get", params, p -> {
+            Index<Integer, Integer> index = filledIndex(p);
+            int range = 2 * Integer.parseInt(p.get("records"));
+            SplittableRandom random = new SplittableRandom(42);
+            return blackhole -> blackhole.consume(index.get(random.nextInt(range)));
+        });
+        harness.register("index.delete", params, p -> {
+            Index<Integer, Integer> index = filledIndex(p);
+            int records = Integer.parseInt(p.get("records"));
+            SplittableRandom random = new SplittableRandom(42);
+            return new Harness.State() {
+                private int _key = -1;
+
+                @Override
+                public boolean perInvocation() { return true; }
+
+                @Override
+                public void prepare() throws Exception {
+                    // 放回上一次删除的记录，使索引的大小保持不变
+                    if (_key >= 0) { index.insert(_key, _key); }
+                    // 不删除最大的键，否则索引的范围会缩小，放回时将落在索引之外
+                    _key = 2 * random.nextInt(records - 1);
+                }
+
+                @Override
+                public void run(Blackhole blackhole) throws Exception { blackhole.consume(index.delete(_key)); }
+            };
+        });
+    }
+
+    /** 执行器的端到端基准. 写入的键递增，读取的键均匀分布在已写入的范围内. */
+    private static void registerExecutor(Harness harness) {
+        Map<String, List<String>> params = params("M", List.of("16"), "CAPACITY", List.of("128"),
+                "bufferCapacity", List.of("32", "1024"), "records", List.of("20000"));
+        harness.register("executor.put", params, p -> {
+            Executor<Integer, Integer> executor = filledExecutor(p);
+            int[] next = { Integer.parseInt(p.get("records")) };
+            return closing(executor, blackhole -> executor.put(next[0]++, 0));
+        });
+        harness.register("executor.get", params, p -> {
+            Executor<Integer, Integer> executor = filledExecutor(p);
+            int records = Integer.parseInt(p.get("records"));
+            SplittableRandom random = new SplittableRandom(42);
+            return closing(executor, blackhole -> blackhole.consume(executor.get(random.nextInt(records))));
+        });
+        harness.register("executor.mixed", params, p -> {
+            Executor<Integer, Integer> executor = filledExecutor(p);
+            int records = Integer.parseInt(p.get("records"));
+            SplittableRandom random = new SplittableRandom(42);
+            // 读写各占一半，写操作均为对已有记录的更新
+            return closing(executor, blackhole -> {
+                int key = random.nextInt(records);
+                if (random.nextBoolean()) { executor.put(key, key); }
+                else { blackhole.consume(executor.get(key)); }
+            });
+        });
+    }
+
+    /** 解析器的基准，只解析不执行. */
+    private static void registerParser(Harness harness) {
+        Map<String, List<String>> params = params("statement",
+                List.of("insert", "update", "delete", "show"));
+        harness.register("parser.parse", params, p -> {
+            String[] inputs = new String[1024];
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = switch (p.get("statement")) {
+                    case "insert" -> String.format("INSERT k%d AS (v%d, %d)", i, i, i);
+                    case "update" -> String.format("UPDATE k%d AS (v%d)", i, i);
+                    case "delete" -> String.format("DELETE k%d", i);
+                    default -> String.format("SHOW KEY k%d", i);
+                };
+            }
+            Parser parser = new Parser();
+            int[] next = { 0 };
+            return blackhole -> {
+                parser.setUserInput(inputs[next[0]++ & (inputs.length - 1)]);
+                blackhole.consume(parser.parse());
+            };
+        });
+    }
+
+    private static RBT<Integer, Integer> filledTable(Map<String, String> p) {
+        RBT<Integer, Integer> table = p.get("impl").equals("RBT") ? new RBT<>() : new Table<>(DATA);
+        int size = Integer.parseInt(p.get("size"));
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < size; i++) {
+            // 以随机顺序写入，避免红黑树退化为顺序插入的形状
+            int key = 2 * random.nextInt(size);
+            table.put(key, key);
+        }
+        for (int i = 0; i < size; i++) { table.put(2 * i, 2 * i); }
+        return table;
+    }
+
+    /** 按键的顺序把记录分成容量一半的表写入索引，与执行器刷出缓冲区的方式相同. */
+    private static Index<Integer, Integer> filledIndex(Map<String, String> p) throws Exception {
+        int order = Integer.parseInt(p.get("M")), capacity = Integer.parseInt(p.get("CAPACITY"));
+        Index<Integer, Integer> index = p.get("impl").equals("BPlusTree")
+                ? new BPlusTree<>(order, capacity) : new InMemBPlusTree<>(order, capacity);
+        int records = Integer.parseInt(p.get("records"));
+        BufferedIndex<Integer, Integer> filling = new BufferedIndex<>(index, capacity, DATA);
+        for (int i = 0; i < records; i++) { filling.put(2 * i, 2 * i); }
+        filling.flush();
+        return index;
+    }
+
+    private static Executor<Integer, Integer> filledExecutor(Map<String, String> p) throws Exception {
+        Executor<Integer, Integer> executor = new Executor<>("B+-Tree", Integer.parseInt(p.get("M")),
+                Integer.parseInt(p.get("CAPACITY")), Integer.parseInt(p.get("bufferCapacity")),
+                String.format("%s/bench-%d", DATA, System.nanoTime()));
+        int records = Integer.parseInt(p.get("records"));
+        for (int i = 0; i < records; i++) { executor.put(i, i); }
+        executor.awaitFlush();
+        return executor;
+    }
+
+    /** 在执行器上运行的基准状态，状态关闭时一并关闭执行器. */
+    private static Harness.State closing(Executor<Integer, Integer> executor, Harness.State operation) {
+        return new Harness.State() {
+            @Override
+            public void run(Blackhole blackhole) throws Exception { operation.run(blackhole); }
+
+            @Override
+            public void close() {
+                try {
+                    executor.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /** 按给出的顺序构造参数表，参数为名称与取值交替排列. */
+    @SuppressWarnings("unchecked")
+    private static Map<String, List<String>> params(Object... nameValues) {
+        Map<String, List<String>> params = new LinkedHashMap<>();
+        for (int i = 0; i < nameValues.length; i += 2) {
+            params.put((String) nameValues[i], (List<String>) nameValues[i + 1]);
+        }
+        return params;
+    }
+}
@@ -46,8 +46,9 @@ public class engineBenchmark {
                 case 1 -> index.get(key); // 读取
             }
         }
-        // 查看视图
+        // 先读取耗时，打印视图不计入其中
+        double elapsed = sw.elapsedTime();
         System.out.println(index.indexView());
-        System.out.printf("耗时 %.3f s", sw.elapsedTime());
+        System.out.printf("耗时 %.3f s", elapsed);
     }
 }
@@ -0,0 +1,43 @@
+package benchmark;
+
+import static org.junit.Assert.*;
+import testMain.ExecutorFixture;
+import Metrics.LatencyHistogram;
+import benchmark.OpenLoop.Op;
+import benchmark.OpenLoop.Report;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.Test;
+
+public class testOpenLoop extends ExecutorFixture {
+
+    @Test
+    public void testCorrectedLatencyAndEvents() throws Exception {
+        OpenLoop benchmark = new OpenLoop(executor(4, 20, 16), 2000, 0.5, 0.5);
+        benchmark.load();
+        Report report = benchmark.run(1000, 1, 2, 0.99);
+        LatencyHistogram corrected = report.corrected(null), service = report.service(null);
+        assertEquals(1000, corrected.count());
+        assertEquals(1000, service.count());
+        assertEquals(corrected.count(), report.corrected(Op.GET).count() + report.corrected(Op.PUT).count());
+        // 修正后的延迟包含推迟发出的时间，不会小于服务时间
+        assertTrue(corrected.max() >= service.max());
+        assertTrue(corrected.sum() >= service.sum());
+        // 追加的写操作写满缓冲区，插入的写操作使表分裂
+        assertTrue(report.events("BufferFlush") > 0);
+        assertTrue(report.events("TableSplit") > 0);
+        assertTrue(report.outliers() >= 10);
+        assertTrue(report.outliersOverlapping("BufferFlush") <= report.outliers());
+        assertTrue(report.overlapping("BufferFlush").count() > 0);
+        Path csv = Files.createTempFile("open-loop", ".csv");
+        try {
+            report.writeDistribution(csv);
+            List<String> lines = Files.readAllLines(csv);
+            assertEquals("op,latency,value_us,count,percentile", lines.get(0));
+            assertTrue(lines.stream().anyMatch(line -> line.startsWith("ALL,corrected,") && line.endsWith(",100.000000")));
+        } finally {
+            Files.deleteIfExists(csv);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package benchmark.ycsb;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+/**
+ * 按某种分布选择被访问记录的序号，序号在[0, 当前记录条数)内. 实现都是线程安全的.
+ * <p>
+ * 分布与YCSB的同名分布一致：
+ * <ul>
+ *   <li>uniform: 均匀分布</li>
+ *   <li>zipfian: 参数为0.99的齐普夫分布，热点记录经过哈希后分散在整个键空间中(YCSB的ScrambledZipfian)</li>
+ *   <li>latest: 越新插入的记录越热，热度按齐普夫分布衰减</li>
+ * </ul>
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public interface KeyChooser {
+
+    /** 返回下一个被访问记录的序号. */
+    long next();
+
+    /**
+     * 按名称创建一个分布.
+     * @param name uniform、zipfian或latest
+     * @param count 返回当前可以访问的记录条数，插入新记录后会增长
+     * @throws IllegalArgumentException 若分布的名称未知
+     */
+    static KeyChooser of(String name, LongSupplier count) throws IllegalArgumentException {
+        return switch (name) {
+            case "uniform" -> () -> ThreadLocalRandom.current().nextLong(count.getAsLong());
+            case "zipfian" -> new ScrambledZipfian(count);
+            case "latest" -> new Latest(count);
+            default -> throw new IllegalArgumentException(String.format("未知的键分布: %s", name));
+        };
+    }
+
+    /**
+     * 在[0, n)上的齐普夫分布，0最热. 采用Gray等人在"Quickly Generating Billion-Record Synthetic Databases"
+     * 中给出的算法，n增长时增量地更新zeta(n).
+     */
+    final class Zipfian {
+
+        /** 齐普夫分布的参数. */
+        static final double THETA = 0.99;
+
+        private static final double ALPHA = 1 / (1 - THETA);
+
+        private static final double ZETA2 = 1 + Math.pow(0.5, THETA);
+
+        /** 给定n时算法所需的常数. 整体替换，以便读者看到一致的状态. */
+        private record Constants(long n, double zetan, double eta) {}
+
+        private volatile Constants _constants;
+
+        Zipfian(long n) {
+            _constants = constants(n, zeta(0, n, 0));
+        }
+
+        /** 返回[0, n)上的下一个样本. */
+        long next(long n) {
+            Constants c = _constants;
+            if (n != c.n()) { c = grow(n); }
+            double u = ThreadLocalRandom.current().nextDouble(), uz = u * c.zetan();
+            if (uz < 1) { return 0; }
+            if (uz < ZETA2) { return 1; }
+            return Math.min(n - 1, (long) (n * Math.pow(c.eta() * u - c.eta() + 1, ALPHA)));
+        }
+
+        private synchronized Constants grow(long n) {
+            Constants c = _constants;
+            if (n == c.n()) { return c; }
+            // 记录条数只会增长；减少时重新计算
+            c = n > c.n() ? constants(n, zeta(c.n(), n, c.zetan())) : constants(n, zeta(0, n, 0));
+            _constants = c;
+            return c;
+        }
+
+        private static Constants constants(long n, double zetan) {
+            double eta = (1 - Math.pow(2.0 / n, 1 - THETA)) / (1 - ZETA2 / zetan);
+            return new Constants(n, zetan, eta);
+        }
+
+        /** 在zeta(from)的基础上计算zeta(to). */
+        private static double zeta(long from, long to, double zetaFrom) {
+            double sum = zetaFrom;
+            for (long i = from; i < to; i++) { sum += 1 / Math.pow(i + 1, THETA); }
+            return sum;
+        }
+    }
+
+    /**
+     * 热点分散的齐普夫分布. 先在一个很大的固定空间上按齐普夫分布取样，再哈希到[0, 记录条数)，
+     * 因此记录条数增长时无需重新计算zeta，热点也不会集中在键空间的一端.
+     */
+    final class ScrambledZipfian implements KeyChooser {
+
+        /** 取样空间的大小与对应的zeta，与YCSB取相同的值. */
+        private static final long ITEMS = 10_000_000_000L;
+        private static final double ZETAN = 26.46902820178302;
+
+        private static final double ALPHA = 1 / (1 - Zipfian.THETA);
+        private static final double ZETA2 = 1 + Math.pow(0.5, Zipfian.THETA);
+        private static final double ETA = (1 - Math.pow(2.0 / ITEMS, 1 - Zipfian.THETA)) / (1 - ZETA2 / ZETAN);
+
+        private final LongSupplier _count;
+
+        ScrambledZipfian(LongSupplier count) { _count = count; }
+
+        @Override
+        public long next() {
+            double u = ThreadLocalRandom.current().nextDouble(), uz = u * ZETAN;
+            long sample;
+            if (uz < 1) { sample = 0; }
+            else if (uz < ZETA2) { sample = 1; }
+            else { sample = (long) (ITEMS * Math.pow(ETA * u - ETA + 1, ALPHA)); }
+            return Math.floorMod(fnv(sample), _count.getAsLong());
+        }
+
+        /** 64位FNV-1a哈希. */
+        private static long fnv(long value) {
+            long hash = 0xCBF29CE484222325L;
+            for (int i = 0; i < 8; i++) {
+                hash ^= value & 0xFF;
+                hash *= 0x100000001B3L;
+                value >>>= 8;
+            }
+            return hash;
+        }
+    }
+
+    /** 最新插入的记录最热，距离最新记录越远越冷. */
+    final class Latest implements KeyChooser {
+
+        private final LongSupplier _count;
+
+        private final Zipfian _zipfian;
+
+        Latest(LongSupplier count) {
+            _count = count;
+            _zipfian = new Zipfian(count.getAsLong());
+        }
+
+        @Override
+        public long next() {
+            long n = _count.getAsLong();
+            return n - 1 - _zipfian.next(n);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package benchmark.ycsb;
+
+import Index.BufferedIndex;
+import Index.Index;
+import Index.TableSpliterator;
+import Main.Executor;
+import Server.BinaryClient;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 负载访问的存储. 实现可以被多个客户端线程同时调用.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public interface Store extends Closeable {
+
+    /** 读取一条记录，返回是否找到. */
+    boolean read(String key) throws Exception;
+
+    /** 写入一条记录. 插入与更新都通过它进行. */
+    void write(String key, String value) throws Exception;
+
+    /** 从low开始读取键不大于high的记录，返回读到的条数. */
+    int scan(String low, String high, int count) throws Exception;
+
+    /** 装载结束后调用，等待装载的数据全部落入存储. */
+    default void loaded() throws Exception {}
+
+    @Override
+    default void close() throws IOException {}
+
+    /** 通过{@link Executor}访问. 执行器要求同一时刻只有一个写者，因此写操作由一把锁串行化，读操作不加锁. */
+    final class ExecutorStore implements Store {
+
+        private final Executor<String, String> _executor;
+
+        private final ReentrantLock _writeLock = new ReentrantLock();
+
+        public ExecutorStore(Executor<String, String> executor) { _executor = executor; }
+
+        @Override
+        public boolean read(String key) throws Exception { return _executor.get(key) != null; }
+
+        @Override
+        public void write(String key, String value) throws Exception {
+            _writeLock.lock();
+            try {
+                _executor.put(key, value);
+            } finally {
+                _writeLock.unlock();
+            }
+        }
+
+        @Override
+        public int scan(String low, String high, int count) throws Exception {
+            return Math.min(count, _executor.scan(low, high).size());
+        }
+
+        @Override
+        public void loaded() throws Exception { _executor.awaitFlush(); }
+
+        @Override
+        public void close() throws IOException { _executor.close(); }
+    }
+
+    /**
+     * 直接访问一个{@link Index}，键超过索引右端点的记录经{@link BufferedIndex}按顺序写入.
+     * <p>
+     * {@link Index.InMemBPlusTree}不允许读写并发，因此以读写锁保护索引.
+     */
+    final class IndexStore implements Store {
+
+        private final BufferedIndex<String, String> _index;
+
+        private final ReentrantReadWriteLock _lock = new ReentrantReadWriteLock();
+
+        public IndexStore(Index<String, String> index, int capacity) {
+            _index = new BufferedIndex<>(index, capacity);
+        }
+
+        @Override
+        public boolean read(String key) throws Exception {
+            _lock.readLock().lock();
+            try {
+                return _index.get(key) != null;
+            } finally {
+                _lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public void write(String key, String value) throws Exception {
+            _lock.writeLock().lock();
+            try {
+                _index.put(key, value);
+            } finally {
+                _lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public int scan(String low, String high, int count) throws Exception {
+            _lock.readLock().lock();
+            try {
+                int[] read = { 0 };
+                try (TableSpliterator<String, String> records = _index.index().scan(low, high)) {
+                    while (read[0] < count && records.tryAdvance(record -> read[0]++)) {}
+                }
+                return read[0];
+            } finally {
+                _lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public void loaded() throws Exception {
+            _lock.writeLock().lock();
+            try {
+                _index.flush();
+            } finally {
+                _lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /** 通过{@link BinaryClient}访问远端的{@link Server.BinaryServer}. */
+    final class ServerStore implements Store {
+
+        private final BinaryClient _client;
+
+        public ServerStore(BinaryClient client) { _client = client; }
+
+        @Override
+        public boolean read(String key) throws Exception { return _client.get(key) != null; }
+
+        @Override
+        public void write(String key, String value) throws Exception { _client.put(key, value); }
+
+        @Override
+        public int scan(String low, String high, int count) throws Exception {
+            return Math.min(count, _client.scan(low, high).size());
+        }
+
+        @Override
+        public void close() { _client.close(); }
+    }
+}
@@ -0,0 +1,59 @@
+package benchmark.ycsb;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * YCSB的核心负载A到F，给出各类操作所占的比例以及默认的键分布.
+ * <ul>
+ *   <li>A: 读写各半，例如会话存储</li>
+ *   <li>B: 95%读，例如给照片打标签</li>
+ *   <li>C: 只读，例如读取用户资料</li>
+ *   <li>D: 读最新插入的记录，例如读取状态更新</li>
+ *   <li>E: 短范围查询，例如读取主题下的帖子</li>
+ *   <li>F: 读-修改-写，例如更新用户的活动记录</li>
+ * </ul>
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public enum Workload {
+
+    A(0.50, 0.50, 0, 0, 0, "zipfian"),
+    B(0.95, 0.05, 0, 0, 0, "zipfian"),
+    C(1.00, 0, 0, 0, 0, "zipfian"),
+    D(0.95, 0, 0.05, 0, 0, "latest"),
+    E(0, 0, 0.05, 0.95, 0, "zipfian"),
+    F(0.50, 0, 0, 0, 0.50, "zipfian");
+
+    /** 负载中的操作类型. */
+    public enum Op { READ, UPDATE, INSERT, SCAN, READ_MODIFY_WRITE }
+
+    /** 各类操作的累积比例，顺序与{@link Op}相同. */
+    private final double[] _cumulative;
+
+    /** 默认的键分布. */
+    private final String _distribution;
+
+    Workload(double read, double update, double insert, double scan, double readModifyWrite, String distribution) {
+        double[] proportions = { read, update, insert, scan, readModifyWrite };
+        _cumulative = new double[proportions.length];
+        double sum = 0;
+        for (int i = 0; i < proportions.length; i++) {
+            sum += proportions[i];
+            _cumulative[i] = sum;
+        }
+        _distribution = distribution;
+    }
+
+    /** 返回默认的键分布. */
+    public String distribution() { return _distribution; }
+
+    /** 按比例随机选择下一个操作. */
+    public Op next() {
+        double u = ThreadLocalRandom.current().nextDouble();
+        Op[] ops = Op.values();
+        for (int i = 0; i < ops.length - 1; i++) {
+            if (u < _cumulative[i]) { return ops[i]; }
+        }
+        return ops[ops.length - 1];
+    }
+}
@@ -0,0 +1,335 @@
+package benchmark.ycsb;
+
+import Index.BPlusTree;
+import Index.InMemBPlusTree;
+import Main.Executor;
+import Metrics.LatencyHistogram;
+import Server.BinaryClient;
+import Server.BinaryServer;
+import benchmark.ycsb.Workload.Op;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * YCSB风格的负载驱动. 先以多个线程装载records条记录，再按负载中各类操作的比例执行operations次操作，
+ * 最后报告吞吐量以及每类操作的延迟分位数.
+ * <p>
+ * 记录的键为"user"加上12位补零的序号，因此键的顺序与插入的顺序一致(YCSB的insertorder=ordered)，
+ * 插入总是追加在键空间的末尾，范围查询可以由起点的序号直接算出终点. 值由fieldCount个长度为fieldLength的随机字段组成.
+ * <p>
+ * 给定目标吞吐量时，每个线程按固定的间隔发出操作，落后于计划时立即发出下一个操作.
+ * 延迟从操作实际发出时开始计算，不包含因落后于计划而等待的时间.
+ * <p>
+ * 用法示例：
+ * <pre>
+ * java -cp out:lib/* benchmark.ycsb.Ycsb -target executor -workload A -records 100000 -operations 1000000 -threads 4
+ * </pre>
+ * 参数(括号中为默认值)：
+ * <pre>
+ * -target       executor | bplustree | inmem | server (executor)
+ * -workload     A到F (A)
+ * -distribution uniform | zipfian | latest，默认取负载自身的分布
+ * -records      装载的记录条数 (10000)
+ * -operations   执行的操作次数 (100000)
+ * -threads      客户端线程数 (1)
+ * -rate         所有线程合计的目标吞吐量(次/秒)，0表示不限 (0)
+ * -fieldcount   每条记录的字段个数 (10)
+ * -fieldlength  每个字段的长度 (100)
+ * -scanlength   范围查询的最大长度，实际长度在[1, scanlength]内均匀分布 (100)
+ * -M            B+树的阶 (16)
+ * -capacity     表的容量 (128)
+ * -buffer       执行器缓冲区的容量 (1024)
+ * -host, -port  target为server时连接的服务端；不给出端口时在本机启动一个服务端
+ * </pre>
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class Ycsb {
+
+    /** 被访问的存储. */
+    private final Store _store;
+
+    /** 负载. */
+    private final Workload _workload;
+
+    /** 选择被访问记录的分布. */
+    private final KeyChooser _chooser;
+
+    /** 每条记录的字段个数与字段长度. */
+    private final int _fieldCount, _fieldLength;
+
+    /** 范围查询的最大长度. */
+    private final int _scanLength;
+
+    /** 下一条被插入的记录的序号. */
+    private final AtomicLong _nextInsert;
+
+    /** 已经插入完成的记录条数，读操作只访问这个范围内的记录. */
+    private final AtomicLong _inserted;
+
+    /**
+     * 负载驱动的构造函数.
+     * @param store 被访问的存储
+     * @param workload 负载
+     * @param distribution 键的分布，为null时取负载自身的分布
+     * @param records 装载的记录条数
+     * @param fieldCount 每条记录的字段个数
+     * @param fieldLength 每个字段的长度
+     * @param scanLength 范围查询的最大长度
+     * @throws IllegalArgumentException 若记录条数、字段个数、字段长度或范围查询的长度不为正数
+     */
+    public Ycsb(Store store, Workload workload, String distribution, long records,
+                int fieldCount, int fieldLength, int scanLength) throws IllegalArgumentException {
+        if (records <= 0 || fieldCount <= 0 || fieldLength <= 0 || scanLength <= 0) {
+            throw new IllegalArgumentException(String.format(
+                    "records, fieldcount, fieldlength and scanlength should be positive. Got %d, %d, %d, %d",
+                    records, fieldCount, fieldLength, scanLength));
+        }
+        _store = store;
+        _workload = workload;
+        _fieldCount = fieldCount;
+        _fieldLength = fieldLength;
+        _scanLength = scanLength;
+        _nextInsert = new AtomicLong(records);
+        _inserted = new AtomicLong(records);
+        _chooser = KeyChooser.of(distribution == null ? workload.distribution() : distribution, _inserted::get);
+    }
+
+    /** 返回序号对应的键. */
+    public static String key(long n) { return String.format("user%012d", n); }
+
+    /** 以给定的线程数装载全部记录，每个线程负责一段连续的序号. */
+    public Report load(int threads) throws Exception {
+        long records = _inserted.get();
+        Report report = new Report();
+        AtomicLong next = new AtomicLong();
+        // 装载按序号递增地写入，与逐条追加的真实负载相同
+        runThreads(threads, report, () -> {
+            long n;
+            while ((n = next.getAndIncrement()) < records) {
+                long start = System.nanoTime();
+                _store.write(key(n), value());
+                report.record(Op.INSERT, System.nanoTime() - start);
+            }
+        });
+        _store.loaded();
+        return report;
+    }
+
+    /**
+     * 执行负载.
+     * @param operations 操作的总次数
+     * @param threads 客户端线程数
+     * @param targetRate 所有线程合计的目标吞吐量(次/秒)，不为正数时不限
+     */
+    public Report run(long operations, int threads, double targetRate) throws Exception {
+        Report report = new Report();
+        AtomicLong issued = new AtomicLong();
+        // 每个线程发出相邻两次操作的计划间隔
+        long interval = targetRate > 0 ? (long) (threads * 1e9 / targetRate) : 0;
+        runThreads(threads, report, () -> {
+            long next = System.nanoTime();
+            while (issued.getAndIncrement() < operations) {
+                if (interval > 0) {
+                    long now;
+                    while ((now = System.nanoTime()) < next) { LockSupport.parkNanos(next - now); }
+                    next += interval;
+                }
+                Op op = _workload.next();
+                long start = System.nanoTime();
+                try {
+                    execute(op, report);
+                    report.record(op, System.nanoTime() - start);
+                } catch (Exception e) {
+                    report.fail(op);
+                }
+            }
+        });
+        return report;
+    }
+
+    /** 执行一次操作. */
+    private void execute(Op op, Report report) throws Exception {
+        switch (op) {
+            case READ -> {
+                if (!_store.read(key(_chooser.next()))) { report.miss(op); }
+            }
+            case UPDATE -> _store.write(key(_chooser.next()), value());
+            case INSERT -> {
+                long n = _nextInsert.getAndIncrement();
+                _store.write(key(n), value());
+                // 多个线程并发插入时，先完成的较大序号会让较小的序号提前可见，此时读到它属于未命中
+                _inserted.accumulateAndGet(n + 1, Math::max);
+            }
+            case SCAN -> {
+                long low = _chooser.next();
+                int length = 1 + ThreadLocalRandom.current().nextInt(_scanLength);
+                _store.scan(key(low), key(low + length - 1), length);
+            }
+            case READ_MODIFY_WRITE -> {
+                String key = key(_chooser.next());
+                if (!_store.read(key)) { report.miss(op); }
+                _store.write(key, value());
+            }
+        }
+    }
+
+    /** 生成一条记录的值. */
+    private String value() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder value = new StringBuilder(_fieldCount * (_fieldLength + 2) + 2).append('(');
+        for (int i = 0; i < _fieldCount; i++) {
+            if (i > 0) { value.append(", "); }
+            for (int j = 0; j < _fieldLength; j++) { value.append((char) ('a' + random.nextInt(26))); }
+        }
+        return value.append(')').toString();
+    }
+
+    /** 在给定个数的线程中运行同一个任务，等待全部结束并记录总耗时. */
+    private static void runThreads(int threads, Report report, Task task) throws Exception {
+        List<Thread> workers = new ArrayList<>();
+        Exception[] failure = new Exception[1];
+        long start = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    synchronized (failure) { failure[0] = e; }
+                }
+            }, "ycsb-client-" + i);
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) { worker.join(); }
+        report._elapsedNanos = System.nanoTime() - start;
+        synchronized (failure) {
+            if (failure[0] != null) { throw failure[0]; }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    /** 一次装载或运行的结果：总耗时，以及每类操作的延迟分布、未命中与失败的次数. */
+    public static class Report {
+
+        private final Map<Op, LatencyHistogram> _latencies = new EnumMap<>(Op.class);
+
+        private final Map<Op, LongAdder> _misses = new EnumMap<>(Op.class);
+
+        private final Map<Op, LongAdder> _failures = new EnumMap<>(Op.class);
+
+        private long _elapsedNanos;
+
+        private Report() {
+            for (Op op : Op.values()) {
+                _latencies.put(op, new LatencyHistogram());
+                _misses.put(op, new LongAdder());
+                _failures.put(op, new LongAdder());
+            }
+        }
+
+        private void record(Op op, long nanos) { _latencies.get(op).record(nanos); }
+
+        private void miss(Op op) { _misses.get(op).increment(); }
+
+        private void fail(Op op) { _failures.get(op).increment(); }
+
+        /** 返回某类操作的延迟分布. */
+        public LatencyHistogram latency(Op op) { return _latencies.get(op); }
+
+        /** 返回某类操作未找到记录的次数. */
+        public long misses(Op op) { return _misses.get(op).sum(); }
+
+        /** 返回某类操作失败的次数. */
+        public long failures(Op op) { return _failures.get(op).sum(); }
+
+        /** 返回成功完成的操作总数. */
+        public long operations() {
+            return _latencies.values().stream().mapToLong(LatencyHistogram::count).sum();
+        }
+
+        /** 返回总吞吐量(次/秒). */
+        public double throughput() {
+            return _elapsedNanos == 0 ? 0 : operations() * 1e9 / _elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder();
+            report.append(String.format("耗时%.3fs，共%d次操作，吞吐量%.1f ops/s\n",
+                    _elapsedNanos / 1e9, operations(), throughput()));
+            report.append(String.format("%-18s%10s%12s%12s%12s%12s%12s%12s%8s%8s\n", "op", "count",
+                    "avg(us)", "p50(us)", "p95(us)", "p99(us)", "p999(us)", "max(us)", "miss", "fail"));
+            for (Op op : Op.values()) {
+                LatencyHistogram h = _latencies.get(op);
+                if (h.count() == 0 && failures(op) == 0) { continue; }
+                report.append(String.format("%-18s%10d%12.1f%12.1f%12.1f%12.1f%12.1f%12.1f%8d%8d\n",
+                        op, h.count(), h.mean() / 1e3, h.quantile(0.5) / 1e3, h.quantile(0.95) / 1e3,
+                        h.quantile(0.99) / 1e3, h.quantile(0.999) / 1e3, h.max() / 1e3,
+                        misses(op), failures(op)));
+            }
+            return report.toString();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) { options.put(args[i].substring(1), args[i + 1]); }
+        String target = options.getOrDefault("target", "executor");
+        Workload workload = Workload.valueOf(options.getOrDefault("workload", "A").toUpperCase());
+        long records = Long.parseLong(options.getOrDefault("records", "10000"));
+        long operations = Long.parseLong(options.getOrDefault("operations", "100000"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", "1"));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+        int order = Integer.parseInt(options.getOrDefault("M", "16"));
+        int capacity = Integer.parseInt(options.getOrDefault("capacity", "128"));
+        int buffer = Integer.parseInt(options.getOrDefault("buffer", "1024"));
+        String directory = String.format("./data/ycsb-%d", System.nanoTime());
+        new File(directory).mkdirs();
+
+        BinaryServer server = null;
+        Executor<String, String> served = null;
+        Store store = switch (target) {
+            case "executor" -> new Store.ExecutorStore(new Executor<>("B+-Tree", order, capacity, buffer, directory));
+            case "bplustree" -> new Store.IndexStore(new BPlusTree<>(order, capacity), capacity);
+            case "inmem" -> new Store.IndexStore(new InMemBPlusTree<>(order, capacity), capacity);
+            case "server" -> {
+                int port = Integer.parseInt(options.getOrDefault("port", "0"));
+                if (port == 0) {
+                    served = new Executor<>("B+-Tree", order, capacity, buffer, directory);
+                    server = new BinaryServer(served, 0);
+                    server.start();
+                    port = server.port();
+                }
+                yield new Store.ServerStore(new BinaryClient(options.getOrDefault("host", "127.0.0.1"), port, threads));
+            }
+            default -> throw new IllegalArgumentException(String.format("未知的测试对象: %s", target));
+        };
+        try (store) {
+            Ycsb ycsb = new Ycsb(store, workload, options.get("distribution"), records,
+                    Integer.parseInt(options.getOrDefault("fieldcount", "10")),
+                    Integer.parseInt(options.getOrDefault("fieldlength", "100")),
+                    Integer.parseInt(options.getOrDefault("scanlength", "100")));
+            System.out.printf("[LOAD] target=%s records=%d threads=%d\n", target, records, threads);
+            System.out.println(ycsb.load(threads));
+            System.out.printf("[RUN] workload=%s operations=%d threads=%d rate=%s\n",
+                    workload, operations, threads, rate > 0 ? rate : "unlimited");
+            System.out.println(ycsb.run(operations, threads, rate));
+        } finally {
+            if (server != null) { server.close(); }
+            if (served != null) { served.close(); }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package benchmark.ycsb;
+
+import static org.junit.Assert.*;
+import Index.InMemBPlusTree;
+import benchmark.ycsb.Workload.Op;
+import org.junit.Test;
+
+public class testYcsb {
+
+    @Test
+    public void testKeyChoosersStayInRange() {
+        final int N = 1000;
+        for (String name : new String[] { "uniform", "zipfian", "latest" }) {
+            KeyChooser chooser = KeyChooser.of(name, () -> N);
+            for (int i = 0; i < 100000; i++) {
+                long n = chooser.next();
+                assertTrue(name + " out of range: " + n, n >= 0 && n < N);
+            }
+        }
+    }
+
+    @Test
+    public void testSkewedDistributions() {
+        final int N = 1000, SAMPLES = 100000;
+        int[] zipfian = new int[N], latest = new int[N];
+        KeyChooser z = KeyChooser.of("zipfian", () -> N), l = KeyChooser.of("latest", () -> N);
+        for (int i = 0; i < SAMPLES; i++) {
+            zipfian[(int) z.next()]++;
+            latest[(int) l.next()]++;
+        }
+        // 齐普夫分布下最热的记录远比均匀分布的期望(100次)更热
+        int hottest = 0;
+        for (int count : zipfian) { hottest = Math.max(hottest, count); }
+        assertTrue(hottest > 10 * SAMPLES / N);
+        // latest分布下最新的记录最热
+        assertTrue(latest[N - 1] > latest[0] && latest[N - 1] > 10 * SAMPLES / N);
+    }
+
+    @Test
+    public void testGrowingLatest() {
+        long[] count = { 10 };
+        KeyChooser chooser = KeyChooser.of("latest", () -> count[0]);
+        for (int i = 0; i < 1000; i++) {
+            count[0]++;
+            long n = chooser.next();
+            assertTrue(n >= 0 && n < count[0]);
+        }
+    }
+
+    @Test
+    public void testWorkloadProportions() {
+        int reads = 0;
+        for (int i = 0; i < 10000; i++) {
+            Op op = Workload.B.next();
+            assertTrue(op == Op.READ || op == Op.UPDATE);
+            if (op == Op.READ) { reads++; }
+        }
+        assertTrue(reads > 9300 && reads < 9700);
+        for (int i = 0; i < 1000; i++) { assertEquals(Op.READ, Workload.C.next()); }
+    }
+
+    @Test
+    public void testRunWorkloadsAgainstIndex() throws Exception {
+        for (Workload workload : Workload.values()) {
+            Store store = new Store.IndexStore(new InMemBPlusTree<>(4, 20), 20);
+            Ycsb ycsb = new Ycsb(store, workload, null, 500, 2, 8, 10);
+            Ycsb.Report load = ycsb.load(2);
+            assertEquals(500, load.latency(Op.INSERT).count());
+            Ycsb.Report run = ycsb.run(2000, 4, 0);
+            assertEquals(workload.name(), 2000, run.operations());
+            for (Op op : Op.values()) {
+                assertEquals(0, run.failures(op));
+                // 并发插入时较大的序号可能先于较小的序号可见，D允许少量未命中
+                if (workload != Workload.D) { assertEquals(workload.name() + " " + op, 0, run.misses(op)); }
+            }
+        }
+    }
+}
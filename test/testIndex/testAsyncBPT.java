@@ -0,0 +1,65 @@
+package testIndex;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import edu.princeton.cs.algs4.StdRandom;
+
+import Index.AsyncBPlusTree;
+import Index.BPlusTree;
+import KVTable.Table;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+public class testAsyncBPT {
+    private final int M = 4;
+    private final int CAPACITY = 10;
+
+    @Test
+    public void testAsyncGetInsertDeleteScan() throws IOException, ClassNotFoundException {
+        BPlusTree<Integer, Integer> index = new BPlusTree<Integer, Integer>(M, CAPACITY);
+        TreeMap<Integer, Integer> table = new TreeMap<>();
+        // 以连续的小表填充索引区
+        for (int start = 0; start < 1000; start += 8) {
+            Table<Integer, Integer> t = new Table<Integer, Integer>();
+            for (int key = start; key < start + 8; key++) {
+                t.put(key, key * 2);
+                table.put(key, key * 2);
+            }
+            index.write(t);
+        }
+        try (AsyncBPlusTree<Integer, Integer> async = new AsyncBPlusTree<Integer, Integer>(index)) {
+            // 同时发起大量独立键的读取
+            List<Integer> keys = new ArrayList<>();
+            List<CompletableFuture<Integer>> values = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                int key = StdRandom.uniform(-100, 1100);
+                keys.add(key);
+                values.add(async.get(key));
+            }
+            for (int i = 0; i < keys.size(); i++) { assertEquals(table.get(keys.get(i)), values.get(i).join()); }
+            // 写操作按提交的顺序执行
+            List<CompletableFuture<?>> writes = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                int key = StdRandom.uniform(0, 1000);
+                if (StdRandom.bernoulli(0.5)) {
+                    writes.add(async.insert(key, -key));
+                    table.put(key, -key);
+                } else {
+                    writes.add(async.delete(key));
+                    table.remove(key);
+                }
+            }
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).join();
+            for (int key = -10; key < 1010; key++) { assertEquals(table.get(key), async.get(key).join()); }
+            for (int i = 0; i < 20; i++) {
+                int low = StdRandom.uniform(-100, 1100), high = low + StdRandom.uniform(0, 300);
+                List<Map.Entry<Integer, Integer>> expected = new ArrayList<>(table.subMap(low, true, high, true).entrySet());
+                assertEquals(expected, async.scan(low, high).join());
+            }
+        }
+    }
+}
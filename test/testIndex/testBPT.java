@@ -6,9 +6,22 @@ import edu.princeton.cs.algs4.StdRandom;
 
 import static Utils.Utils.*;
 import Index.BPlusTree;
+import Index.RangeAggregate;
+import Index.TableSpliterator;
 import KVTable.Table;
 import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class testBPT {
     private final int LOWER = (int) -1e8;
@@ -373,4 +386,146 @@ public class testBPT {
         // 查看视图
         System.out.println(index.indexView());
     }
+
+    @Test
+    public void testConcurrentGetDuringSplitAndMerge() throws IOException, InterruptedException {
+        final int M = 4, TABLECAPACITY = 8;
+        BPlusTree<Integer, Integer> index = new BPlusTree<Integer, Integer>(M, TABLECAPACITY);
+        // 偶数键作为读者检查的固定记录，奇数键由写者反复插入和删除，从而触发表与页的分裂与合并
+        final int N = 400;
+        Table<Integer, Integer> t = new Table<Integer, Integer>();
+        for (int i = 0; i <= N; i += 2) { t.put(i, -i); }
+        index.write(t);
+        AtomicBoolean stop = new AtomicBoolean(false);
+        AtomicInteger mismatches = new AtomicInteger(0);
+        Thread[] readers = new Thread[4];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                while (!stop.get()) {
+                    int key = 2 * StdRandom.uniform(0, N / 2 + 1);
+                    try {
+                        Integer value = index.get(key);
+                        if (value == null || value != -key) { mismatches.incrementAndGet(); }
+                    } catch (IOException | ClassNotFoundException e) {
+                        mismatches.incrementAndGet();
+                    }
+                }
+            });
+            readers[r].start();
+        }
+        try {
+            for (int round = 0; round < 3; round++) {
+                for (int i = 1; i < N; i += 2) { index.insert(i, i); }
+                for (int i = 1; i < N; i += 2) { index.delete(i); }
+            }
+        } catch (ClassNotFoundException e) {
+            fail(e.getMessage());
+        } finally {
+            stop.set(true);
+            for (Thread reader : readers) { reader.join(); }
+        }
+        assertEquals(0, mismatches.get());
+    }
+
+    @Test
+    public void testDeleteMissingKeyKeepsVersion() throws IOException, ClassNotFoundException {
+        BPlusTree<Integer, Integer> index = new BPlusTree<Integer, Integer>(M, CAPACITY);
+        Table<Integer, Integer> t = new Table<Integer, Integer>();
+        for (int i = 0; i < 8; i += 2) { t.put(i, i); }
+        index.write(t);
+        String path = index.locate(4);
+        // 键落在表的范围内但不存在，表不会写出新版本
+        assertNull(index.delete(3));
+        assertEquals(path, index.locate(4));
+        assertEquals(Integer.valueOf(4), index.get(4));
+        // 删除存在的键才会提交新版本
+        assertEquals(Integer.valueOf(2), index.delete(2));
+        assertNotEquals(path, index.locate(4));
+        assertEquals(Integer.valueOf(4), index.get(4));
+    }
+
+    @Test
+    public void testPinnedScanDoesNotBlockReclaim() throws IOException, ClassNotFoundException {
+        BPlusTree<Integer, Integer> index = new BPlusTree<Integer, Integer>(M, CAPACITY);
+        Table<Integer, Integer> t = new Table<Integer, Integer>();
+        for (int i = 0; i < 8; i += 2) { t.put(i, i); }
+        index.write(t);
+        String pinned = index.locate(0);
+        // 只遍历了一部分的迭代器持有其快照
+        TableSpliterator<Integer, Integer> scan = index.scan(0, 6);
+        assertTrue(scan.tryAdvance(record -> { }));
+        index.insert(2, 20);
+        String replaced = index.locate(0);
+        index.insert(2, 21);
+        // 被持有的快照只保留它引用的版本，之后退役的版本照常回收
+        assertTrue(Files.exists(Paths.get(pinned)));
+        assertFalse(Files.exists(Paths.get(replaced)));
+        scan.close();
+        assertFalse(Files.exists(Paths.get(pinned)));
+        assertTrue(Files.exists(Paths.get(index.locate(0))));
+        assertEquals(Integer.valueOf(21), index.get(2));
+    }
+
+    @Test
+    public void testRangeScan() throws IOException, ClassNotFoundException {
+        final int BUFFERCAPACITY = 8, M = 4, TABLECAPACITY = 10;
+        Table<Integer, Integer> buffer = new Table<Integer, Integer>();
+        BPlusTree<Integer, Integer> index = new BPlusTree<Integer, Integer>(M, TABLECAPACITY);
+        TreeMap<Integer, Integer> table = new TreeMap<>();
+        final int N = (int) 2e3;
+        for (int i = 0; i < N; i++) {
+            int key = StdRandom.uniform(-1000, 1000), value = StdRandom.uniform(-1000, 1000);
+            table.put(key, value);
+            if (index.empty() || greaterThan(key, index.indexRange()._right)) {
+                buffer.put(key, value);
+                if (buffer.size() == BUFFERCAPACITY) {
+                    index.write(buffer);
+                    buffer = new Table<Integer, Integer>();
+                }
+            } else {
+                index.insert(key, value);
+            }
+        }
+        if (!buffer.empty()) { index.write(buffer); }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        for (int i = 0; i < 20; i++) {
+            int low = StdRandom.uniform(-1100, 1100), high = low + StdRandom.uniform(0, 800);
+            List<Map.Entry<Integer, Integer>> expected = new ArrayList<>(table.subMap(low, true, high, true).entrySet());
+            // 顺序流与并行流
+            try (Stream<Map.Entry<Integer, Integer>> stream = index.stream(low, high, false)) {
+                assertEquals(expected, stream.collect(Collectors.toList()));
+            }
+            try (Stream<Map.Entry<Integer, Integer>> stream = index.stream(low, high, true)) {
+                assertEquals(expected, stream.collect(Collectors.toList()));
+            }
+            // fork/join
+            assertEquals(expected, index.parallelScan(low, high, pool));
+            RangeAggregate aggregate = index.aggregate(low, high, pool);
+            assertEquals(expected.size(), aggregate.count());
+            long sum = expected.stream().mapToLong(Map.Entry::getValue).sum();
+            assertEquals(BigInteger.valueOf(sum), aggregate.sum());
+            if (!expected.isEmpty()) {
+                assertEquals((double) sum / expected.size(), aggregate.average(), 1e-9);
+                assertEquals(expected.stream().mapToInt(Map.Entry::getValue).min().getAsInt(), aggregate.min(), 1e-9);
+                assertEquals(expected.stream().mapToInt(Map.Entry::getValue).max().getAsInt(), aggregate.max(), 1e-9);
+            }
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void testAggregateExactSum() {
+        RangeAggregate left = new RangeAggregate(), right = new RangeAggregate();
+        // 超出double的精度以及long的范围时，整数的和仍然是精确的
+        left.accept(Map.entry(1, Long.MAX_VALUE));
+        left.accept(Map.entry(2, 1L));
+        right.accept(Map.entry(3, Long.MAX_VALUE));
+        right.accept(Map.entry(4, "not a number"));
+        RangeAggregate aggregate = left.combine(right);
+        BigInteger expected = BigInteger.valueOf(Long.MAX_VALUE).shiftLeft(1).add(BigInteger.ONE);
+        assertEquals(4, aggregate.count());
+        assertEquals(expected, aggregate.sum());
+        assertEquals(expected.doubleValue() / 3, aggregate.average(), expected.doubleValue() * 1e-12);
+        assertTrue(Double.isNaN(new RangeAggregate().average()));
+    }
 }
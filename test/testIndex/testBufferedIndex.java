@@ -0,0 +1,36 @@
+package testIndex;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import Index.BufferedIndex;
+import Index.InMemBPlusTree;
+import Index.Index;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class testBufferedIndex {
+    private final int M = 4;
+    private final int CAPACITY = 10;
+
+    @Test
+    public void testRandomOrderWrites() throws Exception {
+        Index<Integer, Integer> index = new InMemBPlusTree<Integer, Integer>(M, CAPACITY);
+        BufferedIndex<Integer, Integer> buffered = new BufferedIndex<>(index, CAPACITY);
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        Random random = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            int key = random.nextInt(5000);
+            if (random.nextInt(4) == 0) {
+                assertEquals(expected.remove(key), buffered.delete(key));
+            } else {
+                buffered.put(key, i);
+                expected.put(key, i);
+            }
+        }
+        for (int key = 0; key < 5000; key++) { assertEquals(expected.get(key), buffered.get(key)); }
+        // 写入待写入的表后，所有记录都可以直接从索引中读到
+        buffered.flush();
+        for (int key = 0; key < 5000; key++) { assertEquals(expected.get(key), index.get(key)); }
+    }
+}
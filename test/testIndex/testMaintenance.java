@@ -0,0 +1,195 @@
+package testIndex;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import Index.BPlusTree;
+import KVTable.Table;
+import Metrics.OperationStats;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class testMaintenance {
+    private final int M = 4;
+    private final int CAPACITY = 10;
+
+    /** 写入count张表，第k张表含键k*100与k*100+99. */
+    private BPlusTree<Integer, Integer> tree(int count, TreeMap<Integer, Integer> expected) throws IOException {
+        BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(M, CAPACITY);
+        for (int k = 0; k < count; k++) {
+            Table<Integer, Integer> table = new Table<Integer, Integer>();
+            for (int key : new int[] { k * 100, k * 100 + 99 }) {
+                table.put(key, key);
+                expected.put(key, key);
+            }
+            tree.write(table);
+        }
+        return tree;
+    }
+
+    private void assertContents(BPlusTree<Integer, Integer> tree, TreeMap<Integer, Integer> expected)
+            throws IOException, ClassNotFoundException {
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), tree.get(entry.getKey()));
+        }
+        int scanned = tree.parallelScan(Integer.MIN_VALUE, Integer.MAX_VALUE, ForkJoinPool.commonPool()).size();
+        assertEquals(expected.size(), scanned);
+    }
+
+    @Test
+    public void testDeferredSplit() throws IOException, ClassNotFoundException {
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        BPlusTree<Integer, Integer> tree = tree(5, expected);
+        // 间隔100秒，后台至多完成第一项维护
+        tree.startMaintenance(0.01);
+        for (int k = 0; k < 5; k++) {
+            for (int key = k * 100 + 1; key <= k * 100 + 6; key++) {
+                tree.insert(key, key);
+                expected.put(key, key);
+            }
+        }
+        // 每张表都达到了上限因子，但写操作只登记而不分裂
+        assertTrue(tree.pendingMaintenance() >= 4);
+        assertTrue(tree.size() <= 6);
+        assertContents(tree, expected);
+        tree.stopMaintenance();
+        assertEquals(0, tree.pendingMaintenance());
+        assertEquals(10, tree.size());
+        assertContents(tree, expected);
+    }
+
+    @Test
+    public void testSplitAtCapacityStaysInline() throws IOException, ClassNotFoundException {
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        BPlusTree<Integer, Integer> tree = tree(5, expected);
+        tree.startMaintenance(0.01);
+        // 达到容量的表不等待后台，直接分裂
+        for (int k = 0; k < 5; k++) {
+            for (int key = k * 100 + 1; key <= k * 100 + 8; key++) {
+                tree.insert(key, key);
+                expected.put(key, key);
+            }
+        }
+        assertEquals(10, tree.size());
+        assertContents(tree, expected);
+        // 登记过的表已经分裂，后台不再处理
+        tree.stopMaintenance();
+        assertEquals(10, tree.size());
+        assertEquals(0, tree.pendingMaintenance());
+    }
+
+    @Test
+    public void testDeferredRebalance() throws IOException, ClassNotFoundException {
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        BPlusTree<Integer, Integer> tree = tree(16, expected);
+        tree.startMaintenance(0.01);
+        int maxPending = 0;
+        for (int k = 0; k < 16; k += 2) {
+            for (int key : new int[] { k * 100, k * 100 + 99 }) {
+                assertEquals(Integer.valueOf(key), tree.delete(key));
+                expected.remove(key);
+            }
+            maxPending = Math.max(maxPending, tree.pendingMaintenance());
+        }
+        assertTrue(maxPending > 0);
+        assertEquals(8, tree.size());
+        assertContents(tree, expected);
+        tree.stopMaintenance();
+        assertEquals(0, tree.pendingMaintenance());
+        assertContents(tree, expected);
+        // 停止后恢复为写操作中直接重平衡
+        for (int k = 1; k < 16; k += 2) {
+            for (int key : new int[] { k * 100, k * 100 + 99 }) {
+                assertEquals(Integer.valueOf(key), tree.delete(key));
+                expected.remove(key);
+            }
+        }
+        assertEquals(0, tree.size());
+        assertContents(tree, expected);
+    }
+
+    @Test
+    public void testRateLimit() throws Exception {
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        BPlusTree<Integer, Integer> tree = tree(10, expected);
+        tree.startMaintenance(20);
+        long start = System.nanoTime();
+        for (int k = 0; k < 10; k++) {
+            for (int key = k * 100 + 1; key <= k * 100 + 6; key++) {
+                tree.insert(key, key);
+                expected.put(key, key);
+            }
+        }
+        while (tree.maintenancePerformed() < 10) { Thread.sleep(5); }
+        long elapsed = System.nanoTime() - start;
+        // 10次分裂之间至少有9个50ms的间隔
+        assertTrue(elapsed >= 9 * 50_000_000L - 10_000_000L);
+        assertEquals(0, tree.pendingMaintenance());
+        assertEquals(20, tree.size());
+        assertContents(tree, expected);
+        tree.stopMaintenance();
+    }
+
+    @Test
+    public void testOnlineSplitUnderConcurrentWrites() throws Exception {
+        // 表较大，后台构造分裂出的表需要一定的时间，其间的写入需要重放到新表中
+        BPlusTree<Integer, Integer> tree = new BPlusTree<Integer, Integer>(M, 400, 0.5, new OperationStats());
+        Table<Integer, Integer> table = new Table<Integer, Integer>();
+        table.put(0, 0);
+        table.put(1 << 20, 1 << 20);
+        tree.write(table);
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        expected.put(0, 0);
+        expected.put(1 << 20, 1 << 20);
+        ConcurrentHashMap<Integer, Integer> committed = new ConcurrentHashMap<>(expected);
+        tree.startMaintenance(1000);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                // 读者只检查已经写入完成、之后不再变化的键
+                while (!done.get()) {
+                    for (Map.Entry<Integer, Integer> entry : committed.entrySet()) {
+                        assertEquals(entry.getValue(), tree.get(entry.getKey()));
+                    }
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        });
+        reader.start();
+        Random random = new Random(42);
+        for (int i = 0; i < 3000; i++) {
+            int key = random.nextInt(1 << 20);
+            if (random.nextInt(4) == 0 && !expected.isEmpty()) {
+                Integer victim = expected.ceilingKey(key);
+                if (victim == null || victim == 0 || victim == 1 << 20 || committed.containsKey(victim)) { continue; }
+                assertEquals(expected.remove(victim), tree.delete(victim));
+            } else if (!expected.containsKey(key)) {
+                tree.insert(key, key);
+                expected.put(key, key);
+                if (key % 8 == 0) { committed.put(key, key); }
+            }
+        }
+        done.set(true);
+        reader.join();
+        if (failure.get() != null) { throw new AssertionError(failure.get()); }
+        assertTrue(tree.maintenancePerformed() > 0);
+        assertEquals(0, tree.maintenanceFailed());
+        tree.stopMaintenance();
+        // 后台分裂期间确实有写入落在原表上，并被重放到了分裂出的表中
+        assertTrue(tree.splitLogReplayed() > 0);
+        assertContents(tree, expected);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRate() {
+        new BPlusTree<Integer, Integer>(M, CAPACITY).startMaintenance(0);
+    }
+}
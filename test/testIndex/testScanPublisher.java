@@ -0,0 +1,145 @@
+package testIndex;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import Index.BPlusTree;
+import Index.ScanPublisher;
+import Index.TableSpliterator.TableSource;
+import KVTable.Table;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class testScanPublisher {
+    private final int TABLES = 20, RECORDS = 10;
+
+    /** 每次请求固定条数的订阅者，收到指定条数后可以取消订阅. */
+    private static class Collector implements Flow.Subscriber<Map.Entry<Integer, Integer>> {
+        final List<Map.Entry<Integer, Integer>> received = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        final long batch;
+        final int cancelAfter;
+        final Runnable onEach;
+        Flow.Subscription subscription;
+        Throwable error;
+        boolean completed;
+
+        Collector(long batch, int cancelAfter, Runnable onEach) {
+            this.batch = batch;
+            this.cancelAfter = cancelAfter;
+            this.onEach = onEach;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(batch);
+        }
+
+        @Override
+        public void onNext(Map.Entry<Integer, Integer> item) {
+            received.add(item);
+            onEach.run();
+            if (received.size() == cancelAfter) {
+                subscription.cancel();
+                done.countDown();
+            } else if (batch != Long.MAX_VALUE && received.size() % batch == 0) {
+                subscription.request(batch);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            done.countDown();
+        }
+    }
+
+    /** 生成TABLES张连续的表，并记录每张表被打开的次数. */
+    private List<TableSource<Integer, Integer>> sources(AtomicInteger opened) {
+        List<TableSource<Integer, Integer>> sources = new ArrayList<>();
+        for (int t = 0; t < TABLES; t++) {
+            Table<Integer, Integer> table = new Table<Integer, Integer>();
+            for (int key = t * RECORDS; key < (t + 1) * RECORDS; key++) { table.put(key, key); }
+            sources.add(() -> {
+                opened.incrementAndGet();
+                return table;
+            });
+        }
+        return sources;
+    }
+
+    @Test
+    public void testDemandDrivenOpening() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        AtomicInteger opened = new AtomicInteger(), finished = new AtomicInteger();
+        ScanPublisher<Integer, Integer> publisher = new ScanPublisher<>(
+                () -> new ScanPublisher.Source<>(sources(opened), finished::incrementAndGet), 15, 150, executor, 4);
+        // 每次只请求一条记录，打开的表不会超过已经发送到的表的下一张
+        List<Integer> violations = new ArrayList<>();
+        Collector[] holder = new Collector[1];
+        holder[0] = new Collector(1, -1, () -> {
+            int last = holder[0].received.get(holder[0].received.size() - 1).getKey();
+            if (opened.get() > last / RECORDS + 2) { violations.add(last); }
+        });
+        publisher.subscribe(holder[0]);
+        assertTrue(holder[0].done.await(10, TimeUnit.SECONDS));
+        assertTrue(holder[0].completed);
+        assertTrue(violations.toString(), violations.isEmpty());
+        assertEquals(136, holder[0].received.size());
+        for (int i = 0; i < 136; i++) { assertEquals(15 + i, (int) holder[0].received.get(i).getKey()); }
+        // 取消订阅后不再打开新的表，并触发结束回调
+        opened.set(0);
+        Collector cancelled = new Collector(3, 12, () -> {});
+        publisher.subscribe(cancelled);
+        assertTrue(cancelled.done.await(10, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(12, cancelled.received.size());
+        assertTrue(opened.get() <= 3);
+        assertEquals(2, finished.get());
+        // 非法的请求
+        Collector illegal = new Collector(0, -1, () -> {});
+        publisher.subscribe(illegal);
+        assertTrue(illegal.done.await(10, TimeUnit.SECONDS));
+        assertTrue(illegal.error instanceof IllegalArgumentException);
+        executor.shutdown();
+    }
+
+    @Test
+    public void testBPTPublisher() throws IOException, InterruptedException {
+        BPlusTree<Integer, Integer> index = new BPlusTree<Integer, Integer>(4, 10);
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        for (int start = 0; start < 400; start += 8) {
+            Table<Integer, Integer> t = new Table<Integer, Integer>();
+            for (int key = start; key < start + 8; key++) {
+                t.put(key, -key);
+                expected.put(key, -key);
+            }
+            index.write(t);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        for (long batch : new long[]{1, 7, Long.MAX_VALUE}) {
+            Collector collector = new Collector(batch, -1, () -> {});
+            index.publisher(37, 301, executor, 2).subscribe(collector);
+            assertTrue(collector.done.await(10, TimeUnit.SECONDS));
+            assertTrue(collector.completed);
+            assertEquals(new ArrayList<>(expected.subMap(37, true, 301, true).entrySet()), collector.received);
+        }
+        executor.shutdown();
+    }
+}
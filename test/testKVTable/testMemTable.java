@@ -0,0 +1,58 @@
+package testKVTable;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+import edu.princeton.cs.algs4.StdRandom;
+
+import KVTable.*;
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/**
+ * 基于跳表的缓冲区{@link KVTable.MemTable}的单元测试. 涵盖了随机增查删改，以及转存为{@link KVTable.Table}.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public class testMemTable {
+    private final int LOWER = (int) -1e5;
+    private final int UPPER = (int) 1e5;
+
+    @Test
+    public void testRandomPutGetContainsDelete() {
+        final int N = (int) 1e6;
+        MemTable<Integer, Integer> myTable = new MemTable<Integer, Integer>();
+        TreeMap<Integer, Integer> officialTable = new TreeMap<>();
+        System.out.println("测试随机化插入，读取，查询，删除");
+        for (int i = 0; i < N; i++) {
+            int ops = StdRandom.uniform(0, 4);
+            int key = StdRandom.uniform(LOWER, UPPER);
+            int value = StdRandom.uniform(LOWER, UPPER);
+            switch (ops) {
+                case 0 -> { myTable.put(key, value); officialTable.put(key, value); }
+                case 1 -> assertEquals(officialTable.get(key), myTable.get(key));
+                case 2 -> assertEquals(officialTable.containsKey(key), myTable.contains(key));
+                case 3 -> assertEquals(officialTable.remove(key), myTable.delete(key));
+                default -> {}
+            }
+            assertEquals(officialTable.size(), myTable.size());
+        }
+        assertEquals(officialTable.lastKey(), myTable.maxKey());
+        System.out.println("测试完成");
+    }
+
+    @Test
+    public void testToTable() {
+        MemTable<Integer, Integer> myTable = new MemTable<Integer, Integer>();
+        assertNull(myTable.maxKey());
+        for (int i = 0; i < 100; i++) {
+            int key = StdRandom.uniform(LOWER, UPPER);
+            myTable.put(key, -key);
+        }
+        Table<Integer, Integer> table = myTable.toTable();
+        assertEquals(myTable.size(), table.size());
+        assertEquals(myTable.maxKey(), table.maxKey());
+        assertArrayEquals(myTable.keys(), table.keys());
+        assertArrayEquals(myTable.values(), table.values());
+        System.out.println(Arrays.asList((Object[]) table.keys(10)));
+    }
+}
@@ -0,0 +1,69 @@
+package testMain;
+
+import Main.Executor;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 使用执行器的测试的公共夹具. <p>
+ * 每个执行器的表文件存放在{@link TemporaryFolder}创建的独立目录中. 每个测试结束后，
+ * 先在{@link After}中关闭测试期间创建的执行器，随后临时目录连同其中的表文件一起被删除.
+ * @author Episode-Zhang
+ * @version 1.0
+ */
+public abstract class ExecutorFixture {
+
+    /** 本次测试的临时根目录. */
+    @Rule
+    public final TemporaryFolder _folder = new TemporaryFolder();
+
+    /** 测试结束时需要关闭的资源，按创建顺序排列. */
+    private final List<AutoCloseable> _resources = new ArrayList<>();
+
+    /** 在临时根目录下新建一个空目录并返回其路径. */
+    protected String directory() throws IOException {
+        return _folder.newFolder().getPath();
+    }
+
+    /** 返回临时根目录下给定文件名的路径，文件本身不会被创建. */
+    protected String file(String name) {
+        return new File(_folder.getRoot(), name).getPath();
+    }
+
+    /** 在新的临时目录中创建B+树执行器，测试结束后自动关闭. */
+    protected <K, V> Executor<K, V> executor(int order, int capacity, int bufferCapacity) throws IOException {
+        return executor(order, capacity, bufferCapacity, directory());
+    }
+
+    /** 在给定目录中创建B+树执行器，测试结束后自动关闭. */
+    protected <K, V> Executor<K, V> executor(int order, int capacity, int bufferCapacity, String directory) {
+        return closing(new Executor<K, V>("B+-Tree", order, capacity, bufferCapacity, directory));
+    }
+
+    /** 登记一个在测试结束时需要关闭的资源，并原样返回. */
+    protected <R extends AutoCloseable> R closing(R resource) {
+        _resources.add(resource);
+        return resource;
+    }
+
+    /** 按创建的逆序关闭所有登记的资源，某个资源关闭失败时仍然关闭其余资源. */
+    @After
+    public void closeResources() throws Exception {
+        Exception failure = null;
+        for (int i = _resources.size() - 1; i >= 0; i--) {
+            try {
+                _resources.get(i).close();
+            } catch (Exception e) {
+                if (failure == null) { failure = e; }
+                else { failure.addSuppressed(e); }
+            }
+        }
+        _resources.clear();
+        if (failure != null) { throw failure; }
+    }
+}
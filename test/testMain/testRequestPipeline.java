@@ -0,0 +1,107 @@
+package testMain;
+
+import Main.Executor;
+import Main.RequestPipeline;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+public class testRequestPipeline {
+
+    @Test
+    public void testReadsSeePrecedingWrites() throws Exception {
+        try (Executor<String, String> executor = new Executor<String, String>("B+-Tree", 4, 10, 8)) {
+            final int THREADS = 4, N = 300;
+            List<Throwable> errors = new ArrayList<>();
+            try (RequestPipeline pipeline = new RequestPipeline(executor, 64, 2)) {
+                List<Thread> threads = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    final int id = t;
+                    Thread thread = new Thread(() -> {
+                        try {
+                            List<CompletableFuture<String>> reads = new ArrayList<>();
+                            List<String> expected = new ArrayList<>();
+                            for (int i = 0; i < N; i++) {
+                                String key = String.format("%d%04d", id + 1, (i * 7919) % N);
+                                pipeline.submit(String.format("insert %s as (v%d)", key, i));
+                                // 读语句总能看到之前提交的写语句
+                                reads.add(pipeline.submit("show key " + key));
+                                expected.add(String.format("value: (v%d)", i));
+                                if (i % 5 == 0) {
+                                    pipeline.submit("delete " + key);
+                                    reads.add(pipeline.submit("show key " + key));
+                                    expected.add("目标记录不存在");
+                                }
+                            }
+                            for (int i = 0; i < reads.size(); i++) {
+                                assertTrue(reads.get(i).join(), reads.get(i).join().contains(expected.get(i)));
+                            }
+                        } catch (Throwable e) {
+                            synchronized (errors) { errors.add(e); }
+                        }
+                    });
+                    threads.add(thread);
+                    thread.start();
+                }
+                for (Thread thread : threads) { thread.join(); }
+                assertTrue(errors.toString(), errors.isEmpty());
+                // 不支持的命令与语法错误
+                CompletableFuture<String> unsupported = pipeline.submit("select *");
+                CompletableFuture<String> illegal = pipeline.submit("insert 1");
+                assertTrue(pipeline.submit("show index").join().contains("索引区的视图"));
+                assertTrue(pipeline.submit("SHOW STATS").join().contains("INSERT"));
+                try {
+                    unsupported.join();
+                    fail();
+                } catch (CompletionException e) {
+                    assertTrue(e.getCause() instanceof UnsupportedOperationException);
+                }
+                try {
+                    illegal.join();
+                    fail();
+                } catch (CompletionException e) {
+                    assertTrue(e.getCause().getMessage().contains("语法非法"));
+                }
+            }
+            // 关闭后不再接受请求
+            RequestPipeline closed = new RequestPipeline(executor, 8, 1);
+            closed.close();
+            assertTrue(closed.submit("show index").isCompletedExceptionally());
+        }
+    }
+
+    @Test
+    public void testCloseRacingSubmitsCompletesEveryFuture() throws Exception {
+        try (Executor<String, String> executor = new Executor<String, String>("B+-Tree", 4, 10, 8)) {
+            final int ROUNDS = 20, THREADS = 4;
+            for (int round = 0; round < ROUNDS; round++) {
+                RequestPipeline pipeline = new RequestPipeline(executor, 8, 1);
+                List<CompletableFuture<String>> futures = new ArrayList<>();
+                List<Thread> threads = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    Thread thread = new Thread(() -> {
+                        List<CompletableFuture<String>> submitted = new ArrayList<>();
+                        CompletableFuture<String> future;
+                        do {
+                            future = pipeline.submit("show index");
+                            submitted.add(future);
+                        } while (!future.isCompletedExceptionally());
+                        synchronized (futures) { futures.addAll(submitted); }
+                    });
+                    threads.add(thread);
+                    thread.start();
+                }
+                Thread.sleep(2);
+                pipeline.close();
+                for (Thread thread : threads) { thread.join(); }
+                // 与关闭并发提交的请求要么被处理，要么被拒绝，不会永远悬挂
+                for (CompletableFuture<String> future : futures) {
+                    assertTrue(future.isDone());
+                }
+            }
+        }
+    }
+}
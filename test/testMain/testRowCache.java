@@ -0,0 +1,176 @@
+package testMain;
+
+import KVTable.RowCache;
+import Main.Executor;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class testRowCache extends ExecutorFixture {
+
+    private Executor<String, String> executor() throws IOException {
+        return executor(4, 20, 16);
+    }
+
+    /** 模拟执行器的读取：未命中时填入缓存. */
+    private static void read(RowCache<Integer, Integer> cache, int key) {
+        if (cache.get(key) == null) { cache.fill(key, key, cache.stamp(key)); }
+    }
+
+    @Test
+    public void testScanResistance() {
+        RowCache<Integer, Integer> cache = new RowCache<>(100);
+        for (int round = 0; round < 5; round++) {
+            for (int key = 0; key < 50; key++) { read(cache, key); }
+        }
+        // 一次性扫过大量只访问一次的键，热点键不会被挤出
+        for (int key = 1000; key < 11000; key++) {
+            read(cache, key);
+            assertTrue(cache.size() <= 100);
+        }
+        long hits = cache.hits();
+        for (int key = 0; key < 50; key++) { read(cache, key); }
+        assertTrue(cache.hits() - hits >= 45);
+        assertTrue(cache.evictions() >= 10000 - 100);
+        assertTrue(cache.memoryBytes() > 0);
+    }
+
+    @Test
+    public void testInvalidate() {
+        RowCache<Integer, Integer> cache = new RowCache<>(10);
+        read(cache, 1);
+        assertEquals(Integer.valueOf(1), cache.get(1));
+        cache.invalidate(1);
+        assertNull(cache.get(1));
+        // 取得版本戳之后发生了写操作，读到的值可能过时，不会被填入
+        long stamp = cache.stamp(2);
+        cache.invalidate(2);
+        cache.fill(2, 2, stamp);
+        assertNull(cache.get(2));
+        assertEquals(0, cache.size());
+        assertEquals(0.0, cache.hitRatio(), 0.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new RowCache<Integer, Integer>(0);
+    }
+
+    @Test
+    public void testHotKeysInExecutor() throws Exception {
+        Executor<String, String> executor = executor();
+        executor.setRowCache(new RowCache<String, String>(64));
+        for (int i = 0; i < 1000; i++) { executor.put(String.format("k%04d", i), "v" + i); }
+        executor.awaitFlush();
+        Path dump = Files.createTempFile("row-cache", ".jfr");
+        int evictionEvents = 0;
+        try (Recording recording = new Recording()) {
+            recording.enable("kvstore.CacheEviction").withoutThreshold();
+            recording.start();
+            // 九成的读取落在20个热点键上
+            Random random = new Random(7);
+            for (int i = 0; i < 5000; i++) {
+                int key = random.nextInt(10) < 9 ? random.nextInt(20) * 37 : random.nextInt(1000);
+                assertEquals("v" + key, executor.get(String.format("k%04d", key)));
+            }
+            recording.stop();
+            recording.dump(dump);
+            for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+                if (event.getEventType().getName().equals("kvstore.CacheEviction")) {
+                    assertEquals("row", event.getString("cache"));
+                    evictionEvents += 1;
+                }
+            }
+        } finally {
+            Files.deleteIfExists(dump);
+        }
+        RowCache<String, String> cache = executor.rowCache();
+        assertTrue(cache.report(), cache.hitRatio() > 0.8);
+        assertEquals(cache.evictions(), evictionEvents);
+        assertTrue(executor.executeShowStats().contains("行缓存"));
+        // 写入与删除之后不会读到缓存中的旧值
+        String hot = String.format("k%04d", 37);
+        executor.put(hot, "updated");
+        assertEquals("updated", executor.get(hot));
+        assertEquals("updated", executor.delete(hot));
+        assertNull(executor.get(hot));
+        executor.put(hot, "again");
+        assertEquals("again", executor.get(hot));
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws Exception {
+        Executor<String, String> executor = executor();
+        executor.setRowCache(new RowCache<String, String>(16));
+        for (int i = 0; i < 200; i++) { executor.put(String.format("k%04d", i), "0"); }
+        executor.awaitFlush();
+        String hot = "k0100";
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] readers = new Thread[3];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                try {
+                    // 每个读者看到的值不会倒退
+                    int last = 0;
+                    for (int i = 0; i < 300; i++) {
+                        int value = Integer.parseInt(executor.get(hot));
+                        assertTrue(value >= last);
+                        last = value;
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            readers[r].start();
+        }
+        for (int i = 1; i <= 100; i++) { executor.put(hot, String.valueOf(i)); }
+        for (Thread reader : readers) { reader.join(); }
+        if (failure.get() != null) { throw new AssertionError(failure.get()); }
+        assertEquals("100", executor.get(hot));
+    }
+
+    @Test
+    public void testConcurrentHotKeyReaders() throws Exception {
+        RowCache<Integer, Integer> cache = new RowCache<>(100);
+        for (int round = 0; round < 3; round++) {
+            for (int key = 0; key < 20; key++) { read(cache, key); }
+        }
+        long hits = cache.hits(), misses = cache.misses();
+        final int READERS = 8, READS = 20000;
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] readers = new Thread[READERS];
+        for (int r = 0; r < READERS; r++) {
+            readers[r] = new Thread(() -> {
+                try {
+                    // 命中路径不加锁，读到的值始终正确
+                    Random random = new Random();
+                    for (int i = 0; i < READS; i++) {
+                        int key = random.nextInt(20);
+                        assertEquals(Integer.valueOf(key), cache.get(key));
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            readers[r].start();
+        }
+        for (Thread reader : readers) { reader.join(); }
+        if (failure.get() != null) { throw new AssertionError(failure.get()); }
+        // 访问的重放是有损的，但命中与未命中的计数是精确的
+        assertEquals(READERS * READS, cache.hits() - hits);
+        assertEquals(misses, cache.misses());
+        // 热点键的频率被记录下来，扫描不会把它们挤出缓存
+        for (int key = 1000; key < 3000; key++) { read(cache, key); }
+        long before = cache.hits();
+        for (int key = 0; key < 20; key++) { read(cache, key); }
+        assertTrue(cache.hits() - before >= 18);
+        assertTrue(cache.size() <= 100);
+    }
+}
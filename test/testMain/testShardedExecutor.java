@@ -0,0 +1,128 @@
+package testMain;
+
+import KVTable.RowCache;
+import Main.Executor;
+import Main.ShardedExecutor;
+import Metrics.Operation;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+
+public class testShardedExecutor {
+    private final int SHARDS = 4;
+
+    private ShardedExecutor<String, String> executor() {
+        return new ShardedExecutor<String, String>(SHARDS, 4, 10, 8, 64);
+    }
+
+    /** 与分片执行器相同的路由规则. */
+    private int shardOf(String key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return Math.floorMod(hash, SHARDS);
+    }
+
+    @Test
+    public void testHashRouting() throws Exception {
+        ShardedExecutor<String, String> sharded = executor();
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 400; i++) { results.add(sharded.submitInsert("k" + i, "v" + i)); }
+        for (CompletableFuture<String> result : results) { result.join(); }
+        assertTrue(sharded.executeShowKey("k42").contains("v42"));
+        sharded.shutdown();
+        // 分片线程已经退出，可以直接读取各分片的执行器
+        List<Executor<String, String>> executors = sharded.executors();
+        int[] sizes = new int[SHARDS];
+        for (int i = 0; i < 400; i++) {
+            String key = "k" + i;
+            for (int shard = 0; shard < SHARDS; shard++) {
+                String value = executors.get(shard).get(key);
+                if (shard == shardOf(key)) {
+                    assertEquals("v" + i, value);
+                    sizes[shard] += 1;
+                } else {
+                    assertNull(value);
+                }
+            }
+        }
+        // 每个分片都分到了一部分键
+        for (int size : sizes) { assertTrue(size > 400 / SHARDS / 2); }
+    }
+
+    @Test
+    public void testScanMerge() throws Exception {
+        ShardedExecutor<String, String> sharded = executor();
+        TreeMap<String, String> expected = new TreeMap<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 300; i++) {
+            String key = String.format("k%05d", random.nextInt(100000));
+            sharded.executeInsert(key, "v" + i);
+            expected.put(key, "v" + i);
+        }
+        for (String key : new ArrayList<>(expected.keySet()).subList(0, 50)) {
+            sharded.executeDelete(key);
+            expected.remove(key);
+        }
+        // 各分片的结果归并后按键有序，且与逐条写入的结果一致
+        assertEquals(new ArrayList<>(expected.entrySet()), sharded.scan(null, null));
+        String low = "k20000", high = "k60000";
+        List<Map.Entry<String, String>> range = sharded.scan(low, high);
+        assertEquals(new ArrayList<>(expected.subMap(low, true, high, true).entrySet()), range);
+        assertTrue(sharded.scan("k99999x", null).isEmpty());
+        sharded.shutdown();
+    }
+
+    @Test
+    public void testCombinedStats() throws Exception {
+        ShardedExecutor<String, String> sharded = executor();
+        for (int i = 0; i < 100; i++) { sharded.executeInsert("k" + i, "v" + i); }
+        for (int i = 0; i < 40; i++) { sharded.executeShowKey("k" + i); }
+        String report = sharded.executeShowStats();
+        assertTrue(report, report.contains(String.format("%d个分片合计", SHARDS)));
+        // 合并的统计中的次数是各分片之和
+        long inserts = 0, gets = 0;
+        for (Executor<String, String> executor : sharded.executors()) {
+            inserts += executor.stats().histogram(Operation.INSERT).count();
+            gets += executor.stats().histogram(Operation.GET).count();
+        }
+        assertEquals(100, inserts);
+        assertEquals(40, gets);
+        assertTrue(report, report.matches("(?s).*\\nINSERT\\s+100\\s.*"));
+        assertTrue(report, report.matches("(?s).*\\nGET\\s+40\\s.*"));
+        assertFalse(report, report.contains("行缓存"));
+        // 每个分片的行缓存分别列出
+        for (Executor<String, String> executor : sharded.executors()) {
+            executor.setRowCache(new RowCache<String, String>(16));
+        }
+        sharded.executeShowKey("k1");
+        report = sharded.executeShowStats();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            assertTrue(report, report.contains(String.format("shard-%d 行缓存", shard)));
+        }
+        sharded.shutdown();
+    }
+
+    @Test
+    public void testShowTableRoutesByTableName() throws Exception {
+        ShardedExecutor<String, String> sharded = executor();
+        // 记录的值恰好是表不存在时的提示，不影响按表名查找
+        for (int i = 0; i < 200; i++) { sharded.executeInsert("k" + i, "该表不存在"); }
+        Executor<String, String> first = sharded.executors().get(0);
+        first.awaitFlush();
+        String table = first.ioStats().tables().keySet().stream().filter(first::hasTable).findFirst().orElseThrow();
+        String view = sharded.executeShowTable(table);
+        assertTrue(view, view.contains("该表不存在") && !view.contains("请检查表名"));
+        assertTrue(sharded.executeShowTable("missing").contains("请检查表名"));
+        sharded.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidShards() {
+        new ShardedExecutor<String, String>(0, 4, 10, 8, 64);
+    }
+}
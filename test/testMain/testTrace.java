@@ -0,0 +1,155 @@
+package testMain;
+
+import Index.InMemBPlusTree;
+import Main.Executor;
+import Main.Parser;
+import Main.RequestPipeline;
+import Main.Statement;
+import Main.TraceReader;
+import Main.TraceReplay;
+import Main.TraceWriter;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+public class testTrace extends ExecutorFixture {
+
+    /** 经由解析器执行一组语句并录制轨迹，返回录制的语句. */
+    private List<Statement> record(String path, int n) throws Exception {
+        Executor<String, String> executor = executor(4, 10, 8);
+        Parser parser = new Parser();
+        parser.setExecutor(executor);
+        List<Statement> recorded = new ArrayList<>();
+        try (TraceWriter trace = new TraceWriter(path)) {
+            parser.setTrace(trace);
+            for (int i = 0; i < n; i++) {
+                String key = String.format("k%04d", (i * 37) % n);
+                String[] inputs = { String.format("insert %s as (v%d, 中文)", key, i), "show key " + key,
+                        i % 3 == 0 ? "delete " + key : "update " + key + " as (u" + i + ")" };
+                for (String input : inputs) {
+                    parser.setUserInput(input);
+                    recorded.add(parser.parse());
+                    parser.parseWithExecutor();
+                }
+            }
+            parser.setUserInput("show stats");
+            recorded.add(parser.parse());
+            parser.parseWithExecutor();
+            assertEquals(recorded.size(), trace.records());
+        }
+        return recorded;
+    }
+
+    @Test
+    public void testRecordAndRead() throws Exception {
+        String path = file("trace-read.bin");
+        List<Statement> recorded = record(path, 50);
+        try (TraceReader reader = new TraceReader(path)) {
+            assertTrue(reader.startMillis() > 0);
+            long last = 0;
+            for (Statement expected : recorded) {
+                TraceReader.Record record = reader.next();
+                assertNotNull(record);
+                assertEquals(expected, record.statement());
+                assertTrue(record.offsetNanos() >= last);
+                last = record.offsetNanos();
+            }
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void testRecordThroughPipeline() throws Exception {
+        String path = file("trace-pipeline.bin");
+        Executor<String, String> executor = executor(4, 10, 8);
+        Parser parser = new Parser();
+        List<Statement> expected = new ArrayList<>();
+        try (TraceWriter trace = new TraceWriter(path)) {
+            try (RequestPipeline pipeline = new RequestPipeline(executor, 64, 2)) {
+                pipeline.setTrace(trace);
+                for (int i = 0; i < 100; i++) {
+                    String[] inputs = { String.format("insert k%03d as (v%d)", i, i), "show key k" + i, "select *", "insert 1" };
+                    for (String input : inputs) {
+                        parser.setUserInput(input);
+                        try {
+                            Statement statement = parser.parse();
+                            if (statement != null) { expected.add(statement); }
+                        } catch (RuntimeException e) {
+                            // 语法非法的语句不会被录制
+                        }
+                        pipeline.submit(input);
+                    }
+                }
+            }
+            assertEquals(expected.size(), trace.records());
+        }
+        // 经由流水线执行的语句按提交的顺序被录制
+        try (TraceReader reader = new TraceReader(path)) {
+            for (Statement statement : expected) { assertEquals(statement, reader.next().statement()); }
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void testTruncatedTrace() throws Exception {
+        String path = file("trace-truncated.bin");
+        List<Statement> recorded = record(path, 10);
+        try (RandomAccessFile file = new RandomAccessFile(path, "rw")) { file.setLength(file.length() - 2); }
+        int n = 0;
+        try (TraceReader reader = new TraceReader(path)) {
+            while (reader.next() != null) { n++; }
+        }
+        // 不完整的最后一条记录被忽略
+        assertEquals(recorded.size() - 1, n);
+    }
+
+    @Test
+    public void testDeterministicReplay() throws Exception {
+        String path = file("trace-replay.bin");
+        final int N = 200;
+        record(path, N);
+        Executor<String, String> executor = executor(4, 10, 8);
+        TraceReplay.Report report = new TraceReplay(path, TraceReplay.Target.of(executor)).replay(0);
+        assertEquals(3 * N + 1, report.executed());
+        assertEquals(0, report.errors());
+        assertEquals(N, report.latency(Statement.Type.INSERT).count());
+        InMemBPlusTree<String, String> index = new InMemBPlusTree<String, String>(4, 10);
+        report = new TraceReplay(path, TraceReplay.Target.of(index, 10)).replay(0);
+        // SHOW STATS不能在索引上执行
+        assertEquals(1, report.skipped());
+        assertEquals(3 * N, report.executed());
+        for (int i = 0; i < N; i++) {
+            String key = String.format("k%04d", (i * 37) % N);
+            String expected = executor.get(key);
+            assertEquals(i % 3 == 0 ? null : "(u" + i + ")", expected);
+            // 键超过索引右端点的记录留在待写入的表中，因此只比较索引中的记录
+            if (!index.empty() && key.compareTo(index.indexRange()._right) <= 0) { assertEquals(expected, index.get(key)); }
+        }
+    }
+
+    @Test
+    public void testReplayAtRecordedSpeed() throws Exception {
+        String path = file("trace-speed.bin");
+        try (TraceWriter trace = new TraceWriter(path)) {
+            for (int i = 0; i < 5; i++) {
+                trace.append(new Statement(Statement.Type.SHOW_KEY, "k" + i, null));
+                Thread.sleep(40);
+            }
+        }
+        long recorded;
+        try (TraceReader reader = new TraceReader(path)) {
+            TraceReader.Record record, last = null;
+            while ((record = reader.next()) != null) { last = record; }
+            recorded = last.offsetNanos();
+        }
+        InMemBPlusTree<String, String> index = new InMemBPlusTree<String, String>(4, 10);
+        long start = System.nanoTime();
+        new TraceReplay(path, TraceReplay.Target.of(index, 10)).replay(1);
+        assertTrue(System.nanoTime() - start >= recorded);
+        start = System.nanoTime();
+        new TraceReplay(path, TraceReplay.Target.of(index, 10)).replay(0);
+        assertTrue(System.nanoTime() - start < recorded);
+    }
+}
@@ -0,0 +1,105 @@
+package testMain;
+
+import Index.BPlusTree;
+import KVTable.Table;
+import Main.EngineConfig;
+import Main.Tuner;
+import Main.Tuner.Objective;
+import Main.Tuner.Result;
+import Metrics.OperationStats;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class testTuner extends ExecutorFixture {
+
+    @Test
+    public void testGridSkipsUnsplittableTables() {
+        List<EngineConfig> configs = Tuner.grid(new int[] { 4, 16 }, new int[] { 2, 20 },
+                new double[] { 0.5, 0.8 }, new int[] { 8 });
+        // 容量为2的表无论因子如何都达不到3条记录
+        assertEquals(4, configs.size());
+        for (EngineConfig config : configs) { assertEquals(20, config.capacity()); }
+        assertEquals("--M 16 --capacity 20 --threshold 0.8 --buffer 12", EngineConfig.DEFAULT.toArguments());
+    }
+
+    @Test
+    public void testUpperThreshold() throws Exception {
+        try {
+            new BPlusTree<Integer, Integer>(4, 20, 1.5, new OperationStats());
+            fail();
+        } catch (IllegalArgumentException e) {
+            // 预期之中
+        }
+        // 因子越小，表越早分裂，相同的记录分布在更多的表中
+        int[] tables = new int[2];
+        double[] thresholds = { 0.5, 1.0 };
+        for (int t = 0; t < thresholds.length; t++) {
+            BPlusTree<Integer, Integer> tree = new BPlusTree<>(4, 20, thresholds[t], new OperationStats());
+            Table<Integer, Integer> table = new Table<>();
+            table.put(0, 0);
+            table.put(1000, 1000);
+            tree.write(table);
+            for (int i = 1; i < 1000; i++) { tree.insert(i, i); }
+            assertEquals(Integer.valueOf(500), tree.get(500));
+            tables[t] = tree.size();
+        }
+        assertTrue(tables[0] > tables[1]);
+    }
+
+    @Test
+    public void testSweepAndRecommend() throws Exception {
+        String scratch = directory();
+        String trace = scratch + "/sample.trace";
+        Tuner.sample(trace, 3000, 7);
+        List<EngineConfig> configs = Tuner.grid(new int[] { 4 }, new int[] { 10, 64 },
+                new double[] { 0.8 }, new int[] { 8, 64 });
+        long flushers = flusherThreads();
+        List<Result> results = new Tuner(trace, scratch).sweep(configs, 1, null);
+        assertEquals(configs.size(), results.size());
+        // 每次测量结束后执行器被关闭，不会遗留后台写入线程
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (flusherThreads() > flushers && System.nanoTime() < deadline) { Thread.sleep(10); }
+        assertEquals(flushers, flusherThreads());
+        for (Result result : results) {
+            assertTrue(result.throughput() > 0);
+            assertTrue(result.diskBytes() > 0);
+            assertTrue(result.bytesWritten() >= result.diskBytes() / 2);
+            assertTrue(result.p99Nanos() >= result.p50Nanos());
+            assertEquals(0, result.errors());
+            // 每次回放的数据目录在测量结束后即被删除
+            assertEquals(1, new File(scratch).list().length);
+        }
+        // 表越小，B+树中的表越多
+        assertTrue(results.get(0).tables() > results.get(2).tables());
+        for (Objective objective : Objective.values()) {
+            Result best = Tuner.recommend(results, objective);
+            assertTrue(results.contains(best));
+            for (Result result : results) {
+                assertTrue(Tuner.score(best, results, objective) >= Tuner.score(result, results, objective));
+            }
+            // 单一目标下推荐的就是该项最优的配置
+            if (objective != Objective.BALANCED) { assertEquals(1.0, Tuner.score(best, results, objective), 1e-9); }
+        }
+        Result smallest = Tuner.recommend(results, Objective.DISK);
+        for (Result result : results) { assertTrue(smallest.diskBytes() <= result.diskBytes()); }
+        Path csv = Files.createTempFile("tuning", ".csv");
+        try {
+            Tuner.writeCsv(csv, results);
+            List<String> lines = Files.readAllLines(csv);
+            assertEquals(results.size() + 1, lines.size());
+            assertTrue(lines.get(0).startsWith("M,capacity,threshold,buffer,throughput"));
+            assertTrue(lines.get(1).startsWith("4,10,0.8,8,"));
+        } finally {
+            Files.deleteIfExists(csv);
+        }
+    }
+
+    /** 返回存活的后台写入线程个数. */
+    private static long flusherThreads() {
+        return Thread.getAllStackTraces().keySet().stream().filter(t -> t.getName().equals("buffer-flusher")).count();
+    }
+}
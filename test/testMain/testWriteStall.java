@@ -0,0 +1,68 @@
+package testMain;
+
+import Main.Executor;
+import Metrics.LatencyHistogram;
+import Metrics.Operation;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.time.Duration;
+
+public class testWriteStall extends ExecutorFixture {
+
+    private Executor<String, String> executor() throws IOException {
+        return executor(4, 10, 2);
+    }
+
+    @Test
+    public void testBacklogBoundedByStop() throws Exception {
+        Executor<String, String> executor = executor();
+        executor.setWriteStall(1, 2, Duration.ofMillis(1));
+        int maxBacklog = 0;
+        for (int i = 0; i < 2000; i++) {
+            executor.put(String.format("k%05d", i), "v" + i);
+            // 只有写者会增加积压，写入返回时积压不会超过停写阈值
+            maxBacklog = Math.max(maxBacklog, executor.flushBacklog());
+            assertTrue(executor.flushBacklog() <= 2);
+        }
+        executor.awaitFlush();
+        assertEquals(0, executor.writeStallState());
+        LatencyHistogram stall = executor.stats().histogram(Operation.STALL);
+        // 写回一张表远比写入两条记录慢，限流必然发生
+        assertTrue(stall.count() > 0);
+        assertEquals(stall.count(), executor.writeSlowdowns() + executor.writeStops());
+        assertTrue(executor.writeStops() > 0);
+        assertEquals(2, maxBacklog);
+        for (int i = 0; i < 2000; i += 97) { assertEquals("v" + i, executor.get(String.format("k%05d", i))); }
+        assertTrue(executor.stats().report().contains("STALL"));
+    }
+
+    @Test
+    public void testGradualSlowdown() throws Exception {
+        Executor<String, String> executor = executor();
+        // 停写阈值足够大时只会减速，每次的延迟不超过上限
+        executor.setWriteStall(1, Integer.MAX_VALUE, Duration.ofMillis(2));
+        for (int i = 0; i < 1000; i++) { executor.put(String.format("k%05d", i), "v" + i); }
+        executor.awaitFlush();
+        assertEquals(0, executor.writeStops());
+        LatencyHistogram stall = executor.stats().histogram(Operation.STALL);
+        assertEquals(executor.writeSlowdowns(), stall.count());
+        assertTrue(stall.count() > 0);
+        assertTrue(stall.mean() < Duration.ofMillis(2).toNanos() + Duration.ofMillis(5).toNanos());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        Executor<String, String> executor = executor();
+        executor.setWriteStall(Integer.MAX_VALUE, Integer.MAX_VALUE, Duration.ZERO);
+        for (int i = 0; i < 500; i++) { executor.put(String.format("k%05d", i), "v" + i); }
+        executor.awaitFlush();
+        assertEquals(0, executor.stats().histogram(Operation.STALL).count());
+        assertEquals(0, executor.writeSlowdowns() + executor.writeStops());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidThresholds() throws IOException {
+        executor().setWriteStall(8, 4, Duration.ofMillis(1));
+    }
+}
@@ -0,0 +1,142 @@
+package testMetrics;
+
+import Index.BPlusTree;
+import Index.InMemBPlusTree;
+import KVTable.RBT;
+import KVTable.Table;
+import Main.Executor;
+import org.junit.Test;
+import testMain.ExecutorFixture;
+import static org.junit.Assert.*;
+import java.lang.management.ManagementFactory;
+
+/**
+ * 热路径上的分配回归测试. 以{@link com.sun.management.ThreadMXBean}统计当前线程分配的字节数，
+ * 每次操作的平均分配量超过预算时失败，从而保证已经做到不分配的路径不会在后续的修改中退化.
+ */
+public class testAllocation extends ExecutorFixture {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /** 预热的次数，使被测代码被JIT编译. */
+    private static final int WARMUP = 50_000;
+
+    /** 测量的次数. */
+    private static final int ITERATIONS = 100_000;
+
+    /** 与操作次数无关的一次性分配(如JIT编译期间的去优化)的容忍量，均摊到每次操作不足0.2字节. */
+    private static final long SLACK = 16 * 1024;
+
+    private interface Operation {
+        void run(int i) throws Exception;
+    }
+
+    /**
+     * 断言每次操作的平均分配量不超过预算.
+     * @param name 操作的名称
+     * @param budget 每次操作允许分配的字节数
+     * @param operation 被测操作，参数为迭代的序号
+     */
+    private static void assertAllocation(String name, double budget, Operation operation) throws Exception {
+        assumeAllocationCounting();
+        for (int i = 0; i < WARMUP; i++) { operation.run(i); }
+        // 测量读取计数器本身的分配，从结果中扣除
+        long start = THREADS.getCurrentThreadAllocatedBytes();
+        long overhead = THREADS.getCurrentThreadAllocatedBytes() - start;
+        start = THREADS.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) { operation.run(i); }
+        long allocated = THREADS.getCurrentThreadAllocatedBytes() - start - overhead;
+        double perOperation = (double) allocated / ITERATIONS;
+        assertTrue(String.format("%s allocates %.2f bytes per operation, budget is %.2f", name, perOperation, budget),
+                allocated <= budget * ITERATIONS + SLACK);
+    }
+
+    private static void assumeAllocationCounting() {
+        org.junit.Assume.assumeTrue(THREADS.isThreadAllocatedMemorySupported());
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /** 预先装箱的键，避免自动装箱计入被测操作. */
+    private static Integer[] keys(int n) {
+        Integer[] keys = new Integer[n];
+        for (int i = 0; i < n; i++) { keys[i] = i * 2; }
+        return keys;
+    }
+
+    @Test
+    public void testRBTGet() throws Exception {
+        final int N = 1024;
+        Integer[] keys = keys(N);
+        RBT<Integer, Integer> rbt = new RBT<Integer, Integer>();
+        Table<Integer, Integer> table = new Table<Integer, Integer>();
+        for (Integer key : keys) {
+            rbt.put(key, key);
+            table.put(key, key);
+        }
+        long[] sink = { 0 };
+        assertAllocation("RBT.get", 0, i -> sink[0] += rbt.get(keys[i & (N - 1)]));
+        assertAllocation("Table.get", 0, i -> sink[0] += table.get(keys[i & (N - 1)]));
+        assertTrue(sink[0] > 0);
+    }
+
+    @Test
+    public void testInMemBPlusTreeGetAndUpdate() throws Exception {
+        final int N = 4096;
+        Integer[] keys = keys(N);
+        InMemBPlusTree<Integer, Integer> index = new InMemBPlusTree<Integer, Integer>(4, 20);
+        Table<Integer, Integer> table = new Table<Integer, Integer>();
+        for (Integer key : keys) {
+            table.put(key, key);
+            if (table.size() == 10) {
+                index.write(table);
+                table = new Table<Integer, Integer>();
+            }
+        }
+        if (!table.empty()) { index.write(table); }
+        assertTrue(index.height() > 2);
+        long[] sink = { 0 };
+        // 下降过程中不再为每一层构造区间
+        assertAllocation("InMemBPlusTree.get", 0, i -> sink[0] += index.get(keys[i & (N - 1)]));
+        // 更新已有的记录不会分裂，索引区间被原地更新
+        assertAllocation("InMemBPlusTree.insert(existing)", 0, i -> index.insert(keys[i & (N - 1)], i & 1));
+        assertTrue(sink[0] > 0);
+    }
+
+    @Test
+    public void testBPlusTreeIndexDescent() throws Exception {
+        final int N = 2048;
+        Integer[] keys = keys(N);
+        BPlusTree<Integer, Integer> index = new BPlusTree<Integer, Integer>(4, 20);
+        Table<Integer, Integer> table = new Table<Integer, Integer>();
+        for (Integer key : keys) {
+            table.put(key, key);
+            if (table.size() == 10) {
+                index.write(table);
+                table = new Table<Integer, Integer>();
+            }
+        }
+        if (!table.empty()) { index.write(table); }
+        assertTrue(index.height() > 2);
+        long[] sink = { 0 };
+        assertAllocation("BPlusTree.locate", 0, i -> sink[0] += index.locate(keys[i & (N - 1)]).length());
+        assertTrue(sink[0] > 0);
+    }
+
+    @Test
+    public void testExecutorBufferHit() throws Exception {
+        final int N = 64;
+        Integer[] keys = keys(N);
+        Executor<Integer, Integer> executor = executor(4, 20, 2 * N);
+        // 先写满一次缓冲区，使缓冲区的边界由存储引擎决定
+        for (int i = -2 * N; i < 0; i++) { executor.put(i, i); }
+        executor.awaitFlush();
+        for (Integer key : keys) { executor.put(key, key); }
+        assertEquals(N, executor.bufferSize());
+        long[] sink = { 0 };
+        assertAllocation("Executor.recordBelongToBuffer", 0,
+                i -> sink[0] += executor.recordBelongToBuffer(keys[i & (N - 1)]) ? 1 : 0);
+        assertAllocation("Executor.get(buffered)", 0, i -> sink[0] += executor.get(keys[i & (N - 1)]));
+        assertTrue(sink[0] > 0);
+    }
+}
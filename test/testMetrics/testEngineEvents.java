@@ -0,0 +1,54 @@
+package testMetrics;
+
+import Main.Executor;
+import org.junit.Test;
+import testMain.ExecutorFixture;
+import static org.junit.Assert.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class testEngineEvents extends ExecutorFixture {
+
+    @Test
+    public void testEventsRecorded() throws Exception {
+        String directory = directory();
+        Executor<String, String> executor = executor(4, 10, 8, directory);
+        Path dump = Files.createTempFile("engine-events", ".jfr");
+        Map<String, Integer> counts = new HashMap<>();
+        try (Recording recording = new Recording()) {
+            for (String event : new String[] { "TableOpen", "TableClose", "TableSplit", "PageSplit",
+                    "PageMerge", "BufferFlush", "CacheEviction" }) {
+                recording.enable("kvstore." + event).withoutThreshold();
+            }
+            recording.start();
+            for (int i = 0; i < 200; i++) { executor.put(String.format("%03d", i), "v" + i); }
+            executor.awaitFlush();
+            // 更新使表分裂，删除使表被清空，进而触发页的合并
+            executor.put("050", "u");
+            for (int i = 0; i < 160; i++) { executor.delete(String.format("%03d", i)); }
+            recording.stop();
+            recording.dump(dump);
+            for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+                counts.merge(event.getEventType().getName(), 1, Integer::sum);
+                if (event.getEventType().getName().equals("kvstore.TableClose")) {
+                    assertTrue(event.getLong("bytes") > 0);
+                    assertTrue(event.getString("path").startsWith(directory));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(dump);
+        }
+        assertEquals(Integer.valueOf(25), counts.get("kvstore.BufferFlush"));
+        assertEquals(Integer.valueOf(1), counts.get("kvstore.TableSplit"));
+        assertTrue(counts.toString(), counts.getOrDefault("kvstore.PageSplit", 0) > 0);
+        assertTrue(counts.toString(), counts.getOrDefault("kvstore.PageMerge", 0) > 0);
+        assertEquals(executor.ioStats().total().opens(), (long) counts.get("kvstore.TableOpen"));
+        assertEquals(executor.ioStats().total().closes(), (long) counts.get("kvstore.TableClose"));
+        assertNull(counts.get("kvstore.CacheEviction"));
+    }
+}
@@ -0,0 +1,88 @@
+package testMetrics;
+
+import Main.Executor;
+import Metrics.IOStats;
+import org.junit.Test;
+import testMain.ExecutorFixture;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.lang.ref.WeakReference;
+
+public class testIOStats extends ExecutorFixture {
+
+    @Test
+    public void testTableTraffic() throws Exception {
+        String directory = directory();
+        Executor<String, String> executor = executor(4, 10, 8, directory);
+        for (int i = 0; i < 100; i++) {
+            executor.executeInsert(String.format("%03d", i), "(v)");
+        }
+        executor.awaitFlush();
+        IOStats io = executor.ioStats();
+        // 12个写满的缓冲区各写出一张8条记录的表，没有读入任何表
+        assertEquals(12, io.total().closes());
+        assertEquals(96, io.total().recordsWritten());
+        assertEquals(0, io.total().opens());
+        assertEquals(12, io.tables().size());
+        assertEquals(0.96, io.writeAmplification(executor.stats()), 1e-9);
+        long written = io.total().bytesWritten();
+        assertTrue(written > 0);
+        // 更新一条存储引擎中的记录：读入一张表，分裂后写出两张表
+        executor.executeUpdate("050", "(u)");
+        assertEquals(1, io.total().opens());
+        assertEquals(8, io.total().recordsRead());
+        assertEquals(14, io.total().closes());
+        assertEquals(104, io.total().recordsWritten());
+        assertTrue(io.total().bytesWritten() > written);
+        // 查询读入一张表
+        assertEquals("(u)", executor.get("050"));
+        assertEquals(2, io.total().opens());
+        long bytesRead = 0;
+        for (IOStats.Counters table : io.tables().values()) { bytesRead += table.bytesRead(); }
+        assertEquals(io.total().bytesRead(), bytesRead);
+        String dump = executor.ioDump();
+        assertTrue(dump, dump.startsWith("{\"directory\":\"" + directory + "\""));
+        assertTrue(dump, dump.contains("\"userOperations\":102") && dump.contains("\"opens\":2"));
+        assertTrue(executor.executeShowIO().contains("写放大"));
+    }
+
+    @Test
+    public void testDroppedTablesArePruned() throws Exception {
+        String directory = directory();
+        Executor<String, String> executor = executor(4, 10, 8, directory);
+        for (int i = 0; i < 200; i++) { executor.executeInsert(String.format("%03d", i), "(v)"); }
+        executor.awaitFlush();
+        IOStats io = executor.ioStats();
+        int tables = io.tables().size();
+        long closes = io.total().closes();
+        for (int i = 0; i < 190; i++) { executor.executeDelete(String.format("%03d", i)); }
+        // 合并后被删除的表在文件回收时移除了统计，只留下仍然存在的表
+        assertTrue(io.tables().size() < tables);
+        File[] files = new File(directory).listFiles();
+        assertNotNull(files);
+        for (String table : io.tables().keySet()) {
+            boolean exists = false;
+            for (File file : files) { exists |= file.getName().startsWith(table + ".v"); }
+            assertTrue(table, exists);
+        }
+        // 目录的汇总保持不变
+        assertTrue(io.total().closes() > closes);
+    }
+
+    @Test
+    public void testDirectoryIsWeaklyRegistered() throws Exception {
+        String directory = directory();
+        IOStats io = IOStats.of(directory);
+        io.recordOpen("t", 10, 1, 100);
+        assertSame(io, IOStats.of(directory));
+        WeakReference<IOStats> reference = new WeakReference<>(io);
+        io = null;
+        for (int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(reference.get());
+        // 不再被持有的统计被回收，再次访问时重新开始计数
+        assertEquals(0, IOStats.of(directory).total().opens());
+    }
+}
@@ -0,0 +1,85 @@
+package testMetrics;
+
+import Main.Executor;
+import Metrics.LatencyHistogram;
+import Metrics.Operation;
+import Metrics.OperationStats;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class testLatencyHistogram {
+
+    @Test
+    public void testQuantiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.quantile(0.99));
+        // 1us ~ 100ms的均匀分布
+        final int N = 100000;
+        for (int i = 1; i <= N; i++) { histogram.record(i * 1000L); }
+        assertEquals(N, histogram.count());
+        assertEquals(N * 1000L, histogram.max());
+        for (double q : new double[] { 0.5, 0.99, 0.999 }) {
+            double expected = q * N * 1000, actual = histogram.quantile(q);
+            assertEquals(expected, actual, expected / 50);
+        }
+        assertEquals(N * 1000L, histogram.quantile(1));
+        // 每个桶中的值都映射回同一个桶
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            long value = random.nextLong() >>> (1 + random.nextInt(63));
+            LatencyHistogram single = new LatencyHistogram();
+            single.record(value);
+            assertEquals(value, single.quantile(0.5));
+        }
+    }
+
+    @Test
+    public void testConcurrentRecord() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        final int THREADS = 8, N = 100000;
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < N; i++) { histogram.record(i); }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) { thread.join(); }
+        assertEquals((long) THREADS * N, histogram.count());
+        assertEquals((long) THREADS * N * (N - 1) / 2, histogram.sum());
+        assertEquals(N - 1, histogram.max());
+        long total = 0;
+        for (int i = 0; i < LatencyHistogram.buckets(); i++) { total += histogram.countAt(i); }
+        assertEquals(histogram.count(), total);
+    }
+
+    @Test
+    public void testExecutorStats() throws Exception {
+        try (Executor<String, String> executor = new Executor<String, String>("B+-Tree", 4, 10, 8)) {
+            for (int i = 0; i < 100; i++) {
+                executor.executeInsert(String.format("%03d", i), "(v)");
+            }
+            executor.awaitFlush();
+            executor.executeUpdate("050", "(u)");
+            executor.executeShowKey("050");
+            executor.get("051");
+            executor.delete("052");
+            executor.scan("010", "020");
+            OperationStats stats = executor.stats();
+            assertEquals(100, stats.histogram(Operation.INSERT).count());
+            assertEquals(1, stats.histogram(Operation.UPDATE).count());
+            assertEquals(2, stats.histogram(Operation.GET).count());
+            assertEquals(1, stats.histogram(Operation.DELETE).count());
+            assertEquals(1, stats.histogram(Operation.SCAN).count());
+            assertEquals(12, stats.histogram(Operation.FLUSH).count());
+            // 每张表8条记录，更新后达到容量上限的80%，发生一次表内分裂
+            assertEquals(1, stats.histogram(Operation.SPLIT).count());
+            String report = executor.executeShowStats();
+            assertTrue(report, report.contains("INSERT") && report.contains("SPLIT") && report.contains("p999(us)"));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package testMetrics;
+
+import Main.Executor;
+import Metrics.SlowOpLog;
+import org.junit.Test;
+import testMain.ExecutorFixture;
+import static org.junit.Assert.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class testSlowOpLog extends ExecutorFixture {
+
+    /** 解析一行日志中的字段. */
+    private static Map<String, String> fields(String line) {
+        Map<String, String> fields = new HashMap<>();
+        for (String token : line.split(" ")) {
+            int eq = token.indexOf('=');
+            if (eq > 0) { fields.put(token.substring(0, eq), token.substring(eq + 1)); }
+        }
+        return fields;
+    }
+
+    @Test
+    public void testPhaseBreakdown() throws Exception {
+        String directory = directory();
+        Executor<String, String> executor = executor(4, 10, 8, directory);
+        for (int i = 0; i < 16; i++) { executor.put(String.format("%03d", i), "v" + i); }
+        executor.awaitFlush();
+        String file = directory + "/slow.log";
+        try (SlowOpLog slowLog = new SlowOpLog(file, Duration.ZERO, 1 << 20, 2)) {
+            executor.setSlowOpLog(slowLog);
+            executor.get("003");
+            executor.executeUpdate("004", "u");
+            executor.delete("100");
+            executor.scan("001", "009");
+        }
+        List<String> lines = Files.readAllLines(Paths.get(file));
+        assertEquals(4, lines.size());
+        Map<String, String> get = fields(lines.get(0));
+        assertEquals("GET", get.get("op"));
+        assertEquals("003", get.get("key"));
+        // 存储引擎中的查询经过 定位 -> 打开 -> 查找，不写回
+        assertTrue(Double.parseDouble(get.get("open_us")) > 0);
+        assertEquals(0, Double.parseDouble(get.get("close_us")), 0);
+        Map<String, String> update = fields(lines.get(1));
+        assertEquals("UPDATE", update.get("op"));
+        assertTrue(Double.parseDouble(update.get("close_us")) > 0);
+        double phases = 0;
+        for (String phase : new String[] { "wait", "buffer", "find", "open", "lookup", "split", "close", "other" }) {
+            phases += Double.parseDouble(update.get(phase + "_us"));
+        }
+        assertEquals(Double.parseDouble(update.get("total_us")), phases, 1);
+        assertEquals("DELETE", fields(lines.get(2)).get("op"));
+        assertEquals("[001,009]", fields(lines.get(3)).get("key"));
+    }
+
+    @Test
+    public void testThresholdAndRolling() throws Exception {
+        String directory = directory();
+        Executor<String, String> executor = executor(4, 10, 1000, directory);
+        String file = directory + "/slow.log";
+        try (SlowOpLog slowLog = new SlowOpLog(file, Duration.ofHours(1), 1 << 20, 2)) {
+            executor.setSlowOpLog(slowLog);
+            for (int i = 0; i < 100; i++) { executor.put(String.format("%03d", i), "v"); }
+            assertEquals(0, slowLog.logged());
+        }
+        assertEquals(0, Files.size(Paths.get(file)));
+        SlowOpLog rolling = new SlowOpLog(file, Duration.ZERO, 1000, 2);
+        try (rolling) {
+            executor.setSlowOpLog(rolling);
+            for (int i = 0; i < 100; i++) { executor.get(String.format("%03d", i)); }
+        }
+        // 关闭时写出了队列中剩余的记录
+        assertEquals(100, rolling.logged() + rolling.dropped());
+        for (String name : new String[] { "slow.log", "slow.log.1", "slow.log.2" }) {
+            Path path = Paths.get(directory, name);
+            assertTrue(name, Files.exists(path) && Files.size(path) <= 1000);
+        }
+        assertFalse(Files.exists(Paths.get(directory, "slow.log.3")));
+    }
+}
@@ -0,0 +1,111 @@
+package testServer;
+
+import Main.Executor;
+import Server.BinaryClient;
+import Server.BinaryServer;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public class testBinaryServer {
+
+    @Test
+    public void testConcurrentPipelinedClients() throws Exception {
+        Executor<String, String> executor = new Executor<String, String>("B+-Tree", 4, 10, 8);
+        BinaryServer server = new BinaryServer(executor, 0);
+        server.start();
+        final int THREADS = 8, N = 300;
+        ConcurrentSkipListMap<String, String> expected = new ConcurrentSkipListMap<>();
+        try (BinaryClient client = new BinaryClient("127.0.0.1", server.port(), 4)) {
+            client.ping();
+            // 多个线程共享同一个客户端，每个线程流水线地写入互不相交的键
+            List<Thread> threads = new ArrayList<>();
+            List<Throwable> errors = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final int id = t;
+                Thread thread = new Thread(() -> {
+                    try (BinaryClient.Pipeline pipeline = client.pipeline()) {
+                        for (int i = 0; i < N; i++) {
+                            String key = String.format("%d:%04d", id, (i * 7919) % N), value = "v" + i;
+                            pipeline.put(key, value);
+                            expected.put(key, value);
+                        }
+                        pipeline.sync();
+                        List<CompletableFuture<String>> deleted = new ArrayList<>();
+                        for (int i = 0; i < N; i += 3) {
+                            String key = String.format("%d:%04d", id, i);
+                            deleted.add(pipeline.delete(key));
+                            expected.remove(key);
+                        }
+                        pipeline.sync();
+                        for (CompletableFuture<String> value : deleted) { assertNotNull(value.join()); }
+                    } catch (Throwable e) {
+                        synchronized (errors) { errors.add(e); }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) { thread.join(); }
+            assertTrue(errors.toString(), errors.isEmpty());
+            // 流水线读取
+            try (BinaryClient.Pipeline pipeline = client.pipeline()) {
+                List<CompletableFuture<String>> values = new ArrayList<>();
+                for (String key : expected.keySet()) { values.add(pipeline.get(key)); }
+                CompletableFuture<String> missing = pipeline.get("missing");
+                pipeline.sync();
+                int i = 0;
+                for (String value : expected.values()) { assertEquals(value, values.get(i++).join()); }
+                assertNull(missing.join());
+            }
+            assertEquals(new ArrayList<>(expected.entrySet()), client.scan(null, null));
+            TreeMap<String, String> sub = new TreeMap<>(expected.subMap("2:", true, "5:", true));
+            assertEquals(new ArrayList<>(sub.entrySet()), client.scan("2:", "5:"));
+            assertNull(client.delete("missing"));
+            client.put("a", "1");
+            assertEquals("1", client.get("a"));
+            try {
+                client.scan("b", "a");
+                fail();
+            } catch (IOException e) {
+                // 服务端返回的错误
+            }
+            assertEquals("1", client.get("a"));
+        } finally {
+            server.close();
+            executor.close();
+        }
+    }
+
+    @Test
+    public void testManyIdleConnections() throws Exception {
+        Executor<String, String> executor = new Executor<String, String>("B+-Tree", 4, 10, 8);
+        BinaryServer server = new BinaryServer(executor, 0);
+        server.start();
+        final int CONNECTIONS = 1000;
+        List<Socket> sockets = new ArrayList<>();
+        try (BinaryClient client = new BinaryClient("127.0.0.1", server.port(), 1)) {
+            for (int i = 0; i < CONNECTIONS; i++) {
+                sockets.add(new Socket(InetAddress.getLoopbackAddress(), server.port()));
+            }
+            // 空闲连接不影响其它连接上的请求
+            client.put("k", "v");
+            assertEquals("v", client.get("k"));
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (server.connections() < CONNECTIONS + 1 && System.currentTimeMillis() < deadline) { Thread.sleep(10); }
+            assertEquals(CONNECTIONS + 1, server.connections());
+        } finally {
+            for (Socket socket : sockets) { socket.close(); }
+            server.close();
+            executor.close();
+        }
+    }
+}
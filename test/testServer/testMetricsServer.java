@@ -0,0 +1,53 @@
+package testServer;
+
+import Main.Executor;
+import Server.MetricsServer;
+import org.junit.Test;
+import testMain.ExecutorFixture;
+import static org.junit.Assert.*;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class testMetricsServer extends ExecutorFixture {
+
+    @Test
+    public void testScrape() throws Exception {
+        Executor<String, String> executor = executor(4, 10, 8);
+        for (int i = 0; i < 100; i++) { executor.put(String.format("%03d", i), "v" + i); }
+        executor.awaitFlush();
+        executor.put("050", "u");
+        executor.get("051");
+        try (MetricsServer server = new MetricsServer(List.of(executor), 0)) {
+            server.start();
+            HttpURLConnection connection =
+                    (HttpURLConnection) new URL("http://127.0.0.1:" + server.port() + "/metrics").openConnection();
+            assertEquals(200, connection.getResponseCode());
+            assertTrue(connection.getContentType().startsWith("text/plain; version=0.0.4"));
+            String body;
+            try (InputStream in = connection.getInputStream()) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            assertTrue(body, body.contains("# TYPE kvstore_operation_duration_seconds histogram"));
+            assertTrue(body, body.contains("kvstore_operation_duration_seconds_count{shard=\"0\",op=\"insert\"} 101\n"));
+            assertTrue(body, body.contains("kvstore_operation_duration_seconds_bucket{shard=\"0\",op=\"insert\",le=\"+Inf\"} 101\n"));
+            assertTrue(body, body.contains("kvstore_operation_duration_seconds_count{shard=\"0\",op=\"split\"} 1\n"));
+            assertTrue(body, body.contains("kvstore_tables{shard=\"0\"} 13\n"));
+            assertTrue(body, body.contains("kvstore_bplustree_height{shard=\"0\"} 3\n"));
+            assertTrue(body, body.contains("kvstore_buffer_records{shard=\"0\"} 4\n"));
+            assertTrue(body, body.contains("kvstore_table_opens_total{shard=\"0\"} 2\n"));
+            assertTrue(body, body.contains("kvstore_table_closes_total{shard=\"0\"} 14\n"));
+            // 累积桶单调不减
+            long previous = 0;
+            for (String line : body.split("\n")) {
+                if (!line.startsWith("kvstore_operation_duration_seconds_bucket{shard=\"0\",op=\"get\"")) { continue; }
+                long count = Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+                assertTrue(line, count >= previous);
+                previous = count;
+            }
+            assertEquals(1, previous);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package testServer;
+
+import Main.Executor;
+import Server.RespReader;
+import Server.RespServer;
+import Server.RespWriter;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+public class testRespServer {
+
+    /** 将参数编码为RESP数组. */
+    private static String command(String... args) {
+        StringBuilder sb = new StringBuilder();
+        sb.append('*').append(args.length).append("\r\n");
+        for (String arg : args) {
+            sb.append('$').append(arg.getBytes(StandardCharsets.UTF_8).length).append("\r\n").append(arg).append("\r\n");
+        }
+        return sb.toString();
+    }
+
+    /** 读取一条响应，数组与批量字符串展开为多行. */
+    private static void readReply(BufferedReader in, List<String> lines) throws IOException {
+        String line = in.readLine();
+        lines.add(line);
+        if (line.startsWith("$") && !line.equals("$-1")) {
+            lines.add(in.readLine());
+        } else if (line.startsWith("*")) {
+            int n = Integer.parseInt(line.substring(1));
+            for (int i = 0; i < n; i++) { readReply(in, lines); }
+        }
+    }
+
+    @Test
+    public void testReaderWithFragmentsAndPipelining() throws IOException {
+        RespReader reader = new RespReader();
+        byte[] bytes = (command("SET", "k", "v") + "PING\r\n" + command("GET", "k")).getBytes(StandardCharsets.UTF_8);
+        List<List<String>> requests = new ArrayList<>();
+        // 逐字节喂给解码器
+        for (byte b : bytes) {
+            reader.feed(ByteBuffer.wrap(new byte[]{b}));
+            List<String> request;
+            while ((request = reader.next()) != null) { requests.add(request); }
+        }
+        assertEquals(List.of(List.of("SET", "k", "v"), List.of("PING"), List.of("GET", "k")), requests);
+    }
+
+    @Test
+    public void testWriterEncodesLinesAsUtf8() {
+        RespWriter writer = new RespWriter().simple("完成").error("ERR 不支持的命令\r\nx").bulk("值");
+        ByteBuffer buffer = writer.flip();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        assertEquals("+完成\r\n-ERR 不支持的命令  x\r\n$3\r\n值\r\n", new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testPipelinedCommands() throws IOException {
+        Executor<String, String> executor = new Executor<String, String>("B+-Tree", 4, 10, 8);
+        RespServer server = new RespServer(executor, 0);
+        server.start();
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.port())) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            final int N = 500;
+            TreeMap<String, String> expected = new TreeMap<>();
+            // 一次性发出所有写请求
+            StringBuilder batch = new StringBuilder();
+            for (int i = 0; i < N; i++) {
+                String key = String.format("key:%04d", (i * 7919) % N), value = "value-" + i;
+                expected.put(key, value);
+                batch.append(command("SET", key, value));
+            }
+            out.write(batch.toString().getBytes(StandardCharsets.UTF_8));
+            List<String> replies = new ArrayList<>();
+            for (int i = 0; i < N; i++) { readReply(in, replies); }
+            for (String reply : replies) { assertEquals("+OK", reply); }
+            // 读请求同样流水线发送，响应按请求的顺序返回
+            batch.setLength(0);
+            for (String key : expected.keySet()) { batch.append(command("GET", key)); }
+            batch.append(command("GET", "missing"));
+            out.write(batch.toString().getBytes(StandardCharsets.UTF_8));
+            for (String key : expected.keySet()) {
+                replies.clear();
+                readReply(in, replies);
+                assertEquals(List.of("$" + expected.get(key).length(), expected.get(key)), replies);
+            }
+            replies.clear();
+            readReply(in, replies);
+            assertEquals(List.of("$-1"), replies);
+            // 删除与内联命令
+            out.write((command("DEL", "key:0000", "key:0001", "missing") + "EXISTS key:0000 key:0002\r\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            assertEquals(":2", in.readLine());
+            assertEquals(":1", in.readLine());
+            expected.remove("key:0000");
+            expected.remove("key:0001");
+            // SCAN按键的顺序返回所有的键
+            List<String> scanned = new ArrayList<>();
+            String cursor = "0";
+            do {
+                out.write(command("SCAN", cursor, "COUNT", "37").getBytes(StandardCharsets.UTF_8));
+                replies.clear();
+                readReply(in, replies);
+                cursor = replies.get(2);
+                scanned.addAll(replies.subList(4, replies.size()).stream().filter(s -> !s.startsWith("$")).toList());
+            } while (!cursor.equals("0"));
+            assertEquals(new ArrayList<>(expected.keySet()), scanned);
+            // 错误不会中断连接
+            out.write((command("GET") + command("NOPE") + command("查询") + command("PING"))
+                    .getBytes(StandardCharsets.UTF_8));
+            assertTrue(in.readLine().startsWith("-ERR wrong number of arguments"));
+            assertTrue(in.readLine().startsWith("-ERR unknown command"));
+            assertEquals("-ERR unknown command '查询'", in.readLine());
+            assertEquals("+PONG", in.readLine());
+        } finally {
+            server.close();
+            executor.close();
+        }
+    }
+
+    @Test
+    public void testScanCursorUnderModification() throws IOException {
+        Executor<String, String> executor = new Executor<String, String>("B+-Tree", 4, 10, 8);
+        RespServer server = new RespServer(executor, 0);
+        server.start();
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.port())) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            List<String> replies = new ArrayList<>();
+            TreeMap<String, String> initial = new TreeMap<>();
+            StringBuilder batch = new StringBuilder();
+            for (int i = 0; i < 300; i++) {
+                String key = String.format("key:%04d", (i * 7) % 300);
+                initial.put(key, "v");
+                batch.append(command("SET", key, "v"));
+            }
+            // 非ASCII的键同样可以编码在游标中
+            initial.put("键:中文", "v");
+            batch.append(command("SET", "键:中文", "v"));
+            out.write(batch.toString().getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < initial.size(); i++) { readReply(in, replies); }
+            // 每批之后在游标之前插入新键、删除已经返回的键，按偏量分批时会导致键被跳过或重复
+            List<String> scanned = new ArrayList<>();
+            String cursor = "0";
+            int round = 0;
+            do {
+                out.write(command("SCAN", cursor, "COUNT", "16").getBytes(StandardCharsets.UTF_8));
+                replies.clear();
+                readReply(in, replies);
+                cursor = replies.get(2);
+                List<String> keys = replies.subList(4, replies.size()).stream().filter(s -> !s.startsWith("$")).toList();
+                assertTrue(keys.size() <= 16);
+                scanned.addAll(keys);
+                if (!keys.isEmpty()) {
+                    out.write((command("SET", String.format("a:%04d", round++), "v") + command("DEL", keys.get(0)))
+                            .getBytes(StandardCharsets.UTF_8));
+                    assertEquals("+OK", in.readLine());
+                    assertEquals(":1", in.readLine());
+                }
+            } while (!cursor.equals("0"));
+            assertEquals(new ArrayList<>(initial.keySet()), scanned);
+            // 非法的游标
+            out.write((command("SCAN", "-1") + command("SCAN", "abc") + command("SCAN", "2")).getBytes(StandardCharsets.UTF_8));
+            assertEquals("-ERR invalid cursor", in.readLine());
+            assertEquals("-ERR invalid cursor", in.readLine());
+            assertEquals("-ERR invalid cursor", in.readLine());
+        } finally {
+            server.close();
+            executor.close();
+        }
+    }
+}